@@ -6,14 +6,19 @@ import feign.auth.BasicAuthRequestInterceptor;
 import feign.form.FormEncoder;
 import feign.jackson.JacksonDecoder;
 import lombok.Builder;
-import pet.jen.mbdev.api.TokenProvider;
+import pet.jen.mbdev.api.AccessToken;
+import pet.jen.mbdev.api.GenerationalTokenProvider;
 import pet.jen.mbdev.api.auth.client.TokenApi;
 import pet.jen.mbdev.api.auth.domain.OAuthConfig;
 import pet.jen.mbdev.api.auth.domain.TokenInformation;
 import pet.jen.mbdev.api.auth.exception.TokenPersistenceException;
+import pet.jen.mbdev.api.auth.persistence.SharedTokenRepository;
 import pet.jen.mbdev.api.auth.persistence.TokenRepository;
 
+import java.lang.ref.WeakReference;
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Responsible for the {@link TokenInformation} which is relevant to perform authenticated requests.
@@ -23,10 +28,24 @@ import java.util.Date;
  *
  * The `getAccessToken` function ensures that there is always a valid access token returned in the method. In case
  * the returned access token is invalid a forced refresh can be triggered by using `refreshTokens`.
-
+ *
+ * Reads are served lock-free from an immutable {@link TokenState} snapshot. Refreshes are single-flight: only one
+ * thread calls the token api while concurrent callers either keep using the still valid old token or wait for the
+ * refreshing thread to publish the new snapshot.
+ *
+ * Every snapshot carries a generation which is increased with each new snapshot. Callers which know the generation of
+ * a rejected token use `refreshTokens(long)` to avoid refreshing again tokens which were already replaced.
+ *
+ * If `refreshAhead` is enabled in the {@link OAuthConfig} the tokens are additionally refreshed in the background by a
+ * {@link TokenRefreshScheduler} within the first half of the expiry buffer. Callers then only refresh inline once the
+ * tokens enter the buffer's second half, i.e. as a fallback in case the background refresh did not succeed in time.
+ *
+ * Refreshes of tokens kept in a {@link SharedTokenRepository} are coordinated with other processes: the refresher of
+ * an account is elected by a lease and the other processes adopt its tokens from the repository.
+ *
  * @author Jens Petersohn <me@jen.pet>
  */
-class OAuthTokenProvider implements TokenProvider {
+class OAuthTokenProvider implements GenerationalTokenProvider {
 
     private TokenApi tokenApi;
 
@@ -36,6 +55,18 @@ class OAuthTokenProvider implements TokenProvider {
     // repository which should be used to save and store token information
     private TokenRepository tokenRepository;
 
+    // snapshot of the current tokens which is served to readers without any locking
+    private volatile TokenState state;
+
+    // guards calls to the token api so that only a single refresh is in flight at any time
+    private final ReentrantLock refreshLock = new ReentrantLock();
+
+    // refreshes tokens in the background if refresh-ahead is enabled, null otherwise
+    private volatile TokenRefreshScheduler refreshScheduler;
+
+    // set by readers and reset with every new snapshot to detect providers which are idle
+    private volatile boolean accessed;
+
     /**
      * The builder is the only public method to create a token provider. When calling `build()` this private constructor
      * will be called.
@@ -49,9 +80,12 @@ class OAuthTokenProvider implements TokenProvider {
      * @param tokenRepository which should be used for the token information
      * @param authCode code to retrieve tokens initially
      * @param codeVerifier in case the authentication process used the PKCE flow it will be used to retrieve the initially
+     * @param refreshScheduler might be null; if set refresh-ahead is enabled, if not but it is enabled in the config it
+     *                         defaults to the shared scheduler
      */
     @Builder
-    private OAuthTokenProvider(TokenApi tokenApi, OAuthConfig config, TokenRepository tokenRepository, String authCode, String codeVerifier) {
+    private OAuthTokenProvider(TokenApi tokenApi, OAuthConfig config, TokenRepository tokenRepository, String authCode,
+                               String codeVerifier, TokenRefreshScheduler refreshScheduler) {
         if(config == null || !config.isValid()) {
             throw new IllegalArgumentException("Required parameter config is null or invalid.");
         }
@@ -63,6 +97,13 @@ class OAuthTokenProvider implements TokenProvider {
         // if no repository is set default to in-memory
         this.tokenRepository = tokenRepository != null ? tokenRepository : new InMemoryTokenRepository();
 
+        // background refreshes are opt-in
+        if(refreshScheduler != null) {
+            this.refreshScheduler = refreshScheduler;
+        } else if(config.isRefreshAhead()) {
+            this.refreshScheduler = TokenRefreshScheduler.shared();
+        }
+
         // if an auth code is present assume that the tokens were not received yet
         if(!Strings.isNullOrEmpty(authCode)) {
             initTokens(authCode, codeVerifier);
@@ -74,6 +115,7 @@ class OAuthTokenProvider implements TokenProvider {
         if(tokenRepository == null || tokenRepository.isEmpty() || !tokenRepository.get().isValid()) {
             throw new IllegalStateException("No auth code available or provided repository was either empty or had invalid data.");
         }
+        publish(tokenRepository.get());
     }
 
     /**
@@ -110,41 +152,270 @@ class OAuthTokenProvider implements TokenProvider {
 
     @Override
     public String getAccessToken() {
-        // check for the token buffer first and if necessary refresh
-        if(getTokenInfo().getTimestamp() + getTokenInfo().getExpiresIn() - config.getTokenExpiryBuffer() <= new Date().getTime()) {
-            refreshTokens();
+        return currentState().accessToken;
+    }
+
+    @Override
+    public AccessToken getCurrentToken() {
+        return currentState().token;
+    }
+
+    private TokenState currentState() {
+        // only write if necessary to keep the cache line shared between reading threads
+        if(!accessed) {
+            accessed = true;
+        }
+        TokenState current = this.state;
+        // fast path: the snapshot is outside of the expiry buffer
+        if(!current.requiresRefresh(System.nanoTime())) {
+            return current;
         }
-        return this.getTokenInfo().getAccessToken();
+        return refreshIfRequired(current);
     }
 
     @Override
     public String refreshTokens() {
-        String refreshToken = this.getTokenInfo().getRefreshToken();
-        TokenInformation tokenInformation = tokenApi.refresh("refresh_token", refreshToken);
+        return refreshTokens(this.state.generation).getValue();
+    }
+
+    @Override
+    public AccessToken refreshTokens(long generation) {
+        refreshLock.lock();
+        try {
+            TokenState current = this.state;
+            // another thread refreshed in the meantime, its result is as fresh as a forced refresh
+            if(current.generation != generation) {
+                return current.token;
+            }
+            return refresh(current).token;
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * Handles the slow path of `getAccessToken()` once the observed snapshot entered the expiry buffer. The first
+     * thread performs the refresh, all others return the old access token as long as it has not expired yet. Otherwise
+     * they block until the refreshing thread has published its result.
+     *
+     * @param observed snapshot which was found to require a refresh
+     * @return a snapshot whose access token is not expired
+     */
+    private TokenState refreshIfRequired(TokenState observed) {
+        if(!refreshLock.tryLock()) {
+            if(!observed.isExpired(System.nanoTime())) {
+                return observed;
+            }
+            refreshLock.lock();
+        }
+        try {
+            TokenState current = this.state;
+            if(current != observed && !current.requiresRefresh(System.nanoTime())) {
+                return current;
+            }
+            return refresh(current);
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * Performs the actual token api call. Callers have to hold the `refreshLock`.
+     */
+    private TokenState refresh(TokenState current) {
+        if(tokenRepository instanceof SharedTokenRepository) {
+            return refreshShared((SharedTokenRepository) tokenRepository, current);
+        }
+        return refresh(current.tokenInformation);
+    }
+
+    private TokenState refresh(TokenInformation current) {
+        TokenInformation tokenInformation = tokenApi.refresh("refresh_token", current.getRefreshToken());
         tokenInformation.setTimestamp(new Date().getTime());
-        saveTokenInformation(tokenInformation);
-        return tokenInformation.getAccessToken();
+        return saveTokenInformation(tokenInformation);
+    }
+
+    /**
+     * Refreshes tokens which are shared with other processes. The lease elects a single refresher per account, all
+     * others wait for it and adopt the tokens it stored instead of invalidating them with another refresh.
+     */
+    private TokenState refreshShared(SharedTokenRepository repository, TokenState current) {
+        try (SharedTokenRepository.Lease lease = repository.acquireLease()) {
+            TokenInformation latest = repository.reload();
+            // refresh tokens rotate with every refresh, a different one was stored by another refresher. Unlike the
+            // timestamps it does not depend on the clocks of the processes being in sync.
+            if(latest != null && latest.isValid()
+                    && !latest.getRefreshToken().equals(current.tokenInformation.getRefreshToken())) {
+                return publish(latest);
+            }
+            // the stored refresh token is the latest one even if it was not seen by this process yet
+            return refresh(latest != null && latest.isValid() ? latest : current.tokenInformation);
+        } catch (TokenPersistenceException e) {
+            throw new IllegalStateException("Could not coordinate the token refresh with other processes.", e);
+        }
     }
 
     TokenInformation getTokenInfo() {
-        return this.tokenRepository.get();
+        return this.state.tokenInformation;
     }
 
-    private void saveTokenInformation(TokenInformation tokenInformation) {
+    private TokenState saveTokenInformation(TokenInformation tokenInformation) {
         try {
             tokenRepository.save(tokenInformation);
         } catch (TokenPersistenceException e) {
             throw new IllegalArgumentException("Could not persist token information.", e);
         }
+        return publish(tokenInformation);
+    }
+
+    /**
+     * Makes a snapshot of the next generation visible to readers and schedules the next background refresh if
+     * applicable. Only called during construction or while holding the `refreshLock`.
+     */
+    private TokenState publish(TokenInformation tokenInformation) {
+        TokenState previous = this.state;
+        long generation = previous != null ? previous.generation + 1 : 0;
+        TokenRefreshScheduler scheduler = this.refreshScheduler;
+        long expiryBuffer = config.getTokenExpiryBuffer();
+        // the first half of the buffer belongs to the background refresh, callers must not race it
+        long inlineBuffer = scheduler != null ? expiryBuffer / 2 : expiryBuffer;
+        TokenState newState = TokenState.of(tokenInformation, expiryBuffer, inlineBuffer, generation);
+        // reset before the snapshot is visible, a reader of the new snapshot must not be overwritten
+        this.accessed = false;
+        this.state = newState;
+        if(scheduler != null) {
+            long delay = scheduler.jitteredDelay(newState.bufferDeadline, expiryBuffer, System.nanoTime());
+            scheduler.schedule(new RefreshAheadTask(this, newState, 0), delay);
+        }
+        return newState;
+    }
+
+    /**
+     * Stops scheduling background refreshes. Already scheduled runs will not refresh anymore.
+     */
+    void disableRefreshAhead() {
+        this.refreshScheduler = null;
+    }
+
+    /**
+     * Called by the {@link TokenRefreshScheduler} to refresh the tokens of the scheduled snapshot. If the snapshot was
+     * replaced in the meantime the publication of the new one already scheduled another run. Failed attempts are
+     * retried with a backoff as long as the access token did not expire; afterwards the inline refresh takes over.
+     *
+     * Schedulers which skip idle providers won't refresh tokens which were not requested since the last refresh. Their
+     * next refresh happens inline once they are used again.
+     */
+    void refreshAhead(TokenState scheduled, int attempt) {
+        TokenRefreshScheduler scheduler = this.refreshScheduler;
+        if(scheduler == null || (scheduler.isSkipIdle() && !accessed)) {
+            return;
+        }
+        // a refresh which is already in flight schedules the next run once it publishes its result
+        if(!refreshLock.tryLock()) {
+            return;
+        }
+        try {
+            if(this.state == scheduled) {
+                refresh(scheduled);
+            }
+        } catch (RuntimeException e) {
+            long backoff = scheduler.backoff(attempt);
+            if(!scheduled.isExpired(System.nanoTime() + backoff)) {
+                scheduler.schedule(new RefreshAheadTask(this, scheduled, attempt + 1), backoff);
+            }
+        } finally {
+            refreshLock.unlock();
+        }
     }
 
-    private static TokenApi createTokenApiClient(OAuthConfig config) {
+    static TokenApi createTokenApiClient(OAuthConfig config) {
         Feign.Builder builder = Feign.builder()
                 .encoder(new FormEncoder())
                 .decoder(new JacksonDecoder());
+        if(config.getTransport() != null) {
+            builder.client(config.getTransport().client());
+        }
         if(!config.isUsePKCE()) {
             builder.requestInterceptor(new BasicAuthRequestInterceptor(config.getClientId(), config.getClientSecret()));
         }
         return builder.target(TokenApi.class, config.getAuthorizationBaseUrl());
     }
+
+    /**
+     * Background task of the {@link TokenRefreshScheduler}. It only weakly references its provider so that scheduled
+     * refreshes do not keep providers alive which are not used anymore.
+     */
+    private static class RefreshAheadTask implements Runnable {
+
+        private final WeakReference<OAuthTokenProvider> provider;
+        private final TokenState scheduled;
+        private final int attempt;
+
+        RefreshAheadTask(OAuthTokenProvider provider, TokenState scheduled, int attempt) {
+            this.provider = new WeakReference<>(provider);
+            this.scheduled = scheduled;
+            this.attempt = attempt;
+        }
+
+        @Override
+        public void run() {
+            OAuthTokenProvider tokenProvider = provider.get();
+            if(tokenProvider != null) {
+                tokenProvider.refreshAhead(scheduled, attempt);
+            }
+        }
+    }
+
+    /**
+     * Immutable snapshot of the token information. The wall clock based expiry of the tokens is translated once into
+     * deadlines on the monotonic {@link System#nanoTime()} clock so that reads neither allocate nor depend on
+     * adjustments of the system time.
+     */
+    static final class TokenState {
+        final TokenInformation tokenInformation;
+        final String accessToken;
+        final long generation;
+        // handed out as is to avoid allocations on reads
+        final AccessToken token;
+        // point in time at which the tokens enter the expiry buffer
+        final long bufferDeadline;
+        // point in time from which callers refresh inline, later than the buffer deadline with refresh-ahead
+        final long refreshDeadline;
+        // point in time at which the access token is not usable anymore
+        final long expiryDeadline;
+
+        private TokenState(TokenInformation tokenInformation, long generation, long bufferDeadline, long refreshDeadline,
+                           long expiryDeadline) {
+            this.tokenInformation = tokenInformation;
+            this.accessToken = tokenInformation.getAccessToken();
+            this.generation = generation;
+            this.token = new AccessToken(accessToken, generation);
+            this.bufferDeadline = bufferDeadline;
+            this.refreshDeadline = refreshDeadline;
+            this.expiryDeadline = expiryDeadline;
+        }
+
+        /**
+         * @param expiryBuffer milliseconds before the expiry in which the tokens should be refreshed
+         * @param inlineBuffer milliseconds before the expiry from which callers refresh inline, at most the expiry buffer
+         */
+        static TokenState of(TokenInformation tokenInformation, long expiryBuffer, long inlineBuffer, long generation) {
+            long nanoTime = System.nanoTime();
+            long remaining = tokenInformation.getTimestamp() + tokenInformation.getExpiresIn() - new Date().getTime();
+            return new TokenState(
+                    tokenInformation,
+                    generation,
+                    nanoTime + TimeUnit.MILLISECONDS.toNanos(remaining - expiryBuffer),
+                    nanoTime + TimeUnit.MILLISECONDS.toNanos(remaining - inlineBuffer),
+                    nanoTime + TimeUnit.MILLISECONDS.toNanos(remaining));
+        }
+
+        boolean requiresRefresh(long nanoTime) {
+            return nanoTime - refreshDeadline >= 0;
+        }
+
+        boolean isExpired(long nanoTime) {
+            return nanoTime - expiryDeadline >= 0;
+        }
+    }
 }
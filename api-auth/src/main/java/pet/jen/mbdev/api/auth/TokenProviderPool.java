@@ -0,0 +1,116 @@
+package pet.jen.mbdev.api.auth;
+
+import lombok.Builder;
+import pet.jen.mbdev.api.TokenProvider;
+import pet.jen.mbdev.api.auth.client.TokenApi;
+import pet.jen.mbdev.api.auth.domain.OAuthConfig;
+import pet.jen.mbdev.api.auth.persistence.TokenRepository;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Holds the {@link TokenProvider}s of many accounts which belong to the same OAuth client. Instead of creating a token
+ * api client and a refresh mechanism per account all providers of the pool share a single {@link TokenApi} and a single
+ * {@link TokenRefreshScheduler}.
+ *
+ * The scheduler orders the refreshes of all accounts by their deadline and performs them on a bounded amount of
+ * worker threads. Deadlines are jittered within the expiry buffer so that accounts which were authorized together
+ * do not refresh at the same time. Accounts which were not used since their last refresh are skipped to save quota
+ * of the token endpoint; they are refreshed inline once they are used again.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+public class TokenProviderPool {
+
+    private static final int DEFAULT_WORKERS = 2;
+
+    // the OAuth configuration shared by all accounts
+    private OAuthConfig config;
+
+    // client for the token endpoint shared by all accounts
+    private TokenApi tokenApi;
+
+    // deadline ordered refreshes of all accounts
+    private TokenRefreshScheduler refreshScheduler;
+
+    private final ConcurrentMap<String, OAuthTokenProvider> providers = new ConcurrentHashMap<>();
+
+    /**
+     * @param config mandatory; OAuth details required for token handling
+     * @param tokenApi might be null; when not set the default token api will be created
+     * @param workers maximum amount of concurrent background refreshes; defaults to two
+     * @param threadFactory might be null; creates the worker threads, e.g. {@link pet.jen.mbdev.api.VirtualThreads}
+     */
+    @Builder
+    private TokenProviderPool(OAuthConfig config, TokenApi tokenApi, int workers, ThreadFactory threadFactory) {
+        this(config, tokenApi,
+                TokenRefreshScheduler.create(workers > 0 ? workers : DEFAULT_WORKERS, threadFactory, true));
+    }
+
+    TokenProviderPool(OAuthConfig config, TokenApi tokenApi, TokenRefreshScheduler refreshScheduler) {
+        if(config == null || !config.isValid()) {
+            refreshScheduler.shutdown();
+            throw new IllegalArgumentException("Required parameter config is null or invalid.");
+        }
+        this.config = config;
+        this.tokenApi = tokenApi != null ? tokenApi : OAuthTokenProvider.createTokenApiClient(config);
+        this.refreshScheduler = refreshScheduler;
+    }
+
+    /**
+     * Adds an account to the pool based on a populated repository, e.g. the one which was passed to the
+     * {@link AuthorizationFlowHandler} when authorizing the account. An already registered account will be replaced.
+     *
+     * @param account key which identifies the account within the pool
+     * @param tokenRepository which contains valid token information of the account
+     * @return the token provider of the account
+     */
+    public TokenProvider register(String account, TokenRepository tokenRepository) {
+        OAuthTokenProvider provider = OAuthTokenProvider.builder()
+                .config(config)
+                .tokenApi(tokenApi)
+                .tokenRepository(tokenRepository)
+                .refreshScheduler(refreshScheduler).build();
+        OAuthTokenProvider previous = providers.put(account, provider);
+        if(previous != null) {
+            previous.disableRefreshAhead();
+        }
+        return provider;
+    }
+
+    /**
+     * @param account key which identifies the account within the pool
+     * @return the token provider of the account or null if it is not registered
+     */
+    public TokenProvider get(String account) {
+        return providers.get(account);
+    }
+
+    /**
+     * Removes an account from the pool and stops its background refreshes.
+     *
+     * @param account key which identifies the account within the pool
+     */
+    public void remove(String account) {
+        OAuthTokenProvider provider = providers.remove(account);
+        if(provider != null) {
+            provider.disableRefreshAhead();
+        }
+    }
+
+    public int size() {
+        return providers.size();
+    }
+
+    /**
+     * Stops all background refreshes. The providers of the pool stay usable and fall back to inline refreshes.
+     */
+    public void shutdown() {
+        for(OAuthTokenProvider provider : providers.values()) {
+            provider.disableRefreshAhead();
+        }
+        refreshScheduler.shutdown();
+    }
+}
@@ -0,0 +1,134 @@
+package pet.jen.mbdev.api.auth;
+
+import lombok.Getter;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Schedules background refreshes of tokens ahead of their expiry so that API calls do not have to pay for the token
+ * endpoint round trip. It is used by the {@link OAuthTokenProvider} when `refreshAhead` is enabled in the
+ * {@link pet.jen.mbdev.api.auth.domain.OAuthConfig}.
+ *
+ * Refreshes are spread randomly over the first half of the expiry buffer to avoid that providers which were authorized
+ * at the same time hit the token endpoint together. Providers only refresh inline once the second half is reached, so
+ * API calls don't pay for the round trip as long as the scheduler keeps up. Failed attempts are retried using an
+ * exponential backoff with jitter until the inline refresh takes over or the access token expires.
+ *
+ * The scheduler relies on a {@link ScheduledExecutorService} whose queue orders all pending refreshes by their
+ * deadline. A single scheduler can therefore serve any amount of providers with a bounded amount of threads.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+class TokenRefreshScheduler {
+
+    private static final long DEFAULT_MIN_BACKOFF = TimeUnit.SECONDS.toNanos(1);
+    private static final long DEFAULT_MAX_BACKOFF = TimeUnit.SECONDS.toNanos(30);
+
+    private final ScheduledExecutorService executor;
+
+    // lower and upper bound of the delay between two failed refresh attempts in nanoseconds
+    private final long minBackoff;
+    private final long maxBackoff;
+
+    // whether providers which were not used since their last refresh should be skipped
+    @Getter
+    private final boolean skipIdle;
+
+    TokenRefreshScheduler(ScheduledExecutorService executor) {
+        this(executor, DEFAULT_MIN_BACKOFF, DEFAULT_MAX_BACKOFF, false);
+    }
+
+    TokenRefreshScheduler(ScheduledExecutorService executor, long minBackoff, long maxBackoff, boolean skipIdle) {
+        this.executor = executor;
+        this.minBackoff = minBackoff;
+        this.maxBackoff = maxBackoff;
+        this.skipIdle = skipIdle;
+    }
+
+    /**
+     * @return the scheduler which is shared by all token providers not configured with a dedicated one. It runs on a
+     * single daemon thread since refreshes are rare and short.
+     */
+    static TokenRefreshScheduler shared() {
+        return SharedHolder.INSTANCE;
+    }
+
+    /**
+     * Creates a scheduler running on a dedicated pool of threads.
+     *
+     * @param workers maximum amount of concurrent refreshes
+     * @param threadFactory creates the worker threads, daemon threads if null
+     * @param skipIdle whether providers which were not used since their last refresh should be skipped
+     */
+    static TokenRefreshScheduler create(int workers, ThreadFactory threadFactory, boolean skipIdle) {
+        return new TokenRefreshScheduler(
+                Executors.newScheduledThreadPool(workers,
+                        threadFactory != null ? threadFactory : new DaemonThreadFactory()),
+                DEFAULT_MIN_BACKOFF,
+                DEFAULT_MAX_BACKOFF,
+                skipIdle);
+    }
+
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    void schedule(Runnable task, long delay) {
+        try {
+            executor.schedule(task, Math.max(0L, delay), TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            // the scheduler was shut down, the inline refresh takes over
+        }
+    }
+
+    /**
+     * Determines a random point in time within the first half of the expiry buffer.
+     *
+     * @param bufferDeadline monotonic time at which the tokens enter the expiry buffer
+     * @param expiryBuffer length of the expiry buffer in milliseconds
+     * @param nanoTime current monotonic time
+     * @return delay in nanoseconds from now
+     */
+    long jitteredDelay(long bufferDeadline, long expiryBuffer, long nanoTime) {
+        long spread = TimeUnit.MILLISECONDS.toNanos(expiryBuffer) / 2;
+        long jitter = spread > 0 ? ThreadLocalRandom.current().nextLong(spread) : 0L;
+        // the inline refresh starts at the end of the spread, a delay into it must not be added on top of a late start
+        return Math.max(0L, bufferDeadline + jitter - nanoTime);
+    }
+
+    /**
+     * @param attempt amount of failed attempts so far, starting at zero
+     * @return delay in nanoseconds before the next attempt, randomly chosen between half and the full exponential value
+     */
+    long backoff(int attempt) {
+        long backoff = maxBackoff;
+        if(attempt < 32) {
+            backoff = Math.min(maxBackoff, minBackoff << attempt);
+        }
+        long half = backoff / 2;
+        return half + ThreadLocalRandom.current().nextLong(backoff - half + 1);
+    }
+
+    private static class SharedHolder {
+        private static final TokenRefreshScheduler INSTANCE = new TokenRefreshScheduler(
+                Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory()));
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "mbdev-token-refresh-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
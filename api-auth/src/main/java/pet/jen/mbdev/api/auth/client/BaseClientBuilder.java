@@ -4,6 +4,7 @@ import com.google.common.net.HttpHeaders;
 import okhttp3.*;
 import okhttp3.logging.HttpLoggingInterceptor;
 import pet.jen.mbdev.api.auth.domain.OAuthConfig;
+import pet.jen.mbdev.api.transport.OkHttpTransport;
 
 import javax.net.ssl.*;
 import java.io.IOException;
@@ -16,7 +17,10 @@ public class BaseClientBuilder {
     public static final MediaType MEDIA_TYPE_FORM =  MediaType.parse("application/x-www-form-urlencoded; charset=utf-8");
 
     public static OkHttpClient.Builder get(OAuthConfig config) {
-        OkHttpClient.Builder builder = new OkHttpClient.Builder();
+        // derived builders share the connection pool and dispatcher of the transport
+        OkHttpClient.Builder builder = config.getTransport() instanceof OkHttpTransport
+                ? ((OkHttpTransport) config.getTransport()).okHttpClient().newBuilder()
+                : new OkHttpClient.Builder();
 
         addDefaultLoggingInterceptor(builder);
 
@@ -4,6 +4,7 @@ import com.google.common.base.Strings;
 import lombok.Builder;
 import lombok.Getter;
 import org.springframework.util.StringUtils;
+import pet.jen.mbdev.api.transport.HttpTransport;
 
 import java.util.List;
 
@@ -57,6 +58,15 @@ public class OAuthConfig {
     @Builder.Default
     private int tokenExpiryBuffer = 300;
 
+    /**
+     * Enables refreshing tokens in the background within the first half of the expiry buffer; API calls only refresh
+     * inline once the second half is reached. Without it tokens are refreshed by the first API call which requests an
+     * access token within the buffer.
+     */
+    @Getter
+    @Builder.Default
+    private boolean refreshAhead = false;
+
     /**
      * Proof Key for Code Exchange mechanism (https://tools.ietf.org/html/rfc7636) enablement.
      * Attention: Client has to be explicitly setup to use it this way, client secret is not needed in this case.
@@ -65,6 +75,14 @@ public class OAuthConfig {
     @Builder.Default
     private boolean usePKCE = false;
 
+    /**
+     * Transport which is shared with the API clients. The token API uses its feign client; the clients of the
+     * authorization flow derive from the shared `OkHttpClient` if it is an {@link pet.jen.mbdev.api.transport.OkHttpTransport}.
+     * If not set every client creates its own connections.
+     */
+    @Getter
+    private HttpTransport transport;
+
     public boolean isValid() {
         boolean valid = !(Strings.isNullOrEmpty(authorizationBaseUrl)
                 || Strings.isNullOrEmpty(loginBaseUrl)
@@ -9,4 +9,8 @@ public class TokenPersistenceException extends Throwable {
     public TokenPersistenceException(String message) {
         super(message);
     }
+
+    public TokenPersistenceException(String message, Throwable cause) {
+        super(message, cause);
+    }
 }
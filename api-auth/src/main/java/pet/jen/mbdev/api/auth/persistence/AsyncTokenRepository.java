@@ -0,0 +1,39 @@
+package pet.jen.mbdev.api.auth.persistence;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import pet.jen.mbdev.api.auth.domain.TokenInformation;
+
+/**
+ * Asynchronous counterpart of the {@link TokenRepository} for backing stores which are slow or remote. Instead of
+ * blocking the caller every operation returns a future which completes once the backing store finished it.
+ *
+ * It is not used by the {@link pet.jen.mbdev.api.auth.OAuthTokenProvider} directly but via a
+ * {@link WriteBehindTokenStore} which acknowledges saves in memory and writes them in the background. Existing
+ * synchronous repositories can be used as an asynchronous one with the {@link AsyncTokenRepositoryAdapter}.
+ *
+ * The focus of this repository is always just a single object instance of a {@link TokenInformation}.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+public interface AsyncTokenRepository {
+    /**
+     * @return future of either the stored token information or null if the repository is empty.
+     */
+    ListenableFuture<TokenInformation> get();
+
+    /**
+     * Saves the information within the repository. In case there is any error the future should fail with a
+     * {@link pet.jen.mbdev.api.auth.exception.TokenPersistenceException}.
+     *
+     * @param tokenInformation which has to be persisted
+     * @return future which completes once the information is persisted
+     */
+    ListenableFuture<Void> save(TokenInformation tokenInformation);
+
+    /**
+     * Clears the repository by removing its entry.
+     *
+     * @return future which completes once the entry is removed
+     */
+    ListenableFuture<Void> clear();
+}
@@ -0,0 +1,75 @@
+package pet.jen.mbdev.api.auth.persistence;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import pet.jen.mbdev.api.auth.domain.TokenInformation;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Makes a synchronous {@link TokenRepository} usable as an {@link AsyncTokenRepository} by performing its operations
+ * on the given executor.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+public class AsyncTokenRepositoryAdapter implements AsyncTokenRepository {
+
+    private final TokenRepository repository;
+
+    private final Executor executor;
+
+    public AsyncTokenRepositoryAdapter(TokenRepository repository, Executor executor) {
+        this.repository = repository;
+        this.executor = executor;
+    }
+
+    @Override
+    public ListenableFuture<TokenInformation> get() {
+        final SettableFuture<TokenInformation> future = SettableFuture.create();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    future.set(repository.get());
+                } catch (Throwable t) {
+                    future.setException(t);
+                }
+            }
+        });
+        return future;
+    }
+
+    @Override
+    public ListenableFuture<Void> save(final TokenInformation tokenInformation) {
+        final SettableFuture<Void> future = SettableFuture.create();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    repository.save(tokenInformation);
+                    future.set(null);
+                } catch (Throwable t) {
+                    future.setException(t);
+                }
+            }
+        });
+        return future;
+    }
+
+    @Override
+    public ListenableFuture<Void> clear() {
+        final SettableFuture<Void> future = SettableFuture.create();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    repository.clear();
+                    future.set(null);
+                } catch (Throwable t) {
+                    future.setException(t);
+                }
+            }
+        });
+        return future;
+    }
+}
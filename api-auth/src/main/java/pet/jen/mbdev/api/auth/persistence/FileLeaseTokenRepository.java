@@ -0,0 +1,275 @@
+package pet.jen.mbdev.api.auth.persistence;
+
+import pet.jen.mbdev.api.auth.domain.TokenInformation;
+import pet.jen.mbdev.api.auth.exception.TokenPersistenceException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link SharedTokenRepository} which stores the token information of an account in a directory shared by all
+ * processes of a host, e.g. several JVMs running against the same accounts.
+ *
+ * Every account uses two files: `<account>.tokens` holds the token information and is replaced atomically on every
+ * save so that readers never see a partially written file; `<account>.lock` is used for the refresh lease via
+ * {@link FileChannel} locks. The operating system releases the lock if a process dies, hence a crashed refresher can't
+ * block the others.
+ *
+ * File locks are held on behalf of the whole JVM. Repositories of the same account within one JVM are therefore
+ * additionally coordinated by an in-process lock, which only exists while a lease of the account is held or awaited.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+public class FileLeaseTokenRepository implements SharedTokenRepository {
+
+    private static final long DEFAULT_LEASE_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+
+    // delay between two attempts to acquire a lease which is held by another process
+    private static final long LEASE_POLL_INTERVAL = 10;
+
+    // in-process locks per lock file, file locks can't be acquired twice by the same JVM. An entry is removed by the
+    // last holder, a lock which was removed while waiting for it is not valid anymore and has to be looked up again.
+    private static final ConcurrentMap<Path, ReentrantLock> PROCESS_LOCKS = new ConcurrentHashMap<>();
+
+    private final Path tokenPath;
+
+    private final Path lockPath;
+
+    private final long leaseTimeout;
+
+    public FileLeaseTokenRepository(Path directory, String account) {
+        this(directory, account, DEFAULT_LEASE_TIMEOUT);
+    }
+
+    /**
+     * @param directory shared by all processes which access the account
+     * @param account key which identifies the account within the directory
+     * @param leaseTimeout maximum time in milliseconds to wait for the lease
+     */
+    public FileLeaseTokenRepository(Path directory, String account, long leaseTimeout) {
+        String fileName = encodeFileName(account);
+        this.tokenPath = directory.resolve(fileName + ".tokens").toAbsolutePath().normalize();
+        this.lockPath = directory.resolve(fileName + ".lock").toAbsolutePath().normalize();
+        this.leaseTimeout = leaseTimeout;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return get() == null;
+    }
+
+    @Override
+    public void save(TokenInformation tokenInformation) throws TokenPersistenceException {
+        if(tokenInformation == null || !tokenInformation.isValid()) {
+            throw new TokenPersistenceException("Token information which should be store is not valid.");
+        }
+        Path temporaryPath = null;
+        try {
+            temporaryPath = Files.createTempFile(tokenPath.getParent(), tokenPath.getFileName().toString(), ".tmp");
+            try (OutputStream out = Files.newOutputStream(temporaryPath)) {
+                toProperties(tokenInformation).store(out, null);
+            }
+            Files.move(temporaryPath, tokenPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            deleteQuietly(temporaryPath);
+            throw new TokenPersistenceException("Could not write token information to " + tokenPath + ".", e);
+        }
+    }
+
+    @Override
+    public TokenInformation get() {
+        try {
+            return reload();
+        } catch (TokenPersistenceException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void clear() {
+        try {
+            Files.deleteIfExists(tokenPath);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not delete token information at " + tokenPath + ".", e);
+        }
+    }
+
+    @Override
+    public TokenInformation reload() throws TokenPersistenceException {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(tokenPath)) {
+            properties.load(in);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new TokenPersistenceException("Could not read token information from " + tokenPath + ".", e);
+        }
+        return fromProperties(properties);
+    }
+
+    @Override
+    public Lease acquireLease() throws TokenPersistenceException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(leaseTimeout);
+        ReentrantLock processLock = acquireProcessLock(deadline);
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock fileLock;
+            while((fileLock = channel.tryLock()) == null) {
+                if(System.nanoTime() - deadline >= 0) {
+                    throw new TokenPersistenceException("Timed out waiting for the refresh lease of " + lockPath + ".");
+                }
+                TimeUnit.MILLISECONDS.sleep(LEASE_POLL_INTERVAL);
+            }
+            return new FileLease(lockPath, processLock, channel, fileLock);
+        } catch (IOException | InterruptedException | RuntimeException | TokenPersistenceException e) {
+            closeQuietly(channel);
+            releaseProcessLock(lockPath, processLock);
+            if(e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            if(e instanceof TokenPersistenceException) {
+                throw (TokenPersistenceException) e;
+            }
+            throw new TokenPersistenceException("Could not acquire the refresh lease of " + lockPath + ".", e);
+        }
+    }
+
+    private ReentrantLock acquireProcessLock(long deadline) throws TokenPersistenceException {
+        try {
+            while(true) {
+                ReentrantLock lock = PROCESS_LOCKS.get(lockPath);
+                if(lock == null) {
+                    ReentrantLock newLock = new ReentrantLock();
+                    lock = PROCESS_LOCKS.putIfAbsent(lockPath, newLock);
+                    if(lock == null) {
+                        lock = newLock;
+                    }
+                }
+                if(!lock.tryLock(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                    throw new TokenPersistenceException("Timed out waiting for the refresh lease of " + lockPath + ".");
+                }
+                if(PROCESS_LOCKS.get(lockPath) == lock) {
+                    return lock;
+                }
+                // removed by its previous holder in the meantime
+                lock.unlock();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TokenPersistenceException("Interrupted while waiting for the refresh lease of " + lockPath + ".", e);
+        }
+    }
+
+    private static void releaseProcessLock(Path lockPath, ReentrantLock lock) {
+        if(!lock.hasQueuedThreads() && lock.getHoldCount() == 1) {
+            PROCESS_LOCKS.remove(lockPath, lock);
+        }
+        lock.unlock();
+    }
+
+    /**
+     * @return amount of accounts with an in-process lock
+     */
+    static int processLocks() {
+        return PROCESS_LOCKS.size();
+    }
+
+    private static Properties toProperties(TokenInformation tokenInformation) {
+        Properties properties = new Properties();
+        properties.setProperty("access_token", tokenInformation.getAccessToken());
+        properties.setProperty("token_type", tokenInformation.getTokenType());
+        properties.setProperty("expires_in", String.valueOf(tokenInformation.getExpiresIn() / 1000));
+        properties.setProperty("refresh_token", tokenInformation.getRefreshToken());
+        properties.setProperty("scope", tokenInformation.getScope());
+        properties.setProperty("timestamp", String.valueOf(tokenInformation.getTimestamp()));
+        return properties;
+    }
+
+    private TokenInformation fromProperties(Properties properties) throws TokenPersistenceException {
+        try {
+            TokenInformation tokenInformation = new TokenInformation();
+            tokenInformation.setAccessToken(properties.getProperty("access_token"));
+            tokenInformation.setTokenType(properties.getProperty("token_type"));
+            tokenInformation.setExpiresIn(Integer.parseInt(properties.getProperty("expires_in")));
+            tokenInformation.setRefreshToken(properties.getProperty("refresh_token"));
+            tokenInformation.setScope(properties.getProperty("scope"));
+            tokenInformation.setTimestamp(Long.parseLong(properties.getProperty("timestamp")));
+            return tokenInformation;
+        } catch (NumberFormatException e) {
+            throw new TokenPersistenceException("Malformed token information in " + tokenPath + ".", e);
+        }
+    }
+
+    private static String encodeFileName(String account) {
+        try {
+            return URLEncoder.encode(account, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        if(path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // nothing left to do
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if(channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // nothing left to do
+        }
+    }
+
+    private static class FileLease implements Lease {
+
+        private final Path lockPath;
+        private final ReentrantLock processLock;
+        private final FileChannel channel;
+        private final FileLock fileLock;
+
+        FileLease(Path lockPath, ReentrantLock processLock, FileChannel channel, FileLock fileLock) {
+            this.lockPath = lockPath;
+            this.processLock = processLock;
+            this.channel = channel;
+            this.fileLock = fileLock;
+        }
+
+        @Override
+        public void close() {
+            try {
+                fileLock.release();
+            } catch (IOException e) {
+                // closing the channel releases the lock as well
+            } finally {
+                closeQuietly(channel);
+                releaseProcessLock(lockPath, processLock);
+            }
+        }
+    }
+}
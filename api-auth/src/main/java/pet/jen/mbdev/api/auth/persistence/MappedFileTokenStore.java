@@ -0,0 +1,436 @@
+package pet.jen.mbdev.api.auth.persistence;
+
+import pet.jen.mbdev.api.auth.domain.TokenInformation;
+import pet.jen.mbdev.api.auth.exception.TokenPersistenceException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Durable store for the {@link TokenInformation} of many accounts which is backed by an append-only log in a memory
+ * mapped file. Every account is accessible as a {@link TokenRepository} via `repository(account)` which can be passed
+ * to the {@link pet.jen.mbdev.api.auth.AuthorizationFlowHandler} or a {@link pet.jen.mbdev.api.auth.TokenProviderPool}.
+ *
+ * Saving token information appends a single record to the log instead of rewriting the file. Each record is framed by
+ * its length and a CRC32 checksum: `[int length][int crc][payload]`. When opening the store the log is replayed into an
+ * in-memory index. Records whose checksum does not match are skipped and counted as `corruptRecords()`; a torn record
+ * at the end of the log (e.g. after a crash) is cleared and overwritten by the next append. Reads are always served
+ * from the index.
+ *
+ * Once the log is mostly made up of overwritten or removed entries it is compacted by writing the live entries into a
+ * new file which atomically replaces the old one.
+ *
+ * Appends are visible to the operating system right away and therefore survive a crash of the JVM. To also survive
+ * a crash of the operating system `syncOnWrite` forces every append to the storage device.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+public class MappedFileTokenStore implements Closeable {
+
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+
+    // length and checksum of a record
+    private static final int HEADER_SIZE = 8;
+
+    private static final int MIN_MAPPED_SIZE = 1 << 20;
+
+    // the log is not compacted below this size, even if it consists of stale entries only
+    private static final int MIN_COMPACTION_SIZE = 1 << 20;
+
+    private final Path path;
+
+    private final boolean syncOnWrite;
+
+    private FileChannel channel;
+
+    private MappedByteBuffer buffer;
+
+    // index of the live entries which serves all reads
+    private final ConcurrentMap<String, TokenInformation> entries = new ConcurrentHashMap<>();
+
+    // serializes appends and compactions; not a monitor since both write to the file while holding it, which may
+    // block for a while with `syncOnWrite`
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // size of the latest record per account to determine the share of stale records, guarded by the lock
+    private final Map<String, Integer> recordSizes = new HashMap<>();
+
+    // size of all live records, guarded by the lock
+    private long liveBytes;
+
+    // records which were skipped during the replay because their checksum did not match
+    private int corruptRecords;
+
+    private MappedFileTokenStore(Path path, boolean syncOnWrite) {
+        this.path = path;
+        this.syncOnWrite = syncOnWrite;
+    }
+
+    public static MappedFileTokenStore open(Path path) throws IOException {
+        return open(path, false);
+    }
+
+    /**
+     * Opens the store and restores all entries by replaying the log. The file is created if it does not exist.
+     *
+     * @param path of the log file
+     * @param syncOnWrite whether every append should be forced to the storage device
+     * @return store containing all entries of the log
+     * @throws IOException in case the file can't be opened or mapped
+     */
+    public static MappedFileTokenStore open(Path path, boolean syncOnWrite) throws IOException {
+        // a leftover of a compaction which did not complete, the log itself is still intact
+        Files.deleteIfExists(compactionPath(path));
+        MappedFileTokenStore store = new MappedFileTokenStore(path, syncOnWrite);
+        store.map();
+        store.replay();
+        return store;
+    }
+
+    /**
+     * @param account key which identifies the account within the store
+     * @return repository view on a single account of the store
+     */
+    public TokenRepository repository(String account) {
+        return new AccountTokenRepository(account);
+    }
+
+    /**
+     * @return the token information of the account or null if there is none
+     */
+    public TokenInformation get(String account) {
+        return entries.get(account);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return amount of records which were skipped when opening the store because they were corrupt
+     */
+    public int corruptRecords() {
+        return corruptRecords;
+    }
+
+    /**
+     * Appends the token information of an account to the log.
+     *
+     * @throws TokenPersistenceException in case the information is invalid or can't be written
+     */
+    public void put(String account, TokenInformation tokenInformation) throws TokenPersistenceException {
+        if(tokenInformation == null || !tokenInformation.isValid()) {
+            throw new TokenPersistenceException("Token information which should be store is not valid.");
+        }
+        lock.lock();
+        try {
+            int size = append(encode(PUT, account, tokenInformation));
+            entries.put(account, tokenInformation);
+            replaceRecordSize(account, size);
+            compactIfRequired();
+        } catch (IOException e) {
+            throw new TokenPersistenceException("Could not append token information to " + path + ".", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Appends the removal of an account to the log.
+     *
+     * @throws TokenPersistenceException in case the removal can't be written
+     */
+    public void remove(String account) throws TokenPersistenceException {
+        lock.lock();
+        try {
+            if(!entries.containsKey(account)) {
+                return;
+            }
+            append(encode(REMOVE, account, null));
+            entries.remove(account);
+            replaceRecordSize(account, 0);
+            compactIfRequired();
+        } catch (IOException e) {
+            throw new TokenPersistenceException("Could not append token removal to " + path + ".", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Rewrites the log so that it only contains the live entries.
+     */
+    public void compact() throws IOException {
+        lock.lock();
+        try {
+            Path compactionPath = compactionPath(path);
+            try (FileChannel target = FileChannel.open(compactionPath,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer compacted = target.map(FileChannel.MapMode.READ_WRITE, 0, mappedSize(liveBytes));
+                for(Map.Entry<String, TokenInformation> entry : entries.entrySet()) {
+                    write(compacted, encode(PUT, entry.getKey(), entry.getValue()));
+                }
+                compacted.force();
+            }
+            channel.close();
+            Files.move(compactionPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            map();
+            buffer.position((int) liveBytes);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            buffer.force();
+            channel.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return size of the log in bytes
+     */
+    long logSize() {
+        lock.lock();
+        try {
+            return buffer.position();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void map() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(channel.size(), MIN_MAPPED_SIZE));
+    }
+
+    /**
+     * Replays all valid records of the log into the index and positions the buffer behind the last one. A record with a
+     * plausible length but a mismatching checksum is skipped so that the records behind it are still restored; the log
+     * ends at the first record without a plausible length.
+     */
+    private void replay() throws IOException {
+        CRC32 crc = new CRC32();
+        // records are copied into a reusable array to avoid an allocation per record
+        byte[] payload = new byte[512];
+        int end = buffer.position();
+        int skipped = 0;
+        while(buffer.remaining() >= HEADER_SIZE) {
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if(length <= 0 || length > buffer.remaining()) {
+                break;
+            }
+            if(payload.length < length) {
+                payload = new byte[length];
+            }
+            buffer.get(payload, 0, length);
+            crc.reset();
+            crc.update(payload, 0, length);
+            if((int) crc.getValue() != checksum) {
+                skipped++;
+                continue;
+            }
+            apply(ByteBuffer.wrap(payload, 0, length), HEADER_SIZE + length);
+            // corrupt records in front of a valid one stay in the log, they are skipped again by the next replay
+            corruptRecords += skipped;
+            skipped = 0;
+            end = buffer.position();
+        }
+        buffer.position(end);
+        clearTail();
+    }
+
+    private void apply(ByteBuffer payload, int size) throws IOException {
+        byte type = payload.get();
+        String account = readString(payload);
+        if(type == PUT) {
+            entries.put(account, readTokenInformation(payload));
+            replaceRecordSize(account, size);
+        } else {
+            entries.remove(account);
+            replaceRecordSize(account, 0);
+        }
+    }
+
+    /**
+     * Zeroes everything behind the last valid record up to the end of the mapped region. A torn record may consist of
+     * a zero header followed by its payload, any of its bytes could be mistaken for a header once a shorter record was
+     * appended in front of them. Bytes which are already zero are not written to keep unused pages untouched.
+     */
+    private void clearTail() {
+        int position = buffer.position();
+        while(buffer.remaining() >= 8) {
+            if(buffer.getLong() != 0L) {
+                buffer.putLong(buffer.position() - 8, 0L);
+            }
+        }
+        while(buffer.hasRemaining()) {
+            if(buffer.get() != 0) {
+                buffer.put(buffer.position() - 1, (byte) 0);
+            }
+        }
+        buffer.position(position);
+    }
+
+    private int append(byte[] payload) throws IOException {
+        int size = HEADER_SIZE + payload.length;
+        if(buffer.remaining() < size + HEADER_SIZE) {
+            int position = buffer.position();
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, mappedSize(2L * buffer.capacity() + size));
+            buffer.position(position);
+        }
+        write(buffer, payload);
+        if(syncOnWrite) {
+            buffer.force();
+        }
+        return size;
+    }
+
+    private void compactIfRequired() throws IOException {
+        if(buffer.position() > MIN_COMPACTION_SIZE && liveBytes * 2 < buffer.position()) {
+            compact();
+        }
+    }
+
+    private void replaceRecordSize(String account, int size) {
+        Integer previous = size > 0 ? recordSizes.put(account, size) : recordSizes.remove(account);
+        liveBytes += size - (previous != null ? previous : 0);
+    }
+
+    private static void write(MappedByteBuffer target, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        // the header is written last so that a torn record is never mistaken for a valid one
+        int start = target.position();
+        target.position(start + HEADER_SIZE);
+        target.put(payload);
+        int end = target.position();
+        target.putInt(start + 4, (int) crc.getValue());
+        target.putInt(start, payload.length);
+        target.position(end);
+    }
+
+    /**
+     * Encodes a record payload. Strings are stored as UTF-8 bytes prefixed by their length as an unsigned short.
+     */
+    private static byte[] encode(byte type, String account, TokenInformation tokenInformation) throws IOException {
+        byte[] accountBytes = toBytes(account);
+        if(type != PUT) {
+            return ByteBuffer.allocate(1 + 2 + accountBytes.length).put(type).putShort((short) accountBytes.length)
+                    .put(accountBytes).array();
+        }
+        byte[][] strings = new byte[][] {
+                accountBytes,
+                toBytes(tokenInformation.getAccessToken()),
+                toBytes(tokenInformation.getTokenType()),
+                toBytes(tokenInformation.getRefreshToken()),
+                toBytes(tokenInformation.getScope())};
+        int length = 1 + 4 + 8;
+        for(byte[] string : strings) {
+            length += 2 + string.length;
+        }
+        ByteBuffer payload = ByteBuffer.allocate(length).put(type);
+        for(byte[] string : strings) {
+            payload.putShort((short) string.length).put(string);
+        }
+        payload.putInt((int) (tokenInformation.getExpiresIn() / 1000));
+        payload.putLong(tokenInformation.getTimestamp());
+        return payload.array();
+    }
+
+    private static TokenInformation readTokenInformation(ByteBuffer payload) {
+        TokenInformation tokenInformation = new TokenInformation();
+        tokenInformation.setAccessToken(readString(payload));
+        tokenInformation.setTokenType(readString(payload));
+        tokenInformation.setRefreshToken(readString(payload));
+        tokenInformation.setScope(readString(payload));
+        tokenInformation.setExpiresIn(payload.getInt());
+        tokenInformation.setTimestamp(payload.getLong());
+        return tokenInformation;
+    }
+
+    private static byte[] toBytes(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if(bytes.length > 0xFFFF) {
+            throw new IOException("Value exceeds the maximum length of a token store entry.");
+        }
+        return bytes;
+    }
+
+    private static String readString(ByteBuffer payload) {
+        int length = payload.getShort() & 0xFFFF;
+        String value = new String(payload.array(), payload.position(), length, StandardCharsets.UTF_8);
+        payload.position(payload.position() + length);
+        return value;
+    }
+
+    private static long mappedSize(long required) {
+        if(required > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Token store exceeds the maximum size of a mapped file.");
+        }
+        return Math.max(required + HEADER_SIZE, MIN_MAPPED_SIZE);
+    }
+
+    private static Path compactionPath(Path path) {
+        return Paths.get(path.toString() + ".compact");
+    }
+
+    /**
+     * Repository view on the entry of a single account.
+     */
+    private class AccountTokenRepository implements TokenRepository {
+
+        private final String account;
+
+        AccountTokenRepository(String account) {
+            this.account = account;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return !entries.containsKey(account);
+        }
+
+        @Override
+        public void save(TokenInformation tokenInformation) throws TokenPersistenceException {
+            put(account, tokenInformation);
+        }
+
+        @Override
+        public TokenInformation get() {
+            return entries.get(account);
+        }
+
+        @Override
+        public void clear() {
+            try {
+                remove(account);
+            } catch (TokenPersistenceException e) {
+                throw new IllegalStateException("Could not clear token information of account " + account + ".", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package pet.jen.mbdev.api.auth.persistence;
+
+import pet.jen.mbdev.api.auth.domain.TokenInformation;
+import pet.jen.mbdev.api.auth.exception.TokenPersistenceException;
+
+/**
+ * A {@link TokenRepository} whose token information is shared by several processes. Since refresh tokens rotate with
+ * every refresh, only one process may refresh at a time; all others have to pick up its result.
+ *
+ * The {@link pet.jen.mbdev.api.auth.OAuthTokenProvider} acquires the repository's lease before refreshing. While
+ * holding it, it reloads the token information and adopts it without calling the token api if another process
+ * refreshed in the meantime.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+public interface SharedTokenRepository extends TokenRepository {
+    /**
+     * Acquires the exclusive refresh lease of the repository across all processes. Blocks until the lease is
+     * available.
+     *
+     * @return the lease which has to be closed once the refresh is done
+     * @throws TokenPersistenceException in case the lease could not be acquired in time
+     */
+    Lease acquireLease() throws TokenPersistenceException;
+
+    /**
+     * @return the latest token information of the shared store, ignoring anything cached
+     * @throws TokenPersistenceException in case the shared store can't be read
+     */
+    TokenInformation reload() throws TokenPersistenceException;
+
+    /**
+     * Exclusive right to refresh the tokens of a repository.
+     */
+    interface Lease extends AutoCloseable {
+        /**
+         * Releases the lease.
+         */
+        @Override
+        void close();
+    }
+}
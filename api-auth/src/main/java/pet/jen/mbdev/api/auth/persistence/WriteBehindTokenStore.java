@@ -0,0 +1,392 @@
+package pet.jen.mbdev.api.auth.persistence;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import lombok.Builder;
+import pet.jen.mbdev.api.auth.domain.TokenInformation;
+import pet.jen.mbdev.api.auth.exception.TokenPersistenceException;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Decouples the {@link pet.jen.mbdev.api.auth.OAuthTokenProvider} from slow backing stores. Every
+ * {@link AsyncTokenRepository} passed to `repository()` is wrapped into a {@link TokenRepository} which acknowledges
+ * saves in memory right away and writes them to the backing store in the background.
+ *
+ * Repeated saves of the same repository before it is flushed are coalesced so that only the latest token information
+ * is written. Modified repositories are flushed in batches of `batchSize` every `flushInterval` milliseconds; a batch
+ * is written concurrently and completed before the next one starts. Failed writes are retried with the next batch
+ * unless they were superseded by a newer save.
+ *
+ * Closing the store stops the background flushes and writes all pending modifications before it returns. Writes which
+ * still fail are reported by an exception of `close()` instead of being dropped silently.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+public class WriteBehindTokenStore implements Closeable {
+
+    private static final long DEFAULT_FLUSH_INTERVAL = 100;
+    private static final int DEFAULT_BATCH_SIZE = 100;
+
+    // maximum time to wait for a single batch before considering its writes as failed
+    private static final long BATCH_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+
+    private final int batchSize;
+
+    private final ScheduledExecutorService flusher;
+
+    // repositories with modifications which were not written yet, each one is queued at most once
+    private final Queue<WriteBehindRepository> modified = new ConcurrentLinkedQueue<>();
+
+    // ensures that batches of background and explicit flushes don't overlap
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    // held shared by modifications and exclusively while closing, so that no modification slips past the final flush
+    private final ReentrantReadWriteLock closeLock = new ReentrantReadWriteLock();
+
+    private volatile boolean closed;
+
+    // writes which failed once the store was closed, guarded by the flush lock
+    private final List<Write> abandoned = new ArrayList<>();
+
+    /**
+     * @param flushInterval milliseconds between two background flushes; defaults to 100
+     * @param batchSize maximum amount of repositories written within one batch; defaults to 100
+     */
+    @Builder
+    private WriteBehindTokenStore(long flushInterval, int batchSize) {
+        this.batchSize = batchSize > 0 ? batchSize : DEFAULT_BATCH_SIZE;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "mbdev-token-write-behind");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        long interval = flushInterval > 0 ? flushInterval : DEFAULT_FLUSH_INTERVAL;
+        this.flusher.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                flushBatches();
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param delegate asynchronous repository which should be written in the background
+     * @return repository which acknowledges all modifications in memory
+     */
+    public TokenRepository repository(AsyncTokenRepository delegate) {
+        return new WriteBehindRepository(delegate);
+    }
+
+    /**
+     * @return amount of repositories whose modifications were not written yet
+     */
+    public int pending() {
+        return modified.size();
+    }
+
+    /**
+     * Writes all pending modifications and waits for their completion. Writes which fail remain pending.
+     */
+    public void flush() {
+        flushBatches();
+    }
+
+    /**
+     * Stops the background flushes and writes all pending modifications. Saves which are in progress are completed
+     * and written as well, later ones are rejected.
+     *
+     * @throws IllegalStateException if modifications still fail after a final attempt; the exceptions of the failed
+     * writes are attached as cause and suppressed exceptions
+     */
+    @Override
+    public void close() {
+        closeLock.writeLock().lock();
+        try {
+            if(closed) {
+                return;
+            }
+            closed = true;
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(BATCH_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // writes of a background flush which overlapped with closing get their final attempt as well
+        flushLock.lock();
+        try {
+            for(Write write : abandoned) {
+                write.repository.markModified();
+            }
+            abandoned.clear();
+        } finally {
+            flushLock.unlock();
+        }
+        // saves are rejected from now on and failed writes are not queued again, so this terminates
+        while(!modified.isEmpty()) {
+            flushBatches();
+        }
+        reportAbandoned();
+    }
+
+    private void reportAbandoned() {
+        flushLock.lock();
+        try {
+            if(abandoned.isEmpty()) {
+                return;
+            }
+            IllegalStateException exception = new IllegalStateException("Could not write the token information of "
+                    + abandoned.size() + " repositories before closing.", failure(abandoned.get(0).future));
+            for(Write write : abandoned.subList(1, abandoned.size())) {
+                exception.addSuppressed(failure(write.future));
+            }
+            abandoned.clear();
+            throw exception;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void flushBatches() {
+        flushLock.lock();
+        try {
+            List<Write> retries = new ArrayList<>();
+            int remaining = modified.size();
+            while(remaining > 0) {
+                List<WriteBehindRepository> batch = new ArrayList<>(batchSize);
+                WriteBehindRepository repository;
+                while(batch.size() < batchSize && remaining > 0 && (repository = modified.poll()) != null) {
+                    batch.add(repository);
+                    remaining--;
+                }
+                if(batch.isEmpty()) {
+                    break;
+                }
+                retries.addAll(writeBatch(batch));
+            }
+            // failed writes are retried with the next flush, a closed store reports them instead
+            for(Write retry : retries) {
+                if(closed) {
+                    abandoned.add(retry);
+                } else {
+                    retry.repository.markModified();
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Writes the latest state of every repository of the batch concurrently and waits for the writes to complete.
+     *
+     * @return failed writes of repositories which were not modified since
+     */
+    private List<Write> writeBatch(List<WriteBehindRepository> batch) {
+        List<Write> writes = new ArrayList<>(batch.size());
+        List<ListenableFuture<Void>> futures = new ArrayList<>(batch.size());
+        for(WriteBehindRepository repository : batch) {
+            Write write = repository.write();
+            writes.add(write);
+            futures.add(write.future);
+        }
+        try {
+            Futures.successfulAsList(futures).get(BATCH_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            // the individual futures are checked below
+        }
+        List<Write> failed = new ArrayList<>();
+        for(Write write : writes) {
+            if(failure(write.future) != null && write.repository.version.get() == write.version) {
+                failed.add(write);
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * @return the reason why the write did not succeed or null if it did
+     */
+    private static Throwable failure(ListenableFuture<Void> future) {
+        if(!future.isDone()) {
+            return new TimeoutException("Write did not complete within " + BATCH_TIMEOUT + " milliseconds.");
+        }
+        try {
+            future.get();
+            return null;
+        } catch (CancellationException e) {
+            return e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return e;
+        } catch (ExecutionException e) {
+            return e.getCause();
+        }
+    }
+
+    /**
+     * A write of a specific version of a repository.
+     */
+    private static class Write {
+        private final WriteBehindRepository repository;
+        private final long version;
+        private final ListenableFuture<Void> future;
+
+        Write(WriteBehindRepository repository, long version, ListenableFuture<Void> future) {
+            this.repository = repository;
+            this.version = version;
+            this.future = future;
+        }
+    }
+
+    /**
+     * Repository which holds the latest token information in memory and queues itself for a write on modifications.
+     */
+    private class WriteBehindRepository implements TokenRepository {
+
+        private final AsyncTokenRepository delegate;
+
+        // not a monitor, loading blocks on the backing store while holding it, which would pin the carrier thread
+        // when the repository is used from a virtual thread
+        private final ReentrantLock lock = new ReentrantLock();
+
+        // whether the repository is queued for the next flush
+        private final AtomicBoolean queued = new AtomicBoolean();
+
+        // incremented with every modification to detect writes which were superseded
+        private final AtomicLong version = new AtomicLong();
+
+        private volatile TokenInformation tokenInformation;
+
+        // whether the in-memory state is initialized either by loading or modifying it
+        private volatile boolean loaded;
+
+        WriteBehindRepository(AsyncTokenRepository delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return get() == null;
+        }
+
+        @Override
+        public void save(TokenInformation tokenInformation) throws TokenPersistenceException {
+            if(tokenInformation == null || !tokenInformation.isValid()) {
+                throw new TokenPersistenceException("Token information which should be store is not valid.");
+            }
+            closeLock.readLock().lock();
+            lock.lock();
+            try {
+                if(closed) {
+                    throw new TokenPersistenceException("Write-behind store is closed.");
+                }
+                modify(tokenInformation);
+            } finally {
+                lock.unlock();
+                closeLock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public TokenInformation get() {
+            if(!loaded) {
+                load();
+            }
+            return tokenInformation;
+        }
+
+        @Override
+        public void clear() {
+            closeLock.readLock().lock();
+            lock.lock();
+            try {
+                if(closed) {
+                    throw new IllegalStateException("Write-behind store is closed.");
+                }
+                modify(null);
+            } finally {
+                lock.unlock();
+                closeLock.readLock().unlock();
+            }
+        }
+
+        private void modify(TokenInformation tokenInformation) {
+            this.tokenInformation = tokenInformation;
+            this.loaded = true;
+            version.incrementAndGet();
+            markModified();
+        }
+
+        /**
+         * Initially loads the token information from the backing store unless it was modified in the meantime.
+         */
+        private void load() {
+            lock.lock();
+            try {
+                if(loaded) {
+                    return;
+                }
+                this.tokenInformation = delegate.get().get();
+                this.loaded = true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while loading token information.", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Could not load token information.", e.getCause());
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void markModified() {
+            if(queued.compareAndSet(false, true)) {
+                modified.add(this);
+            }
+        }
+
+        /**
+         * Dequeues the repository and starts writing its latest state. Modifications after this point queue it again.
+         */
+        private Write write() {
+            lock.lock();
+            try {
+                queued.set(false);
+                long writtenVersion = version.get();
+                ListenableFuture<Void> future;
+                try {
+                    future = tokenInformation != null ? delegate.save(tokenInformation) : delegate.clear();
+                } catch (RuntimeException e) {
+                    future = Futures.immediateFailedFuture(e);
+                }
+                return new Write(this, writtenVersion, future);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
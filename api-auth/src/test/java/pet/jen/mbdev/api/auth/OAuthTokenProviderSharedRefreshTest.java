@@ -0,0 +1,195 @@
+package pet.jen.mbdev.api.auth;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+import pet.jen.mbdev.api.auth.client.TokenApi;
+import pet.jen.mbdev.api.auth.domain.TokenInformation;
+import pet.jen.mbdev.api.auth.persistence.FileLeaseTokenRepository;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+
+/**
+ * Verifies that providers in different processes which share a {@link FileLeaseTokenRepository} only refresh once.
+ * The child processes are started from the `main` method of this class.
+ */
+public class OAuthTokenProviderSharedRefreshTest extends BaseAuthorizationTest {
+
+    private static final int PROCESSES = 4;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+
+    @Before
+    public void setup() throws Throwable {
+        directory = folder.getRoot().toPath();
+        new FileLeaseTokenRepository(directory, "account").save(createExpiredTokens());
+    }
+
+    @Test
+    public void testGetAccessToken_whenAnotherProviderRefreshed_shouldAdoptItsTokens() {
+        TokenApi tokenApi = Mockito.mock(TokenApi.class);
+        Mockito.when(tokenApi.refresh(eq("refresh_token"), eq("refresh-token-0")))
+                .thenReturn(createTokens("1"));
+        OAuthTokenProvider first = createProvider(tokenApi);
+        OAuthTokenProvider second = createProvider(tokenApi);
+
+        assertThat(first.getAccessToken()).isEqualTo("access-token-1");
+        assertThat(second.getAccessToken()).isEqualTo("access-token-1");
+        Mockito.verify(tokenApi, Mockito.times(1)).refresh(anyString(), anyString());
+    }
+
+    @Test
+    public void testRefreshTokens_whenStoredTokensAreNewer_shouldRefreshWithTheStoredRefreshToken() {
+        TokenApi tokenApi = Mockito.mock(TokenApi.class);
+        Mockito.when(tokenApi.refresh(eq("refresh_token"), eq("refresh-token-0")))
+                .thenReturn(createTokens("1"));
+        Mockito.when(tokenApi.refresh(eq("refresh_token"), eq("refresh-token-1")))
+                .thenReturn(createTokens("2"));
+        OAuthTokenProvider first = createProvider(tokenApi);
+        OAuthTokenProvider second = createProvider(tokenApi);
+
+        first.refreshTokens();
+        // the second provider adopts the first one's tokens instead of using its stale refresh token
+        assertThat(second.refreshTokens()).isEqualTo("access-token-1");
+        assertThat(second.refreshTokens()).isEqualTo("access-token-2");
+        Mockito.verify(tokenApi, Mockito.times(1)).refresh(anyString(), eq("refresh-token-0"));
+    }
+
+    @Test
+    public void testRefreshTokens_whenStoredTokensHaveAnOlderTimestamp_shouldAdoptThem() throws Throwable {
+        TokenApi tokenApi = Mockito.mock(TokenApi.class);
+        Mockito.when(tokenApi.refresh(eq("refresh_token"), eq("refresh-token-0")))
+                .thenReturn(createTokens("1"));
+        OAuthTokenProvider provider = createProvider(tokenApi);
+        provider.refreshTokens();
+        // refreshed by a process whose clock lags behind
+        TokenInformation refreshedElsewhere = createTokens("2");
+        refreshedElsewhere.setTimestamp(new Date().getTime() - TimeUnit.MINUTES.toMillis(10));
+        new FileLeaseTokenRepository(directory, "account").save(refreshedElsewhere);
+
+        assertThat(provider.refreshTokens()).isEqualTo("access-token-2");
+        Mockito.verify(tokenApi, Mockito.never()).refresh(anyString(), eq("refresh-token-1"));
+    }
+
+    @Test
+    public void testGetAccessToken_whenProcessesRefreshConcurrently_shouldOnlyRefreshOnce() throws Exception {
+        Path calls = directory.resolve("calls");
+        Path start = directory.resolve("start");
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        List<Process> processes = new ArrayList<>();
+        for(int i = 0; i < PROCESSES; i++) {
+            processes.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                    OAuthTokenProviderSharedRefreshTest.class.getName(),
+                    directory.toString(), calls.toString(), start.toString())
+                    .redirectErrorStream(true)
+                    .start());
+        }
+        Files.createFile(start);
+
+        Set<String> accessTokens = new HashSet<>();
+        for(Process process : processes) {
+            List<String> output = readLines(process);
+            assertThat(process.waitFor()).as(output.toString()).isEqualTo(0);
+            accessTokens.add(output.get(output.size() - 1));
+        }
+        assertThat(Files.readAllLines(calls, StandardCharsets.UTF_8)).containsExactly("refresh-token-0");
+        assertThat(accessTokens).containsExactly("access-token-refresh-token-0");
+    }
+
+    /**
+     * Child process which waits for the start signal and requests an access token of the expired shared tokens. Every
+     * call of the token api is recorded in the calls file.
+     */
+    public static void main(String[] args) throws Exception {
+        Path directory = Paths.get(args[0]);
+        final Path calls = Paths.get(args[1]);
+        File start = new File(args[2]);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while(!start.exists() && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        TokenApi tokenApi = new TokenApi() {
+            @Override
+            public TokenInformation retrieve(String grantType, String code, String clientId, String codeVerifier, String redirectUri) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public TokenInformation refresh(String grantType, String refreshToken) {
+                try {
+                    Files.write(calls, (refreshToken + "\n").getBytes(StandardCharsets.UTF_8),
+                            StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                    // widens the window in which the other processes try to refresh as well
+                    Thread.sleep(200);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+                return createTokens(refreshToken);
+            }
+        };
+        OAuthTokenProvider provider = OAuthTokenProvider.builder()
+                .tokenApi(tokenApi)
+                .config(new OAuthTokenProviderSharedRefreshTest().createDefaultConfig())
+                .tokenRepository(new FileLeaseTokenRepository(directory, "account"))
+                .build();
+        System.out.println(provider.getAccessToken());
+    }
+
+    private OAuthTokenProvider createProvider(TokenApi tokenApi) {
+        return OAuthTokenProvider.builder()
+                .tokenApi(tokenApi)
+                .config(createDefaultConfig())
+                .tokenRepository(new FileLeaseTokenRepository(directory, "account"))
+                .build();
+    }
+
+    private static List<String> readLines(Process process) throws Exception {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    private static TokenInformation createExpiredTokens() {
+        TokenInformation tokenInformation = createTokens("0");
+        tokenInformation.setTimestamp(new Date().getTime() - TimeUnit.HOURS.toMillis(2));
+        return tokenInformation;
+    }
+
+    private static TokenInformation createTokens(String suffix) {
+        TokenInformation tokenInformation = new TokenInformation();
+        tokenInformation.setAccessToken("access-token-" + suffix);
+        tokenInformation.setRefreshToken("refresh-token-" + suffix);
+        tokenInformation.setTokenType("Bearer");
+        tokenInformation.setScope("scope");
+        tokenInformation.setExpiresIn(3600);
+        tokenInformation.setTimestamp(new Date().getTime());
+        return tokenInformation;
+    }
+}
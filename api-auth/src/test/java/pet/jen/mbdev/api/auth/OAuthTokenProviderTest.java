@@ -4,13 +4,25 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+import pet.jen.mbdev.api.AccessToken;
 import pet.jen.mbdev.api.auth.client.TokenApi;
 import pet.jen.mbdev.api.auth.domain.OAuthConfig;
 import pet.jen.mbdev.api.auth.domain.TokenInformation;
 import pet.jen.mbdev.api.auth.persistence.TokenRepository;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Java6Assertions.assertThat;
@@ -133,6 +145,40 @@ public class OAuthTokenProviderTest extends BaseAuthorizationTest {
         assertThat(provider.getTokenInfo().getTimestamp()).isGreaterThan(oldUpdate);
     }
 
+    @Test
+    public void testRefreshTokens_whenGenerationIsCurrent_shouldRefreshAndIncreaseGeneration() {
+        mockAuthCodeCall(5);
+        provider = OAuthTokenProvider.builder()
+                .tokenApi(tokenApi)
+                .config(createDefaultConfig())
+                .authCode("auth-code").build();
+        Mockito.when(tokenApi.refresh(eq("refresh_token"), eq("refresh-token-0"))).thenReturn(createTokens(1, 5));
+        AccessToken current = provider.getCurrentToken();
+        assertThat(current.getValue()).isEqualTo("access-token-0");
+
+        AccessToken refreshed = provider.refreshTokens(current.getGeneration());
+        assertThat(refreshed.getValue()).isEqualTo("access-token-1");
+        assertThat(refreshed.getGeneration()).isGreaterThan(current.getGeneration());
+        assertThat(provider.getCurrentToken()).isSameAs(refreshed);
+    }
+
+    @Test
+    public void testRefreshTokens_whenGenerationIsOutdated_shouldReturnCurrentTokenWithoutRefresh() {
+        mockAuthCodeCall(5);
+        provider = OAuthTokenProvider.builder()
+                .tokenApi(tokenApi)
+                .config(createDefaultConfig())
+                .authCode("auth-code").build();
+        Mockito.when(tokenApi.refresh(eq("refresh_token"), eq("refresh-token-0"))).thenReturn(createTokens(1, 5));
+        long rejected = provider.getCurrentToken().getGeneration();
+        provider.refreshTokens(rejected);
+
+        // a second request which was rejected with the same generation must not refresh again
+        AccessToken accessToken = provider.refreshTokens(rejected);
+        assertThat(accessToken.getValue()).isEqualTo("access-token-1");
+        Mockito.verify(tokenApi, Mockito.times(1)).refresh(anyString(), anyString());
+    }
+
     @Test
     public void testGetAccessToken_whenTokensAreExpired_shouldRefreshTokensAndReturnNewAccessToken() throws Exception {
         mockAuthCodeCall(0);
@@ -160,6 +206,201 @@ public class OAuthTokenProviderTest extends BaseAuthorizationTest {
         Mockito.verify(tokenApi, Mockito.times(0)).refresh(anyString(), anyString());
     }
 
+    @Test
+    public void testGetAccessToken_whenTokensAreExpiredAndAccessedConcurrently_shouldRefreshOnlyOnce() throws Exception {
+        mockAuthCodeCall(0);
+        provider = OAuthTokenProvider.builder()
+                .tokenApi(tokenApi)
+                .config(createDefaultConfig())
+                .authCode("auth-code").build();
+        Mockito.when(tokenApi.refresh(eq("refresh_token"), eq("refresh-token-0"))).thenAnswer(new Answer<TokenInformation>() {
+            @Override
+            public TokenInformation answer(InvocationOnMock invocation) throws Throwable {
+                // keep the refresh in flight so that the other threads pile up behind it
+                TimeUnit.MILLISECONDS.sleep(100);
+                return createTokens(1, 60);
+            }
+        });
+
+        List<String> accessTokens = getAccessTokensConcurrently(32, null);
+        assertThat(accessTokens).hasSize(32).containsOnly("access-token-1");
+        Mockito.verify(tokenApi, Mockito.times(1)).refresh(anyString(), anyString());
+    }
+
+    @Test
+    public void testGetAccessToken_whenTokensAreWithinBufferAndRefreshIsInFlight_shouldReturnOldAccessToken() throws Exception {
+        // the tokens are within the buffer of one second but are still valid for five seconds
+        mockAuthCodeCall(5);
+        provider = OAuthTokenProvider.builder()
+                .tokenApi(tokenApi)
+                .config(getDefaultBuilder().tokenExpiryBuffer(10).build())
+                .authCode("auth-code").build();
+        final CountDownLatch readersDone = new CountDownLatch(1);
+        Mockito.when(tokenApi.refresh(eq("refresh_token"), eq("refresh-token-0"))).thenAnswer(new Answer<TokenInformation>() {
+            @Override
+            public TokenInformation answer(InvocationOnMock invocation) throws Throwable {
+                readersDone.await(5, TimeUnit.SECONDS);
+                return createTokens(1, 60);
+            }
+        });
+
+        List<String> accessTokens = getAccessTokensConcurrently(16, readersDone);
+        // only the refreshing thread waits for the new tokens
+        assertThat(Collections.frequency(accessTokens, "access-token-0")).isEqualTo(15);
+        assertThat(accessTokens).contains("access-token-1");
+        Mockito.verify(tokenApi, Mockito.times(1)).refresh(anyString(), anyString());
+    }
+
+    @Test
+    public void testRefreshTokens_whenCalledConcurrently_shouldOnlyCallTokenApiOnce() throws Exception {
+        mockAuthCodeCall(60);
+        provider = OAuthTokenProvider.builder()
+                .tokenApi(tokenApi)
+                .config(createDefaultConfig())
+                .authCode("auth-code").build();
+        Mockito.when(tokenApi.refresh(eq("refresh_token"), eq("refresh-token-0"))).thenAnswer(new Answer<TokenInformation>() {
+            @Override
+            public TokenInformation answer(InvocationOnMock invocation) throws Throwable {
+                TimeUnit.MILLISECONDS.sleep(100);
+                return createTokens(1, 60);
+            }
+        });
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<String>> futures = new ArrayList<>();
+        for(int i = 0; i < 8; i++) {
+            futures.add(executor.submit(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    start.await();
+                    return provider.refreshTokens();
+                }
+            }));
+        }
+        start.countDown();
+        for(Future<String> future : futures) {
+            assertThat(future.get(5, TimeUnit.SECONDS)).isEqualTo("access-token-1");
+        }
+        executor.shutdown();
+        Mockito.verify(tokenApi, Mockito.times(1)).refresh(anyString(), anyString());
+    }
+
+    @Test
+    public void testRefreshAhead_whenEnabled_shouldRefreshTokensInTheBackground() {
+        mockAuthCodeCall(2);
+        Mockito.when(tokenApi.refresh(eq("refresh_token"), eq("refresh-token-0"))).thenReturn(createTokens(1, 60));
+        provider = OAuthTokenProvider.builder()
+                .tokenApi(tokenApi)
+                .config(getDefaultBuilder().refreshAhead(true).build())
+                .refreshScheduler(createRefreshScheduler())
+                .authCode("auth-code").build();
+        Mockito.verify(tokenApi, Mockito.timeout(3000).times(1)).refresh(anyString(), anyString());
+        assertThat(provider.getTokenInfo().getAccessToken()).isEqualTo("access-token-1");
+    }
+
+    @Test
+    public void testRefreshAhead_whenRefreshFails_shouldRetryWithBackoff() {
+        mockAuthCodeCall(2);
+        Mockito.when(tokenApi.refresh(eq("refresh_token"), eq("refresh-token-0")))
+                .thenThrow(new RuntimeException())
+                .thenReturn(createTokens(1, 60));
+        provider = OAuthTokenProvider.builder()
+                .tokenApi(tokenApi)
+                .config(getDefaultBuilder().refreshAhead(true).build())
+                .refreshScheduler(createRefreshScheduler())
+                .authCode("auth-code").build();
+        Mockito.verify(tokenApi, Mockito.timeout(3000).times(2)).refresh(anyString(), anyString());
+        assertThat(provider.getAccessToken()).isEqualTo("access-token-1");
+    }
+
+    @Test
+    public void testRefreshAhead_whenProviderIsInUse_shouldNeverRefreshInline() throws Exception {
+        mockAuthCodeCall(2);
+        final List<Thread> refreshingThreads = Collections.synchronizedList(new ArrayList<Thread>());
+        Mockito.when(tokenApi.refresh(eq("refresh_token"), eq("refresh-token-0"))).thenAnswer(new Answer<TokenInformation>() {
+            @Override
+            public TokenInformation answer(InvocationOnMock invocation) {
+                refreshingThreads.add(Thread.currentThread());
+                return createTokens(1, 60);
+            }
+        });
+        // refreshes in the middle of the buffer's first half instead of a random point within it
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        TokenRefreshScheduler scheduler = new TokenRefreshScheduler(executor,
+                TimeUnit.MILLISECONDS.toNanos(50), TimeUnit.MILLISECONDS.toNanos(200), false) {
+            @Override
+            long jitteredDelay(long bufferDeadline, long expiryBuffer, long nanoTime) {
+                return bufferDeadline + TimeUnit.MILLISECONDS.toNanos(expiryBuffer) / 4 - nanoTime;
+            }
+        };
+        provider = OAuthTokenProvider.builder()
+                .tokenApi(tokenApi)
+                .config(getDefaultBuilder().refreshAhead(true).build())
+                .refreshScheduler(scheduler)
+                .authCode("auth-code").build();
+        // an active caller which keeps requesting tokens throughout the expiry buffer
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(3);
+        String accessToken;
+        while(!"access-token-1".equals(accessToken = provider.getAccessToken()) && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(5);
+        }
+        executor.shutdownNow();
+        assertThat(accessToken).isEqualTo("access-token-1");
+        assertThat(refreshingThreads).hasSize(1).doesNotContain(Thread.currentThread());
+    }
+
+    @Test
+    public void testRefreshAhead_whenDisabled_shouldNotRefreshTokensInTheBackground() throws Exception {
+        mockAuthCodeCall(2);
+        provider = OAuthTokenProvider.builder()
+                .tokenApi(tokenApi)
+                .config(createDefaultConfig())
+                .authCode("auth-code").build();
+        TimeUnit.MILLISECONDS.sleep(1500);
+        Mockito.verify(tokenApi, Mockito.never()).refresh(anyString(), anyString());
+    }
+
+    private TokenRefreshScheduler createRefreshScheduler() {
+        return new TokenRefreshScheduler(
+                Executors.newSingleThreadScheduledExecutor(),
+                TimeUnit.MILLISECONDS.toNanos(50),
+                TimeUnit.MILLISECONDS.toNanos(200),
+                false);
+    }
+
+    /**
+     * Calls `getAccessToken()` from the given amount of threads at once. If a latch is passed it will be released once
+     * all threads but the one performing the refresh have returned.
+     */
+    private List<String> getAccessTokensConcurrently(int threads, final CountDownLatch readersDone) throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch returned = new CountDownLatch(threads - 1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<String>> futures = new ArrayList<>();
+        for(int i = 0; i < threads; i++) {
+            futures.add(executor.submit(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    start.await();
+                    String accessToken = provider.getAccessToken();
+                    returned.countDown();
+                    return accessToken;
+                }
+            }));
+        }
+        start.countDown();
+        if(readersDone != null) {
+            returned.await(5, TimeUnit.SECONDS);
+            readersDone.countDown();
+        }
+        List<String> accessTokens = new ArrayList<>();
+        for(Future<String> future : futures) {
+            accessTokens.add(future.get(5, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+        return accessTokens;
+    }
+
     private void mockAuthCodeCall(int expiry) {
         Mockito.when(tokenApi.retrieve(
                 eq("authorization_code"),
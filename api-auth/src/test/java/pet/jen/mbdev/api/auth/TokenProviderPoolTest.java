@@ -0,0 +1,144 @@
+package pet.jen.mbdev.api.auth;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+import pet.jen.mbdev.api.TokenProvider;
+import pet.jen.mbdev.api.auth.client.TokenApi;
+import pet.jen.mbdev.api.auth.domain.TokenInformation;
+import pet.jen.mbdev.api.auth.persistence.TokenRepository;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.eq;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TokenProviderPoolTest extends BaseAuthorizationTest {
+
+    @Mock
+    private TokenApi tokenApi;
+
+    private TokenProviderPool pool;
+
+    // background refreshes which are due, they are run by the tests instead of waiting for their deadline
+    private final List<Runnable> scheduled = new ArrayList<>();
+
+    @Before
+    public void setup() {
+        TokenRefreshScheduler scheduler = new TokenRefreshScheduler(Executors.newSingleThreadScheduledExecutor(),
+                1, 1, true) {
+            @Override
+            void schedule(Runnable task, long delay) {
+                scheduled.add(task);
+            }
+        };
+        pool = new TokenProviderPool(createDefaultConfig(), tokenApi, scheduler);
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBuild_whenConfigIsMissing_shouldThrowException() {
+        TokenProviderPool.builder().build();
+    }
+
+    @Test
+    public void testRegister_shouldProvideTokensOfTheAccount() {
+        TokenProvider provider = pool.register("account-a", createRepository("a", 60));
+        assertThat(pool.get("account-a")).isSameAs(provider);
+        assertThat(pool.size()).isEqualTo(1);
+        assertThat(provider.getAccessToken()).isEqualTo("access-token-a");
+        Mockito.verifyZeroInteractions(tokenApi);
+    }
+
+    @Test
+    public void testRemove_shouldRemoveAccountFromPool() {
+        pool.register("account-a", createRepository("a", 60));
+        pool.remove("account-a");
+        assertThat(pool.get("account-a")).isNull();
+        assertThat(pool.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void testRefresh_whenAccountIsUsed_shouldRefreshInTheBackground() {
+        Mockito.when(tokenApi.refresh(eq("refresh_token"), eq("refresh-token-a"))).thenReturn(createTokens("a2", 60));
+        TokenProvider provider = pool.register("account-a", createRepository("a", 60));
+        provider.getAccessToken();
+        runScheduled();
+        Mockito.verify(tokenApi, Mockito.times(1)).refresh("refresh_token", "refresh-token-a");
+        assertThat(provider.getAccessToken()).isEqualTo("access-token-a2");
+    }
+
+    @Test
+    public void testRefresh_whenAccountIsIdle_shouldNotRefreshInTheBackground() {
+        Mockito.when(tokenApi.refresh(eq("refresh_token"), eq("refresh-token-a"))).thenReturn(createTokens("a2", 60));
+        TokenProvider used = pool.register("account-a", createRepository("a", 60));
+        pool.register("account-b", createRepository("b", 60));
+        used.getAccessToken();
+        runScheduled();
+        Mockito.verify(tokenApi, Mockito.times(1)).refresh("refresh_token", "refresh-token-a");
+        Mockito.verify(tokenApi, Mockito.never()).refresh("refresh_token", "refresh-token-b");
+    }
+
+    @Test
+    public void testRefresh_whenRefreshedTokensAreUsed_shouldRefreshAgain() {
+        Mockito.when(tokenApi.refresh(eq("refresh_token"), eq("refresh-token-a"))).thenReturn(createTokens("a2", 60));
+        Mockito.when(tokenApi.refresh(eq("refresh_token"), eq("refresh-token-a2"))).thenReturn(createTokens("a3", 60));
+        TokenProvider provider = pool.register("account-a", createRepository("a", 60));
+        provider.getAccessToken();
+        runScheduled();
+        // the refresh resets the usage, only a read of the refreshed tokens keeps the account scheduled
+        provider.getAccessToken();
+        runScheduled();
+        Mockito.verify(tokenApi, Mockito.times(1)).refresh("refresh_token", "refresh-token-a2");
+        assertThat(provider.getAccessToken()).isEqualTo("access-token-a3");
+    }
+
+    @Test
+    public void testRefresh_whenAccountIsRemoved_shouldNotRefreshInTheBackground() {
+        TokenProvider provider = pool.register("account-a", createRepository("a", 60));
+        provider.getAccessToken();
+        pool.remove("account-a");
+        runScheduled();
+        Mockito.verifyZeroInteractions(tokenApi);
+    }
+
+    /**
+     * Runs the background refreshes which were scheduled so far, as if their deadlines were reached.
+     */
+    private void runScheduled() {
+        List<Runnable> due = new ArrayList<>(scheduled);
+        scheduled.clear();
+        for(Runnable task : due) {
+            task.run();
+        }
+    }
+
+    private TokenRepository createRepository(String id, int expiry) {
+        TokenRepository repository = Mockito.mock(TokenRepository.class);
+        Mockito.when(repository.get()).thenReturn(createTokens(id, expiry));
+        return repository;
+    }
+
+    private TokenInformation createTokens(String id, int expiry) {
+        TokenInformation tokenInformation = new TokenInformation();
+        tokenInformation.setAccessToken("access-token-" + id);
+        tokenInformation.setRefreshToken("refresh-token-" + id);
+        tokenInformation.setExpiresIn(expiry);
+        tokenInformation.setScope("scope");
+        tokenInformation.setTokenType("Bearer");
+        tokenInformation.setTimestamp(new Date().getTime());
+        return tokenInformation;
+    }
+}
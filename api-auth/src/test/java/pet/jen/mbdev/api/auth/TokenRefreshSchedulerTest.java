@@ -0,0 +1,57 @@
+package pet.jen.mbdev.api.auth;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class TokenRefreshSchedulerTest {
+
+    private TokenRefreshScheduler scheduler;
+
+    @Before
+    public void setup() {
+        scheduler = new TokenRefreshScheduler(
+                Executors.newSingleThreadScheduledExecutor(),
+                TimeUnit.SECONDS.toNanos(1),
+                TimeUnit.SECONDS.toNanos(8),
+                false);
+    }
+
+    @Test
+    public void testJitteredDelay_shouldBeWithinFirstHalfOfTheBuffer() {
+        long bufferDeadline = TimeUnit.SECONDS.toNanos(10);
+        for(int i = 0; i < 1000; i++) {
+            long delay = scheduler.jitteredDelay(bufferDeadline, 300000, 0L);
+            // the second half of the buffer is where callers refresh inline
+            assertThat(delay).isGreaterThanOrEqualTo(bufferDeadline)
+                    .isLessThan(bufferDeadline + TimeUnit.SECONDS.toNanos(150));
+        }
+    }
+
+    @Test
+    public void testJitteredDelay_whenWithinFirstHalfOfTheBuffer_shouldNotExceedIt() {
+        for(int i = 0; i < 1000; i++) {
+            long delay = scheduler.jitteredDelay(0L, 300000, TimeUnit.SECONDS.toNanos(100));
+            assertThat(delay).isGreaterThanOrEqualTo(0L).isLessThan(TimeUnit.SECONDS.toNanos(50));
+        }
+    }
+
+    @Test
+    public void testJitteredDelay_whenDeadlineHasPassed_shouldNotBeNegative() {
+        assertThat(scheduler.jitteredDelay(0L, 0, TimeUnit.SECONDS.toNanos(1))).isEqualTo(0L);
+    }
+
+    @Test
+    public void testBackoff_shouldGrowExponentiallyUpToTheMaximum() {
+        for(int i = 0; i < 100; i++) {
+            assertThat(scheduler.backoff(0)).isBetween(TimeUnit.MILLISECONDS.toNanos(500), TimeUnit.SECONDS.toNanos(1));
+            assertThat(scheduler.backoff(2)).isBetween(TimeUnit.SECONDS.toNanos(2), TimeUnit.SECONDS.toNanos(4));
+            assertThat(scheduler.backoff(10)).isBetween(TimeUnit.SECONDS.toNanos(4), TimeUnit.SECONDS.toNanos(8));
+            assertThat(scheduler.backoff(100)).isBetween(TimeUnit.SECONDS.toNanos(4), TimeUnit.SECONDS.toNanos(8));
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package pet.jen.mbdev.api.auth.client;
+
+import okhttp3.OkHttpClient;
+import org.junit.Test;
+import pet.jen.mbdev.api.auth.BaseAuthorizationTest;
+import pet.jen.mbdev.api.transport.OkHttpTransport;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class BaseClientBuilderTest extends BaseAuthorizationTest {
+
+    @Test
+    public void testGet_whenConfigHasOkHttpTransport_shouldShareItsConnections() {
+        OkHttpTransport transport = OkHttpTransport.builder().build();
+        OkHttpClient client = BaseClientBuilder.get(getDefaultBuilder().transport(transport).build())
+                .followRedirects(false)
+                .build();
+        assertThat(client.connectionPool()).isSameAs(transport.okHttpClient().connectionPool());
+        assertThat(client.dispatcher()).isSameAs(transport.okHttpClient().dispatcher());
+        assertThat(client.followRedirects()).isFalse();
+        transport.shutdown();
+    }
+
+    @Test
+    public void testGet_whenConfigHasNoTransport_shouldCreateOwnConnections() {
+        OkHttpTransport transport = OkHttpTransport.builder().build();
+        OkHttpClient client = BaseClientBuilder.get(createDefaultConfig()).build();
+        assertThat(client.connectionPool()).isNotSameAs(transport.okHttpClient().connectionPool());
+        transport.shutdown();
+    }
+}
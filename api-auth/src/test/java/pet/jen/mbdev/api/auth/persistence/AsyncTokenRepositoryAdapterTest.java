@@ -0,0 +1,62 @@
+package pet.jen.mbdev.api.auth.persistence;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+import pet.jen.mbdev.api.auth.domain.TokenInformation;
+import pet.jen.mbdev.api.auth.exception.TokenPersistenceException;
+
+import java.util.concurrent.ExecutionException;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+@RunWith(MockitoJUnitRunner.class)
+public class AsyncTokenRepositoryAdapterTest {
+
+    @Mock
+    private TokenRepository repository;
+
+    private AsyncTokenRepository adapter;
+
+    @Before
+    public void setup() {
+        adapter = new AsyncTokenRepositoryAdapter(repository, MoreExecutors.directExecutor());
+    }
+
+    @Test
+    public void testGet_shouldReturnTokensOfRepository() throws Exception {
+        TokenInformation tokenInformation = new TokenInformation();
+        Mockito.when(repository.get()).thenReturn(tokenInformation);
+        assertThat(adapter.get().get()).isSameAs(tokenInformation);
+    }
+
+    @Test
+    public void testSave_shouldSaveTokensInRepository() throws Throwable {
+        TokenInformation tokenInformation = new TokenInformation();
+        adapter.save(tokenInformation).get();
+        Mockito.verify(repository).save(tokenInformation);
+    }
+
+    @Test
+    public void testSave_whenRepositoryThrowsException_shouldFailFuture() throws Throwable {
+        TokenInformation tokenInformation = new TokenInformation();
+        Mockito.doThrow(new TokenPersistenceException("failed")).when(repository).save(tokenInformation);
+        try {
+            adapter.save(tokenInformation).get();
+        } catch (ExecutionException e) {
+            assertThat(e.getCause()).isInstanceOf(TokenPersistenceException.class);
+            return;
+        }
+        throw new AssertionError("Expected the future to fail.");
+    }
+
+    @Test
+    public void testClear_shouldClearRepository() throws Exception {
+        adapter.clear().get();
+        Mockito.verify(repository).clear();
+    }
+}
@@ -0,0 +1,135 @@
+package pet.jen.mbdev.api.auth.persistence;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pet.jen.mbdev.api.auth.domain.TokenInformation;
+import pet.jen.mbdev.api.auth.exception.TokenPersistenceException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class FileLeaseTokenRepositoryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+
+    @Before
+    public void setup() {
+        directory = folder.getRoot().toPath();
+    }
+
+    @Test(expected = TokenPersistenceException.class)
+    public void testSave_whenTokensAreInvalid_shouldThrowException() throws Throwable {
+        new FileLeaseTokenRepository(directory, "account").save(new TokenInformation());
+    }
+
+    @Test
+    public void testSave_shouldBeVisibleToOtherRepositoriesOfTheAccount() throws Throwable {
+        FileLeaseTokenRepository repository = new FileLeaseTokenRepository(directory, "user@example.com");
+        FileLeaseTokenRepository other = new FileLeaseTokenRepository(directory, "user@example.com");
+        assertThat(other.isEmpty()).isTrue();
+        TokenInformation saved = createTokenInformation("a");
+        repository.save(saved);
+        assertThat(other.isEmpty()).isFalse();
+        TokenInformation loaded = other.reload();
+        assertThat(loaded).isEqualTo(saved);
+        assertThat(loaded.isValid()).isTrue();
+        assertThat(new FileLeaseTokenRepository(directory, "another-account").get()).isNull();
+        // no temporary files are left behind
+        assertThat(directory.toFile().list()).containsOnly("user%40example.com.tokens");
+    }
+
+    @Test
+    public void testClear_whenTokensAreSaved_shouldClear() throws Throwable {
+        FileLeaseTokenRepository repository = new FileLeaseTokenRepository(directory, "account");
+        repository.save(createTokenInformation("a"));
+        repository.clear();
+        assertThat(repository.get()).isNull();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testGet_whenFileIsMalformed_shouldThrowException() throws Throwable {
+        Files.write(directory.resolve("account.tokens"), "expires_in=soon".getBytes("UTF-8"));
+        new FileLeaseTokenRepository(directory, "account").get();
+    }
+
+    @Test
+    public void testAcquireLease_whenLeaseIsHeld_shouldWaitForItsRelease() throws Throwable {
+        final FileLeaseTokenRepository other = new FileLeaseTokenRepository(directory, "account");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Long> acquired;
+            long released;
+            try (SharedTokenRepository.Lease lease = new FileLeaseTokenRepository(directory, "account").acquireLease()) {
+                acquired = executor.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() throws Exception {
+                        try (SharedTokenRepository.Lease lease = acquire(other)) {
+                            return System.nanoTime();
+                        }
+                    }
+                });
+                Thread.sleep(100);
+                assertThat(acquired.isDone()).isFalse();
+                released = System.nanoTime();
+            }
+            assertThat(acquired.get(5, TimeUnit.SECONDS)).isGreaterThanOrEqualTo(released);
+            assertThat(FileLeaseTokenRepository.processLocks()).isEqualTo(0);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(expected = TokenPersistenceException.class)
+    public void testAcquireLease_whenLeaseIsNotReleasedInTime_shouldThrowException() throws Throwable {
+        try (SharedTokenRepository.Lease lease = new FileLeaseTokenRepository(directory, "account").acquireLease()) {
+            new FileLeaseTokenRepository(directory, "account", 50).acquireLease();
+        }
+    }
+
+    @Test
+    public void testAcquireLease_whenLeaseWasReleased_shouldBeReusable() throws Throwable {
+        FileLeaseTokenRepository repository = new FileLeaseTokenRepository(directory, "account", 50);
+        repository.acquireLease().close();
+        repository.acquireLease().close();
+    }
+
+    @Test
+    public void testAcquireLease_whenAllLeasesAreReleased_shouldNotKeepProcessLocks() throws Throwable {
+        for(int i = 0; i < 10; i++) {
+            new FileLeaseTokenRepository(directory, "account-" + i).acquireLease().close();
+        }
+        assertThat(FileLeaseTokenRepository.processLocks()).isEqualTo(0);
+    }
+
+    private static SharedTokenRepository.Lease acquire(SharedTokenRepository repository) throws Exception {
+        try {
+            return repository.acquireLease();
+        } catch (TokenPersistenceException e) {
+            throw new Exception(e);
+        }
+    }
+
+    private TokenInformation createTokenInformation(String suffix) {
+        TokenInformation tokenInformation = new TokenInformation();
+        tokenInformation.setExpiresIn(3600);
+        tokenInformation.setAccessToken("access-token-" + suffix);
+        tokenInformation.setRefreshToken("refresh-token-" + suffix);
+        tokenInformation.setScope("scope");
+        tokenInformation.setTokenType("Bearer");
+        tokenInformation.setTimestamp(new Date().getTime());
+        return tokenInformation;
+    }
+}
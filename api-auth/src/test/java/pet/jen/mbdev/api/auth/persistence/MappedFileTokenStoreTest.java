@@ -0,0 +1,259 @@
+package pet.jen.mbdev.api.auth.persistence;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pet.jen.mbdev.api.auth.domain.TokenInformation;
+import pet.jen.mbdev.api.auth.exception.TokenPersistenceException;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Date;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class MappedFileTokenStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path path;
+
+    private MappedFileTokenStore store;
+
+    @Before
+    public void setup() throws Exception {
+        path = folder.getRoot().toPath().resolve("tokens.log");
+        store = MappedFileTokenStore.open(path);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        store.close();
+    }
+
+    @Test(expected = TokenPersistenceException.class)
+    public void testSave_whenTokensAreInvalid_shouldThrowException() throws Throwable {
+        store.repository("account").save(new TokenInformation());
+    }
+
+    @Test
+    public void testRepository_shouldOnlyProvideTheAccountsTokens() throws Throwable {
+        TokenRepository repositoryA = store.repository("account-a");
+        TokenRepository repositoryB = store.repository("account-b");
+        assertThat(repositoryA.isEmpty()).isTrue();
+        repositoryA.save(createTokenInformation("a"));
+        assertThat(repositoryA.isEmpty()).isFalse();
+        assertThat(repositoryA.get().getAccessToken()).isEqualTo("access-token-a");
+        assertThat(repositoryB.isEmpty()).isTrue();
+        assertThat(repositoryB.get()).isNull();
+    }
+
+    @Test
+    public void testClear_whenTokensAreSaved_shouldClear() throws Throwable {
+        TokenRepository repository = store.repository("account");
+        repository.save(createTokenInformation("0"));
+        repository.clear();
+        assertThat(repository.get()).isNull();
+        assertThat(store.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void testOpen_shouldRestoreLatestEntriesOfAllAccounts() throws Throwable {
+        store.put("account-a", createTokenInformation("a0"));
+        store.put("account-b", createTokenInformation("b0"));
+        store.put("account-c", createTokenInformation("c0"));
+        store.put("account-a", createTokenInformation("a1"));
+        store.remove("account-c");
+        store.close();
+
+        store = MappedFileTokenStore.open(path);
+        assertThat(store.size()).isEqualTo(2);
+        TokenInformation tokenInformation = store.get("account-a");
+        assertThat(tokenInformation.getAccessToken()).isEqualTo("access-token-a1");
+        assertThat(tokenInformation.getRefreshToken()).isEqualTo("refresh-token-a1");
+        assertThat(tokenInformation.getTokenType()).isEqualTo("Bearer");
+        assertThat(tokenInformation.getScope()).isEqualTo("scope");
+        assertThat(tokenInformation.getExpiresIn()).isEqualTo(3600000L);
+        assertThat(tokenInformation.isValid()).isTrue();
+        assertThat(store.get("account-b").getAccessToken()).isEqualTo("access-token-b0");
+        assertThat(store.get("account-c")).isNull();
+    }
+
+    @Test
+    public void testOpen_whenStoreWasNotClosed_shouldRestoreEntries() throws Throwable {
+        store.put("account-a", createTokenInformation("a0"));
+        // simulates a crashed process by opening the file a second time without closing the first store
+        MappedFileTokenStore recovered = MappedFileTokenStore.open(path);
+        assertThat(recovered.get("account-a").getAccessToken()).isEqualTo("access-token-a0");
+        recovered.close();
+    }
+
+    @Test
+    public void testOpen_whenLastRecordIsTorn_shouldRestorePreviousRecordsAndContinueAppending() throws Throwable {
+        store.put("account-a", createTokenInformation("a0"));
+        long validSize = store.logSize();
+        store.put("account-b", createTokenInformation("b0"));
+        long tornSize = store.logSize();
+        store.close();
+
+        // the length of the last record was written but its payload is corrupted
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(tornSize - 4);
+            file.writeInt(0xCAFEBABE);
+        }
+
+        store = MappedFileTokenStore.open(path);
+        assertThat(store.get("account-a").getAccessToken()).isEqualTo("access-token-a0");
+        assertThat(store.get("account-b")).isNull();
+        assertThat(store.logSize()).isEqualTo(validSize);
+
+        store.put("account-c", createTokenInformation("c"));
+        store.close();
+        store = MappedFileTokenStore.open(path);
+        assertThat(store.size()).isEqualTo(2);
+        assertThat(store.get("account-c").getAccessToken()).isEqualTo("access-token-c");
+    }
+
+    @Test
+    public void testOpen_whenLastRecordHasNoLength_shouldIgnoreIt() throws Throwable {
+        store.put("account-a", createTokenInformation("a0"));
+        long validSize = store.logSize();
+        store.put("account-b", createTokenInformation("b0"));
+        store.close();
+
+        // the payload of the last record was written but the process died before writing its header
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(validSize);
+            file.writeInt(0);
+        }
+
+        store = MappedFileTokenStore.open(path);
+        assertThat(store.size()).isEqualTo(1);
+        assertThat(store.logSize()).isEqualTo(validSize);
+    }
+
+    @Test
+    public void testOpen_whenTornRecordIsFollowedByShorterRecord_shouldNotReplayItsPayload() throws Throwable {
+        store.put("account-a", createTokenInformation("a0"));
+        long validSize = store.logSize();
+        store.put("account-b", createTokenInformation("b-with-a-much-longer-access-token-than-the-next-record"));
+        long tornSize = store.logSize();
+        store.close();
+
+        // the header of the last record is missing but its payload was written
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(validSize);
+            file.writeLong(0L);
+        }
+
+        store = MappedFileTokenStore.open(path);
+        store.put("account-c", createTokenInformation("c"));
+        long size = store.logSize();
+        store.close();
+
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "r")) {
+            file.seek(size);
+            for(long i = size; i < tornSize; i++) {
+                assertThat(file.readByte()).isEqualTo((byte) 0);
+            }
+        }
+        store = MappedFileTokenStore.open(path);
+        assertThat(store.size()).isEqualTo(2);
+        assertThat(store.logSize()).isEqualTo(size);
+        assertThat(store.corruptRecords()).isEqualTo(0);
+    }
+
+    @Test
+    public void testOpen_whenRecordInTheMiddleIsCorrupt_shouldSkipIt() throws Throwable {
+        store.put("account-a", createTokenInformation("a0"));
+        long corruptStart = store.logSize();
+        store.put("account-b", createTokenInformation("b0"));
+        store.put("account-c", createTokenInformation("c0"));
+        long logSize = store.logSize();
+        store.close();
+
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(corruptStart + 12);
+            file.writeInt(0xCAFEBABE);
+        }
+
+        store = MappedFileTokenStore.open(path);
+        assertThat(store.get("account-a").getAccessToken()).isEqualTo("access-token-a0");
+        assertThat(store.get("account-b")).isNull();
+        assertThat(store.get("account-c").getAccessToken()).isEqualTo("access-token-c0");
+        assertThat(store.corruptRecords()).isEqualTo(1);
+        assertThat(store.logSize()).isEqualTo(logSize);
+    }
+
+    @Test
+    public void testOpen_whenCompactionDidNotComplete_shouldUseTheLog() throws Throwable {
+        store.put("account-a", createTokenInformation("a0"));
+        store.close();
+        Path leftover = Paths.get(path.toString() + ".compact");
+        Files.write(leftover, new byte[] {1, 2, 3});
+
+        store = MappedFileTokenStore.open(path);
+        assertThat(store.get("account-a").getAccessToken()).isEqualTo("access-token-a0");
+        assertThat(Files.exists(leftover)).isFalse();
+    }
+
+    @Test
+    public void testCompact_shouldOnlyKeepLiveEntries() throws Throwable {
+        for(int i = 0; i < 100; i++) {
+            store.put("account-a", createTokenInformation("a" + i));
+            store.put("account-b", createTokenInformation("b" + i));
+        }
+        store.remove("account-b");
+        long logSize = store.logSize();
+        store.compact();
+        assertThat(store.logSize()).isLessThan(logSize / 100);
+        store.put("account-c", createTokenInformation("c"));
+        store.close();
+
+        store = MappedFileTokenStore.open(path);
+        assertThat(store.size()).isEqualTo(2);
+        assertThat(store.get("account-a").getAccessToken()).isEqualTo("access-token-a99");
+        assertThat(store.get("account-c").getAccessToken()).isEqualTo("access-token-c");
+    }
+
+    @Test
+    public void testPut_whenLogIsMostlyStale_shouldCompactAutomatically() throws Throwable {
+        for(int i = 0; i < 20000; i++) {
+            store.put("account", createTokenInformation(String.valueOf(i)));
+        }
+        assertThat(store.logSize()).isLessThan(1 << 20);
+        store.close();
+
+        store = MappedFileTokenStore.open(path);
+        assertThat(store.get("account").getAccessToken()).isEqualTo("access-token-19999");
+    }
+
+    @Test
+    public void testPut_whenMappedRegionIsFull_shouldGrow() throws Throwable {
+        for(int i = 0; i < 20000; i++) {
+            store.put("account-" + i, createTokenInformation(String.valueOf(i)));
+        }
+        assertThat(store.logSize()).isGreaterThan(1 << 20);
+        store.close();
+
+        store = MappedFileTokenStore.open(path);
+        assertThat(store.size()).isEqualTo(20000);
+        assertThat(store.get("account-12345").getAccessToken()).isEqualTo("access-token-12345");
+    }
+
+    private TokenInformation createTokenInformation(String suffix) {
+        TokenInformation tokenInformation = new TokenInformation();
+        tokenInformation.setExpiresIn(3600);
+        tokenInformation.setAccessToken("access-token-" + suffix);
+        tokenInformation.setRefreshToken("refresh-token-" + suffix);
+        tokenInformation.setScope("scope");
+        tokenInformation.setTokenType("Bearer");
+        tokenInformation.setTimestamp(new Date().getTime());
+        return tokenInformation;
+    }
+}
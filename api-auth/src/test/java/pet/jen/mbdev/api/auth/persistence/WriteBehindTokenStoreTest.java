@@ -0,0 +1,243 @@
+package pet.jen.mbdev.api.auth.persistence;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.SettableFuture;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+import pet.jen.mbdev.api.auth.domain.TokenInformation;
+import pet.jen.mbdev.api.auth.exception.TokenPersistenceException;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.assertj.core.api.Java6Assertions.fail;
+import static org.mockito.ArgumentMatchers.any;
+
+@RunWith(MockitoJUnitRunner.class)
+public class WriteBehindTokenStoreTest {
+
+    @Mock
+    private AsyncTokenRepository delegate;
+
+    private WriteBehindTokenStore store;
+
+    @Before
+    public void setup() {
+        // flushes are triggered explicitly by the tests
+        store = WriteBehindTokenStore.builder()
+                .flushInterval(3600000)
+                .batchSize(2).build();
+    }
+
+    @After
+    public void tearDown() {
+        store.close();
+    }
+
+    @Test(expected = TokenPersistenceException.class)
+    public void testSave_whenTokensAreInvalid_shouldThrowException() throws Throwable {
+        store.repository(delegate).save(new TokenInformation());
+    }
+
+    @Test
+    public void testSave_shouldAcknowledgeInMemoryAndWriteOnFlush() throws Throwable {
+        Mockito.when(delegate.save(any(TokenInformation.class))).thenReturn(Futures.<Void>immediateFuture(null));
+        TokenRepository repository = store.repository(delegate);
+        TokenInformation tokenInformation = createTokenInformation("0");
+        repository.save(tokenInformation);
+        assertThat(repository.get()).isSameAs(tokenInformation);
+        assertThat(repository.isEmpty()).isFalse();
+        Mockito.verifyZeroInteractions(delegate);
+        assertThat(store.pending()).isEqualTo(1);
+
+        store.flush();
+        Mockito.verify(delegate, Mockito.times(1)).save(tokenInformation);
+        assertThat(store.pending()).isEqualTo(0);
+    }
+
+    @Test
+    public void testSave_whenSavedRepeatedlyBeforeFlush_shouldOnlyWriteLatestTokens() throws Throwable {
+        Mockito.when(delegate.save(any(TokenInformation.class))).thenReturn(Futures.<Void>immediateFuture(null));
+        TokenRepository repository = store.repository(delegate);
+        for(int i = 0; i < 10; i++) {
+            repository.save(createTokenInformation(String.valueOf(i)));
+        }
+        TokenInformation latest = repository.get();
+        assertThat(store.pending()).isEqualTo(1);
+
+        store.flush();
+        Mockito.verify(delegate, Mockito.times(1)).save(any(TokenInformation.class));
+        Mockito.verify(delegate).save(latest);
+    }
+
+    @Test
+    public void testFlush_shouldWriteAllRepositoriesInBatches() throws Throwable {
+        List<AsyncTokenRepository> delegates = new ArrayList<>();
+        for(int i = 0; i < 5; i++) {
+            AsyncTokenRepository delegate = Mockito.mock(AsyncTokenRepository.class);
+            Mockito.when(delegate.save(any(TokenInformation.class))).thenReturn(Futures.<Void>immediateFuture(null));
+            store.repository(delegate).save(createTokenInformation(String.valueOf(i)));
+            delegates.add(delegate);
+        }
+        store.flush();
+        for(AsyncTokenRepository delegate : delegates) {
+            Mockito.verify(delegate, Mockito.times(1)).save(any(TokenInformation.class));
+        }
+        assertThat(store.pending()).isEqualTo(0);
+    }
+
+    @Test
+    public void testFlush_whenWriteFails_shouldRetryWithNextFlush() throws Throwable {
+        Mockito.when(delegate.save(any(TokenInformation.class)))
+                .thenReturn(Futures.<Void>immediateFailedFuture(new TokenPersistenceException("failed")))
+                .thenReturn(Futures.<Void>immediateFuture(null));
+        store.repository(delegate).save(createTokenInformation("0"));
+        store.flush();
+        assertThat(store.pending()).isEqualTo(1);
+        store.flush();
+        assertThat(store.pending()).isEqualTo(0);
+        Mockito.verify(delegate, Mockito.times(2)).save(any(TokenInformation.class));
+    }
+
+    @Test
+    public void testFlush_whenWriteIsSupersededDuringFlush_shouldWriteNewerTokensNext() throws Throwable {
+        final SettableFuture<Void> firstWrite = SettableFuture.create();
+        Mockito.when(delegate.save(any(TokenInformation.class)))
+                .thenReturn(firstWrite)
+                .thenReturn(Futures.<Void>immediateFuture(null));
+        final TokenRepository repository = store.repository(delegate);
+        repository.save(createTokenInformation("0"));
+        Thread flush = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                store.flush();
+            }
+        });
+        flush.start();
+        Mockito.verify(delegate, Mockito.timeout(1000)).save(any(TokenInformation.class));
+        TokenInformation newer = createTokenInformation("1");
+        repository.save(newer);
+        firstWrite.setException(new TokenPersistenceException("failed"));
+        flush.join();
+
+        store.flush();
+        Mockito.verify(delegate).save(newer);
+        assertThat(store.pending()).isEqualTo(0);
+    }
+
+    @Test
+    public void testClear_shouldClearDelegateOnFlush() throws Throwable {
+        Mockito.when(delegate.clear()).thenReturn(Futures.<Void>immediateFuture(null));
+        TokenRepository repository = store.repository(delegate);
+        repository.save(createTokenInformation("0"));
+        repository.clear();
+        assertThat(repository.get()).isNull();
+        store.flush();
+        Mockito.verify(delegate, Mockito.times(1)).clear();
+        Mockito.verify(delegate, Mockito.never()).save(any(TokenInformation.class));
+    }
+
+    @Test
+    public void testGet_whenNotModified_shouldLoadFromDelegateOnce() {
+        TokenInformation tokenInformation = createTokenInformation("0");
+        Mockito.when(delegate.get()).thenReturn(Futures.immediateFuture(tokenInformation));
+        TokenRepository repository = store.repository(delegate);
+        assertThat(repository.get()).isSameAs(tokenInformation);
+        assertThat(repository.get()).isSameAs(tokenInformation);
+        Mockito.verify(delegate, Mockito.times(1)).get();
+    }
+
+    @Test
+    public void testClose_shouldWritePendingModifications() throws Throwable {
+        Mockito.when(delegate.save(any(TokenInformation.class))).thenReturn(Futures.<Void>immediateFuture(null));
+        store.repository(delegate).save(createTokenInformation("0"));
+        store.close();
+        Mockito.verify(delegate, Mockito.times(1)).save(any(TokenInformation.class));
+        assertThat(store.pending()).isEqualTo(0);
+    }
+
+    @Test
+    public void testClose_whenWriteStillFails_shouldThrowException() throws Throwable {
+        TokenPersistenceException failure = new TokenPersistenceException("failed");
+        Mockito.when(delegate.save(any(TokenInformation.class))).thenReturn(Futures.<Void>immediateFailedFuture(failure));
+        store.repository(delegate).save(createTokenInformation("0"));
+        try {
+            store.close();
+            fail("Expected the failed write to be reported.");
+        } catch (IllegalStateException e) {
+            assertThat(e.getCause()).isSameAs(failure);
+        }
+        Mockito.verify(delegate, Mockito.times(1)).save(any(TokenInformation.class));
+    }
+
+    @Test
+    public void testClose_whenSavingConcurrently_shouldWriteLastAcknowledgedSaves() throws Throwable {
+        Mockito.when(delegate.save(any(TokenInformation.class))).thenReturn(Futures.<Void>immediateFuture(null));
+        final int savers = 4;
+        for(int round = 0; round < 20; round++) {
+            final WriteBehindTokenStore closing = WriteBehindTokenStore.builder().flushInterval(3600000).build();
+            final CountDownLatch saving = new CountDownLatch(savers);
+            final TokenInformation[] acknowledged = new TokenInformation[savers];
+            List<Thread> threads = new ArrayList<>();
+            for(int i = 0; i < savers; i++) {
+                final int saver = i;
+                final String prefix = round + "-" + i + "-";
+                final TokenRepository repository = closing.repository(delegate);
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        // saves until the store rejects them, the last acknowledged one has to be written
+                        try {
+                            for(int save = 0; ; save++) {
+                                TokenInformation tokenInformation = createTokenInformation(prefix + save);
+                                repository.save(tokenInformation);
+                                acknowledged[saver] = tokenInformation;
+                                if(save == 0) {
+                                    saving.countDown();
+                                }
+                            }
+                        } catch (TokenPersistenceException e) {
+                            // closed
+                        }
+                    }
+                });
+                thread.start();
+                threads.add(thread);
+            }
+            saving.await();
+            closing.close();
+            for(Thread thread : threads) {
+                thread.join();
+            }
+            for(TokenInformation tokenInformation : acknowledged) {
+                Mockito.verify(delegate).save(tokenInformation);
+            }
+        }
+    }
+
+    @Test(expected = TokenPersistenceException.class)
+    public void testSave_whenClosed_shouldThrowException() throws Throwable {
+        TokenRepository repository = store.repository(delegate);
+        store.close();
+        repository.save(createTokenInformation("0"));
+    }
+
+    private TokenInformation createTokenInformation(String suffix) {
+        TokenInformation tokenInformation = new TokenInformation();
+        tokenInformation.setExpiresIn(3600);
+        tokenInformation.setAccessToken("access-token-" + suffix);
+        tokenInformation.setRefreshToken("refresh-token-" + suffix);
+        tokenInformation.setScope("scope");
+        tokenInformation.setTokenType("Bearer");
+        tokenInformation.setTimestamp(new Date().getTime());
+        return tokenInformation;
+    }
+}
@@ -0,0 +1,19 @@
+package pet.jen.mbdev.api;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+/**
+ * An access token stamped with its generation. The generation of a {@link GenerationalTokenProvider} increases with
+ * every refresh, hence it tells whether a token which was rejected by the API is still the current one.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+public final class AccessToken {
+    private final String value;
+    private final long generation;
+}
@@ -8,34 +8,75 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * Request interceptor for feign clients which adds an OAuth authorization bearer header to the current existing ones
  * for API access.
  *
+ * Tokens of a {@link GenerationalTokenProvider} are recorded in the {@link AccessTokenTracker} of the client so that
+ * a rejected request can be traced back to the generation it was sent with.
+ *
+ * Interceptors of clients which are shared by several tenants don't have a token provider of their own; they use the
+ * one of the {@link TenantContext}.
+ *
  * @author Jens Petersohn <me@jen.pet>
  */
 class AccessTokenRequestInterceptor implements RequestInterceptor {
 
+    // null for shared clients which resolve the token provider of the current tenant per call
     private TokenProvider tokenProvider;
 
+    // records the tokens of generational token providers, might be null
+    private AccessTokenTracker tracker;
+
     AccessTokenRequestInterceptor(TokenProvider tokenProvider) {
+        this(tokenProvider, null);
+    }
+
+    AccessTokenRequestInterceptor(TokenProvider tokenProvider, AccessTokenTracker tracker) {
         this.tokenProvider = tokenProvider;
+        this.tracker = tracker;
     }
 
     @Override
     public void apply(RequestTemplate template) {
+        template.headers(authorize(template.headers()));
+    }
+
+    /**
+     * @param headers of a request, left unmodified
+     * @return copy of the headers including the bearer token of the current token provider
+     * @throws UnauthorizedException if the token provider fails
+     */
+    Map<String, Collection<String>> authorize(Map<String, Collection<String>> headers) {
         try {
-            Map<String, Collection<String>> headers = new HashMap<>(template.headers());
-            Collection<String> authHeaders = headers.get("Authorization");
-            if(authHeaders == null) {
-                authHeaders = new ArrayList<>();
-            }
-            authHeaders.add("Bearer " + this.tokenProvider.getAccessToken());
-            headers.put("Authorization", authHeaders);
-            template.headers(headers);
+            Map<String, Collection<String>> authorized = new HashMap<>(headers);
+            Collection<String> authHeaders = authorized.get("Authorization");
+            authHeaders = authHeaders != null ? new ArrayList<>(authHeaders) : new ArrayList<String>();
+            authHeaders.add("Bearer " + accessToken());
+            authorized.put("Authorization", authHeaders);
+            return authorized;
         } catch (Exception e) {
             throw new UnauthorizedException("Could not retrieve access token from token provider.", e);
         }
     }
+
+    /**
+     * @return resolves the token provider on whose behalf the current request is performed
+     */
+    Supplier<TokenProvider> tenant() {
+        final TokenProvider provider = tokenProvider;
+        return provider != null ? () -> provider : TenantContext::current;
+    }
+
+    private String accessToken() {
+        TokenProvider provider = tokenProvider != null ? tokenProvider : TenantContext.current();
+        if(tracker != null && provider instanceof GenerationalTokenProvider) {
+            AccessToken accessToken = ((GenerationalTokenProvider) provider).getCurrentToken();
+            tracker.record(accessToken);
+            return accessToken.getValue();
+        }
+        return provider.getAccessToken();
+    }
 }
@@ -0,0 +1,28 @@
+package pet.jen.mbdev.api;
+
+/**
+ * Remembers the {@link AccessToken} which was added to the latest request of the current thread. Shared by the
+ * {@link AccessTokenRequestInterceptor} and the {@link ApiClientProxy} of a client so that the proxy knows the
+ * generation of the token which was rejected.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+class AccessTokenTracker {
+
+    private final ThreadLocal<AccessToken> used = new ThreadLocal<>();
+
+    void record(AccessToken accessToken) {
+        used.set(accessToken);
+    }
+
+    /**
+     * @return the token of the latest request of the current thread, null if none was recorded since the last reset
+     */
+    AccessToken last() {
+        return used.get();
+    }
+
+    void reset() {
+        used.remove();
+    }
+}
@@ -4,40 +4,89 @@ import feign.RetryableException;
 import pet.jen.mbdev.api.exception.MBDevApiException;
 import pet.jen.mbdev.api.exception.UnauthorizedException;
 
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * Wraps an object, preferably a feign client to provide an automatic token refresh mechanism in case
  * access tokens are invalid.
  *
+ * Calls are dispatched to the target through the {@link DispatchTable} of its class which is shared by all proxies
+ * of the same API type.
+ *
+ * Proxies of tenants which share a feign client call it within the {@link TenantContext} of their token provider.
+ *
+ * Proxies returned by `coalescing()` let concurrent identical calls of methods annotated with {@link Coalesce} share
+ * a single request, see {@link RequestCoalescer}.
+ *
  * @author Jens Petersohn <me@jen.pet>
  */
 public class ApiClientProxy implements InvocationHandler {
 
-    private Object target;
+    final Object target;
     private TokenProvider tokenProvider;
 
+    // whether the target is shared by several tenants and expects the token provider within the tenant context
+    private boolean shared;
+
+    // knows the access token of the latest request if the target's requests are intercepted accordingly, might be null
+    private AccessTokenTracker tracker;
+
+    // whether calls of methods annotated with @Coalesce share their requests, the callers share the results as well
+    private boolean coalescing;
+
     // attempts which should be performed
     private static final int TOKEN_REFRESH_TRY = 1;
 
-    final Map<String, Method> targetMethods = new HashMap<>();
+    final DispatchTable dispatchTable;
 
     public ApiClientProxy(Object target, TokenProvider tokenProvider) {
+        this(target, tokenProvider, null);
+    }
+
+    ApiClientProxy(Object target, TokenProvider tokenProvider, AccessTokenTracker tracker) {
+        this(target, tokenProvider, tracker, false);
+    }
+
+    ApiClientProxy(Object target, TokenProvider tokenProvider, AccessTokenTracker tracker, boolean shared) {
         this.target = target;
         this.tokenProvider = tokenProvider;
+        this.tracker = tracker;
+        this.shared = shared;
+        this.dispatchTable = DispatchTable.of(target.getClass());
+    }
 
-        for(Method method: this.target.getClass().getDeclaredMethods()) {
-            this.targetMethods.put(method.getName(), method);
-        }
+    /**
+     * @return proxy of the same target and tenant whose calls of methods annotated with {@link Coalesce} are coalesced
+     */
+    ApiClientProxy coalescing() {
+        ApiClientProxy coalescing = new ApiClientProxy(target, tokenProvider, tracker, shared);
+        coalescing.coalescing = true;
+        return coalescing;
     }
 
     @Override
-    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-        return this.invoke(method, args, 0);
+    public Object invoke(Object proxy, final Method method, final Object[] args) throws Throwable {
+        if(coalescing) {
+            RequestCoalescer coalescer = RequestCoalescer.of(method.getDeclaringClass());
+            if(coalescer.isCoalesced(method)) {
+                return coalescer.execute(target, tokenProvider, method, args, () -> invokeForTenant(method, args));
+            }
+        }
+        return invokeForTenant(method, args);
+    }
+
+    private Object invokeForTenant(Method method, Object[] args) throws Throwable {
+        if(!shared) {
+            return this.invoke(method, args, 0);
+        }
+        TokenProvider previous = TenantContext.enter(tokenProvider);
+        try {
+            return this.invoke(method, args, 0);
+        } finally {
+            TenantContext.restore(previous);
+        }
     }
 
     /**
@@ -45,7 +94,9 @@ public class ApiClientProxy implements InvocationHandler {
      * unwrapped since they are unchecked by default if the feign interfaces is not written accordingly.
      *
      * A {@link UnauthorizedException} will cause the proxy to retry the call with refreshed tokens within the
-     * provided {@link TokenProvider}. If the retry count is reached the exception will just be rethrown.
+     * provided {@link TokenProvider}. If the retry count is reached the exception will just be rethrown. A
+     * {@link GenerationalTokenProvider} is only refreshed if the rejected token is still the current one, otherwise
+     * the call is retried right away with the newer token.
      *
      * All other exceptions which derive from {@link MBDevApiException} will be thrown plain.
      *
@@ -56,20 +107,35 @@ public class ApiClientProxy implements InvocationHandler {
      * @throws Throwable inherited from {@link Object}.invoke()
      */
     private Object invoke(Method method, Object[] args, int refreshes) throws Throwable {
+        MethodHandle handle = dispatchTable.get(method);
         try {
-            return targetMethods.get(method.getName()).invoke(target, args);
-        } catch (InvocationTargetException e) {
-            // unwrap the actual exception and retry if applicable
-            if (e.getCause() instanceof UnauthorizedException && refreshes < TOKEN_REFRESH_TRY) {
+            return (Object) handle.invokeExact(target, args);
+        } catch (UnauthorizedException e) {
+            // retry if applicable
+            if (refreshes < TOKEN_REFRESH_TRY) {
                 // refresh the token so that another request with new tokens can be made
-                this.tokenProvider.refreshTokens();
+                refreshTokens();
                 return invoke(method, args, ++refreshes);
-            } else if (e.getCause() instanceof MBDevApiException) {
-                throw e.getCause();
-            } else if (e.getCause() instanceof RetryableException) {
-                throw new MBDevApiException("Retryable error while requesting MBDevApi", (RetryableException) e.getCause());
             }
-            throw e.getCause();
+            throw e;
+        } catch (RetryableException e) {
+            throw new MBDevApiException("Retryable error while requesting MBDevApi", e);
+        } finally {
+            if(tracker != null) {
+                tracker.reset();
+            }
+        }
+    }
+
+    /**
+     * Refreshes the tokens which were rejected. Without a known generation every rejection forces a refresh.
+     */
+    private void refreshTokens() {
+        AccessToken rejected = tracker != null ? tracker.last() : null;
+        if(rejected != null && tokenProvider instanceof GenerationalTokenProvider) {
+            ((GenerationalTokenProvider) tokenProvider).refreshTokens(rejected.getGeneration());
+        } else {
+            tokenProvider.refreshTokens();
         }
     }
 }
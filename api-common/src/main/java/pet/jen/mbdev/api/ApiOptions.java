@@ -0,0 +1,63 @@
+package pet.jen.mbdev.api;
+
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import pet.jen.mbdev.api.cache.ResponseCache;
+import pet.jen.mbdev.api.ratelimit.RateLimiter;
+import pet.jen.mbdev.api.ratelimit.RateLimiters;
+import pet.jen.mbdev.api.retry.RetryPolicy;
+import pet.jen.mbdev.api.transport.HttpTransport;
+import pet.jen.mbdev.api.transport.JdkHttpTransport;
+
+/**
+ * Settings of the clients created by {@link MBDevApiFactory}.
+ *
+ * Tenant clients of the same api type and url only share a feign client if their options are equal. The settings are
+ * compared by their own equality, i.e. mostly by identity, hence the same instances should be passed to all clients.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+@Getter
+@EqualsAndHashCode
+public class ApiOptions {
+
+    private static final ApiOptions DEFAULTS = builder().build();
+
+    /**
+     * Performs the requests, defaults to the shared {@link JdkHttpTransport#defaultTransport()}.
+     */
+    private final HttpTransport transport;
+
+    /**
+     * Might be null; limits the requests of the OAuth client the options are used for, see {@link RateLimiters}.
+     */
+    private final RateLimiter rateLimiter;
+
+    /**
+     * Retries failed requests, defaults to {@link RetryPolicy#defaultPolicy()}; {@link RetryPolicy#none()} disables
+     * retries.
+     */
+    private final RetryPolicy retryPolicy;
+
+    /**
+     * Might be null; caches the GET responses per user.
+     */
+    private final ResponseCache responseCache;
+
+    @Builder
+    private ApiOptions(HttpTransport transport, RateLimiter rateLimiter, RetryPolicy retryPolicy,
+                       ResponseCache responseCache) {
+        this.transport = transport != null ? transport : JdkHttpTransport.defaultTransport();
+        this.rateLimiter = rateLimiter;
+        this.retryPolicy = retryPolicy != null ? retryPolicy : RetryPolicy.defaultPolicy();
+        this.responseCache = responseCache;
+    }
+
+    /**
+     * @return options with the default transport and retry policy, without a rate limiter and cache
+     */
+    public static ApiOptions defaults() {
+        return DEFAULTS;
+    }
+}
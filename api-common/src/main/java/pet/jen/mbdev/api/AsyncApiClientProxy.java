@@ -0,0 +1,250 @@
+package pet.jen.mbdev.api;
+
+import feign.RetryableException;
+import pet.jen.mbdev.api.exception.MBDevApiException;
+import pet.jen.mbdev.api.exception.UnauthorizedException;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asynchronous counterpart of the {@link ApiClientProxy}. It implements an interface whose methods mirror the ones of
+ * the API type, i.e. have the same names and parameters, but return a {@link CompletableFuture} of the result.
+ *
+ * Every call is performed on the {@link Executor} of the {@link AsyncOptions} within the {@link TenantContext} of the
+ * proxy's token provider. A rejected call is retried once after a token refresh, just like the synchronous proxy. The
+ * refresh runs as a task of its own and the retry is chained to it, so the rejected call doesn't occupy a thread while
+ * waiting. Calls which are rejected while a refresh is in progress join it instead of starting another one.
+ *
+ * Cancelling the returned future or completing it otherwise, e.g. by a timeout, cancels the pending request. Calls of
+ * methods which are coalesced by a proxy returned from `coalescing()`, see {@link RequestCoalescer}, share their
+ * request with identical calls and only cancel it by their timeout.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+class AsyncApiClientProxy implements InvocationHandler {
+
+    // methods of the asynchronous types mapped to the ones of the api types, per asynchronous and api type
+    private static final ClassValue<ConcurrentMap<Class<?>, Map<Method, Method>>> METHODS =
+            new ClassValue<ConcurrentMap<Class<?>, Map<Method, Method>>>() {
+                @Override
+                protected ConcurrentMap<Class<?>, Map<Method, Method>> computeValue(Class<?> asyncType) {
+                    return new ConcurrentHashMap<>();
+                }
+            };
+
+    // attempts which should be performed
+    private static final int TOKEN_REFRESH_TRY = 1;
+
+    private final Object target;
+    private final TokenProvider tokenProvider;
+    private final AccessTokenTracker tracker;
+    private final Executor executor;
+    private final long timeout;
+
+    private final Map<Method, Method> methods;
+    private final DispatchTable dispatchTable;
+
+    // whether calls of methods annotated with @Coalesce share their requests, the callers share the results as well
+    private final boolean coalescing;
+
+    // refresh which is currently performed on behalf of rejected calls, guarded by this
+    private CompletableFuture<Void> refresh;
+
+    // amount of completed refreshes, tells whether a call was sent before the latest refresh
+    private volatile long completedRefreshes;
+
+    AsyncApiClientProxy(Class<?> asyncType, Class<?> apiType, Object target, TokenProvider tokenProvider,
+                        AccessTokenTracker tracker, AsyncOptions options) {
+        this.target = target;
+        this.tokenProvider = tokenProvider;
+        this.tracker = tracker;
+        this.executor = options.getExecutor();
+        this.timeout = options.getTimeout();
+        this.methods = methods(asyncType, apiType);
+        this.dispatchTable = DispatchTable.of(target.getClass());
+        this.coalescing = false;
+    }
+
+    private AsyncApiClientProxy(AsyncApiClientProxy proxy) {
+        this.target = proxy.target;
+        this.tokenProvider = proxy.tokenProvider;
+        this.tracker = proxy.tracker;
+        this.executor = proxy.executor;
+        this.timeout = proxy.timeout;
+        this.methods = proxy.methods;
+        this.dispatchTable = proxy.dispatchTable;
+        this.coalescing = true;
+    }
+
+    /**
+     * @return proxy of the same target and tenant whose calls of methods annotated with {@link Coalesce} are coalesced
+     */
+    AsyncApiClientProxy coalescing() {
+        return new AsyncApiClientProxy(this);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if(method.getDeclaringClass() == Object.class) {
+            return (Object) dispatchTable.get(method).invokeExact(target, args);
+        }
+        final Method apiMethod = methods.get(method);
+        RequestCoalescer coalescer = RequestCoalescer.of(apiMethod.getDeclaringClass());
+        if(!coalescing || !coalescer.isCoalesced(apiMethod)) {
+            return call(apiMethod, args);
+        }
+        CompletableFuture<Object> result = coalescer.executeAsync(target, tokenProvider, apiMethod, args,
+                () -> call(apiMethod, args));
+        return timeout > 0 ? AsyncCalls.withTimeout(result, timeout, TimeUnit.MILLISECONDS) : result;
+    }
+
+    private CompletableFuture<Object> call(Method apiMethod, Object[] args) {
+        Call call = new Call(dispatchTable.get(apiMethod), args);
+        call.attempt(0);
+        if(timeout > 0) {
+            AsyncCalls.withTimeout(call, timeout, TimeUnit.MILLISECONDS);
+        }
+        return call;
+    }
+
+    /**
+     * Refreshes the rejected tokens in the background. Joins the refresh which is in progress if there is one, its
+     * tokens are newer than the rejected ones in any case. Calls which were sent before the latest refresh completed
+     * are retried right away.
+     *
+     * @param sentAfter amount of completed refreshes when the rejected call was sent
+     */
+    private synchronized CompletableFuture<Void> refresh(final AccessToken rejected, long sentAfter) {
+        if(refresh != null && !refresh.isDone()) {
+            return refresh;
+        }
+        if(completedRefreshes != sentAfter) {
+            return CompletableFuture.completedFuture(null);
+        }
+        refresh = CompletableFuture.runAsync(() -> {
+            if(rejected != null && tokenProvider instanceof GenerationalTokenProvider) {
+                ((GenerationalTokenProvider) tokenProvider).refreshTokens(rejected.getGeneration());
+            } else {
+                tokenProvider.refreshTokens();
+            }
+            synchronized(this) {
+                completedRefreshes++;
+            }
+        }, executor);
+        return refresh;
+    }
+
+    /**
+     * Maps every method of the asynchronous type to the method of the api type with the same signature.
+     *
+     * @throws IllegalArgumentException if a method has no counterpart or does not return a {@link CompletableFuture}
+     */
+    private static Map<Method, Method> methods(Class<?> asyncType, Class<?> apiType) {
+        ConcurrentMap<Class<?>, Map<Method, Method>> byApiType = METHODS.get(asyncType);
+        Map<Method, Method> methods = byApiType.get(apiType);
+        if(methods == null) {
+            Map<Method, Method> resolved = new HashMap<>();
+            for(Method method : asyncType.getMethods()) {
+                if(!method.getReturnType().isAssignableFrom(CompletableFuture.class)) {
+                    throw new IllegalArgumentException("Method " + method + " does not return a CompletableFuture.");
+                }
+                try {
+                    resolved.put(method, apiType.getMethod(method.getName(), method.getParameterTypes()));
+                } catch (NoSuchMethodException e) {
+                    throw new IllegalArgumentException("Api type " + apiType.getName() + " has no method "
+                            + method.getName() + Arrays.toString(method.getParameterTypes()) + ".", e);
+                }
+            }
+            methods = Collections.unmodifiableMap(resolved);
+            byApiType.putIfAbsent(apiType, methods);
+        }
+        return methods;
+    }
+
+    /**
+     * Future of a single call which performs its attempts as tasks on the executor.
+     */
+    private class Call extends CompletableFuture<Object> {
+
+        private final MethodHandle handle;
+        private final Object[] args;
+
+        // task of the current attempt, cancelled if the call is completed otherwise
+        private volatile FutureTask<?> task;
+
+        Call(MethodHandle handle, Object[] args) {
+            this.handle = handle;
+            this.args = args;
+            whenComplete((result, error) -> {
+                FutureTask<?> current = task;
+                if(error != null && current != null) {
+                    current.cancel(true);
+                }
+            });
+        }
+
+        void attempt(final int refreshes) {
+            FutureTask<Void> next = new FutureTask<>(() -> perform(refreshes), null);
+            task = next;
+            if(isDone()) {
+                return;
+            }
+            try {
+                executor.execute(next);
+            } catch (RuntimeException e) {
+                completeExceptionally(e);
+            }
+        }
+
+        private void perform(int refreshes) {
+            if(isDone()) {
+                return;
+            }
+            TokenProvider previous = TenantContext.enter(tokenProvider);
+            long sentAfter = completedRefreshes;
+            try {
+                complete((Object) handle.invokeExact(target, args));
+            } catch (UnauthorizedException e) {
+                if(refreshes < TOKEN_REFRESH_TRY) {
+                    retryAfterRefresh(tracker != null ? tracker.last() : null, sentAfter, refreshes);
+                } else {
+                    completeExceptionally(e);
+                }
+            } catch (RetryableException e) {
+                completeExceptionally(new MBDevApiException("Retryable error while requesting MBDevApi", e));
+            } catch (Throwable e) {
+                completeExceptionally(e);
+            } finally {
+                if(tracker != null) {
+                    tracker.reset();
+                }
+                TenantContext.restore(previous);
+            }
+        }
+
+        private void retryAfterRefresh(AccessToken rejected, long sentAfter, final int refreshes) {
+            refresh(rejected, sentAfter).whenComplete((result, error) -> {
+                if(error != null) {
+                    // fails like the synchronous proxy whose refresh throws
+                    completeExceptionally(error instanceof CompletionException && error.getCause() != null
+                            ? error.getCause() : error);
+                } else {
+                    attempt(refreshes + 1);
+                }
+            });
+        }
+    }
+}
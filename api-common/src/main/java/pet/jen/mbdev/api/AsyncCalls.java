@@ -0,0 +1,77 @@
+package pet.jen.mbdev.api;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Helpers for the futures returned by asynchronous clients.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+public final class AsyncCalls {
+
+    // only completes futures and hands tasks over to executors, never runs user code
+    private static final ScheduledThreadPoolExecutor TIMER = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+        thread.setName("mbdev-async-timeout");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        TIMER.setRemoveOnCancelPolicy(true);
+    }
+
+    private AsyncCalls() {
+    }
+
+    /**
+     * Completes the future with a {@link TimeoutException} unless it is completed within the given time. Futures of
+     * asynchronous clients cancel their request once they are completed that way.
+     *
+     * @param future which should be limited
+     * @param timeout maximum time to wait for the future
+     * @param unit of the timeout
+     * @param <T> result type of the future
+     * @return the given future
+     */
+    public static <T> CompletableFuture<T> withTimeout(final CompletableFuture<T> future, long timeout, TimeUnit unit) {
+        if(future.isDone()) {
+            return future;
+        }
+        final ScheduledFuture<?> expiry = TIMER.schedule(() -> {
+            future.completeExceptionally(new TimeoutException("Call did not complete within the timeout."));
+        }, timeout, unit);
+        future.whenComplete((result, error) -> expiry.cancel(false));
+        return future;
+    }
+
+    /**
+     * Runs the task on the executor after the given delay.
+     *
+     * @param task which should be run
+     * @param executor which runs the task
+     * @param delay time to wait before the task is handed over to the executor
+     * @param unit of the delay
+     * @return future which completes once the task was handed over, exceptionally if the executor rejected it
+     */
+    public static CompletableFuture<Void> schedule(final Runnable task, final Executor executor, long delay,
+                                                   TimeUnit unit) {
+        final CompletableFuture<Void> handedOver = new CompletableFuture<>();
+        TIMER.schedule(() -> {
+            try {
+                executor.execute(task);
+                handedOver.complete(null);
+            } catch (RejectedExecutionException e) {
+                handedOver.completeExceptionally(e);
+            }
+        }, delay, unit);
+        return handedOver;
+    }
+}
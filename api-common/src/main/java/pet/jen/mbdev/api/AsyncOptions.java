@@ -0,0 +1,70 @@
+package pet.jen.mbdev.api;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Settings of the asynchronous clients created by {@link MBDevApiFactory}.
+ *
+ * The requests of an asynchronous client still block the thread which performs them. A bounded executor therefore
+ * limits the amount of concurrent requests, calls beyond it are queued by the executor. On Java 21 virtual threads
+ * avoid the costs of a platform thread per pending request.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+@Getter
+public class AsyncOptions {
+
+    /**
+     * System property which switches the default executor to virtual threads if the JVM supports them.
+     */
+    public static final String VIRTUAL_THREADS_PROPERTY = "mbdev.virtualThreads";
+
+    private static final ExecutorService DEFAULT_EXECUTOR =
+            VirtualThreads.isSupported() && Boolean.getBoolean(VIRTUAL_THREADS_PROPERTY)
+                    ? VirtualThreads.executor("mbdev-async")
+                    : Executors.newCachedThreadPool(new Threads());
+
+    /**
+     * Performs the requests and token refreshes, defaults to a shared cached thread pool or to virtual threads if
+     * enabled by the `mbdev.virtualThreads` system property. {@link VirtualThreads#executor(String)} can be passed as
+     * well.
+     */
+    private final Executor executor;
+
+    /**
+     * Milliseconds after which a call is completed with a {@link java.util.concurrent.TimeoutException} and its request
+     * is cancelled. Applies to every call individually, including its retry after a token refresh; zero disables it.
+     */
+    private final long timeout;
+
+    @Builder
+    private AsyncOptions(Executor executor, long timeout) {
+        this.executor = executor != null ? executor : DEFAULT_EXECUTOR;
+        this.timeout = Math.max(timeout, 0);
+    }
+
+    /**
+     * @return options with the shared default executor and without timeout
+     */
+    public static AsyncOptions defaults() {
+        return builder().build();
+    }
+
+    private static class Threads implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "mbdev-async-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
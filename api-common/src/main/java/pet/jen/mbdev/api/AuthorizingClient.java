@@ -0,0 +1,33 @@
+package pet.jen.mbdev.api;
+
+import feign.Client;
+import feign.Request;
+import feign.Response;
+
+import java.io.IOException;
+
+/**
+ * Feign {@link Client} which adds the bearer token right before a request is sent instead of a request interceptor.
+ * Used by clients with a {@link pet.jen.mbdev.api.cache.ResponseCache} so that requests which are answered by the
+ * cache never resolve a token.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+class AuthorizingClient implements Client {
+
+    private final Client delegate;
+
+    private final AccessTokenRequestInterceptor interceptor;
+
+    AuthorizingClient(Client delegate, AccessTokenRequestInterceptor interceptor) {
+        this.delegate = delegate;
+        this.interceptor = interceptor;
+    }
+
+    @Override
+    public Response execute(Request request, Request.Options options) throws IOException {
+        Request authorized = Request.create(request.method(), request.url(), interceptor.authorize(request.headers()),
+                request.body(), request.charset());
+        return delegate.execute(authorized, options);
+    }
+}
@@ -0,0 +1,25 @@
+package pet.jen.mbdev.api;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a method of an API type whose concurrent identical calls share a single request if the client opted in via
+ * `MBDevApiFactory.coalescing()`, see {@link RequestCoalescer}. Only idempotent methods may be coalesced, i.e. feign
+ * methods whose request line uses `GET`.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Coalesce {
+
+    /**
+     * @return whether calls of the method are coalesced
+     */
+    boolean value() default true;
+}
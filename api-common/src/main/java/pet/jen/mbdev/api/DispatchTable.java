@@ -0,0 +1,113 @@
+package pet.jen.mbdev.api;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Maps the methods which are called on an {@link ApiClientProxy} to {@link MethodHandle}s of the wrapped target.
+ *
+ * Tables are built once per target class, i.e. once per API type for feign clients, and shared by all proxies of it.
+ * The methods of all interfaces implemented by the target are resolved upfront; anything else, e.g. methods of
+ * {@link Object}, is resolved on first use. All handles share the generic type `(Object, Object[])Object` so that they
+ * can be invoked without reflection, argument copies or exception wrapping.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+class DispatchTable {
+
+    private static final ClassValue<DispatchTable> TABLES = new ClassValue<DispatchTable>() {
+        @Override
+        protected DispatchTable computeValue(Class<?> targetClass) {
+            return new DispatchTable(targetClass);
+        }
+    };
+
+    private final Class<?> targetClass;
+
+    // keyed on the actual method so that overloads don't collide
+    private final ConcurrentMap<Method, MethodHandle> handles = new ConcurrentHashMap<>();
+
+    // copy-on-write cache keyed on the method instances used by the proxies; proxy classes pass the same instance with
+    // every call of a method, comparing identities avoids the costs of `Method.equals()` and `Method.hashCode()`
+    private volatile Map<Method, MethodHandle> instances = new IdentityHashMap<>();
+
+    private DispatchTable(Class<?> targetClass) {
+        this.targetClass = targetClass;
+        for(Class<?> type : targetClass.getInterfaces()) {
+            for(Method method : type.getMethods()) {
+                if(!Modifier.isStatic(method.getModifiers())) {
+                    handles.put(method, resolve(method));
+                }
+            }
+        }
+    }
+
+    /**
+     * @param targetClass class of the object which is wrapped by the proxy
+     * @return the shared table of the class
+     */
+    static DispatchTable of(Class<?> targetClass) {
+        return TABLES.get(targetClass);
+    }
+
+    /**
+     * @param method which was called on the proxy
+     * @return handle which invokes the method on a target with the arguments of the proxy call
+     */
+    MethodHandle get(Method method) {
+        MethodHandle handle = instances.get(method);
+        if(handle == null) {
+            handle = lookup(method);
+        }
+        return handle;
+    }
+
+    private synchronized MethodHandle lookup(Method method) {
+        MethodHandle handle = handles.get(method);
+        if(handle == null) {
+            handle = resolve(method);
+            handles.put(method, handle);
+        }
+        Map<Method, MethodHandle> copy = new IdentityHashMap<>(instances);
+        copy.put(method, handle);
+        instances = copy;
+        return handle;
+    }
+
+    /**
+     * Creates a handle of the target's implementation of the method. Methods which are not declared by a type of the
+     * target are matched by their signature.
+     */
+    private MethodHandle resolve(Method method) {
+        Method targetMethod;
+        try {
+            // always works on a copy, the method objects of the proxy are shared
+            if(method.getDeclaringClass().isAssignableFrom(targetClass)) {
+                targetMethod = method.getDeclaringClass().getDeclaredMethod(method.getName(), method.getParameterTypes());
+            } else {
+                targetMethod = targetClass.getMethod(method.getName(), method.getParameterTypes());
+            }
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException("Target " + targetClass.getName() + " does not implement " + method + ".", e);
+        }
+        try {
+            // interfaces of API types or proxies might not be public
+            targetMethod.setAccessible(true);
+            int parameters = targetMethod.getParameterTypes().length;
+            // converting to the generic types before spreading the arguments saves an adapter per call
+            return MethodHandles.lookup()
+                    .unreflect(targetMethod)
+                    .asType(MethodType.genericMethodType(parameters + 1))
+                    .asSpreader(Object[].class, parameters);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Method " + targetMethod + " is not accessible.", e);
+        }
+    }
+}
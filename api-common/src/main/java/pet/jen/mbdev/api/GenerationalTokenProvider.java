@@ -0,0 +1,25 @@
+package pet.jen.mbdev.api;
+
+/**
+ * Extension of the {@link TokenProvider} which stamps its access tokens with a generation. Requests remember the
+ * generation of the token they were sent with. If several of them are rejected at the same time only the first
+ * `refreshTokens(long)` call refreshes; all others observe a newer generation and retry with the current token.
+ *
+ * Plain {@link TokenProvider}s are still supported, they are refreshed for every rejected request.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+public interface GenerationalTokenProvider extends TokenProvider {
+    /**
+     * @return an always valid access token together with its generation.
+     */
+    AccessToken getCurrentToken();
+
+    /**
+     * Refreshes all tokens if the given generation is still the current one.
+     *
+     * @param generation of the access token which was rejected
+     * @return the refreshed access token or the current one if it is newer than the given generation.
+     */
+    AccessToken refreshTokens(long generation);
+}
@@ -5,6 +5,7 @@ import feign.codec.ErrorDecoder;
 import pet.jen.mbdev.api.exception.MBDevApiException;
 import pet.jen.mbdev.api.exception.QuotaExceededException;
 import pet.jen.mbdev.api.exception.UnauthorizedException;
+import pet.jen.mbdev.api.ratelimit.RateLimitHeaders;
 
 /**
  * Default error decoder for the Mercedes Benz Developer API. In case the feign client returns a
@@ -21,7 +22,8 @@ public class MBDevApiErrorDecoder extends ErrorDecoder.Default {
             case 401:
                 return new UnauthorizedException(getUnauthorizedMessage(methodKey, response, exception), exception);
             case 429:
-                return new QuotaExceededException(getQuotaExceededMessage(methodKey, response, exception), exception);
+                return new QuotaExceededException(getQuotaExceededMessage(methodKey, response, exception), exception,
+                        RateLimitHeaders.of(response.headers()).getRetryAfter());
             default:
                 return new MBDevApiException(getDefaultMessage(methodKey, response, exception), exception);
         }
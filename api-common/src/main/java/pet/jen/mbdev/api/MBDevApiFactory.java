@@ -1,9 +1,25 @@
 package pet.jen.mbdev.api;
 
+import feign.Client;
 import feign.Feign;
+import feign.Retryer;
 import feign.jackson.JacksonDecoder;
+import pet.jen.mbdev.api.cache.CachingClient;
+import pet.jen.mbdev.api.cache.ResponseCache;
+import pet.jen.mbdev.api.ratelimit.RateLimitedClient;
+import pet.jen.mbdev.api.ratelimit.RateLimiter;
+import pet.jen.mbdev.api.retry.RetryPolicy;
+import pet.jen.mbdev.api.retry.RetryingClient;
+import pet.jen.mbdev.api.streaming.StreamingClient;
+import pet.jen.mbdev.api.streaming.StreamingDecoder;
+import pet.jen.mbdev.api.transport.HttpTransport;
 
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Proxy;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Normalizes the creation of any feign client which calls the Mercedes Benz Developer API(s) by adding the same
@@ -12,38 +28,290 @@ import java.lang.reflect.Proxy;
  *
  * If used without a base url (regular case) it points straight to the production environment.
  *
+ * Applications which call an API on behalf of many users should create their clients with `createForTenant()`. All
+ * tenants of an API type and url share a single feign client, the bearer token is resolved per call from the tenant's
+ * {@link TokenProvider}. Creating a client for another tenant therefore only allocates its proxy. A shared client is
+ * released once no client of a tenant uses it anymore.
+ *
+ * Everything beyond the url and the tokens, e.g. the {@link HttpTransport} which performs the requests, is configured
+ * by the {@link ApiOptions}. Pass the same transport to all clients, including the ones of the auth module, to share
+ * its connections. Clients of tenants can be limited by a {@link RateLimiter} which slows down the requests of an
+ * OAuth client once the API signals that its quota is exceeded.
+ *
+ * Failed requests are retried according to the {@link RetryPolicy} of the options. Unless configured otherwise, i.e.
+ * also by the methods without options, idempotent GET requests are retried with a jittered exponential backoff,
+ * limited by a retry budget shared by all clients. Pass {@link RetryPolicy#none()} to disable retries. Feign's own
+ * retryer is disabled.
+ *
+ * GET responses can be cached by the {@link ResponseCache} of the options. Requests which are answered by the cache
+ * neither resolve a token nor perform a request.
+ *
+ * Methods returning a {@link pet.jen.mbdev.api.streaming.CloseableIterator} or a {@link java.util.stream.Stream}
+ * decode JSON arrays incrementally while the caller consumes the elements, see {@link StreamingDecoder}.
+ *
+ * Asynchronous clients created with `createAsync()` return futures instead of blocking the caller. Their calls are
+ * performed on the executor of the {@link AsyncOptions} and refresh rejected tokens without blocking a thread.
+ *
+ * Clients returned by `coalescing()` let concurrent identical calls of methods annotated with {@link Coalesce} share
+ * a single request, see {@link RequestCoalescer}.
+ *
  * @author Jens Petersohn <me@jen.pet>
  */
 public class MBDevApiFactory {
 
     private static String BASE_URL = "https://api.mercedes-benz.com";
 
+    // feign clients which are shared by all tenants, per api type, url and options; only the clients of tenants keep
+    // them alive so that clients of options which are created per adapter don't pile up
+    private static final ClassValue<ConcurrentMap<SharedClientKey, SharedClientReference>> SHARED_CLIENTS =
+            new ClassValue<ConcurrentMap<SharedClientKey, SharedClientReference>>() {
+                @Override
+                protected ConcurrentMap<SharedClientKey, SharedClientReference> computeValue(Class<?> apiType) {
+                    return new ConcurrentHashMap<>();
+                }
+            };
+
+    // shared clients which were collected, their entries are removed by the next lookup
+    private static final ReferenceQueue<Object> COLLECTED_CLIENTS = new ReferenceQueue<>();
+
     public static <T> T create(Class<T> apiType, String basePath, TokenProvider tokenProvider) {
         return create(apiType, BASE_URL, basePath, tokenProvider);
     }
 
     public static <T> T create(Class<T> apiType, String baseUrl, String basePath, TokenProvider tokenProvider) {
-        T client = Feign.builder()
-                .decoder(new JacksonDecoder())
-                .errorDecoder(new MBDevApiErrorDecoder())
-                .requestInterceptor(new AccessTokenRequestInterceptor(tokenProvider))
-                .target(apiType, baseUrl + basePath);
-        return wrapClient(apiType, client, tokenProvider);
+        return create(apiType, baseUrl, basePath, tokenProvider, ApiOptions.defaults());
+    }
+
+    /**
+     * Creates a client with a feign client of its own.
+     *
+     * @param apiType feign annotated interface
+     * @param baseUrl host of the api
+     * @param basePath base path of the target api
+     * @param tokenProvider token provider of the client
+     * @param options transport and further settings of the client
+     * @param <T> target class type
+     * @return client which performs all calls with the provider's tokens
+     */
+    public static <T> T create(Class<T> apiType, String baseUrl, String basePath, TokenProvider tokenProvider,
+                               ApiOptions options) {
+        AccessTokenTracker tracker = new AccessTokenTracker();
+        T client = createFeignClient(apiType, baseUrl + basePath,
+                new AccessTokenRequestInterceptor(tokenProvider, tracker), options);
+        return wrapClient(apiType, new ApiClientProxy(client, tokenProvider, tracker));
+    }
+
+    public static <T> T createForTenant(Class<T> apiType, String basePath, TokenProvider tokenProvider) {
+        return createForTenant(apiType, BASE_URL, basePath, tokenProvider);
+    }
+
+    public static <T> T createForTenant(Class<T> apiType, String baseUrl, String basePath, TokenProvider tokenProvider) {
+        return createForTenant(apiType, baseUrl, basePath, tokenProvider, ApiOptions.defaults());
+    }
+
+    /**
+     * Creates a client for a single tenant which shares the feign client of the api type, url and options with all
+     * other tenants.
+     *
+     * @param apiType feign annotated interface
+     * @param baseUrl host of the api
+     * @param basePath base path of the target api
+     * @param tokenProvider token provider of the tenant
+     * @param options transport and further settings of the shared client
+     * @param <T> target class type
+     * @return client which performs all calls with the tenant's tokens
+     */
+    public static <T> T createForTenant(Class<T> apiType, String baseUrl, String basePath, TokenProvider tokenProvider,
+                                        ApiOptions options) {
+        SharedClient shared = sharedClient(apiType, baseUrl + basePath, options);
+        return wrapClient(apiType, new ApiClientProxy(shared.client, tokenProvider, shared.tracker, true));
+    }
+
+    public static <A> A createAsync(Class<A> asyncType, Class<?> apiType, String basePath, TokenProvider tokenProvider,
+                                    AsyncOptions asyncOptions) {
+        return createAsync(asyncType, apiType, BASE_URL, basePath, tokenProvider, asyncOptions);
+    }
+
+    public static <A> A createAsync(Class<A> asyncType, Class<?> apiType, String baseUrl, String basePath,
+                                    TokenProvider tokenProvider, AsyncOptions asyncOptions) {
+        return createAsync(asyncType, apiType, baseUrl, basePath, tokenProvider, ApiOptions.defaults(), asyncOptions);
+    }
+
+    /**
+     * Creates an asynchronous client for a single tenant. The methods of the asynchronous type mirror the ones of the
+     * api type but return a {@link java.util.concurrent.CompletableFuture} of the result. Calls are performed by the
+     * feign client of the api type which is shared with all synchronous and asynchronous tenants of the same options.
+     * Calls waiting for a permit of the options' rate limiter or for a retry occupy a thread of the executor.
+     *
+     * @param asyncType interface whose methods return futures of the api type's results
+     * @param apiType feign annotated interface
+     * @param baseUrl host of the api
+     * @param basePath base path of the target api
+     * @param tokenProvider token provider of the tenant
+     * @param options transport and further settings of the shared client
+     * @param asyncOptions executor and timeout of the calls
+     * @param <A> asynchronous type
+     * @return client which performs all calls with the tenant's tokens on the executor of the options
+     * @throws IllegalArgumentException if the asynchronous type does not match the api type
+     */
+    public static <A> A createAsync(Class<A> asyncType, Class<?> apiType, String baseUrl, String basePath,
+                                    TokenProvider tokenProvider, ApiOptions options, AsyncOptions asyncOptions) {
+        SharedClient shared = sharedClient(apiType, baseUrl + basePath, options);
+        return wrapClient(asyncType,
+                new AsyncApiClientProxy(asyncType, apiType, shared.client, tokenProvider, shared.tracker, asyncOptions));
+    }
+
+    /**
+     * Creates a view of a client which coalesces concurrent identical calls of the tenant on methods annotated with
+     * {@link Coalesce}. The callers of a coalesced call share the returned objects, which must therefore not be
+     * modified. Other methods are performed like by the client itself.
+     *
+     * @param client synchronous or asynchronous client created by this factory
+     * @param <T> client type
+     * @return client which shares the requests of identical calls with all coalescing clients of the tenant
+     * @throws IllegalArgumentException if the client was not created by this factory
+     */
+    public static <T> T coalescing(T client) {
+        InvocationHandler handler = Proxy.isProxyClass(client.getClass()) ? Proxy.getInvocationHandler(client) : null;
+        if(handler instanceof ApiClientProxy) {
+            handler = ((ApiClientProxy) handler).coalescing();
+        } else if(handler instanceof AsyncApiClientProxy) {
+            handler = ((AsyncApiClientProxy) handler).coalescing();
+        } else {
+            throw new IllegalArgumentException("Client " + client + " was not created by the MBDevApiFactory.");
+        }
+        // clients of the factory implement exactly their api type
+        return wrapClient((Class<T>) client.getClass().getInterfaces()[0], handler);
+    }
+
+    static SharedClient sharedClient(Class<?> apiType, String url, ApiOptions options) {
+        removeCollectedClients();
+        ConcurrentMap<SharedClientKey, SharedClientReference> clients = SHARED_CLIENTS.get(apiType);
+        SharedClientKey key = new SharedClientKey(url, options);
+        while(true) {
+            SharedClientReference existing = clients.get(key);
+            Object client = existing != null ? existing.get() : null;
+            if(client != null) {
+                return new SharedClient(client, existing.tracker);
+            }
+            AccessTokenTracker tracker = new AccessTokenTracker();
+            client = createFeignClient(apiType, url, new AccessTokenRequestInterceptor(null, tracker), options);
+            SharedClientReference created = new SharedClientReference(client, tracker, clients, key);
+            // another thread might have created a client in the meantime, which is used instead
+            if(existing == null ? clients.putIfAbsent(key, created) == null : clients.replace(key, existing, created)) {
+                return new SharedClient(client, tracker);
+            }
+        }
+    }
+
+    /**
+     * @return amount of shared clients of the api type which are still in use
+     */
+    static int sharedClients(Class<?> apiType) {
+        removeCollectedClients();
+        return SHARED_CLIENTS.get(apiType).size();
+    }
+
+    private static void removeCollectedClients() {
+        SharedClientReference collected;
+        while((collected = (SharedClientReference) COLLECTED_CLIENTS.poll()) != null) {
+            collected.clients.remove(collected.key, collected);
+        }
+    }
+
+    private static <T> T createFeignClient(Class<T> apiType, String url, AccessTokenRequestInterceptor interceptor,
+                                           ApiOptions options) {
+        Client client = options.getTransport().client();
+        if(options.getRateLimiter() != null) {
+            // limits every attempt, retries included
+            client = new RateLimitedClient(client, options.getRateLimiter());
+        }
+        if(options.getRetryPolicy().getMaxAttempts() > 1) {
+            client = new RetryingClient(client, options.getRetryPolicy());
+        }
+        Feign.Builder builder = Feign.builder()
+                .retryer(Retryer.NEVER_RETRY)
+                .decoder(new StreamingDecoder(new JacksonDecoder()))
+                .errorDecoder(new MBDevApiErrorDecoder());
+        if(options.getResponseCache() != null) {
+            // tokens are resolved behind the cache so that cached responses don't need one
+            client = new CachingClient(new AuthorizingClient(client, interceptor), options.getResponseCache(),
+                    interceptor.tenant());
+        } else {
+            builder.requestInterceptor(interceptor);
+        }
+        return builder.client(new StreamingClient(client)).target(apiType, url);
     }
 
     /**
      * Wraps a feign client into a proxy class which handles the potential invalidity of tokens gracefully.
      *
      * @param apiType class type of the target class
-     * @param feignClient target object itself
-     * @param tokenProvider token provider required to handle authorization issues
+     * @param handler proxy of the feign client including the token provider required to handle authorization issues
      * @param <T> target class type
      * @return wrapped feign client
      */
-    private static <T> T wrapClient(Class<T> apiType, Object feignClient, TokenProvider tokenProvider) {
+    private static <T> T wrapClient(Class<T> apiType, InvocationHandler handler) {
         return (T) Proxy.newProxyInstance(
                 MBDevApiFactory.class.getClassLoader(),
                 new Class[] {apiType},
-                new ApiClientProxy(feignClient, tokenProvider));
+                handler);
+    }
+
+    /**
+     * Identifies a shared client of an api type by its url and the options it was created with.
+     */
+    private static class SharedClientKey {
+        private final String url;
+        private final ApiOptions options;
+
+        SharedClientKey(String url, ApiOptions options) {
+            this.url = url;
+            this.options = options;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(!(o instanceof SharedClientKey)) {
+                return false;
+            }
+            SharedClientKey other = (SharedClientKey) o;
+            return url.equals(other.url) && options.equals(other.options);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * url.hashCode() + options.hashCode();
+        }
+    }
+
+    /**
+     * Weakly references a shared feign client so that it is collected once no client of a tenant uses it anymore.
+     */
+    private static class SharedClientReference extends WeakReference<Object> {
+        private final AccessTokenTracker tracker;
+        private final ConcurrentMap<SharedClientKey, SharedClientReference> clients;
+        private final SharedClientKey key;
+
+        SharedClientReference(Object client, AccessTokenTracker tracker,
+                              ConcurrentMap<SharedClientKey, SharedClientReference> clients, SharedClientKey key) {
+            super(client, COLLECTED_CLIENTS);
+            this.tracker = tracker;
+            this.clients = clients;
+            this.key = key;
+        }
+    }
+
+    /**
+     * Feign client which is shared by all tenants of an api type and url together with the tracker of its interceptor.
+     */
+    static class SharedClient {
+        final Object client;
+        final AccessTokenTracker tracker;
+
+        SharedClient(Object client, AccessTokenTracker tracker) {
+            this.client = client;
+            this.tracker = tracker;
+        }
     }
 }
@@ -0,0 +1,234 @@
+package pet.jen.mbdev.api;
+
+import feign.RequestLine;
+import pet.jen.mbdev.api.exception.MBDevApiException;
+
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Lets concurrent identical calls of an API type share a single in-flight request (single flight). Calls are identical
+ * if they are performed by the same client for the same tenant, i.e. token provider, on the same method with equal
+ * arguments. The first call performs the request, calls which arrive before it completes wait for it and receive the
+ * same result or exception. Calls after the completion perform a new request, nothing is cached.
+ *
+ * Only clients created by `MBDevApiFactory.coalescing()` coalesce their calls and only of methods annotated with
+ * {@link Coalesce}, methods which stream their result can't be. Coalesced calls share the returned objects, which must
+ * therefore not be modified by the callers.
+ *
+ * There is one coalescer per API type, `of()` exposes its metrics.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+public class RequestCoalescer {
+
+    private static final ClassValue<RequestCoalescer> COALESCERS = new ClassValue<RequestCoalescer>() {
+        @Override
+        protected RequestCoalescer computeValue(Class<?> apiType) {
+            return new RequestCoalescer();
+        }
+    };
+
+    private final ConcurrentMap<Method, Boolean> coalesced = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<Key, CompletableFuture<Object>> flights = new ConcurrentHashMap<>();
+
+    private final LongAdder calls = new LongAdder();
+
+    private final LongAdder joined = new LongAdder();
+
+    private RequestCoalescer() {
+    }
+
+    /**
+     * @param apiType feign annotated interface
+     * @return the coalescer of all clients of the api type
+     */
+    public static RequestCoalescer of(Class<?> apiType) {
+        return COALESCERS.get(apiType);
+    }
+
+    /**
+     * @return amount of calls of coalesced methods
+     */
+    public long calls() {
+        return calls.sum();
+    }
+
+    /**
+     * @return amount of calls which joined the request of another call instead of performing their own
+     */
+    public long coalesced() {
+        return joined.sum();
+    }
+
+    /**
+     * @return amount of requests which are currently performed on behalf of coalesced calls
+     */
+    public int inFlight() {
+        return flights.size();
+    }
+
+    /**
+     * @param method of the api type
+     * @return whether calls of the method are coalesced
+     * @throws IllegalArgumentException if the method is annotated but not idempotent
+     */
+    boolean isCoalesced(Method method) {
+        Boolean result = coalesced.get(method);
+        if(result == null) {
+            result = resolve(method);
+            coalesced.putIfAbsent(method, result);
+        }
+        return result;
+    }
+
+    /**
+     * Performs the invocation unless an identical call is in flight, in which case its outcome is awaited.
+     */
+    Object execute(Object target, TokenProvider tenant, Method method, Object[] args, Invocation invocation)
+            throws Throwable {
+        calls.increment();
+        Key key = new Key(target, tenant, method, args);
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> existing = flights.putIfAbsent(key, flight);
+        if(existing != null) {
+            joined.increment();
+            return await(existing);
+        }
+        try {
+            Object result = invocation.invoke();
+            flights.remove(key, flight);
+            flight.complete(result);
+            return result;
+        } catch (Throwable e) {
+            flights.remove(key, flight);
+            flight.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Starts the call unless an identical one is in flight. Every caller receives a future of its own so that
+     * cancelling it doesn't affect the others.
+     */
+    CompletableFuture<Object> executeAsync(Object target, TokenProvider tenant, Method method, Object[] args,
+                                           Supplier<CompletableFuture<Object>> call) {
+        calls.increment();
+        Key key = new Key(target, tenant, method, args);
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> existing = flights.putIfAbsent(key, flight);
+        if(existing != null) {
+            joined.increment();
+            return copy(existing);
+        }
+        // the flight is copied before it is completed, the removal happens before followers see the result
+        CompletableFuture<Object> result = copy(flight);
+        try {
+            call.get().whenComplete((value, error) -> {
+                flights.remove(key, flight);
+                if(error != null) {
+                    flight.completeExceptionally(error);
+                } else {
+                    flight.complete(value);
+                }
+            });
+        } catch (RuntimeException e) {
+            flights.remove(key, flight);
+            flight.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    private static Object await(CompletableFuture<Object> flight) throws Throwable {
+        try {
+            return flight.get();
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MBDevApiException("Interrupted while waiting for a coalesced call.", e);
+        }
+    }
+
+    private static CompletableFuture<Object> copy(CompletableFuture<Object> flight) {
+        CompletableFuture<Object> copy = new CompletableFuture<>();
+        flight.whenComplete((value, error) -> {
+            if(error != null) {
+                copy.completeExceptionally(error);
+            } else {
+                copy.complete(value);
+            }
+        });
+        return copy;
+    }
+
+    private static boolean resolve(Method method) {
+        Coalesce coalesce = method.getAnnotation(Coalesce.class);
+        if(coalesce == null || !coalesce.value()) {
+            return false;
+        }
+        RequestLine requestLine = method.getAnnotation(RequestLine.class);
+        if(requestLine != null && !requestLine.value().trim().startsWith("GET ")) {
+            throw new IllegalArgumentException("Method " + method + " is not idempotent and can't be coalesced.");
+        }
+        Class<?> returnType = method.getReturnType();
+        if(Iterator.class.isAssignableFrom(returnType) || Stream.class.isAssignableFrom(returnType)
+                || InputStream.class.isAssignableFrom(returnType)) {
+            throw new IllegalArgumentException("Method " + method + " streams its result which can't be shared.");
+        }
+        return true;
+    }
+
+    /**
+     * Performs the request of a call.
+     */
+    interface Invocation {
+        Object invoke() throws Throwable;
+    }
+
+    /**
+     * Identifies identical calls, targets and tenants by identity and arguments by equality.
+     */
+    private static class Key {
+        private final Object target;
+        private final TokenProvider tenant;
+        private final Method method;
+        private final Object[] args;
+        private final int hash;
+
+        Key(Object target, TokenProvider tenant, Method method, Object[] args) {
+            this.target = target;
+            this.tenant = tenant;
+            this.method = method;
+            this.args = args;
+            int hash = 31 * System.identityHashCode(target) + System.identityHashCode(tenant);
+            hash = 31 * hash + method.hashCode();
+            this.hash = 31 * hash + Arrays.deepHashCode(args);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return target == other.target && tenant == other.tenant && method.equals(other.method)
+                    && Arrays.deepEquals(args, other.args);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
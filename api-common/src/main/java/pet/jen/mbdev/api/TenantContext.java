@@ -0,0 +1,46 @@
+package pet.jen.mbdev.api;
+
+/**
+ * Holds the {@link TokenProvider} of the tenant on whose behalf the current thread calls a shared feign client. The
+ * {@link ApiClientProxy} of a tenant enters the context for the duration of a call and the
+ * {@link AccessTokenRequestInterceptor} of the shared client resolves the bearer token from it.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+final class TenantContext {
+
+    private static final ThreadLocal<TokenProvider> CURRENT = new ThreadLocal<>();
+
+    private TenantContext() {
+    }
+
+    /**
+     * @param tokenProvider of the tenant which performs the following calls
+     * @return the previous tenant which has to be restored afterwards, null if there was none
+     */
+    static TokenProvider enter(TokenProvider tokenProvider) {
+        TokenProvider previous = CURRENT.get();
+        CURRENT.set(tokenProvider);
+        return previous;
+    }
+
+    static void restore(TokenProvider previous) {
+        if(previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * @return the token provider of the current tenant
+     * @throws IllegalStateException if the current thread does not call on behalf of a tenant
+     */
+    static TokenProvider current() {
+        TokenProvider tokenProvider = CURRENT.get();
+        if(tokenProvider == null) {
+            throw new IllegalStateException("Shared api client called outside of a tenant context.");
+        }
+        return tokenProvider;
+    }
+}
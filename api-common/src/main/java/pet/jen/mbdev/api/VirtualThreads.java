@@ -0,0 +1,48 @@
+package pet.jen.mbdev.api;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to virtual threads which are available as of Java 21. This is the baseline implementation; the multi-release
+ * jar contains a Java 21 variant which is picked up by the JVM automatically if it supports virtual threads.
+ *
+ * Virtual threads suit the blocking calls of the feign clients: use `executor()` for the {@link AsyncOptions} or
+ * `threadFactory()` for the background refreshes of a token provider pool.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return whether the running JVM supports virtual threads
+     */
+    public static boolean isSupported() {
+        return false;
+    }
+
+    /**
+     * @param name prefix of the thread names
+     * @return executor which starts a new virtual thread per task
+     * @throws UnsupportedOperationException if virtual threads are not supported
+     */
+    public static ExecutorService executor(String name) {
+        throw unsupported();
+    }
+
+    /**
+     * @param name prefix of the thread names
+     * @return factory of virtual threads
+     * @throws UnsupportedOperationException if virtual threads are not supported
+     */
+    public static ThreadFactory threadFactory(String name) {
+        throw unsupported();
+    }
+
+    private static UnsupportedOperationException unsupported() {
+        return new UnsupportedOperationException("Virtual threads require Java 21 or newer.");
+    }
+}
@@ -0,0 +1,276 @@
+package pet.jen.mbdev.api.cache;
+
+import feign.Request;
+import feign.Response;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Successful response of a GET request together with its freshness and validators, immutable.
+ *
+ * Freshness is taken from `Cache-Control: max-age` or `Expires` and reduced by `Age`. Responses with `no-cache` are
+ * stored but revalidated on every use, responses with `no-store` and responses which are neither fresh nor carry a
+ * validator (`ETag` or `Last-Modified`) are not stored at all.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+final class CachedResponse {
+
+    // format of the disk tier, incremented on incompatible changes
+    private static final int VERSION = 1;
+
+    private final int status;
+    private final String reason;
+    private final Map<String, Collection<String>> headers;
+    private final byte[] body;
+
+    // time the response was generated by the origin, i.e. the reception reduced by its age
+    private final long storedAt;
+
+    // milliseconds the response is fresh after it was stored, 0 if it has to be revalidated on every use
+    private final long maxAge;
+
+    private final String etag;
+    private final String lastModified;
+
+    private CachedResponse(int status, String reason, Map<String, Collection<String>> headers, byte[] body,
+                           long storedAt, long maxAge, String etag, String lastModified) {
+        this.status = status;
+        this.reason = reason;
+        this.headers = headers;
+        this.body = body;
+        this.storedAt = storedAt;
+        this.maxAge = maxAge;
+        this.etag = etag;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * @return the cacheable representation of the response, null if it must not or need not be stored
+     */
+    static CachedResponse of(int status, String reason, Map<String, Collection<String>> headers, byte[] body,
+                             long currentTimeMillis) {
+        if(status != 200) {
+            return null;
+        }
+        String cacheControl = header(headers, "Cache-Control");
+        if(directive(cacheControl, "no-store") != null) {
+            return null;
+        }
+        long maxAge = maxAge(headers, cacheControl, currentTimeMillis);
+        String etag = header(headers, "ETag");
+        String lastModified = header(headers, "Last-Modified");
+        if(maxAge <= 0 && etag == null && lastModified == null) {
+            return null;
+        }
+        long storedAt = currentTimeMillis - TimeUnit.SECONDS.toMillis(Math.max(0, parseLong(header(headers, "Age"))));
+        return new CachedResponse(status, reason, copy(headers), body != null ? body : new byte[0], storedAt,
+                Math.max(0, maxAge), etag, lastModified);
+    }
+
+    boolean isFresh(long currentTimeMillis) {
+        return currentTimeMillis - storedAt < maxAge;
+    }
+
+    boolean hasValidator() {
+        return etag != null || lastModified != null;
+    }
+
+    /**
+     * @return copy of the request which asks the origin to answer with 304 (Not Modified) if the response is unchanged
+     */
+    Request conditional(Request request) {
+        Map<String, Collection<String>> conditionalHeaders = new LinkedHashMap<>(request.headers());
+        if(etag != null) {
+            conditionalHeaders.put("If-None-Match", Collections.singletonList(etag));
+        }
+        if(lastModified != null) {
+            conditionalHeaders.put("If-Modified-Since", Collections.singletonList(lastModified));
+        }
+        return Request.create(request.method(), request.url(), conditionalHeaders, request.body(), request.charset());
+    }
+
+    /**
+     * @param notModifiedHeaders headers of the 304 response which update the stored ones
+     * @return the response with renewed freshness
+     */
+    CachedResponse revalidate(Map<String, Collection<String>> notModifiedHeaders, long currentTimeMillis) {
+        Map<String, Collection<String>> updated = new LinkedHashMap<>(headers);
+        for(Map.Entry<String, Collection<String>> header : notModifiedHeaders.entrySet()) {
+            if(header.getKey() != null && !"Content-Length".equalsIgnoreCase(header.getKey())) {
+                remove(updated, header.getKey());
+                updated.put(header.getKey(), new ArrayList<>(header.getValue()));
+            }
+        }
+        CachedResponse revalidated = of(status, reason, updated, body, currentTimeMillis);
+        // the origin confirmed the response, keep it even if the update dropped all freshness information
+        return revalidated != null ? revalidated : new CachedResponse(status, reason, copy(updated), body,
+                currentTimeMillis, 0, header(updated, "ETag"), header(updated, "Last-Modified"));
+    }
+
+    Response toResponse(Request request) {
+        return Response.builder()
+                .status(status)
+                .reason(reason)
+                .headers(headers)
+                .body(body)
+                .request(request)
+                .build();
+    }
+
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(VERSION);
+        out.writeInt(status);
+        writeNullable(out, reason);
+        out.writeLong(storedAt);
+        out.writeLong(maxAge);
+        writeNullable(out, etag);
+        writeNullable(out, lastModified);
+        out.writeInt(headers.size());
+        for(Map.Entry<String, Collection<String>> header : headers.entrySet()) {
+            out.writeUTF(header.getKey());
+            out.writeInt(header.getValue().size());
+            for(String value : header.getValue()) {
+                out.writeUTF(value);
+            }
+        }
+        out.writeInt(body.length);
+        out.write(body);
+    }
+
+    /**
+     * @return the response or null if it was written in another format
+     */
+    static CachedResponse readFrom(DataInputStream in) throws IOException {
+        if(in.readInt() != VERSION) {
+            return null;
+        }
+        int status = in.readInt();
+        String reason = readNullable(in);
+        long storedAt = in.readLong();
+        long maxAge = in.readLong();
+        String etag = readNullable(in);
+        String lastModified = readNullable(in);
+        int headerCount = in.readInt();
+        Map<String, Collection<String>> headers = new LinkedHashMap<>();
+        for(int i = 0; i < headerCount; i++) {
+            String name = in.readUTF();
+            int valueCount = in.readInt();
+            List<String> values = new ArrayList<>(valueCount);
+            for(int j = 0; j < valueCount; j++) {
+                values.add(in.readUTF());
+            }
+            headers.put(name, Collections.unmodifiableList(values));
+        }
+        byte[] body = new byte[in.readInt()];
+        in.readFully(body);
+        return new CachedResponse(status, reason, Collections.unmodifiableMap(headers), body, storedAt, maxAge, etag,
+                lastModified);
+    }
+
+    private static long maxAge(Map<String, Collection<String>> headers, String cacheControl, long currentTimeMillis) {
+        if(directive(cacheControl, "no-cache") != null) {
+            return 0;
+        }
+        String maxAge = directive(cacheControl, "max-age");
+        if(maxAge != null) {
+            return TimeUnit.SECONDS.toMillis(parseLong(maxAge));
+        }
+        String expires = header(headers, "Expires");
+        if(expires != null) {
+            long expiresAt = parseDate(expires);
+            long date = parseDate(header(headers, "Date"));
+            return expiresAt - (date > 0 ? date : currentTimeMillis);
+        }
+        return 0;
+    }
+
+    /**
+     * @return value of the directive, an empty string if it has none, null if the directive is missing
+     */
+    private static String directive(String cacheControl, String name) {
+        if(cacheControl == null) {
+            return null;
+        }
+        for(String directive : cacheControl.split(",")) {
+            String[] parts = directive.trim().split("=", 2);
+            if(parts[0].trim().equalsIgnoreCase(name)) {
+                return parts.length > 1 ? parts[1].trim().replace("\"", "") : "";
+            }
+        }
+        return null;
+    }
+
+    private static String header(Map<String, Collection<String>> headers, String name) {
+        for(Map.Entry<String, Collection<String>> header : headers.entrySet()) {
+            if(name.equalsIgnoreCase(header.getKey()) && header.getValue() != null && !header.getValue().isEmpty()) {
+                StringBuilder value = new StringBuilder();
+                for(String part : header.getValue()) {
+                    value.append(value.length() > 0 ? ", " : "").append(part);
+                }
+                return value.toString().trim();
+            }
+        }
+        return null;
+    }
+
+    private static void remove(Map<String, Collection<String>> headers, String name) {
+        headers.keySet().removeIf(key -> key != null && key.equalsIgnoreCase(name));
+    }
+
+    private static Map<String, Collection<String>> copy(Map<String, Collection<String>> headers) {
+        Map<String, Collection<String>> copy = new LinkedHashMap<>();
+        for(Map.Entry<String, Collection<String>> header : headers.entrySet()) {
+            // the status line of HttpURLConnection is reported as header without a name
+            if(header.getKey() != null && header.getValue() != null) {
+                copy.put(header.getKey(), Collections.unmodifiableList(new ArrayList<>(header.getValue())));
+            }
+        }
+        return Collections.unmodifiableMap(copy);
+    }
+
+    private static long parseLong(String value) {
+        if(value == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static long parseDate(String value) {
+        if(value == null) {
+            return -1;
+        }
+        try {
+            return ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if(value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -0,0 +1,84 @@
+package pet.jen.mbdev.api.cache;
+
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import feign.Util;
+import pet.jen.mbdev.api.TokenProvider;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Supplier;
+
+/**
+ * Feign {@link Client} which answers GET requests from a {@link ResponseCache}. Fresh responses are returned without
+ * calling the delegate, stale responses with a validator are revalidated by a conditional request. Created by the
+ * {@link pet.jen.mbdev.api.MBDevApiFactory} in front of everything which is performed per request, i.e. the token
+ * resolution, retries and the rate limiter.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+public class CachingClient implements Client {
+
+    private final Client delegate;
+
+    private final ResponseCache cache;
+
+    private final Supplier<TokenProvider> tenant;
+
+    /**
+     * @param tenant resolves the token provider on whose behalf the current request is performed
+     */
+    public CachingClient(Client delegate, ResponseCache cache, Supplier<TokenProvider> tenant) {
+        this.delegate = delegate;
+        this.cache = cache;
+        this.tenant = tenant;
+    }
+
+    @Override
+    public Response execute(Request request, Request.Options options) throws IOException {
+        if(!"GET".equalsIgnoreCase(request.method())) {
+            return delegate.execute(request, options);
+        }
+        Object user = cache.user(tenant.get());
+        String url = request.url();
+        CachedResponse cached = cache.get(user, url);
+        if(cached != null && cached.isFresh(System.currentTimeMillis())) {
+            cache.hit();
+            return cached.toResponse(request);
+        }
+        boolean conditional = cached != null && cached.hasValidator();
+        Response response = delegate.execute(conditional ? cached.conditional(request) : request, options);
+        if(conditional && response.status() == 304) {
+            response.close();
+            CachedResponse revalidated = cached.revalidate(response.headers(), System.currentTimeMillis());
+            cache.put(user, url, revalidated);
+            cache.revalidated();
+            return revalidated.toResponse(request);
+        }
+        cache.missed();
+        if(response.status() != 200) {
+            return response;
+        }
+        byte[] body = read(response);
+        CachedResponse fetched = CachedResponse.of(response.status(), response.reason(), response.headers(), body,
+                System.currentTimeMillis());
+        if(fetched != null) {
+            cache.put(user, url, fetched);
+        } else if(cached != null) {
+            cache.remove(user, url);
+        }
+        return response.toBuilder().body(body).build();
+    }
+
+    private static byte[] read(Response response) throws IOException {
+        if(response.body() == null) {
+            return null;
+        }
+        try (InputStream in = response.body().asInputStream()) {
+            return Util.toByteArray(in);
+        } finally {
+            response.close();
+        }
+    }
+}
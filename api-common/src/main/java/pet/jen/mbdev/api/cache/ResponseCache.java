@@ -0,0 +1,322 @@
+package pet.jen.mbdev.api.cache;
+
+import lombok.Builder;
+import pet.jen.mbdev.api.TokenProvider;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * HTTP cache of the GET responses of clients created by the {@link pet.jen.mbdev.api.MBDevApiFactory}. Responses are
+ * kept per user in a least recently used map of at most `maxEntries` urls; at most `maxUsers` users are kept, again
+ * evicting the least recently used one. The responses of a user are guarded by a lock of their own, hence clients of
+ * different users don't contend.
+ *
+ * Users are identified by their {@link TokenProvider} instance unless a `userKey` function is set, which is required
+ * for the optional disk tier: with a `directory` every stored response is written to a file as well and loaded from
+ * there if it is missing in memory, e.g. after a restart. The files contain the users' data and should be protected
+ * accordingly; they are replaced atomically and not evicted.
+ *
+ * Caches may be shared by clients of different API types.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+public class ResponseCache {
+
+    private static final int DEFAULT_MAX_ENTRIES = 100;
+    private static final int DEFAULT_MAX_USERS = 1000;
+
+    private final int maxEntries;
+
+    private final int maxUsers;
+
+    private final Path directory;
+
+    private final Function<TokenProvider, String> userKey;
+
+    private final ConcurrentMap<Object, UserResponses> users = new ConcurrentHashMap<>();
+
+    // held while the least recently used users are evicted
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder revalidations = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param maxEntries responses kept in memory per user; defaults to 100
+     * @param maxUsers users kept in memory; defaults to 1000
+     * @param directory might be null; directory of the disk tier, created if it does not exist
+     * @param userKey might be null; stable identifier of the user of a token provider, required by the disk tier
+     * @throws IllegalArgumentException if a directory is set without a user key
+     */
+    @Builder
+    private ResponseCache(int maxEntries, int maxUsers, Path directory, Function<TokenProvider, String> userKey) {
+        if(directory != null && userKey == null) {
+            throw new IllegalArgumentException("The disk tier requires a user key to identify users across restarts.");
+        }
+        this.maxEntries = maxEntries > 0 ? maxEntries : DEFAULT_MAX_ENTRIES;
+        this.maxUsers = maxUsers > 0 ? maxUsers : DEFAULT_MAX_USERS;
+        this.directory = directory;
+        this.userKey = userKey;
+    }
+
+    /**
+     * @return amount of requests which were answered from the cache without a request
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return amount of requests which were answered from the cache after the origin confirmed the response
+     */
+    public long revalidations() {
+        return revalidations.sum();
+    }
+
+    /**
+     * @return amount of cacheable requests which were answered by the origin
+     */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * Removes all responses of all users from memory and disk.
+     */
+    public void clear() {
+        users.clear();
+        if(directory == null || !Files.isDirectory(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.response")) {
+            for(Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not clear cached responses in " + directory + ".", e);
+        }
+    }
+
+    Object user(TokenProvider tokenProvider) {
+        return userKey != null ? userKey.apply(tokenProvider) : tokenProvider;
+    }
+
+    CachedResponse get(Object user, String url) {
+        UserResponses responses = users.get(user);
+        CachedResponse response = responses != null ? responses.get(url) : null;
+        if(response != null) {
+            return response;
+        }
+        response = load(user, url);
+        if(response != null) {
+            remember(user, url, response);
+        }
+        return response;
+    }
+
+    void put(Object user, String url, CachedResponse response) {
+        remember(user, url, response);
+        store(user, url, response);
+    }
+
+    void remove(Object user, String url) {
+        UserResponses responses = users.get(user);
+        if(responses != null) {
+            responses.remove(url);
+        }
+        if(directory != null) {
+            try {
+                Files.deleteIfExists(file(user, url));
+            } catch (IOException e) {
+                // an outdated file is revalidated before it is used
+            }
+        }
+    }
+
+    void hit() {
+        hits.increment();
+    }
+
+    void revalidated() {
+        revalidations.increment();
+    }
+
+    void missed() {
+        misses.increment();
+    }
+
+    private void remember(Object user, String url, CachedResponse response) {
+        UserResponses responses = users.get(user);
+        if(responses == null) {
+            UserResponses created = new UserResponses(maxEntries);
+            responses = users.putIfAbsent(user, created);
+            if(responses == null) {
+                responses = created;
+                evictUsers(created);
+            }
+        }
+        responses.put(url, response);
+    }
+
+    /**
+     * Evicts the least recently used users until at most `maxUsers` are left. Only runs when a user was added, the
+     * scan is skipped if another thread is already evicting.
+     *
+     * @param added user which was just added and is never evicted by this call
+     */
+    private void evictUsers(UserResponses added) {
+        if(users.size() <= maxUsers || !evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            while(users.size() > maxUsers) {
+                Map.Entry<Object, UserResponses> eldest = null;
+                for(Map.Entry<Object, UserResponses> entry : users.entrySet()) {
+                    if(entry.getValue() != added && (eldest == null
+                            || entry.getValue().lastAccess - eldest.getValue().lastAccess < 0)) {
+                        eldest = entry;
+                    }
+                }
+                if(eldest == null) {
+                    return;
+                }
+                users.remove(eldest.getKey(), eldest.getValue());
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private CachedResponse load(Object user, String url) {
+        if(directory == null) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file(user, url))))) {
+            return CachedResponse.readFrom(in);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            // unreadable files are treated as missing and replaced by the next response
+            return null;
+        }
+    }
+
+    private void store(Object user, String url, CachedResponse response) {
+        if(directory == null) {
+            return;
+        }
+        Path temporaryPath = null;
+        try {
+            Files.createDirectories(directory);
+            Path file = file(user, url);
+            temporaryPath = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(temporaryPath)))) {
+                response.writeTo(out);
+            }
+            Files.move(temporaryPath, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // the disk tier is best effort, the response is still cached in memory
+            deleteQuietly(temporaryPath);
+        }
+    }
+
+    /**
+     * @return file of the response, named by a hash so that neither user nor url are exposed by the name
+     */
+    private Path file(Object user, String url) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest((user + "\n" + url).getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder();
+            for(byte b : hash) {
+                name.append(String.format("%02x", b));
+            }
+            return directory.resolve(name.append(".response").toString());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        if(path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // nothing left to do
+        }
+    }
+
+    /**
+     * Responses of a single user in access order, guarded by the user's lock.
+     */
+    private static final class UserResponses {
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private final LinkedHashMap<String, CachedResponse> responses;
+
+        // System.nanoTime() of the latest access, orders the users for the eviction
+        private volatile long lastAccess = System.nanoTime();
+
+        UserResponses(final int maxEntries) {
+            this.responses = new LinkedHashMap<String, CachedResponse>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+                    return size() > maxEntries;
+                }
+            };
+        }
+
+        CachedResponse get(String url) {
+            lastAccess = System.nanoTime();
+            lock.lock();
+            try {
+                return responses.get(url);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void put(String url, CachedResponse response) {
+            lastAccess = System.nanoTime();
+            lock.lock();
+            try {
+                responses.put(url, response);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void remove(String url) {
+            lock.lock();
+            try {
+                responses.remove(url);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
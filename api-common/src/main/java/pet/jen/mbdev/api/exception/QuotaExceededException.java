@@ -1,5 +1,7 @@
 package pet.jen.mbdev.api.exception;
 
+import lombok.Getter;
+
 /**
  * Thrown in case the HTTP API response status is 429 (Too Many Requests).
  * According to the API description this error will occur in case the "Quota limit is exceeded".
@@ -7,7 +9,19 @@ package pet.jen.mbdev.api.exception;
  * @author Jens Petersohn <me@jen.pet>
  */
 public class QuotaExceededException extends MBDevApiException {
+
+    /**
+     * Milliseconds to wait before the next request as requested by the `Retry-After` header, -1 if unknown.
+     */
+    @Getter
+    private final long retryAfter;
+
     public QuotaExceededException(String message, Exception cause) {
+        this(message, cause, -1);
+    }
+
+    public QuotaExceededException(String message, Exception cause, long retryAfter) {
         super(message, cause);
+        this.retryAfter = retryAfter;
     }
 }
@@ -0,0 +1,13 @@
+package pet.jen.mbdev.api.exception;
+
+/**
+ * Thrown by the client-side rate limiter if a request could not get a permit, either right away or within the maximum
+ * wait time of its policy. The request was not sent to the API.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+public class RateLimitExceededException extends QuotaExceededException {
+    public RateLimitExceededException(String message, long retryAfter) {
+        super(message, null, retryAfter);
+    }
+}
@@ -0,0 +1,136 @@
+package pet.jen.mbdev.api.ratelimit;
+
+import lombok.Getter;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Quota information of a response. Understands `Retry-After` (seconds or HTTP date) as well as the common
+ * `X-RateLimit-Limit`, `X-RateLimit-Remaining` and `X-RateLimit-Reset` headers and their unprefixed `RateLimit-*`
+ * variants. The reset is accepted as seconds until the reset or as epoch seconds.
+ *
+ * All values are -1 if the response does not contain them.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+@Getter
+public final class RateLimitHeaders {
+
+    static final RateLimitHeaders NONE = new RateLimitHeaders(-1, -1, -1, -1);
+
+    // reset values above are considered as epoch seconds rather than a delay
+    private static final long EPOCH_SECONDS_THRESHOLD = 1000000000L;
+
+    /**
+     * Milliseconds to wait before the next request.
+     */
+    private final long retryAfter;
+
+    /**
+     * Requests allowed within the current window.
+     */
+    private final long limit;
+
+    /**
+     * Requests left within the current window.
+     */
+    private final long remaining;
+
+    /**
+     * Milliseconds until the current window resets.
+     */
+    private final long reset;
+
+    private RateLimitHeaders(long retryAfter, long limit, long remaining, long reset) {
+        this.retryAfter = retryAfter;
+        this.limit = limit;
+        this.remaining = remaining;
+        this.reset = reset;
+    }
+
+    public static RateLimitHeaders of(Map<String, Collection<String>> headers) {
+        return of(headers, System.currentTimeMillis());
+    }
+
+    static RateLimitHeaders of(Map<String, Collection<String>> headers, long currentTimeMillis) {
+        if(headers == null || headers.isEmpty()) {
+            return NONE;
+        }
+        String retryAfter = null;
+        String limit = null;
+        String remaining = null;
+        String reset = null;
+        for(Map.Entry<String, Collection<String>> header : headers.entrySet()) {
+            if(header.getKey() == null || header.getValue() == null || header.getValue().isEmpty()) {
+                continue;
+            }
+            String name = header.getKey().toLowerCase();
+            if(name.startsWith("x-")) {
+                name = name.substring(2);
+            }
+            String value = header.getValue().iterator().next().trim();
+            switch (name) {
+                case "retry-after":
+                    retryAfter = value;
+                    break;
+                case "ratelimit-limit":
+                    limit = value;
+                    break;
+                case "ratelimit-remaining":
+                    remaining = value;
+                    break;
+                case "ratelimit-reset":
+                    reset = value;
+                    break;
+                default:
+                    break;
+            }
+        }
+        if(retryAfter == null && limit == null && remaining == null && reset == null) {
+            return NONE;
+        }
+        return new RateLimitHeaders(parseRetryAfter(retryAfter, currentTimeMillis), parseCount(limit),
+                parseCount(remaining), parseReset(reset, currentTimeMillis));
+    }
+
+    private static long parseRetryAfter(String value, long currentTimeMillis) {
+        if(value == null) {
+            return -1;
+        }
+        long seconds = parseCount(value);
+        if(seconds >= 0) {
+            return TimeUnit.SECONDS.toMillis(seconds);
+        }
+        try {
+            long date = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            return Math.max(0, date - currentTimeMillis);
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+
+    private static long parseReset(String value, long currentTimeMillis) {
+        long seconds = parseCount(value);
+        if(seconds < EPOCH_SECONDS_THRESHOLD) {
+            return seconds >= 0 ? TimeUnit.SECONDS.toMillis(seconds) : -1;
+        }
+        return Math.max(0, TimeUnit.SECONDS.toMillis(seconds) - currentTimeMillis);
+    }
+
+    private static long parseCount(String value) {
+        if(value == null) {
+            return -1;
+        }
+        try {
+            long count = Long.parseLong(value);
+            return count >= 0 ? count : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
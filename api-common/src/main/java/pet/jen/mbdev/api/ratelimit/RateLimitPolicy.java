@@ -0,0 +1,21 @@
+package pet.jen.mbdev.api.ratelimit;
+
+/**
+ * Behavior of a {@link RateLimiter} for requests which can't get a permit right away.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+public enum RateLimitPolicy {
+    /**
+     * Waits for the permit however long it takes.
+     */
+    QUEUE,
+    /**
+     * Rejects the request with a {@link pet.jen.mbdev.api.exception.RateLimitExceededException}.
+     */
+    FAIL_FAST,
+    /**
+     * Waits for the permit up to the maximum wait time of the limiter, rejects the request if it would take longer.
+     */
+    WAIT
+}
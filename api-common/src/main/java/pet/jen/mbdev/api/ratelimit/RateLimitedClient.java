@@ -0,0 +1,34 @@
+package pet.jen.mbdev.api.ratelimit;
+
+import feign.Client;
+import feign.Request;
+import feign.Response;
+
+import java.io.IOException;
+
+/**
+ * Feign {@link Client} which takes a permit of its {@link RateLimiter} before every request and feeds the quota
+ * information of every response back to it. Created by the {@link pet.jen.mbdev.api.MBDevApiFactory} for clients
+ * with a rate limiter.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+public class RateLimitedClient implements Client {
+
+    private final Client delegate;
+
+    private final RateLimiter limiter;
+
+    public RateLimitedClient(Client delegate, RateLimiter limiter) {
+        this.delegate = delegate;
+        this.limiter = limiter;
+    }
+
+    @Override
+    public Response execute(Request request, Request.Options options) throws IOException {
+        limiter.acquire();
+        Response response = delegate.execute(request, options);
+        limiter.onResponse(response.status(), RateLimitHeaders.of(response.headers()));
+        return response;
+    }
+}
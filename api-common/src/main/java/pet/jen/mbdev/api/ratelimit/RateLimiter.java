@@ -0,0 +1,280 @@
+package pet.jen.mbdev.api.ratelimit;
+
+import lombok.Builder;
+import lombok.Getter;
+import pet.jen.mbdev.api.exception.MBDevApiException;
+import pet.jen.mbdev.api.exception.RateLimitExceededException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lock-free token bucket which limits the requests of one OAuth client to one API type, see {@link RateLimiters}.
+ *
+ * The bucket is implemented as a generic cell rate algorithm: a single timestamp holds the theoretical arrival time of
+ * the next request and permits are reserved by advancing it with a CAS. Up to `burst` requests pass without delay,
+ * afterwards they are spaced according to the current rate.
+ *
+ * The rate adapts to the responses of the API:
+ * - a 429 response halves the rate, at most once per second, down to `minPermitsPerSecond`; its `Retry-After` pauses
+ *   all requests for the given time
+ * - rate limit headers set the rate to the remaining requests per remaining window and pause the requests until the
+ *   reset if there are none left
+ * - other responses raise the rate by 5% of `permitsPerSecond` per second until it is reached again
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+public class RateLimiter {
+
+    private static final double DEFAULT_PERMITS_PER_SECOND = 10;
+
+    private static final long ADJUSTMENT_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+    // share of the configured rate which is restored per adjustment interval
+    private static final double RECOVERY_STEP = 0.05;
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Getter
+    private final RateLimitPolicy policy;
+
+    private final int burst;
+
+    // bounds of the interval between two permits in nanoseconds, i.e. the inverted configured and minimum rate
+    private final long minInterval;
+    private final long maxInterval;
+
+    private final long maxWait;
+
+    // current interval between two permits in nanoseconds
+    private final AtomicLong interval;
+
+    // theoretical arrival time of the next request on the monotonic clock
+    private final AtomicLong arrival;
+
+    // no permits are handed out before this monotonic time
+    private final AtomicLong pausedUntil;
+
+    // monotonic time of the last rate adjustment
+    private final AtomicLong adjusted;
+
+    private final AtomicInteger queued = new AtomicInteger();
+
+    /**
+     * @param permitsPerSecond maximum rate; defaults to 10
+     * @param burst requests which may pass at once; defaults to one second of the maximum rate
+     * @param minPermitsPerSecond lower bound of the rate when adapting to 429 responses; defaults to a tenth of the
+     *                            maximum rate
+     * @param policy how to handle requests which can't get a permit right away; defaults to `QUEUE`
+     * @param maxWait maximum time in milliseconds to wait for a permit using the `WAIT` policy
+     */
+    @Builder
+    private RateLimiter(double permitsPerSecond, int burst, double minPermitsPerSecond, RateLimitPolicy policy,
+                        long maxWait) {
+        double maxRate = permitsPerSecond > 0 ? permitsPerSecond : DEFAULT_PERMITS_PER_SECOND;
+        double minRate = minPermitsPerSecond > 0 ? Math.min(minPermitsPerSecond, maxRate) : maxRate / 10;
+        this.policy = policy != null ? policy : RateLimitPolicy.QUEUE;
+        this.burst = burst > 0 ? burst : (int) Math.max(1, Math.ceil(maxRate));
+        this.minInterval = toInterval(maxRate);
+        this.maxInterval = toInterval(minRate);
+        this.maxWait = TimeUnit.MILLISECONDS.toNanos(Math.max(maxWait, 0));
+        long now = System.nanoTime();
+        this.interval = new AtomicLong(minInterval);
+        this.arrival = new AtomicLong(now);
+        this.pausedUntil = new AtomicLong(now);
+        this.adjusted = new AtomicLong(now);
+    }
+
+    /**
+     * Takes a permit according to the policy of the limiter.
+     *
+     * @throws RateLimitExceededException if the policy does not allow to wait long enough for the permit
+     */
+    public void acquire() {
+        long maxWait;
+        switch (policy) {
+            case FAIL_FAST:
+                maxWait = 0;
+                break;
+            case WAIT:
+                maxWait = this.maxWait;
+                break;
+            default:
+                maxWait = Long.MAX_VALUE;
+        }
+        long now = System.nanoTime();
+        long wait = reserve(now, maxWait);
+        if(wait < 0) {
+            throw new RateLimitExceededException("No permit available within " + TimeUnit.NANOSECONDS.toMillis(maxWait)
+                    + "ms, the client-side rate limit is exhausted.", TimeUnit.NANOSECONDS.toMillis(earliestPermit(now)));
+        }
+        if(wait > 0) {
+            await(now + wait);
+        }
+    }
+
+    /**
+     * Adapts the limiter to a response of the API.
+     *
+     * @param status of the response
+     * @param headers quota information of the response
+     */
+    public void onResponse(int status, RateLimitHeaders headers) {
+        onResponse(System.nanoTime(), status, headers);
+    }
+
+    /**
+     * @return permits which could be taken right away
+     */
+    public int availablePermits() {
+        return availablePermits(System.nanoTime());
+    }
+
+    /**
+     * @return amount of requests currently waiting for their permit
+     */
+    public int queueDepth() {
+        return queued.get();
+    }
+
+    /**
+     * @return the current rate
+     */
+    public double permitsPerSecond() {
+        return (double) NANOS_PER_SECOND / interval.get();
+    }
+
+    /**
+     * Reserves the next permit unless the caller would have to wait longer than allowed.
+     *
+     * @return nanoseconds until the reserved permit may be used, -1 if none was reserved
+     */
+    long reserve(long now, long maxWait) {
+        while(true) {
+            long interval = this.interval.get();
+            long tolerance = (burst - 1) * interval;
+            long current = arrival.get();
+            long start = later(current, now);
+            long earliest = later(start - tolerance, pausedUntil.get());
+            long wait = Math.max(0, earliest - now);
+            if(wait > maxWait) {
+                return -1;
+            }
+            if(arrival.compareAndSet(current, later(start, earliest) + interval)) {
+                return wait;
+            }
+        }
+    }
+
+    int availablePermits(long now) {
+        if(pausedUntil.get() - now > 0) {
+            return 0;
+        }
+        long interval = this.interval.get();
+        long start = later(arrival.get(), now);
+        long permits = (now + (burst - 1) * interval - start) / interval + 1;
+        return (int) Math.max(0, Math.min(burst, permits));
+    }
+
+    void onResponse(long now, int status, RateLimitHeaders headers) {
+        if(headers.getRetryAfter() >= 0) {
+            pause(now + TimeUnit.MILLISECONDS.toNanos(headers.getRetryAfter()));
+        }
+        if(headers.getRemaining() == 0 && headers.getReset() > 0) {
+            pause(now + TimeUnit.MILLISECONDS.toNanos(headers.getReset()));
+        }
+        if(status == 429) {
+            slowDown(now);
+        } else if(headers.getRemaining() > 0 && headers.getReset() > 0) {
+            adjust(now, headers.getRemaining() * (double) NANOS_PER_SECOND / TimeUnit.MILLISECONDS.toNanos(headers.getReset()));
+        } else if(status < 400) {
+            recover(now);
+        }
+    }
+
+    /**
+     * Halves the rate unless it was adjusted within the last second, e.g. because of another response of the same
+     * burst of rejected requests.
+     */
+    private void slowDown(long now) {
+        long last = adjusted.get();
+        if(now - last < ADJUSTMENT_INTERVAL || !adjusted.compareAndSet(last, now)) {
+            return;
+        }
+        long current;
+        do {
+            current = interval.get();
+        } while(!interval.compareAndSet(current, Math.min(maxInterval, current * 2)));
+    }
+
+    /**
+     * Raises the rate by a share of the configured rate, once per second at most.
+     */
+    private void recover(long now) {
+        long current = interval.get();
+        long last = adjusted.get();
+        if(current == minInterval || now - last < ADJUSTMENT_INTERVAL || !adjusted.compareAndSet(last, now)) {
+            return;
+        }
+        double maxRate = (double) NANOS_PER_SECOND / minInterval;
+        do {
+            current = interval.get();
+        } while(!interval.compareAndSet(current,
+                clamp(toInterval((double) NANOS_PER_SECOND / current + maxRate * RECOVERY_STEP))));
+    }
+
+    /**
+     * Sets the rate to the one announced by the API, within the bounds of the limiter.
+     */
+    private void adjust(long now, double permitsPerSecond) {
+        interval.set(clamp(toInterval(permitsPerSecond)));
+        adjusted.set(now);
+    }
+
+    private void pause(long until) {
+        long current;
+        do {
+            current = pausedUntil.get();
+            if(current - until >= 0) {
+                return;
+            }
+        } while(!pausedUntil.compareAndSet(current, until));
+    }
+
+    private long earliestPermit(long now) {
+        long interval = this.interval.get();
+        long earliest = later(later(arrival.get(), now) - (burst - 1) * interval, pausedUntil.get());
+        return Math.max(0, earliest - now);
+    }
+
+    private void await(long deadline) {
+        queued.incrementAndGet();
+        try {
+            long remaining;
+            while((remaining = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(this, remaining);
+                if(Thread.interrupted()) {
+                    Thread.currentThread().interrupt();
+                    throw new MBDevApiException("Interrupted while waiting for a rate limit permit.", null);
+                }
+            }
+        } finally {
+            queued.decrementAndGet();
+        }
+    }
+
+    private long clamp(long interval) {
+        return Math.max(minInterval, Math.min(maxInterval, interval));
+    }
+
+    private static long toInterval(double permitsPerSecond) {
+        return Math.max(1, (long) (NANOS_PER_SECOND / permitsPerSecond));
+    }
+
+    // the later of two monotonic timestamps, robust against numerical overflow
+    private static long later(long a, long b) {
+        return a - b >= 0 ? a : b;
+    }
+}
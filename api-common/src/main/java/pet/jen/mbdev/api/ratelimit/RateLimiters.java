@@ -0,0 +1,83 @@
+package pet.jen.mbdev.api.ratelimit;
+
+import lombok.Builder;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Registry of the {@link RateLimiter}s of an application, one per OAuth client id and API type since that is the
+ * scope of the API quotas. All limiters share the settings of the registry.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+public class RateLimiters {
+
+    private final ConcurrentMap<Key, RateLimiter> limiters = new ConcurrentHashMap<>();
+
+    private final double permitsPerSecond;
+    private final int burst;
+    private final double minPermitsPerSecond;
+    private final RateLimitPolicy policy;
+    private final long maxWait;
+
+    /**
+     * See {@link RateLimiter} for the parameters and their defaults.
+     */
+    @Builder
+    private RateLimiters(double permitsPerSecond, int burst, double minPermitsPerSecond, RateLimitPolicy policy,
+                         long maxWait) {
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = burst;
+        this.minPermitsPerSecond = minPermitsPerSecond;
+        this.policy = policy;
+        this.maxWait = maxWait;
+    }
+
+    /**
+     * @param clientId OAuth client id of the application
+     * @param apiType feign annotated interface
+     * @return the limiter of the client and api type
+     */
+    public RateLimiter get(String clientId, Class<?> apiType) {
+        Key key = new Key(clientId, apiType);
+        RateLimiter limiter = limiters.get(key);
+        if(limiter == null) {
+            RateLimiter created = RateLimiter.builder()
+                    .permitsPerSecond(permitsPerSecond)
+                    .burst(burst)
+                    .minPermitsPerSecond(minPermitsPerSecond)
+                    .policy(policy)
+                    .maxWait(maxWait).build();
+            limiter = limiters.putIfAbsent(key, created);
+            if(limiter == null) {
+                limiter = created;
+            }
+        }
+        return limiter;
+    }
+
+    private static class Key {
+        private final String clientId;
+        private final Class<?> apiType;
+
+        Key(String clientId, Class<?> apiType) {
+            this.clientId = clientId;
+            this.apiType = apiType;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return clientId.equals(other.clientId) && apiType == other.apiType;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * clientId.hashCode() + apiType.hashCode();
+        }
+    }
+}
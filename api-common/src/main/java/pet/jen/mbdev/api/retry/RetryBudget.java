@@ -0,0 +1,86 @@
+package pet.jen.mbdev.api.retry;
+
+import lombok.Builder;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the retries of all clients sharing the budget to a ratio of their requests so that retries can't amplify an
+ * outage: once the API fails persistently every request is retried at most `ratio` times on average.
+ *
+ * Every first attempt of a request deposits `ratio` retries, every retry withdraws one. The balance starts with and
+ * is bounded by `reserve` retries, allowing some retries after a quiet period and preventing that a long healthy
+ * period piles up unlimited retries.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+public class RetryBudget {
+
+    private static final double DEFAULT_RATIO = 0.1;
+    private static final int DEFAULT_RESERVE = 10;
+
+    // balance is kept in thousandths of a retry
+    private static final long SCALE = 1000;
+
+    private static final RetryBudget SHARED = builder().build();
+
+    private final long deposit;
+    private final long capacity;
+
+    private final AtomicLong balance;
+
+    /**
+     * @param ratio retries per request; defaults to 0.1, zero disables retries once the reserve is used
+     * @param reserve initial and maximum amount of retries; defaults to 10
+     */
+    @Builder
+    private RetryBudget(Double ratio, Integer reserve) {
+        this.deposit = Math.round((ratio != null && ratio >= 0 ? ratio : DEFAULT_RATIO) * SCALE);
+        this.capacity = (reserve != null && reserve >= 0 ? reserve : DEFAULT_RESERVE) * SCALE;
+        this.balance = new AtomicLong(capacity);
+    }
+
+    /**
+     * @return the budget which is shared by all retry policies without a dedicated one
+     */
+    public static RetryBudget shared() {
+        return SHARED;
+    }
+
+    /**
+     * Deposits the retries of a new request.
+     */
+    public void onRequest() {
+        if(deposit == 0) {
+            return;
+        }
+        long current;
+        do {
+            current = balance.get();
+            if(current >= capacity) {
+                return;
+            }
+        } while(!balance.compareAndSet(current, Math.min(capacity, current + deposit)));
+    }
+
+    /**
+     * @return whether a retry may be performed; withdraws it from the budget if so
+     */
+    public boolean tryRetry() {
+        long current;
+        do {
+            current = balance.get();
+            if(current < SCALE) {
+                return false;
+            }
+        } while(!balance.compareAndSet(current, current - SCALE));
+        return true;
+    }
+
+    /**
+     * @return amount of retries currently available
+     */
+    public int available() {
+        return (int) (balance.get() / SCALE);
+    }
+}
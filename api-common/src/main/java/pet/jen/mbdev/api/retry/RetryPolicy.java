@@ -0,0 +1,114 @@
+package pet.jen.mbdev.api.retry;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides which failed requests are retried and how long to wait before. Requests are only retried if their method
+ * is idempotent, GET by default, and if the {@link RetryBudget} allows it. They fail with an I/O error, e.g. a reset
+ * connection or a timeout, or with a retryable status, by default 502, 503 and 504.
+ *
+ * The delay before a retry is drawn uniformly between zero and the exponential backoff (full jitter), which
+ * spreads the retries of many clients that failed at the same time.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+public class RetryPolicy {
+
+    private static final int DEFAULT_MAX_ATTEMPTS = 3;
+    private static final long DEFAULT_BASE_DELAY = 100;
+    private static final long DEFAULT_MAX_DELAY = 2000;
+    private static final Set<String> DEFAULT_METHODS = Collections.singleton("GET");
+    private static final Set<Integer> DEFAULT_STATUSES = Collections.unmodifiableSet(
+            new HashSet<>(Arrays.asList(502, 503, 504)));
+
+    private static final RetryPolicy DEFAULT = builder().build();
+
+    private static final RetryPolicy NONE = builder().maxAttempts(1).build();
+
+    /**
+     * Attempts of a request including the first one.
+     */
+    @Getter
+    private final int maxAttempts;
+
+    private final long baseDelay;
+
+    @Getter
+    private final long maxDelay;
+
+    private final Set<String> methods;
+
+    private final Set<Integer> statuses;
+
+    @Getter
+    private final RetryBudget budget;
+
+    /**
+     * @param maxAttempts attempts of a request including the first one; defaults to 3
+     * @param baseDelay milliseconds of the backoff before the first retry, doubled for every further one; defaults to 100
+     * @param maxDelay upper bound of the backoff in milliseconds; defaults to 2000
+     * @param methods idempotent HTTP methods which may be retried; defaults to GET
+     * @param statuses response statuses which are retried; defaults to 502, 503 and 504
+     * @param budget limits the retries of all clients sharing it; defaults to {@link RetryBudget#shared()}
+     */
+    @Builder
+    private RetryPolicy(int maxAttempts, long baseDelay, long maxDelay, Set<String> methods, Set<Integer> statuses,
+                        RetryBudget budget) {
+        this.maxAttempts = maxAttempts > 0 ? maxAttempts : DEFAULT_MAX_ATTEMPTS;
+        this.baseDelay = baseDelay > 0 ? baseDelay : DEFAULT_BASE_DELAY;
+        this.maxDelay = maxDelay > 0 ? maxDelay : DEFAULT_MAX_DELAY;
+        this.methods = methods != null ? upperCase(methods) : DEFAULT_METHODS;
+        this.statuses = statuses != null ? Collections.unmodifiableSet(new HashSet<>(statuses)) : DEFAULT_STATUSES;
+        this.budget = budget != null ? budget : RetryBudget.shared();
+    }
+
+    /**
+     * @return the policy used by clients without a dedicated one
+     */
+    public static RetryPolicy defaultPolicy() {
+        return DEFAULT;
+    }
+
+    /**
+     * @return a policy which never retries
+     */
+    public static RetryPolicy none() {
+        return NONE;
+    }
+
+    public boolean isRetryable(String method) {
+        return method != null && methods.contains(method.toUpperCase(Locale.ROOT));
+    }
+
+    public boolean isRetryable(int status) {
+        return statuses.contains(status);
+    }
+
+    /**
+     * @param retry number of the retry, starting at one
+     * @return random delay in milliseconds between zero and the exponential backoff of the retry
+     */
+    public long backoff(int retry) {
+        long backoff = maxDelay;
+        if(retry <= 32) {
+            backoff = Math.min(maxDelay, baseDelay << Math.max(0, retry - 1));
+        }
+        return ThreadLocalRandom.current().nextLong(backoff + 1);
+    }
+
+    private static Set<String> upperCase(Set<String> methods) {
+        Set<String> upperCase = new HashSet<>();
+        for(String method : methods) {
+            upperCase.add(method.toUpperCase(Locale.ROOT));
+        }
+        return Collections.unmodifiableSet(upperCase);
+    }
+}
@@ -0,0 +1,75 @@
+package pet.jen.mbdev.api.retry;
+
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import pet.jen.mbdev.api.ratelimit.RateLimitHeaders;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Feign {@link Client} which retries failed requests according to its {@link RetryPolicy}. Created by the
+ * {@link pet.jen.mbdev.api.MBDevApiFactory} for every client, feign's own retryer is disabled.
+ *
+ * A `Retry-After` header of a retryable response is honored if it does not exceed the maximum delay of the policy,
+ * otherwise the response is returned without further retries.
+ * Retries of clients with a rate limiter take a permit each since the limiter is applied per attempt.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+public class RetryingClient implements Client {
+
+    private final Client delegate;
+
+    private final RetryPolicy policy;
+
+    public RetryingClient(Client delegate, RetryPolicy policy) {
+        this.delegate = delegate;
+        this.policy = policy;
+    }
+
+    @Override
+    public Response execute(Request request, Request.Options options) throws IOException {
+        boolean idempotent = policy.isRetryable(request.method());
+        RetryBudget budget = policy.getBudget();
+        budget.onRequest();
+        for(int attempt = 1; ; attempt++) {
+            boolean retry = idempotent && attempt < policy.getMaxAttempts();
+            long delay;
+            try {
+                Response response = delegate.execute(request, options);
+                if(!retry || !policy.isRetryable(response.status())) {
+                    return response;
+                }
+                long retryAfter = RateLimitHeaders.of(response.headers()).getRetryAfter();
+                // an earlier retry than the API asks for would fail again, the caller gets the response instead
+                if(retryAfter > policy.getMaxDelay() || !budget.tryRetry()) {
+                    return response;
+                }
+                delay = delay(attempt, retryAfter);
+                response.close();
+            } catch (IOException e) {
+                if(!retry || !budget.tryRetry()) {
+                    throw e;
+                }
+                delay = delay(attempt, -1);
+            }
+            sleep(delay);
+        }
+    }
+
+    private long delay(int attempt, long retryAfter) {
+        return Math.max(retryAfter, policy.backoff(attempt));
+    }
+
+    private static void sleep(long delay) throws InterruptedIOException {
+        try {
+            TimeUnit.MILLISECONDS.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a retry.");
+        }
+    }
+}
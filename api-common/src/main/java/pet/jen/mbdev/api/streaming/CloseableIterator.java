@@ -0,0 +1,33 @@
+package pet.jen.mbdev.api.streaming;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Iterator over the elements of a response which are decoded while they are read from the connection, see
+ * {@link StreamingDecoder}. The response is closed once the last element was read; iterators which are abandoned
+ * before have to be closed to release the connection.
+ *
+ * @param <T> type of the elements
+ * @author Jens Petersohn <me@jen.pet>
+ */
+public interface CloseableIterator<T> extends Iterator<T>, Closeable {
+
+    /**
+     * Closes the response, further elements are not read.
+     */
+    @Override
+    void close();
+
+    /**
+     * @return sequential stream over the remaining elements which closes the iterator when it is closed
+     */
+    default Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED), false)
+                .onClose(this::close);
+    }
+}
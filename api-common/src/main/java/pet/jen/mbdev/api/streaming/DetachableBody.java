@@ -0,0 +1,59 @@
+package pet.jen.mbdev.api.streaming;
+
+import feign.Response;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+
+/**
+ * Response body whose content can be taken over by a decoder so that closing the response after decoding, which
+ * feign always does, leaves it open.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+class DetachableBody implements Response.Body {
+
+    private final Response.Body delegate;
+
+    private volatile boolean detached;
+
+    DetachableBody(Response.Body delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * @return content of the body, the caller is responsible for closing it
+     */
+    InputStream detach() throws IOException {
+        detached = true;
+        return delegate.asInputStream();
+    }
+
+    @Override
+    public Integer length() {
+        return delegate.length();
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return delegate.isRepeatable();
+    }
+
+    @Override
+    public InputStream asInputStream() throws IOException {
+        return delegate.asInputStream();
+    }
+
+    @Override
+    public Reader asReader() throws IOException {
+        return delegate.asReader();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if(!detached) {
+            delegate.close();
+        }
+    }
+}
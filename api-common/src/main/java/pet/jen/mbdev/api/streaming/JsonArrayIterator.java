@@ -0,0 +1,86 @@
+package pet.jen.mbdev.api.streaming;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import pet.jen.mbdev.api.exception.MBDevApiException;
+
+import java.io.IOException;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the elements of a JSON array one at a time from a parser which is positioned at the start of the array.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+class JsonArrayIterator<T> implements CloseableIterator<T> {
+
+    private final ObjectMapper mapper;
+
+    private final JsonParser parser;
+
+    private final JavaType elementType;
+
+    // element which is returned next, read ahead to answer `hasNext()`
+    private T next;
+
+    private boolean closed;
+
+    JsonArrayIterator(ObjectMapper mapper, JsonParser parser, JavaType elementType) {
+        this.mapper = mapper;
+        this.parser = parser;
+        this.elementType = elementType;
+        advance();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    @Override
+    public T next() {
+        if(next == null) {
+            throw new NoSuchElementException();
+        }
+        T current = next;
+        advance();
+        return current;
+    }
+
+    @Override
+    public void close() {
+        if(closed) {
+            return;
+        }
+        closed = true;
+        next = null;
+        try {
+            parser.close();
+        } catch (IOException e) {
+            // the connection is discarded in any case
+        }
+    }
+
+    private void advance() {
+        next = null;
+        if(closed) {
+            return;
+        }
+        try {
+            JsonToken token = parser.nextToken();
+            while(token == JsonToken.VALUE_NULL) {
+                token = parser.nextToken();
+            }
+            if(token == null || token == JsonToken.END_ARRAY) {
+                close();
+                return;
+            }
+            next = mapper.readValue(parser, elementType);
+        } catch (IOException e) {
+            close();
+            throw new MBDevApiException("Could not read the next element of the response.", e);
+        }
+    }
+}
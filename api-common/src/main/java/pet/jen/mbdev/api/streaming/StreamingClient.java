@@ -0,0 +1,31 @@
+package pet.jen.mbdev.api.streaming;
+
+import feign.Client;
+import feign.Request;
+import feign.Response;
+
+import java.io.IOException;
+
+/**
+ * Feign {@link Client} which allows the {@link StreamingDecoder} to take over the bodies of its responses. Created by
+ * the {@link pet.jen.mbdev.api.MBDevApiFactory} for every client.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+public class StreamingClient implements Client {
+
+    private final Client delegate;
+
+    public StreamingClient(Client delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Response execute(Request request, Request.Options options) throws IOException {
+        Response response = delegate.execute(request, options);
+        if(response.body() == null) {
+            return response;
+        }
+        return response.toBuilder().body(new DetachableBody(response.body())).build();
+    }
+}
@@ -0,0 +1,129 @@
+package pet.jen.mbdev.api.streaming;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import feign.Response;
+import feign.Util;
+import feign.codec.DecodeException;
+import feign.codec.Decoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Decoder which reads JSON arrays incrementally for methods returning a {@link CloseableIterator}, an {@link Iterator}
+ * or a {@link Stream}. The elements are parsed one after another from the connection while the caller consumes them,
+ * so neither the whole response nor the whole list has to be held in memory and the first element is available as
+ * soon as it arrived. Methods returning an {@link InputStream} receive the undecoded body to parse it on their own,
+ * the caller has to close it. All other return types are decoded by the delegate.
+ *
+ * The response stays open until the last element was read or the iterator respectively stream was closed. Bodies
+ * which can't be taken over, i.e. which are not provided by a {@link StreamingClient}, are buffered first.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+public class StreamingDecoder implements Decoder {
+
+    private final ObjectMapper mapper;
+
+    private final Decoder delegate;
+
+    public StreamingDecoder(Decoder delegate) {
+        this(new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false), delegate);
+    }
+
+    /**
+     * @param mapper reads the elements, should match the configuration of the delegate
+     * @param delegate decodes all other return types
+     */
+    public StreamingDecoder(ObjectMapper mapper, Decoder delegate) {
+        this.mapper = mapper;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Object decode(Response response, Type type) throws IOException {
+        Class<?> rawType = rawType(type);
+        if(rawType == InputStream.class) {
+            return response.body() != null ? body(response) : new ByteArrayInputStream(new byte[0]);
+        }
+        if(rawType != CloseableIterator.class && rawType != Iterator.class && rawType != Stream.class) {
+            return delegate.decode(response, type);
+        }
+        CloseableIterator<Object> iterator = iterator(response, elementType(type));
+        return rawType == Stream.class ? iterator.stream() : iterator;
+    }
+
+    private CloseableIterator<Object> iterator(Response response, JavaType elementType) throws IOException {
+        if(response.body() == null) {
+            return empty();
+        }
+        JsonParser parser = mapper.getFactory().createParser(body(response));
+        try {
+            JsonToken token = parser.nextToken();
+            if(token == null) {
+                parser.close();
+                return empty();
+            }
+            if(token != JsonToken.START_ARRAY) {
+                throw new DecodeException("Expected a JSON array but response starts with " + token + ".");
+            }
+            return new JsonArrayIterator<>(mapper, parser, elementType);
+        } catch (IOException | RuntimeException e) {
+            parser.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Takes over the body of the response, which is buffered if it can't be detached.
+     */
+    private static InputStream body(Response response) throws IOException {
+        if(response.body() instanceof DetachableBody) {
+            return ((DetachableBody) response.body()).detach();
+        }
+        return new ByteArrayInputStream(Util.toByteArray(response.body().asInputStream()));
+    }
+
+    private JavaType elementType(Type type) {
+        if(!(type instanceof ParameterizedType)) {
+            throw new DecodeException("Element type of " + type + " is unknown.");
+        }
+        return mapper.getTypeFactory().constructType(((ParameterizedType) type).getActualTypeArguments()[0]);
+    }
+
+    private static Class<?> rawType(Type type) {
+        if(type instanceof ParameterizedType) {
+            type = ((ParameterizedType) type).getRawType();
+        }
+        return type instanceof Class ? (Class<?>) type : null;
+    }
+
+    private static CloseableIterator<Object> empty() {
+        final Iterator<Object> empty = Collections.emptyIterator();
+        return new CloseableIterator<Object>() {
+            @Override
+            public boolean hasNext() {
+                return empty.hasNext();
+            }
+
+            @Override
+            public Object next() {
+                return empty.next();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
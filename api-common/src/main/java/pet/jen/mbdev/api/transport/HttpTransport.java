@@ -0,0 +1,17 @@
+package pet.jen.mbdev.api.transport;
+
+import feign.Client;
+
+/**
+ * HTTP transport of the feign clients created by the {@link pet.jen.mbdev.api.MBDevApiFactory}. A transport owns the
+ * connection handling, i.e. pooling, protocol negotiation, compression and TLS sessions. It is configured once and
+ * should be shared by all clients of an application so that they reuse the same connections.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+public interface HttpTransport {
+    /**
+     * @return the feign client which performs the requests; the same instance is returned with every call
+     */
+    Client client();
+}
@@ -0,0 +1,130 @@
+package pet.jen.mbdev.api.transport;
+
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import lombok.Builder;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.IOException;
+import java.io.PushbackInputStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * {@link HttpTransport} based on the JDK's `HttpURLConnection`. Connections are kept alive and pooled by the JDK per
+ * host, see the `http.keepAlive` and `http.maxConnections` system properties. TLS sessions are cached by the
+ * {@link SSLSocketFactory}, hence it should be shared as well.
+ *
+ * The transport does not support HTTP/2, use the {@link OkHttpTransport} if multiplexing is required.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+public class JdkHttpTransport implements HttpTransport {
+
+    private static final JdkHttpTransport DEFAULT = JdkHttpTransport.builder().build();
+
+    private final Client client;
+
+    /**
+     * @param sslSocketFactory might be null; defaults to the JDK's default factory
+     * @param hostnameVerifier might be null; defaults to the JDK's default verifier
+     * @param gzip requests compressed responses; enabled by default
+     */
+    @Builder
+    private JdkHttpTransport(SSLSocketFactory sslSocketFactory, HostnameVerifier hostnameVerifier, Boolean gzip) {
+        Client client = new Client.Default(sslSocketFactory, hostnameVerifier);
+        this.client = gzip == null || gzip ? new GzipClient(client) : client;
+    }
+
+    /**
+     * @return the transport which is used if none is specified
+     */
+    public static JdkHttpTransport defaultTransport() {
+        return DEFAULT;
+    }
+
+    @Override
+    public Client client() {
+        return client;
+    }
+
+    /**
+     * Requests compressed responses for all requests which don't specify an `Accept-Encoding` and decompresses them
+     * transparently.
+     */
+    private static class GzipClient implements Client {
+
+        private static final String ACCEPT_ENCODING = "Accept-Encoding";
+        private static final String CONTENT_ENCODING = "Content-Encoding";
+
+        private final Client delegate;
+
+        GzipClient(Client delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Response execute(Request request, Request.Options options) throws IOException {
+            if(request.headers().containsKey(ACCEPT_ENCODING)) {
+                return delegate.execute(request, options);
+            }
+            Map<String, Collection<String>> headers = new LinkedHashMap<>(request.headers());
+            headers.put(ACCEPT_ENCODING, Collections.singletonList("gzip"));
+            Response response = delegate.execute(
+                    Request.create(request.method(), request.url(), headers, request.body(), request.charset()),
+                    options);
+            return decompress(response);
+        }
+
+        /**
+         * Replaces the body of a gzip encoded response by its decompressed content. Responses without content, e.g. of
+         * `HEAD` requests or with status `204` and `304`, are only stripped of the encoding headers since there is no
+         * gzip stream which could be read.
+         */
+        private static Response decompress(Response response) throws IOException {
+            if(response.body() == null) {
+                return response;
+            }
+            Map<String, Collection<String>> headers = new LinkedHashMap<>();
+            boolean compressed = false;
+            for(Map.Entry<String, Collection<String>> header : response.headers().entrySet()) {
+                // the length of the compressed body doesn't apply anymore either
+                if(CONTENT_ENCODING.equalsIgnoreCase(header.getKey()) && header.getValue().contains("gzip")) {
+                    compressed = true;
+                } else if(!"Content-Length".equalsIgnoreCase(header.getKey())) {
+                    headers.put(header.getKey(), header.getValue());
+                }
+            }
+            if(!compressed) {
+                return response;
+            }
+            if(!hasContent(response)) {
+                response.body().close();
+                return response.toBuilder().headers(headers).body(new byte[0]).build();
+            }
+            // the length is unknown for chunked responses, an empty one is only detected by reading it
+            PushbackInputStream body = new PushbackInputStream(response.body().asInputStream(), 1);
+            int first = body.read();
+            if(first == -1) {
+                body.close();
+                return response.toBuilder().headers(headers).body(new byte[0]).build();
+            }
+            body.unread(first);
+            return response.toBuilder()
+                    .headers(headers)
+                    .body(new GZIPInputStream(body), null)
+                    .build();
+        }
+
+        private static boolean hasContent(Response response) {
+            Integer length = response.body().length();
+            return response.status() != 204 && response.status() != 304 && (length == null || length > 0)
+                    && !"HEAD".equalsIgnoreCase(response.request().method());
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package pet.jen.mbdev.api.transport;
+
+import feign.Client;
+import lombok.Builder;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link HttpTransport} based on a single shared {@link OkHttpClient}. All clients which use the transport share its
+ * connection pool, its dispatcher and its TLS session cache. HTTP/2 is negotiated via ALPN where the platform supports
+ * it, in which case all requests to a host are multiplexed on a single connection. Responses are requested and
+ * decompressed with gzip transparently.
+ *
+ * Clients with specific settings, e.g. ones which don't follow redirects, should be derived from `okHttpClient()`
+ * using `newBuilder()` so that they keep sharing the connections.
+ *
+ * Requires `com.squareup.okhttp3:okhttp` and `io.github.openfeign:feign-okhttp` on the classpath.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+public class OkHttpTransport implements HttpTransport {
+
+    private static final int DEFAULT_MAX_IDLE_CONNECTIONS = 20;
+    private static final long DEFAULT_KEEP_ALIVE = TimeUnit.MINUTES.toMillis(5);
+    private static final int DEFAULT_MAX_REQUESTS_PER_HOST = 64;
+
+    private final OkHttpClient okHttpClient;
+
+    private final Client client;
+
+    /**
+     * @param base might be null; client whose settings (e.g. interceptors, TLS) are used as a starting point
+     * @param maxIdleConnections idle connections kept in the pool; defaults to 20
+     * @param keepAlive milliseconds an idle connection is kept; defaults to 5 minutes
+     * @param maxRequestsPerHost concurrent requests per host of asynchronous calls; defaults to 64
+     * @param http2 negotiates HTTP/2 if available; enabled by default
+     */
+    @Builder
+    private OkHttpTransport(OkHttpClient base, int maxIdleConnections, long keepAlive, int maxRequestsPerHost,
+                            Boolean http2) {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost > 0 ? maxRequestsPerHost : DEFAULT_MAX_REQUESTS_PER_HOST);
+        dispatcher.setMaxRequests(Math.max(dispatcher.getMaxRequests(), dispatcher.getMaxRequestsPerHost()));
+        OkHttpClient.Builder builder = (base != null ? base.newBuilder() : new OkHttpClient.Builder())
+                .connectionPool(new ConnectionPool(
+                        maxIdleConnections > 0 ? maxIdleConnections : DEFAULT_MAX_IDLE_CONNECTIONS,
+                        keepAlive > 0 ? keepAlive : DEFAULT_KEEP_ALIVE,
+                        TimeUnit.MILLISECONDS))
+                .dispatcher(dispatcher);
+        if(http2 == null || http2) {
+            builder.protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1));
+        } else {
+            builder.protocols(Collections.singletonList(Protocol.HTTP_1_1));
+        }
+        this.okHttpClient = builder.build();
+        this.client = new feign.okhttp.OkHttpClient(okHttpClient);
+    }
+
+    /**
+     * @return the shared client, derive customized clients from it via `newBuilder()`
+     */
+    public OkHttpClient okHttpClient() {
+        return okHttpClient;
+    }
+
+    @Override
+    public Client client() {
+        return client;
+    }
+
+    /**
+     * Closes all idle connections and stops the dispatcher's threads. The transport can't be used afterwards.
+     */
+    public void shutdown() {
+        okHttpClient.dispatcher().executorService().shutdown();
+        okHttpClient.connectionPool().evictAll();
+    }
+}
@@ -0,0 +1,28 @@
+package pet.jen.mbdev.api;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Java 21 variant of the virtual thread access, see the baseline implementation for details.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    public static boolean isSupported() {
+        return true;
+    }
+
+    public static ExecutorService executor(String name) {
+        return Executors.newThreadPerTaskExecutor(threadFactory(name));
+    }
+
+    public static ThreadFactory threadFactory(String name) {
+        return Thread.ofVirtual().name(name + "-", 1).factory();
+    }
+}
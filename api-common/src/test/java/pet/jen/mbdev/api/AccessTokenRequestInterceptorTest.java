@@ -44,6 +44,17 @@ public class AccessTokenRequestInterceptorTest {
         assertThat(iterator.next()).isEqualTo("Bearer access-token");
     }
 
+    @Test
+    public void testApply_whenTokenProviderIsGenerational_shouldRecordTheUsedToken() {
+        GenerationalTokenProvider generationalTokenProvider = Mockito.mock(GenerationalTokenProvider.class);
+        AccessToken accessToken = new AccessToken("access-token", 7);
+        Mockito.when(generationalTokenProvider.getCurrentToken()).thenReturn(accessToken);
+        AccessTokenTracker tracker = new AccessTokenTracker();
+        new AccessTokenRequestInterceptor(generationalTokenProvider, tracker).apply(requestTemplate);
+        assertThat(requestTemplate.headers().get("Authorization")).containsExactly("Bearer access-token");
+        assertThat(tracker.last()).isEqualTo(accessToken);
+    }
+
     @Test(expected = UnauthorizedException.class)
     public void testApply_whenTokenProviderThrowsException_shouldWrapIntoUnauthorizedException() {
         Mockito.when(tokenProvider.getAccessToken()).thenThrow(new RuntimeException());
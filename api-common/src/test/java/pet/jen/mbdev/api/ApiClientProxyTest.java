@@ -6,7 +6,9 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
 import pet.jen.mbdev.api.exception.MBDevApiException;
 import pet.jen.mbdev.api.exception.UnauthorizedException;
 
@@ -38,9 +40,30 @@ public class ApiClientProxyTest {
     }
 
     @Test
-    public void testInstantiate_shouldExtractTargetsMethods() {
+    public void testInstantiate_shouldShareDispatchTableOfTheTargetClass() {
         ApiClientProxy proxy = new ApiClientProxy(testClient, tokenProvider);
-        assertThat(proxy.targetMethods.containsKey("testMethod")).isTrue();
+        ApiClientProxy other = new ApiClientProxy(testClient, Mockito.mock(TokenProvider.class));
+        assertThat(proxy.dispatchTable).isSameAs(other.dispatchTable);
+    }
+
+    @Test
+    public void testInvoke_whenMethodIsOverloaded_shouldInvokeTheMatchingOverload() {
+        Mockito.when(testClient.testMethod()).thenReturn("none");
+        Mockito.when(testClient.testMethod("a")).thenReturn("string");
+        Mockito.when(testClient.testMethod(1)).thenReturn("int");
+        Mockito.when(testClient.testMethod("a", 1)).thenReturn("string-int");
+        assertThat(proxiedTestClient.testMethod()).isEqualTo("none");
+        assertThat(proxiedTestClient.testMethod("a")).isEqualTo("string");
+        assertThat(proxiedTestClient.testMethod(1)).isEqualTo("int");
+        assertThat(proxiedTestClient.testMethod("a", 1)).isEqualTo("string-int");
+    }
+
+    @Test
+    public void testInvoke_whenMethodUsesPrimitives_shouldConvertArgumentsAndResult() {
+        Mockito.when(testClient.sum(2, 3)).thenReturn(5L);
+        assertThat(proxiedTestClient.sum(2, 3)).isEqualTo(5L);
+        proxiedTestClient.noResult();
+        Mockito.verify(testClient, Mockito.times(1)).noResult();
     }
 
     @Test
@@ -60,6 +83,38 @@ public class ApiClientProxyTest {
         Mockito.verify(testClient, Mockito.times(2)).testMethod();
     }
 
+    @Test
+    public void testInvoke_whenRejectedTokenIsKnown_shouldRefreshItsGeneration() {
+        final AccessTokenTracker tracker = new AccessTokenTracker();
+        GenerationalTokenProvider generationalTokenProvider = Mockito.mock(GenerationalTokenProvider.class);
+        TestClient client = createProxy(tracker, generationalTokenProvider);
+        Mockito.when(testClient.testMethod())
+                .thenAnswer(new Answer<String>() {
+                    @Override
+                    public String answer(InvocationOnMock invocation) {
+                        // what the request interceptor does for generational token providers
+                        tracker.record(new AccessToken("access-token", 3));
+                        throw new UnauthorizedException(null, null);
+                    }
+                })
+                .thenReturn("Test");
+        assertThat(client.testMethod()).isEqualTo("Test");
+        Mockito.verify(generationalTokenProvider, Mockito.times(1)).refreshTokens(3L);
+        Mockito.verify(generationalTokenProvider, Mockito.never()).refreshTokens();
+        assertThat(tracker.last()).isNull();
+    }
+
+    @Test
+    public void testInvoke_whenRejectedTokenIsUnknown_shouldForceRefresh() {
+        GenerationalTokenProvider generationalTokenProvider = Mockito.mock(GenerationalTokenProvider.class);
+        TestClient client = createProxy(new AccessTokenTracker(), generationalTokenProvider);
+        Mockito.when(testClient.testMethod())
+                .thenThrow(new UnauthorizedException(null, null))
+                .thenReturn("Test");
+        client.testMethod();
+        Mockito.verify(generationalTokenProvider, Mockito.times(1)).refreshTokens();
+    }
+
     @Test(expected = MBDevApiException.class)
     public void testInvoke_whenTargetThrowsMBDevApiException_shouldForward() throws Exception {
         Mockito.when(testClient.testMethod()).thenThrow(new MBDevApiException(null, null));
@@ -92,7 +147,25 @@ public class ApiClientProxyTest {
         proxiedTestClient.testMethod();
     }
 
+    private TestClient createProxy(AccessTokenTracker tracker, TokenProvider tokenProvider) {
+        return (TestClient) Proxy.newProxyInstance(
+                ApiClientProxyTest.class.getClassLoader(),
+                new Class[] {TestClient.class},
+                new ApiClientProxy(testClient, tokenProvider, tracker)
+        );
+    }
+
     private interface TestClient {
         String testMethod();
+
+        String testMethod(String value);
+
+        String testMethod(int value);
+
+        String testMethod(String value, int number);
+
+        long sum(int a, long b);
+
+        void noResult();
     }
 }
\ No newline at end of file
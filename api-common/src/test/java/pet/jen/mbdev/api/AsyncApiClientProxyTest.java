@@ -0,0 +1,195 @@
+package pet.jen.mbdev.api;
+
+import feign.RetryableException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+import pet.jen.mbdev.api.exception.MBDevApiException;
+import pet.jen.mbdev.api.exception.UnauthorizedException;
+
+import java.lang.reflect.Proxy;
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.assertj.core.api.Java6Assertions.fail;
+
+@RunWith(MockitoJUnitRunner.class)
+public class AsyncApiClientProxyTest {
+
+    @Mock
+    private TestClient testClient;
+
+    @Mock
+    private TokenProvider tokenProvider;
+
+    private ExecutorService executor;
+
+    private AsyncTestClient asyncTestClient;
+
+    @Before
+    public void setup() {
+        executor = Executors.newFixedThreadPool(4);
+        asyncTestClient = createProxy(tokenProvider, AsyncOptions.builder().executor(executor).build());
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testInvoke_shouldCompleteWithResultWithinTenantContext() throws Exception {
+        Mockito.when(testClient.testMethod("a")).thenAnswer(invocation -> {
+            assertThat(TenantContext.current()).isSameAs(tokenProvider);
+            return "result";
+        });
+        assertThat(asyncTestClient.testMethod("a").get(5, TimeUnit.SECONDS)).isEqualTo("result");
+    }
+
+    @Test
+    public void testInvoke_whenTargetThrowsUnauthorizedException_shouldRefreshAndRetry() throws Exception {
+        Mockito.when(testClient.testMethod())
+                .thenThrow(new UnauthorizedException(null, null))
+                .thenReturn("Test");
+        assertThat(asyncTestClient.testMethod().get(5, TimeUnit.SECONDS)).isEqualTo("Test");
+        Mockito.verify(tokenProvider, Mockito.times(1)).refreshTokens();
+        Mockito.verify(testClient, Mockito.times(2)).testMethod();
+    }
+
+    @Test
+    public void testInvoke_whenCallsAreRejectedDuringRefresh_shouldJoinTheRefresh() throws Exception {
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch bothRejected = new CountDownLatch(2);
+        Mockito.when(testClient.testMethod()).thenAnswer(invocation -> {
+            if(calls.incrementAndGet() <= 2) {
+                bothRejected.countDown();
+                throw new UnauthorizedException(null, null);
+            }
+            return "Test";
+        });
+        final CountDownLatch refreshed = new CountDownLatch(1);
+        Mockito.when(tokenProvider.refreshTokens()).thenAnswer(invocation -> {
+            refreshed.await(5, TimeUnit.SECONDS);
+            return "access-token";
+        });
+        CompletableFuture<String> first = asyncTestClient.testMethod();
+        CompletableFuture<String> second = asyncTestClient.testMethod();
+        assertThat(bothRejected.await(5, TimeUnit.SECONDS)).isTrue();
+        refreshed.countDown();
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("Test");
+        assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo("Test");
+        Mockito.verify(tokenProvider, Mockito.times(1)).refreshTokens();
+    }
+
+    @Test
+    public void testInvoke_whenRejectedTokenIsKnown_shouldRefreshItsGeneration() throws Exception {
+        final AccessTokenTracker tracker = new AccessTokenTracker();
+        GenerationalTokenProvider generationalTokenProvider = Mockito.mock(GenerationalTokenProvider.class);
+        AsyncTestClient client = (AsyncTestClient) Proxy.newProxyInstance(
+                AsyncApiClientProxyTest.class.getClassLoader(),
+                new Class[] {AsyncTestClient.class},
+                new AsyncApiClientProxy(AsyncTestClient.class, TestClient.class, testClient, generationalTokenProvider,
+                        tracker, AsyncOptions.builder().executor(executor).build()));
+        Mockito.when(testClient.testMethod())
+                .thenAnswer(invocation -> {
+                    tracker.record(new AccessToken("access-token", 3));
+                    throw new UnauthorizedException(null, null);
+                })
+                .thenReturn("Test");
+        assertThat(client.testMethod().get(5, TimeUnit.SECONDS)).isEqualTo("Test");
+        Mockito.verify(generationalTokenProvider, Mockito.times(1)).refreshTokens(3L);
+        Mockito.verify(generationalTokenProvider, Mockito.never()).refreshTokens();
+    }
+
+    @Test
+    public void testInvoke_whenTargetConstantlyThrowsUnauthorizedException_shouldOnlyRefreshTokensOnceThenFail() throws Exception {
+        Mockito.when(testClient.testMethod()).thenThrow(new UnauthorizedException(null, null));
+        assertThat(failure(asyncTestClient.testMethod())).isInstanceOf(UnauthorizedException.class);
+        Mockito.verify(tokenProvider, Mockito.times(1)).refreshTokens();
+        Mockito.verify(testClient, Mockito.times(2)).testMethod();
+    }
+
+    @Test
+    public void testInvoke_whenRetryableExceptionOccurs_shouldWrap() throws Exception {
+        Mockito.when(testClient.testMethod()).thenThrow(new RetryableException("", new Date()));
+        assertThat(failure(asyncTestClient.testMethod())).isInstanceOf(MBDevApiException.class);
+    }
+
+    @Test
+    public void testInvoke_whenCancelled_shouldInterruptRequest() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        Mockito.when(testClient.testMethod()).thenAnswer(invocation -> {
+            started.countDown();
+            try {
+                Thread.sleep(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return "Test";
+        });
+        CompletableFuture<String> call = asyncTestClient.testMethod();
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        call.cancel(true);
+        assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    public void testInvoke_whenTimeoutElapses_shouldFailWithTimeoutException() throws Exception {
+        AsyncTestClient client = createProxy(tokenProvider, AsyncOptions.builder().executor(executor).timeout(50).build());
+        Mockito.when(testClient.testMethod()).thenAnswer(invocation -> {
+            Thread.sleep(TimeUnit.SECONDS.toMillis(10));
+            return "Test";
+        });
+        assertThat(failure(client.testMethod())).isInstanceOf(TimeoutException.class);
+    }
+
+    @Test
+    public void testInvoke_whenExecutorRejects_shouldFail() throws Exception {
+        executor.shutdown();
+        assertThat(failure(asyncTestClient.testMethod())).isInstanceOf(RejectedExecutionException.class);
+    }
+
+    private AsyncTestClient createProxy(TokenProvider tokenProvider, AsyncOptions options) {
+        return (AsyncTestClient) Proxy.newProxyInstance(
+                AsyncApiClientProxyTest.class.getClassLoader(),
+                new Class[] {AsyncTestClient.class},
+                new AsyncApiClientProxy(AsyncTestClient.class, TestClient.class, testClient, tokenProvider, null,
+                        options));
+    }
+
+    private static Throwable failure(CompletableFuture<?> future) throws Exception {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            return e.getCause();
+        }
+        fail("Call should have failed.");
+        return null;
+    }
+
+    private interface TestClient {
+        String testMethod();
+
+        String testMethod(String value);
+    }
+
+    private interface AsyncTestClient {
+        CompletableFuture<String> testMethod();
+
+        CompletableFuture<String> testMethod(String value);
+    }
+}
@@ -10,7 +10,9 @@ import pet.jen.mbdev.api.exception.QuotaExceededException;
 import pet.jen.mbdev.api.exception.UnauthorizedException;
 
 import java.nio.charset.Charset;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Map;
 
 import static org.assertj.core.api.Java6Assertions.assertThat;
 
@@ -43,6 +45,15 @@ public class MBDevApiErrorDecoderTest {
         assertThat(quotaExceededException.getCause()).isInstanceOf(FeignException.class);
     }
 
+    @Test
+    public void testDecode_whenResponseStatusIs429WithRetryAfter_shouldExposeRetryAfter() throws Exception {
+        Map<String, Collection<String>> headers = Collections.<String, Collection<String>>singletonMap(
+                "Retry-After", Collections.singletonList("30"));
+        Response response = Response.builder().status(429).headers(headers).build();
+        QuotaExceededException exception = (QuotaExceededException) apiErrorDecoder.decode("api#vehicles", response);
+        assertThat(exception.getRetryAfter()).isEqualTo(30000);
+    }
+
     @Test
     public void testDecode_shouldWrapFeignExceptionWithGenericMBDevApiException() throws Exception {
         Request request = Request.create("method", "url", Collections.EMPTY_MAP, null, Charset.defaultCharset());
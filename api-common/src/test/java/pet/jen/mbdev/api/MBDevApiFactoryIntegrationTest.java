@@ -13,7 +13,16 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.assertj.core.api.Java6Assertions.assertThat;
 
 @RunWith(MockitoJUnitRunner.class)
 public class MBDevApiFactoryIntegrationTest {
@@ -61,6 +70,103 @@ public class MBDevApiFactoryIntegrationTest {
         client.test();
     }
 
+    @Test
+    public void testCreateForTenant_shouldAuthorizeEachCallWithTheTenantsToken() {
+        TokenProvider otherTokenProvider = Mockito.mock(TokenProvider.class);
+        Mockito.when(tokenProvider.getAccessToken()).thenReturn("access-token-a");
+        Mockito.when(otherTokenProvider.getAccessToken()).thenReturn("access-token-b");
+        mockRule.stubFor(get(urlEqualTo("/test"))
+                .willReturn(aResponse().withStatus(401)));
+        mockRule.stubFor(get(urlEqualTo("/test"))
+                .withHeader("Authorization", equalTo("Bearer access-token-a"))
+                .willReturn(aResponse().withStatus(200)));
+        mockRule.stubFor(get(urlEqualTo("/test"))
+                .withHeader("Authorization", equalTo("Bearer access-token-b"))
+                .willReturn(aResponse().withStatus(200)));
+
+        MBDevApiFactory.createForTenant(TestClient.class, MOCK_URL, "/", tokenProvider).test();
+        MBDevApiFactory.createForTenant(TestClient.class, MOCK_URL, "/", otherTokenProvider).test();
+        Mockito.verify(tokenProvider, Mockito.never()).refreshTokens();
+        Mockito.verify(otherTokenProvider, Mockito.never()).refreshTokens();
+    }
+
+    @Test
+    public void testCreateForTenant_whenTokenIsRejected_shouldRefreshTheTenantsTokens() {
+        Mockito.when(tokenProvider.getAccessToken()).thenReturn("access-token").thenReturn("access-token2");
+        mockRule.stubFor(get(urlEqualTo("/test"))
+                .withHeader("Authorization", equalTo("Bearer access-token"))
+                .willReturn(aResponse().withStatus(401)));
+        mockRule.stubFor(get(urlEqualTo("/test"))
+                .withHeader("Authorization", equalTo("Bearer access-token2"))
+                .willReturn(aResponse().withStatus(200)));
+
+        MBDevApiFactory.createForTenant(TestClient.class, MOCK_URL, "/", tokenProvider).test();
+        Mockito.verify(tokenProvider, Mockito.times(1)).refreshTokens();
+    }
+
+    @Test
+    public void testCreate_whenRequestsAreRejectedConcurrently_shouldRefreshGenerationalTokensOnce() throws Exception {
+        CountingTokenProvider countingTokenProvider = new CountingTokenProvider();
+        final TestClient generationalClient = MBDevApiFactory.create(TestClient.class, MOCK_URL, "/", countingTokenProvider);
+        mockRule.stubFor(get(urlEqualTo("/test"))
+                .withHeader("Authorization", equalTo("Bearer token-0"))
+                .willReturn(aResponse().withStatus(401).withFixedDelay(100)));
+        mockRule.stubFor(get(urlEqualTo("/test"))
+                .withHeader("Authorization", equalTo("Bearer token-1"))
+                .willReturn(aResponse().withStatus(200)));
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for(int i = 0; i < 8; i++) {
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        generationalClient.test();
+                    }
+                }));
+            }
+            for(Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(countingTokenProvider.refreshes.get()).isEqualTo(1);
+    }
+
+    /**
+     * Hands out `token-<generation>` and counts the refreshes which actually happened.
+     */
+    private static class CountingTokenProvider implements GenerationalTokenProvider {
+        private final AtomicInteger refreshes = new AtomicInteger();
+        private volatile AccessToken current = new AccessToken("token-0", 0);
+
+        @Override
+        public String getAccessToken() {
+            return current.getValue();
+        }
+
+        @Override
+        public String refreshTokens() {
+            return refreshTokens(current.getGeneration()).getValue();
+        }
+
+        @Override
+        public AccessToken getCurrentToken() {
+            return current;
+        }
+
+        @Override
+        public synchronized AccessToken refreshTokens(long generation) {
+            if(current.getGeneration() == generation) {
+                refreshes.incrementAndGet();
+                current = new AccessToken("token-" + (generation + 1), generation + 1);
+            }
+            return current;
+        }
+    }
+
     private interface TestClient {
         @RequestLine("GET /test")
         void test();
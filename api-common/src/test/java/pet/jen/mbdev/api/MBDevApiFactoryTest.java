@@ -1,6 +1,13 @@
 package pet.jen.mbdev.api;
 
+import feign.Param;
+import feign.RequestLine;
 import org.junit.Test;
+import pet.jen.mbdev.api.transport.HttpTransport;
+import pet.jen.mbdev.api.transport.JdkHttpTransport;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CompletableFuture;
 
 import static org.assertj.core.api.Java6Assertions.assertThat;
 
@@ -11,5 +18,76 @@ public class MBDevApiFactoryTest {
         assertThat(MBDevApiFactory.create(TestClient.class, "/", null)).isInstanceOf(TestClient.class);
     }
 
+    @Test
+    public void testCreateForTenant_shouldShareFeignClientPerApiTypeAndUrl() {
+        TestClient tenantA = MBDevApiFactory.createForTenant(TestClient.class, "http://localhost", "/", null);
+        TestClient tenantB = MBDevApiFactory.createForTenant(TestClient.class, "http://localhost", "/", null);
+        TestClient otherHost = MBDevApiFactory.createForTenant(TestClient.class, "http://127.0.0.1", "/", null);
+        assertThat(tenantA).isNotSameAs(tenantB);
+        assertThat(target(tenantA)).isSameAs(target(tenantB));
+        assertThat(target(tenantA)).isNotSameAs(target(otherHost));
+        System.gc();
+        TestClient tenantC = MBDevApiFactory.createForTenant(TestClient.class, "http://localhost", "/", null);
+        assertThat(target(tenantC)).isSameAs(target(tenantA));
+    }
+
+    @Test
+    public void testCreateForTenant_whenOptionsAreEqual_shouldShareFeignClient() {
+        HttpTransport transport = JdkHttpTransport.builder().build();
+        TestClient tenantA = MBDevApiFactory.createForTenant(TestClient.class, "http://localhost", "/", null,
+                ApiOptions.builder().transport(transport).build());
+        TestClient tenantB = MBDevApiFactory.createForTenant(TestClient.class, "http://localhost", "/", null,
+                ApiOptions.builder().transport(transport).build());
+        TestClient otherTransport = MBDevApiFactory.createForTenant(TestClient.class, "http://localhost", "/", null,
+                ApiOptions.builder().transport(JdkHttpTransport.builder().build()).build());
+        assertThat(target(tenantA)).isSameAs(target(tenantB));
+        assertThat(target(tenantA)).isNotSameAs(target(otherTransport));
+    }
+
+    @Test
+    public void testCreateForTenant_whenTenantClientsAreNotUsedAnymore_shouldReleaseFeignClients() throws Exception {
+        int before = MBDevApiFactory.sharedClients(TestClient.class);
+        for(int i = 0; i < 100; i++) {
+            MBDevApiFactory.createForTenant(TestClient.class, "http://localhost:" + (8000 + i), "/", null);
+        }
+        for(int i = 0; i < 100 && MBDevApiFactory.sharedClients(TestClient.class) > before; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertThat(MBDevApiFactory.sharedClients(TestClient.class)).isLessThanOrEqualTo(before);
+    }
+
+    @Test
+    public void testCreateAsync_shouldCreateAsyncClientSharingTheFeignClient() {
+        AsyncTestClient client = MBDevApiFactory.createAsync(AsyncTestClient.class, TestApi.class, "http://localhost",
+                "/", null, AsyncOptions.defaults());
+        assertThat(client).isInstanceOf(AsyncTestClient.class);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCreateAsync_whenMethodHasNoCounterpart_shouldThrowIllegalArgumentException() {
+        MBDevApiFactory.createAsync(AsyncTestClient.class, TestClient.class, "http://localhost", "/", null,
+                AsyncOptions.defaults());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCreateAsync_whenMethodDoesNotReturnFuture_shouldThrowIllegalArgumentException() {
+        MBDevApiFactory.createAsync(TestApi.class, TestApi.class, "http://localhost", "/", null,
+                AsyncOptions.defaults());
+    }
+
+    private static Object target(Object client) {
+        return ((ApiClientProxy) Proxy.getInvocationHandler(client)).target;
+    }
+
     private interface TestClient {}
+
+    private interface TestApi {
+        @RequestLine("GET /values/{id}")
+        String value(@Param("id") String id);
+    }
+
+    private interface AsyncTestClient {
+        CompletableFuture<String> value(String id);
+    }
 }
\ No newline at end of file
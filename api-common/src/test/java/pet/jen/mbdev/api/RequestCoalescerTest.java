@@ -0,0 +1,226 @@
+package pet.jen.mbdev.api;
+
+import feign.RequestLine;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import pet.jen.mbdev.api.exception.MBDevApiException;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.assertj.core.api.Java6Assertions.fail;
+
+public class RequestCoalescerTest {
+
+    private static final int CALLERS = 4;
+
+    private final TokenProvider tokenProvider = Mockito.mock(TokenProvider.class);
+
+    private BlockingTarget target;
+
+    private ExecutorService executor;
+
+    @Before
+    public void setup() {
+        target = new BlockingTarget();
+        executor = Executors.newFixedThreadPool(CALLERS + 1);
+    }
+
+    @After
+    public void tearDown() {
+        target.release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testExecute_whenIdenticalCallsAreInFlight_shouldShareOneRequest() throws Exception {
+        RequestCoalescer coalescer = RequestCoalescer.of(TestClient.class);
+        long coalesced = coalescer.coalesced();
+        TestClient client = createProxy(tokenProvider);
+        List<Future<String>> results = callConcurrently(() -> client.vehicle("a"));
+        target.release.countDown();
+        for(Future<String> result : results) {
+            assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("vehicle-a");
+        }
+        assertThat(target.requests.get()).isEqualTo(1);
+        assertThat(coalescer.coalesced() - coalesced).isEqualTo(CALLERS - 1);
+        assertThat(coalescer.inFlight()).isEqualTo(0);
+    }
+
+    @Test
+    public void testExecute_whenSharedRequestFails_shouldThrowToAllCallers() throws Exception {
+        target.failure = new MBDevApiException("failed", null);
+        TestClient client = createProxy(tokenProvider);
+        List<Future<String>> results = callConcurrently(() -> client.vehicle("a"));
+        target.release.countDown();
+        for(Future<String> result : results) {
+            try {
+                result.get(5, TimeUnit.SECONDS);
+                fail("All callers should receive the failure.");
+            } catch (ExecutionException e) {
+                assertThat(e.getCause()).isSameAs(target.failure);
+            }
+        }
+        assertThat(target.requests.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testExecute_whenArgumentsOrTenantsDiffer_shouldNotShareRequests() throws Exception {
+        TestClient client = createProxy(tokenProvider);
+        TestClient otherTenant = createProxy(Mockito.mock(TokenProvider.class));
+        Future<String> first = executor.submit(() -> client.vehicle("a"));
+        Future<String> second = executor.submit(() -> client.vehicle("b"));
+        Future<String> third = executor.submit(() -> otherTenant.vehicle("a"));
+        awaitRequests(3);
+        target.release.countDown();
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("vehicle-a");
+        assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo("vehicle-b");
+        assertThat(third.get(5, TimeUnit.SECONDS)).isEqualTo("vehicle-a");
+    }
+
+    @Test
+    public void testExecute_whenClientDoesNotCoalesce_shouldPerformEveryCall() throws Exception {
+        RequestCoalescer coalescer = RequestCoalescer.of(TestClient.class);
+        long calls = coalescer.calls();
+        TestClient client = (TestClient) Proxy.newProxyInstance(
+                RequestCoalescerTest.class.getClassLoader(),
+                new Class[] {TestClient.class},
+                new ApiClientProxy(target, tokenProvider));
+        Future<String> first = executor.submit(() -> client.vehicle("a"));
+        Future<String> second = executor.submit(() -> client.vehicle("a"));
+        awaitRequests(2);
+        target.release.countDown();
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("vehicle-a");
+        assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo("vehicle-a");
+        assertThat(target.requests.get()).isEqualTo(2);
+        assertThat(coalescer.calls()).isEqualTo(calls);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCoalescing_whenClientIsNotCreatedByFactory_shouldThrowIllegalArgumentException() {
+        MBDevApiFactory.coalescing(target);
+    }
+
+    @Test
+    public void testExecute_whenMethodIsNotAnnotated_shouldPerformEveryCall() throws Exception {
+        target.release.countDown();
+        TestClient client = createProxy(tokenProvider);
+        client.uncoalesced("a");
+        client.uncoalesced("a");
+        assertThat(target.requests.get()).isEqualTo(2);
+        assertThat(RequestCoalescer.of(TestClient.class).isCoalesced(
+                TestClient.class.getMethod("uncoalesced", String.class))).isFalse();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIsCoalesced_whenMethodIsNotIdempotent_shouldThrowIllegalArgumentException() throws Exception {
+        RequestCoalescer.of(TestClient.class).isCoalesced(TestClient.class.getMethod("update"));
+    }
+
+    @Test
+    public void testExecuteAsync_whenIdenticalCallsAreInFlight_shouldShareOneRequest() throws Exception {
+        AsyncTestClient client = MBDevApiFactory.coalescing((AsyncTestClient) Proxy.newProxyInstance(
+                RequestCoalescerTest.class.getClassLoader(),
+                new Class[] {AsyncTestClient.class},
+                new AsyncApiClientProxy(AsyncTestClient.class, TestClient.class, target, tokenProvider, null,
+                        AsyncOptions.builder().executor(executor).build())));
+        CompletableFuture<String> first = client.vehicle("a");
+        CompletableFuture<String> second = client.vehicle("a");
+        awaitRequests(1);
+        // cancelling a caller's future leaves the shared request alone
+        first.cancel(true);
+        target.release.countDown();
+        assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo("vehicle-a");
+        assertThat(target.requests.get()).isEqualTo(1);
+    }
+
+    private List<Future<String>> callConcurrently(Callable<String> call) throws Exception {
+        RequestCoalescer coalescer = RequestCoalescer.of(TestClient.class);
+        long coalesced = coalescer.coalesced();
+        List<Future<String>> results = new ArrayList<>();
+        results.add(executor.submit(call));
+        awaitRequests(1);
+        for(int i = 1; i < CALLERS; i++) {
+            results.add(executor.submit(call));
+        }
+        // all callers joined the flight before it is released, merely counted calls might not have joined it yet
+        long deadline = System.currentTimeMillis() + 5000;
+        while(coalescer.coalesced() - coalesced < CALLERS - 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        return results;
+    }
+
+    private void awaitRequests(int requests) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while(target.requests.get() < requests && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+
+    private TestClient createProxy(TokenProvider tokenProvider) {
+        return MBDevApiFactory.coalescing((TestClient) Proxy.newProxyInstance(
+                RequestCoalescerTest.class.getClassLoader(),
+                new Class[] {TestClient.class},
+                new ApiClientProxy(target, tokenProvider)));
+    }
+
+    private static class BlockingTarget implements TestClient {
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final AtomicInteger requests = new AtomicInteger();
+        private volatile RuntimeException failure;
+
+        @Override
+        public String vehicle(String id) {
+            requests.incrementAndGet();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            if(failure != null) {
+                throw failure;
+            }
+            return "vehicle-" + id;
+        }
+
+        @Override
+        public String uncoalesced(String id) {
+            return vehicle(id);
+        }
+
+        @Override
+        public void update() {
+        }
+    }
+
+    interface TestClient {
+        @Coalesce
+        @RequestLine("GET /vehicles/{id}")
+        String vehicle(String id);
+
+        @RequestLine("GET /vehicles/{id}")
+        String uncoalesced(String id);
+
+        @Coalesce
+        @RequestLine("POST /vehicles")
+        void update();
+    }
+
+    interface AsyncTestClient {
+        CompletableFuture<String> vehicle(String id);
+    }
+}
@@ -0,0 +1,31 @@
+package pet.jen.mbdev.api;
+
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+/**
+ * Verifies the Java 21 layer of the multi-release jar, only run by the `java21` profile.
+ */
+public class VirtualThreadsIT {
+
+    @Test
+    public void testExecutor_whenRunningOnJava21_shouldRunTasksOnVirtualThreads() throws Exception {
+        assertThat(VirtualThreads.isSupported()).isTrue();
+        ExecutorService executor = VirtualThreads.executor("mbdev-test");
+        try {
+            Future<String> name = executor.submit(() -> {
+                // compiled for the baseline, hence reflective
+                assertThat(Thread.class.getMethod("isVirtual").invoke(Thread.currentThread())).isEqualTo(true);
+                return Thread.currentThread().getName();
+            });
+            assertThat(name.get(5, TimeUnit.SECONDS)).startsWith("mbdev-test-");
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
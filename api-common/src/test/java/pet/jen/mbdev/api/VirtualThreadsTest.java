@@ -0,0 +1,19 @@
+package pet.jen.mbdev.api;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class VirtualThreadsTest {
+
+    @Test
+    public void testIsSupported_whenLoadedFromBaseline_shouldNotSupportVirtualThreads() {
+        // class directories are never multi-release, the Java 21 layer is covered by VirtualThreadsIT
+        assertThat(VirtualThreads.isSupported()).isFalse();
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testExecutor_whenNotSupported_shouldThrowUnsupportedOperationException() {
+        VirtualThreads.executor("mbdev-test");
+    }
+}
@@ -0,0 +1,116 @@
+package pet.jen.mbdev.api.cache;
+
+import feign.Request;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class CachedResponseTest {
+
+    private static final long NOW = 1700000000000L;
+
+    @Test
+    public void testOf_withMaxAge_shouldBeFreshUntilExpiry() {
+        CachedResponse response = of(headers("Cache-Control", "private, max-age=60"));
+        assertThat(response.isFresh(NOW + 59999)).isTrue();
+        assertThat(response.isFresh(NOW + 60000)).isFalse();
+    }
+
+    @Test
+    public void testOf_withAge_shouldReduceFreshness() {
+        CachedResponse response = of(headers("Cache-Control", "max-age=60", "Age", "50"));
+        assertThat(response.isFresh(NOW + 9999)).isTrue();
+        assertThat(response.isFresh(NOW + 10000)).isFalse();
+    }
+
+    @Test
+    public void testOf_withExpires_shouldUseItRelativeToDate() {
+        CachedResponse response = of(headers("Date", "Tue, 14 Nov 2023 22:13:20 GMT",
+                "Expires", "Tue, 14 Nov 2023 22:13:50 GMT"));
+        assertThat(response.isFresh(NOW + 29999)).isTrue();
+        assertThat(response.isFresh(NOW + 30000)).isFalse();
+    }
+
+    @Test
+    public void testOf_withNoCacheAndETag_shouldAlwaysRevalidate() {
+        CachedResponse response = of(headers("Cache-Control", "no-cache, max-age=60", "ETag", "\"v1\""));
+        assertThat(response.isFresh(NOW)).isFalse();
+        assertThat(response.hasValidator()).isTrue();
+    }
+
+    @Test
+    public void testOf_whenResponseMustNotOrNeedNotBeStored_shouldReturnNull() {
+        assertThat(of(headers("Cache-Control", "no-store, max-age=60"))).isNull();
+        assertThat(of(headers("Content-Type", "application/json"))).isNull();
+        assertThat(CachedResponse.of(404, null, headers("Cache-Control", "max-age=60"), null, NOW)).isNull();
+    }
+
+    @Test
+    public void testRevalidate_shouldRenewFreshnessAndKeepBody() {
+        CachedResponse response = of(headers("Cache-Control", "max-age=10", "ETag", "\"v1\""));
+        CachedResponse revalidated = response.revalidate(headers("Cache-Control", "max-age=30"), NOW + 20000);
+        assertThat(revalidated.isFresh(NOW + 49999)).isTrue();
+        assertThat(revalidated.isFresh(NOW + 50000)).isFalse();
+        assertThat(body(revalidated)).isEqualTo("body");
+    }
+
+    @Test
+    public void testRevalidate_whenUpdateIsNotCacheable_shouldKeepUpdatedHeadersAndValidators() {
+        CachedResponse response = of(headers("Cache-Control", "max-age=10", "ETag", "\"v1\""));
+        CachedResponse revalidated = response.revalidate(headers("Cache-Control", "no-store", "ETag", "\"v2\""),
+                NOW + 20000);
+        assertThat(revalidated.isFresh(NOW + 20000)).isFalse();
+        assertThat(revalidated.toResponse(null).headers().get("ETag")).containsExactly("\"v2\"");
+        Request conditional = revalidated.conditional(
+                Request.create("GET", "http://localhost/test", new HashMap<>(), null, null));
+        assertThat(conditional.headers().get("If-None-Match")).containsExactly("\"v2\"");
+        assertThat(body(revalidated)).isEqualTo("body");
+    }
+
+    @Test
+    public void testWriteTo_shouldBeReadableAgain() throws IOException {
+        CachedResponse response = of(headers("Cache-Control", "max-age=60", "ETag", "\"v1\""));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        response.writeTo(new DataOutputStream(bytes));
+        CachedResponse read = CachedResponse.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertThat(read.isFresh(NOW + 59999)).isTrue();
+        assertThat(read.isFresh(NOW + 60000)).isFalse();
+        assertThat(read.hasValidator()).isTrue();
+        assertThat(body(read)).isEqualTo("body");
+    }
+
+    private static CachedResponse of(Map<String, Collection<String>> headers) {
+        return CachedResponse.of(200, "OK", headers, "body".getBytes(StandardCharsets.UTF_8), NOW);
+    }
+
+    private static String body(CachedResponse response) {
+        try (InputStream in = response.toResponse(null).body().asInputStream()) {
+            return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)).readLine();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Map<String, Collection<String>> headers(String... namesAndValues) {
+        Map<String, Collection<String>> headers = new LinkedHashMap<>();
+        for(int i = 0; i < namesAndValues.length; i += 2) {
+            headers.put(namesAndValues[i], Collections.singletonList(namesAndValues[i + 1]));
+        }
+        return headers;
+    }
+}
@@ -0,0 +1,123 @@
+package pet.jen.mbdev.api.cache;
+
+import com.github.tomakehurst.wiremock.common.Slf4jNotifier;
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+import com.github.tomakehurst.wiremock.junit.WireMockClassRule;
+import feign.RequestLine;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+import pet.jen.mbdev.api.ApiOptions;
+import pet.jen.mbdev.api.MBDevApiFactory;
+import pet.jen.mbdev.api.TokenProvider;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class CachingClientIntegrationTest {
+    private static final int MOCK_PORT = 8883;
+
+    private static final String MOCK_URL = "http://localhost:" + MOCK_PORT;
+
+    @ClassRule
+    public static WireMockClassRule mockClassRule = new WireMockClassRule(
+            WireMockConfiguration.options().port(MOCK_PORT).notifier(new Slf4jNotifier(true)));
+    @Rule
+    public WireMockClassRule mockRule = mockClassRule;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private TokenProvider tokenProvider;
+
+    @Before
+    public void setup() {
+        tokenProvider = Mockito.mock(TokenProvider.class);
+        Mockito.when(tokenProvider.getAccessToken()).thenReturn("access-token");
+    }
+
+    @Test
+    public void testGet_whenResponseIsFresh_shouldNeitherRequestNorResolveToken() {
+        mockRule.stubFor(get(urlEqualTo("/vehicles")).willReturn(aResponse().withStatus(200)
+                .withHeader("Cache-Control", "private, max-age=60").withBody("\"vehicles\"")));
+        ResponseCache cache = ResponseCache.builder().build();
+        TestClient client = client(tokenProvider, cache);
+        assertThat(client.vehicles()).isEqualTo("vehicles");
+        assertThat(client.vehicles()).isEqualTo("vehicles");
+        mockRule.verify(1, getRequestedFor(urlEqualTo("/vehicles"))
+                .withHeader("Authorization", equalTo("Bearer access-token")));
+        Mockito.verify(tokenProvider, Mockito.times(1)).getAccessToken();
+        assertThat(cache.hits()).isEqualTo(1);
+        assertThat(cache.misses()).isEqualTo(1);
+    }
+
+    @Test
+    public void testGet_whenResponseIsStale_shouldRevalidateWithETag() {
+        mockRule.stubFor(get(urlEqualTo("/vehicles")).willReturn(aResponse().withStatus(200)
+                .withHeader("ETag", "\"v1\"").withBody("\"vehicles\"")));
+        // the gzip handler of the stand-in suffixes the etags of compressed responses
+        mockRule.stubFor(get(urlEqualTo("/vehicles")).withHeader("If-None-Match", matching("\"v1.*"))
+                .willReturn(aResponse().withStatus(304).withHeader("ETag", "\"v1\"")));
+        ResponseCache cache = ResponseCache.builder().build();
+        TestClient client = client(tokenProvider, cache);
+        assertThat(client.vehicles()).isEqualTo("vehicles");
+        assertThat(client.vehicles()).isEqualTo("vehicles");
+        mockRule.verify(1, getRequestedFor(urlEqualTo("/vehicles")).withHeader("If-None-Match", matching("\"v1.*")));
+        assertThat(cache.revalidations()).isEqualTo(1);
+    }
+
+    @Test
+    public void testGet_whenResponseMustNotBeStored_shouldAlwaysRequest() {
+        mockRule.stubFor(get(urlEqualTo("/vehicles")).willReturn(aResponse().withStatus(200)
+                .withHeader("Cache-Control", "no-store").withHeader("ETag", "\"v1\"").withBody("\"vehicles\"")));
+        TestClient client = client(tokenProvider, ResponseCache.builder().build());
+        client.vehicles();
+        client.vehicles();
+        mockRule.verify(2, getRequestedFor(urlEqualTo("/vehicles")).withoutHeader("If-None-Match"));
+    }
+
+    @Test
+    public void testGet_whenUsersDiffer_shouldNotShareResponses() {
+        mockRule.stubFor(get(urlEqualTo("/vehicles")).willReturn(aResponse().withStatus(200)
+                .withHeader("Cache-Control", "max-age=60").withBody("\"vehicles\"")));
+        ResponseCache cache = ResponseCache.builder().build();
+        TokenProvider otherUser = Mockito.mock(TokenProvider.class);
+        Mockito.when(otherUser.getAccessToken()).thenReturn("other-token");
+        client(tokenProvider, cache).vehicles();
+        client(otherUser, cache).vehicles();
+        client(otherUser, cache).vehicles();
+        mockRule.verify(2, getRequestedFor(urlEqualTo("/vehicles")));
+    }
+
+    @Test
+    public void testGet_withDiskTier_shouldServeResponsesAfterRestart() throws Exception {
+        mockRule.stubFor(get(urlEqualTo("/vehicles")).willReturn(aResponse().withStatus(200)
+                .withHeader("Cache-Control", "max-age=60").withBody("\"vehicles\"")));
+        ResponseCache cache = ResponseCache.builder().directory(folder.getRoot().toPath())
+                .userKey(provider -> "user-1").build();
+        client(tokenProvider, cache).vehicles();
+        ResponseCache restarted = ResponseCache.builder().directory(folder.getRoot().toPath())
+                .userKey(provider -> "user-1").build();
+        assertThat(client(tokenProvider, restarted).vehicles()).isEqualTo("vehicles");
+        mockRule.verify(1, getRequestedFor(urlEqualTo("/vehicles")));
+        assertThat(restarted.hits()).isEqualTo(1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBuild_whenDiskTierHasNoUserKey_shouldThrowIllegalArgumentException() throws Exception {
+        ResponseCache.builder().directory(folder.getRoot().toPath()).build();
+    }
+
+    private static TestClient client(TokenProvider tokenProvider, ResponseCache cache) {
+        return MBDevApiFactory.createForTenant(TestClient.class, MOCK_URL, "/", tokenProvider,
+                ApiOptions.builder().responseCache(cache).build());
+    }
+
+    interface TestClient {
+        @RequestLine("GET /vehicles")
+        String vehicles();
+    }
+}
@@ -0,0 +1,48 @@
+package pet.jen.mbdev.api.cache;
+
+import org.junit.Test;
+
+import java.util.Collection;
+import java.util.Collections;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class ResponseCacheTest {
+
+    private static final CachedResponse RESPONSE = CachedResponse.of(200, "OK",
+            Collections.<String, Collection<String>>singletonMap("ETag", Collections.singletonList("\"v1\"")),
+            new byte[0], 0);
+
+    @Test
+    public void testPut_whenUserExceedsMaxEntries_shouldEvictLeastRecentlyUsedResponse() {
+        ResponseCache cache = ResponseCache.builder().maxEntries(2).build();
+        cache.put("user", "/a", RESPONSE);
+        cache.put("user", "/b", RESPONSE);
+        cache.get("user", "/a");
+        cache.put("user", "/c", RESPONSE);
+        assertThat(cache.get("user", "/a")).isSameAs(RESPONSE);
+        assertThat(cache.get("user", "/b")).isNull();
+        assertThat(cache.get("user", "/c")).isSameAs(RESPONSE);
+    }
+
+    @Test
+    public void testPut_whenMaxUsersIsExceeded_shouldEvictLeastRecentlyUsedUser() {
+        ResponseCache cache = ResponseCache.builder().maxUsers(1).build();
+        cache.put("user-1", "/a", RESPONSE);
+        cache.put("user-2", "/a", RESPONSE);
+        assertThat(cache.get("user-1", "/a")).isNull();
+        assertThat(cache.get("user-2", "/a")).isSameAs(RESPONSE);
+    }
+
+    @Test
+    public void testPut_whenMaxUsersIsExceeded_shouldKeepRecentlyReadUser() {
+        ResponseCache cache = ResponseCache.builder().maxUsers(2).build();
+        cache.put("user-1", "/a", RESPONSE);
+        cache.put("user-2", "/a", RESPONSE);
+        cache.get("user-1", "/a");
+        cache.put("user-3", "/a", RESPONSE);
+        assertThat(cache.get("user-1", "/a")).isSameAs(RESPONSE);
+        assertThat(cache.get("user-2", "/a")).isNull();
+        assertThat(cache.get("user-3", "/a")).isSameAs(RESPONSE);
+    }
+}
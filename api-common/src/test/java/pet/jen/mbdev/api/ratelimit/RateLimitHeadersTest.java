@@ -0,0 +1,63 @@
+package pet.jen.mbdev.api.ratelimit;
+
+import org.junit.Test;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class RateLimitHeadersTest {
+
+    // Tue, 14 Nov 2023 22:13:20 GMT
+    private static final long NOW = 1700000000000L;
+
+    @Test
+    public void testOf_whenNoQuotaHeadersArePresent_shouldReturnUnknownValues() {
+        RateLimitHeaders headers = RateLimitHeaders.of(headers("Content-Type", "application/json"), NOW);
+        assertThat(headers.getRetryAfter()).isEqualTo(-1);
+        assertThat(headers.getLimit()).isEqualTo(-1);
+        assertThat(headers.getRemaining()).isEqualTo(-1);
+        assertThat(headers.getReset()).isEqualTo(-1);
+    }
+
+    @Test
+    public void testOf_whenRetryAfterIsGivenInSeconds_shouldConvertToMillis() {
+        assertThat(RateLimitHeaders.of(headers("retry-after", "120"), NOW).getRetryAfter()).isEqualTo(120000);
+    }
+
+    @Test
+    public void testOf_whenRetryAfterIsHttpDate_shouldComputeDelay() {
+        RateLimitHeaders headers = RateLimitHeaders.of(headers("Retry-After", "Tue, 14 Nov 2023 22:13:50 GMT"), NOW);
+        assertThat(headers.getRetryAfter()).isEqualTo(30000);
+    }
+
+    @Test
+    public void testOf_whenRetryAfterIsMalformed_shouldIgnoreIt() {
+        assertThat(RateLimitHeaders.of(headers("Retry-After", "soon"), NOW).getRetryAfter()).isEqualTo(-1);
+    }
+
+    @Test
+    public void testOf_whenRateLimitHeadersArePresent_shouldParseBothVariants() {
+        RateLimitHeaders prefixed = RateLimitHeaders.of(headers("X-RateLimit-Limit", "100",
+                "X-RateLimit-Remaining", "42", "X-RateLimit-Reset", "30"), NOW);
+        assertThat(prefixed.getLimit()).isEqualTo(100);
+        assertThat(prefixed.getRemaining()).isEqualTo(42);
+        assertThat(prefixed.getReset()).isEqualTo(30000);
+
+        RateLimitHeaders unprefixed = RateLimitHeaders.of(headers("RateLimit-Remaining", "0",
+                "RateLimit-Reset", String.valueOf(NOW / 1000 + 10)), NOW);
+        assertThat(unprefixed.getRemaining()).isEqualTo(0);
+        assertThat(unprefixed.getReset()).isEqualTo(10000);
+    }
+
+    private static Map<String, Collection<String>> headers(String... nameValues) {
+        Map<String, Collection<String>> headers = new HashMap<>();
+        for(int i = 0; i < nameValues.length; i += 2) {
+            headers.put(nameValues[i], Collections.singletonList(nameValues[i + 1]));
+        }
+        return headers;
+    }
+}
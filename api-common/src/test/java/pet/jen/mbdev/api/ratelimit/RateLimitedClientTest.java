@@ -0,0 +1,42 @@
+package pet.jen.mbdev.api.ratelimit;
+
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import org.junit.Test;
+import org.mockito.Mockito;
+import pet.jen.mbdev.api.exception.RateLimitExceededException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class RateLimitedClientTest {
+
+    private final Request request = Request.create("GET", "http://localhost/vehicles",
+            Collections.<String, Collection<String>>emptyMap(), null, StandardCharsets.UTF_8);
+
+    @Test
+    public void testExecute_whenQuotaIsExceeded_shouldPauseFollowingRequests() throws Exception {
+        Client delegate = Mockito.mock(Client.class);
+        Map<String, Collection<String>> headers = Collections.<String, Collection<String>>singletonMap(
+                "Retry-After", Collections.singletonList("60"));
+        Mockito.when(delegate.execute(Mockito.any(Request.class), Mockito.any(Request.Options.class)))
+                .thenReturn(Response.builder().status(429).headers(headers).build());
+        RateLimiter limiter = RateLimiter.builder().policy(RateLimitPolicy.FAIL_FAST).build();
+        RateLimitedClient client = new RateLimitedClient(delegate, limiter);
+
+        assertThat(client.execute(request, new Request.Options()).status()).isEqualTo(429);
+        assertThat(limiter.availablePermits()).isEqualTo(0);
+        try {
+            client.execute(request, new Request.Options());
+        } catch (RateLimitExceededException e) {
+            Mockito.verify(delegate, Mockito.times(1)).execute(Mockito.any(Request.class), Mockito.any(Request.Options.class));
+            return;
+        }
+        throw new AssertionError("Request should have been rejected by the limiter.");
+    }
+}
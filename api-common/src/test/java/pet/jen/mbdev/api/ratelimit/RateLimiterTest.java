@@ -0,0 +1,165 @@
+package pet.jen.mbdev.api.ratelimit;
+
+import org.junit.Test;
+import pet.jen.mbdev.api.exception.QuotaExceededException;
+import pet.jen.mbdev.api.exception.RateLimitExceededException;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.assertj.core.api.Java6Assertions.within;
+
+public class RateLimiterTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void testReserve_whenBurstIsUsed_shouldSpacePermitsByTheRate() {
+        RateLimiter limiter = RateLimiter.builder().permitsPerSecond(10).burst(2).build();
+        long now = System.nanoTime();
+        assertThat(limiter.availablePermits(now)).isEqualTo(2);
+        assertThat(limiter.reserve(now, Long.MAX_VALUE)).isEqualTo(0);
+        assertThat(limiter.reserve(now, Long.MAX_VALUE)).isEqualTo(0);
+        assertThat(limiter.availablePermits(now)).isEqualTo(0);
+        assertThat(limiter.reserve(now, Long.MAX_VALUE)).isEqualTo(100 * MS);
+        assertThat(limiter.reserve(now, Long.MAX_VALUE)).isEqualTo(200 * MS);
+        // refilled after the reserved permits and another two intervals
+        assertThat(limiter.availablePermits(now + 400 * MS)).isEqualTo(2);
+    }
+
+    @Test
+    public void testReserve_whenWaitExceedsMaximum_shouldNotReserve() {
+        RateLimiter limiter = RateLimiter.builder().permitsPerSecond(10).burst(1).build();
+        long now = System.nanoTime();
+        assertThat(limiter.reserve(now, 0)).isEqualTo(0);
+        assertThat(limiter.reserve(now, 50 * MS)).isEqualTo(-1);
+        // the rejected request did not consume the next permit
+        assertThat(limiter.reserve(now, 100 * MS)).isEqualTo(100 * MS);
+    }
+
+    @Test
+    public void testOnResponse_whenQuotaIsExceeded_shouldPauseForRetryAfterAndHalveRate() {
+        RateLimiter limiter = RateLimiter.builder().permitsPerSecond(10).build();
+        long now = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        limiter.onResponse(now, 429, headers("Retry-After", "3"));
+        assertThat(limiter.availablePermits(now)).isEqualTo(0);
+        assertThat(limiter.reserve(now, Long.MAX_VALUE)).isEqualTo(TimeUnit.SECONDS.toNanos(3));
+        assertThat(limiter.permitsPerSecond()).isCloseTo(5, within(0.01));
+    }
+
+    @Test
+    public void testOnResponse_whenSeveralRequestsAreRejectedAtOnce_shouldOnlySlowDownOncePerSecond() {
+        RateLimiter limiter = RateLimiter.builder().permitsPerSecond(8).minPermitsPerSecond(1).build();
+        long now = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        limiter.onResponse(now, 429, RateLimitHeaders.NONE);
+        limiter.onResponse(now + MS, 429, RateLimitHeaders.NONE);
+        assertThat(limiter.permitsPerSecond()).isCloseTo(4, within(0.01));
+        limiter.onResponse(now + TimeUnit.SECONDS.toNanos(1), 429, RateLimitHeaders.NONE);
+        limiter.onResponse(now + TimeUnit.SECONDS.toNanos(2), 429, RateLimitHeaders.NONE);
+        limiter.onResponse(now + TimeUnit.SECONDS.toNanos(3), 429, RateLimitHeaders.NONE);
+        // bounded by the minimum rate
+        assertThat(limiter.permitsPerSecond()).isCloseTo(1, within(0.01));
+    }
+
+    @Test
+    public void testOnResponse_whenRequestsSucceedAfterSlowDown_shouldRecoverGradually() {
+        RateLimiter limiter = RateLimiter.builder().permitsPerSecond(10).build();
+        long now = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        limiter.onResponse(now, 429, RateLimitHeaders.NONE);
+        limiter.onResponse(now + MS, 200, RateLimitHeaders.NONE);
+        assertThat(limiter.permitsPerSecond()).isCloseTo(5, within(0.01));
+        limiter.onResponse(now + TimeUnit.SECONDS.toNanos(1), 200, RateLimitHeaders.NONE);
+        assertThat(limiter.permitsPerSecond()).isCloseTo(5.5, within(0.01));
+        for(int i = 2; i < 20; i++) {
+            limiter.onResponse(now + TimeUnit.SECONDS.toNanos(i), 200, RateLimitHeaders.NONE);
+        }
+        assertThat(limiter.permitsPerSecond()).isCloseTo(10, within(0.01));
+    }
+
+    @Test
+    public void testOnResponse_whenRateLimitHeadersAreAvailable_shouldFollowThem() {
+        RateLimiter limiter = RateLimiter.builder().permitsPerSecond(100).minPermitsPerSecond(1).build();
+        long now = System.nanoTime();
+        limiter.onResponse(now, 200, headers("X-RateLimit-Remaining", "20", "X-RateLimit-Reset", "10"));
+        assertThat(limiter.permitsPerSecond()).isCloseTo(2, within(0.01));
+        limiter.onResponse(now, 200, headers("X-RateLimit-Remaining", "0", "X-RateLimit-Reset", "5"));
+        assertThat(limiter.availablePermits(now)).isEqualTo(0);
+        assertThat(limiter.availablePermits(now + TimeUnit.SECONDS.toNanos(6))).isGreaterThan(0);
+    }
+
+    @Test
+    public void testAcquire_whenPolicyIsFailFast_shouldThrowRateLimitExceededException() {
+        RateLimiter limiter = RateLimiter.builder().permitsPerSecond(1).burst(1).policy(RateLimitPolicy.FAIL_FAST).build();
+        limiter.acquire();
+        QuotaExceededException exception = null;
+        try {
+            limiter.acquire();
+        } catch (RateLimitExceededException e) {
+            exception = e;
+        }
+        assertThat(exception).isNotNull();
+        assertThat(exception.getRetryAfter()).isBetween(1L, 1000L);
+    }
+
+    @Test
+    public void testAcquire_whenPolicyIsWait_shouldWaitUpToTheMaximum() {
+        RateLimiter limiter = RateLimiter.builder().permitsPerSecond(20).burst(1).policy(RateLimitPolicy.WAIT)
+                .maxWait(80).build();
+        limiter.acquire();
+        long start = System.nanoTime();
+        limiter.acquire();
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(40 * MS);
+
+        RateLimiter slowLimiter = RateLimiter.builder().permitsPerSecond(5).burst(1).policy(RateLimitPolicy.WAIT)
+                .maxWait(80).build();
+        slowLimiter.acquire();
+        try {
+            slowLimiter.acquire();
+        } catch (RateLimitExceededException e) {
+            return;
+        }
+        throw new AssertionError("Acquisition should exceed the maximum wait.");
+    }
+
+    @Test
+    public void testAcquire_whenPolicyIsQueue_shouldExposeWaitingRequests() throws Exception {
+        RateLimiter limiter = RateLimiter.builder().permitsPerSecond(2).burst(1).build();
+        limiter.acquire();
+        final CountDownLatch acquired = new CountDownLatch(1);
+        Thread waiting = new Thread(() -> {
+            limiter.acquire();
+            acquired.countDown();
+        });
+        waiting.start();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while(limiter.queueDepth() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(limiter.queueDepth()).isEqualTo(1);
+        assertThat(acquired.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(limiter.queueDepth()).isEqualTo(0);
+    }
+
+    @Test
+    public void testGet_shouldShareLimiterPerClientIdAndApiType() {
+        RateLimiters limiters = RateLimiters.builder().permitsPerSecond(5).build();
+        RateLimiter limiter = limiters.get("client-id", String.class);
+        assertThat(limiters.get("client-id", String.class)).isSameAs(limiter);
+        assertThat(limiters.get("other-client-id", String.class)).isNotSameAs(limiter);
+        assertThat(limiters.get("client-id", Integer.class)).isNotSameAs(limiter);
+        assertThat(limiter.permitsPerSecond()).isCloseTo(5, within(0.01));
+    }
+
+    private static RateLimitHeaders headers(String... nameValues) {
+        Map<String, Collection<String>> headers = new HashMap<>();
+        for(int i = 0; i < nameValues.length; i += 2) {
+            headers.put(nameValues[i], Collections.singletonList(nameValues[i + 1]));
+        }
+        return RateLimitHeaders.of(headers);
+    }
+}
@@ -0,0 +1,39 @@
+package pet.jen.mbdev.api.retry;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class RetryBudgetTest {
+
+    @Test
+    public void testTryRetry_whenReserveIsUsed_shouldRejectRetries() {
+        RetryBudget budget = RetryBudget.builder().reserve(2).ratio(0.0).build();
+        assertThat(budget.tryRetry()).isTrue();
+        assertThat(budget.tryRetry()).isTrue();
+        assertThat(budget.tryRetry()).isFalse();
+        assertThat(budget.available()).isEqualTo(0);
+    }
+
+    @Test
+    public void testOnRequest_shouldDepositRatioOfRetries() {
+        RetryBudget budget = RetryBudget.builder().reserve(2).ratio(0.1).build();
+        budget.tryRetry();
+        budget.tryRetry();
+        for(int i = 0; i < 9; i++) {
+            budget.onRequest();
+        }
+        assertThat(budget.tryRetry()).isFalse();
+        budget.onRequest();
+        assertThat(budget.tryRetry()).isTrue();
+    }
+
+    @Test
+    public void testOnRequest_whenReserveIsFull_shouldNotPileUpRetries() {
+        RetryBudget budget = RetryBudget.builder().reserve(1).ratio(1.0).build();
+        for(int i = 0; i < 100; i++) {
+            budget.onRequest();
+        }
+        assertThat(budget.available()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,50 @@
+package pet.jen.mbdev.api.retry;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class RetryPolicyTest {
+
+    @Test
+    public void testIsRetryable_withDefaults_shouldOnlyRetryGetRequests() {
+        RetryPolicy policy = RetryPolicy.defaultPolicy();
+        assertThat(policy.isRetryable("GET")).isTrue();
+        assertThat(policy.isRetryable("get")).isTrue();
+        assertThat(policy.isRetryable("POST")).isFalse();
+        assertThat(policy.isRetryable("PUT")).isFalse();
+        assertThat(policy.isRetryable(503)).isTrue();
+        assertThat(policy.isRetryable(500)).isFalse();
+        assertThat(policy.isRetryable(401)).isFalse();
+    }
+
+    @Test
+    public void testIsRetryable_withConfiguredMethods_shouldRetryThem() {
+        RetryPolicy policy = RetryPolicy.builder().methods(Collections.singleton("put")).build();
+        assertThat(policy.isRetryable("PUT")).isTrue();
+        assertThat(policy.isRetryable("GET")).isFalse();
+    }
+
+    @Test
+    public void testBackoff_shouldBeWithinExponentialBoundAndCapped() {
+        RetryPolicy policy = RetryPolicy.builder().baseDelay(10).maxDelay(50).build();
+        long maxFirst = 0;
+        for(int i = 0; i < 1000; i++) {
+            long first = policy.backoff(1);
+            assertThat(first).isBetween(0L, 10L);
+            maxFirst = Math.max(maxFirst, first);
+            assertThat(policy.backoff(2)).isBetween(0L, 20L);
+            assertThat(policy.backoff(10)).isBetween(0L, 50L);
+            assertThat(policy.backoff(100)).isBetween(0L, 50L);
+        }
+        // full jitter spreads over the whole range
+        assertThat(maxFirst).isGreaterThan(5L);
+    }
+
+    @Test
+    public void testNone_shouldNotRetry() {
+        assertThat(RetryPolicy.none().getMaxAttempts()).isEqualTo(1);
+    }
+}
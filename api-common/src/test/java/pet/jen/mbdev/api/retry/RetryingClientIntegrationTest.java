@@ -0,0 +1,144 @@
+package pet.jen.mbdev.api.retry;
+
+import com.github.tomakehurst.wiremock.client.ResponseDefinitionBuilder;
+import com.github.tomakehurst.wiremock.common.Slf4jNotifier;
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+import com.github.tomakehurst.wiremock.http.Fault;
+import com.github.tomakehurst.wiremock.junit.WireMockClassRule;
+import com.github.tomakehurst.wiremock.stubbing.Scenario;
+import feign.RequestLine;
+import okhttp3.OkHttpClient;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import pet.jen.mbdev.api.ApiOptions;
+import pet.jen.mbdev.api.MBDevApiFactory;
+import pet.jen.mbdev.api.TokenProvider;
+import pet.jen.mbdev.api.exception.MBDevApiException;
+import pet.jen.mbdev.api.exception.QuotaExceededException;
+import pet.jen.mbdev.api.transport.HttpTransport;
+import pet.jen.mbdev.api.transport.OkHttpTransport;
+
+import java.util.Collections;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.assertj.core.api.Java6Assertions.fail;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Runs the retries of a client against a local stand-in of the API which injects connection faults and errors. Uses
+ * a transport without retries of its own so that every attempt reaches the stand-in exactly once.
+ */
+public class RetryingClientIntegrationTest {
+    private static final int MOCK_PORT = 8884;
+
+    private static final String MOCK_URL = "http://localhost:" + MOCK_PORT;
+
+    @ClassRule
+    public static WireMockClassRule mockClassRule = new WireMockClassRule(
+            WireMockConfiguration.options().port(MOCK_PORT).notifier(new Slf4jNotifier(true)));
+    @Rule
+    public WireMockClassRule mockRule = mockClassRule;
+
+    private static final HttpTransport TRANSPORT = OkHttpTransport.builder()
+            .base(new OkHttpClient.Builder().retryOnConnectionFailure(false).build())
+            .build();
+
+    private final TokenProvider tokenProvider = mock(TokenProvider.class);
+
+    @Test
+    public void testGet_whenConnectionIsResetTwice_shouldSucceedWithThirdAttempt() {
+        failTimes("/test", "GET", 2, aResponse().withFault(Fault.CONNECTION_RESET_BY_PEER));
+        assertThat(client(policy(RetryBudget.builder().build())).test()).isEqualTo("ok");
+        mockRule.verify(3, getRequestedFor(urlEqualTo("/test")));
+    }
+
+    @Test
+    public void testGet_whenServiceIsUnavailable_shouldRetry() {
+        failTimes("/test", "GET", 1, aResponse().withStatus(503).withHeader("Retry-After", "0"));
+        assertThat(client(policy(RetryBudget.builder().build())).test()).isEqualTo("ok");
+        mockRule.verify(2, getRequestedFor(urlEqualTo("/test")));
+    }
+
+    @Test
+    public void testGet_whenAttemptsAreExhausted_shouldThrowApiException() {
+        mockRule.stubFor(get(urlEqualTo("/test")).willReturn(aResponse().withFault(Fault.EMPTY_RESPONSE)));
+        try {
+            client(policy(RetryBudget.builder().build())).test();
+            fail("Exhausted retries should fail.");
+        } catch (MBDevApiException e) {
+            mockRule.verify(3, getRequestedFor(urlEqualTo("/test")));
+        }
+    }
+
+    @Test
+    public void testPost_whenConnectionIsReset_shouldNotRetryNonIdempotentRequest() {
+        failTimes("/test", "POST", 1, aResponse().withFault(Fault.CONNECTION_RESET_BY_PEER));
+        try {
+            client(policy(RetryBudget.builder().build())).post();
+            fail("Non idempotent requests should not be retried.");
+        } catch (MBDevApiException e) {
+            mockRule.verify(1, postRequestedFor(urlEqualTo("/test")));
+        }
+    }
+
+    @Test
+    public void testGet_whenBudgetIsExhausted_shouldNotAmplifyOutage() {
+        mockRule.stubFor(get(urlEqualTo("/test")).willReturn(aResponse().withStatus(503)));
+        RetryBudget budget = RetryBudget.builder().reserve(2).ratio(0.0).build();
+        TestClient client = client(policy(budget));
+        for(int i = 0; i < 5; i++) {
+            try {
+                client.test();
+                fail("Unavailable service should fail.");
+            } catch (MBDevApiException e) {
+                // expected
+            }
+        }
+        // five requests and the two retries of the reserve
+        mockRule.verify(7, getRequestedFor(urlEqualTo("/test")));
+    }
+
+    @Test
+    public void testGet_whenRetryAfterExceedsMaxDelay_shouldReturnResponseWithoutRetry() {
+        failTimes("/test", "GET", 1, aResponse().withStatus(429).withHeader("Retry-After", "60"));
+        RetryPolicy policy = RetryPolicy.builder().baseDelay(5).maxDelay(20)
+                .statuses(Collections.singleton(429)).budget(RetryBudget.builder().build()).build();
+        try {
+            client(policy).test();
+            fail("Exceeded quota should fail.");
+        } catch (QuotaExceededException e) {
+            assertThat(e.getRetryAfter()).isEqualTo(60000);
+            mockRule.verify(1, getRequestedFor(urlEqualTo("/test")));
+        }
+    }
+
+    private void failTimes(String path, String method, int times, ResponseDefinitionBuilder fault) {
+        String state = Scenario.STARTED;
+        for(int i = 1; i <= times; i++) {
+            mockRule.stubFor(request(method, urlEqualTo(path)).inScenario("faults").whenScenarioStateIs(state)
+                    .willReturn(fault).willSetStateTo("failed-" + i));
+            state = "failed-" + i;
+        }
+        mockRule.stubFor(request(method, urlEqualTo(path)).inScenario("faults").whenScenarioStateIs(state)
+                .willReturn(aResponse().withStatus(200).withBody("\"ok\"")));
+    }
+
+    private static RetryPolicy policy(RetryBudget budget) {
+        return RetryPolicy.builder().baseDelay(5).maxDelay(20).budget(budget).build();
+    }
+
+    private TestClient client(RetryPolicy policy) {
+        return MBDevApiFactory.createForTenant(TestClient.class, MOCK_URL, "/", tokenProvider,
+                ApiOptions.builder().transport(TRANSPORT).retryPolicy(policy).build());
+    }
+
+    interface TestClient {
+        @RequestLine("GET /test")
+        String test();
+
+        @RequestLine("POST /test")
+        String post();
+    }
+}
@@ -0,0 +1,150 @@
+package pet.jen.mbdev.api.streaming;
+
+import feign.Request;
+import feign.Response;
+import feign.Util;
+import feign.codec.DecodeException;
+import feign.jackson.JacksonDecoder;
+import lombok.Data;
+import org.junit.Test;
+import pet.jen.mbdev.api.exception.MBDevApiException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.assertj.core.api.Java6Assertions.fail;
+
+public class StreamingDecoderTest {
+
+    private final StreamingDecoder decoder = new StreamingDecoder(new JacksonDecoder());
+
+    @Test
+    public void testDecode_withIterator_shouldReadElementsAfterResponseIsClosed() throws Exception {
+        TrackingStream body = new TrackingStream("[{\"name\":\"a\",\"unknown\":1},null,{\"name\":\"b\"}]");
+        Response response = response(body);
+        CloseableIterator<Element> elements = (CloseableIterator<Element>) decoder.decode(response,
+                type("iterator"));
+        // feign closes every response after decoding it
+        response.close();
+        assertThat(body.closed).isFalse();
+        assertThat(elements.next().getName()).isEqualTo("a");
+        assertThat(elements.next().getName()).isEqualTo("b");
+        assertThat(elements.hasNext()).isFalse();
+        assertThat(body.closed).isTrue();
+    }
+
+    @Test
+    public void testDecode_withStream_shouldCloseResponseWithStream() throws Exception {
+        TrackingStream body = new TrackingStream("[{\"name\":\"a\"},{\"name\":\"b\"},{\"name\":\"c\"}]");
+        try (Stream<Element> elements = (Stream<Element>) decoder.decode(response(body), type("stream"))) {
+            assertThat(elements.limit(1).map(Element::getName).collect(Collectors.toList())).containsExactly("a");
+            assertThat(body.closed).isFalse();
+        }
+        assertThat(body.closed).isTrue();
+    }
+
+    @Test
+    public void testDecode_withoutStreamingClient_shouldBufferBody() throws Exception {
+        Response response = Response.builder()
+                .status(200)
+                .headers(Collections.<String, Collection<String>>emptyMap())
+                .body("[{\"name\":\"a\"}]", StandardCharsets.UTF_8)
+                .build();
+        Iterator<Element> elements = (Iterator<Element>) decoder.decode(response, type("plainIterator"));
+        response.close();
+        assertThat(elements.next().getName()).isEqualTo("a");
+    }
+
+    @Test
+    public void testDecode_withInputStream_shouldHandOverBody() throws Exception {
+        TrackingStream body = new TrackingStream("[]");
+        Response response = response(body);
+        InputStream in = (InputStream) decoder.decode(response, type("raw"));
+        response.close();
+        assertThat(body.closed).isFalse();
+        assertThat(new String(Util.toByteArray(in), StandardCharsets.UTF_8)).isEqualTo("[]");
+        in.close();
+        assertThat(body.closed).isTrue();
+    }
+
+    @Test
+    public void testDecode_withOtherTypes_shouldUseDelegate() throws Exception {
+        List<Element> elements = (List<Element>) decoder.decode(response(new TrackingStream("[{\"name\":\"a\"}]")),
+                type("list"));
+        assertThat(elements).hasSize(1);
+    }
+
+    @Test(expected = DecodeException.class)
+    public void testDecode_whenBodyIsNoArray_shouldThrowDecodeException() throws Exception {
+        decoder.decode(response(new TrackingStream("{\"name\":\"a\"}")), type("iterator"));
+    }
+
+    @Test
+    public void testNext_whenBodyIsTruncated_shouldThrowApiExceptionAndClose() throws Exception {
+        TrackingStream body = new TrackingStream("[{\"name\":\"a\"},{\"name\":");
+        CloseableIterator<Element> elements = (CloseableIterator<Element>) decoder.decode(response(body),
+                type("iterator"));
+        try {
+            elements.next();
+            fail("Truncated elements should not be decoded.");
+        } catch (MBDevApiException e) {
+            assertThat(body.closed).isTrue();
+        }
+    }
+
+    private static Response response(InputStream body) throws IOException {
+        Response response = Response.builder()
+                .status(200)
+                .headers(Collections.<String, Collection<String>>emptyMap())
+                .body(body, null)
+                .build();
+        return new StreamingClient((request, options) -> response).execute(
+                Request.create("GET", "http://localhost/", Collections.<String, Collection<String>>emptyMap(), null,
+                        null), null);
+    }
+
+    private static Type type(String method) throws NoSuchMethodException {
+        return Types.class.getMethod(method).getGenericReturnType();
+    }
+
+    @Data
+    public static class Element {
+        private String name;
+    }
+
+    interface Types {
+        CloseableIterator<Element> iterator();
+
+        Iterator<Element> plainIterator();
+
+        Stream<Element> stream();
+
+        List<Element> list();
+
+        InputStream raw();
+    }
+
+    private static class TrackingStream extends ByteArrayInputStream {
+        private volatile boolean closed;
+
+        TrackingStream(String content) {
+            super(content.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            super.close();
+        }
+    }
+}
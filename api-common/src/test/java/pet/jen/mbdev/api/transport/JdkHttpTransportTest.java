@@ -0,0 +1,95 @@
+package pet.jen.mbdev.api.transport;
+
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+import com.github.tomakehurst.wiremock.junit.WireMockClassRule;
+import feign.Request;
+import feign.Response;
+import feign.Util;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class JdkHttpTransportTest {
+
+    private static final int MOCK_PORT = 8886;
+
+    @ClassRule
+    public static WireMockClassRule mockClassRule = new WireMockClassRule(WireMockConfiguration.options().port(MOCK_PORT));
+
+    @Rule
+    public WireMockClassRule mockRule = mockClassRule;
+
+    @Test
+    public void testClient_shouldRequestAndDecompressGzipResponses() throws Exception {
+        mockRule.stubFor(get(urlEqualTo("/test"))
+                .withHeader("Accept-Encoding", equalTo("gzip"))
+                .willReturn(aResponse().withStatus(200)
+                        .withHeader("Content-Encoding", "gzip")
+                        .withBody(gzip("compressed"))));
+        Response response = JdkHttpTransport.defaultTransport().client().execute(
+                createRequest(new HashMap<String, Collection<String>>()), new Request.Options());
+        assertThat(Util.toString(response.body().asReader())).isEqualTo("compressed");
+    }
+
+    @Test
+    public void testClient_whenCompressedResponseIsEmpty_shouldReturnEmptyBody() throws Exception {
+        mockRule.stubFor(get(urlEqualTo("/test"))
+                .willReturn(aResponse().withStatus(200).withHeader("Content-Encoding", "gzip")));
+        Response response = JdkHttpTransport.defaultTransport().client().execute(
+                createRequest(new HashMap<String, Collection<String>>()), new Request.Options());
+        assertThat(Util.toString(response.body().asReader())).isEmpty();
+        assertThat(response.headers()).doesNotContainKey("Content-Encoding");
+    }
+
+    @Test
+    public void testClient_whenCompressedResponseHasNoContent_shouldNotDecompress() throws Exception {
+        mockRule.stubFor(get(urlEqualTo("/test"))
+                .willReturn(aResponse().withStatus(204).withHeader("Content-Encoding", "gzip")));
+        Response response = JdkHttpTransport.defaultTransport().client().execute(
+                createRequest(new HashMap<String, Collection<String>>()), new Request.Options());
+        assertThat(response.status()).isEqualTo(204);
+    }
+
+    @Test
+    public void testClient_whenRequestSpecifiesEncoding_shouldKeepIt() throws Exception {
+        mockRule.stubFor(get(urlEqualTo("/test"))
+                .withHeader("Accept-Encoding", equalTo("identity"))
+                .willReturn(aResponse().withStatus(200).withBody("plain")));
+        Map<String, Collection<String>> headers = new HashMap<>();
+        headers.put("Accept-Encoding", Collections.singletonList("identity"));
+        Response response = JdkHttpTransport.builder().build().client().execute(createRequest(headers), new Request.Options());
+        assertThat(Util.toString(response.body().asReader())).isEqualTo("plain");
+    }
+
+    @Test
+    public void testClient_whenGzipIsDisabled_shouldNotRequestCompression() throws Exception {
+        mockRule.stubFor(get(urlEqualTo("/test"))
+                .withHeader("Accept-Encoding", absent())
+                .willReturn(aResponse().withStatus(200).withBody("plain")));
+        Response response = JdkHttpTransport.builder().gzip(false).build().client().execute(
+                createRequest(new HashMap<String, Collection<String>>()), new Request.Options());
+        assertThat(response.status()).isEqualTo(200);
+    }
+
+    private static Request createRequest(Map<String, Collection<String>> headers) {
+        return Request.create("GET", "http://localhost:" + MOCK_PORT + "/test", headers, null, null);
+    }
+
+    private static byte[] gzip(String value) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(value.getBytes("UTF-8"));
+        }
+        return bytes.toByteArray();
+    }
+}
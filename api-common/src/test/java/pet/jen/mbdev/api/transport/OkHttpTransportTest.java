@@ -0,0 +1,64 @@
+package pet.jen.mbdev.api.transport;
+
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+import com.github.tomakehurst.wiremock.junit.WireMockClassRule;
+import feign.Request;
+import feign.Response;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.junit.After;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.Collection;
+import java.util.HashMap;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class OkHttpTransportTest {
+
+    private static final int MOCK_PORT = 8885;
+
+    @ClassRule
+    public static WireMockClassRule mockClassRule = new WireMockClassRule(WireMockConfiguration.options().port(MOCK_PORT));
+
+    @Rule
+    public WireMockClassRule mockRule = mockClassRule;
+
+    private OkHttpTransport transport = OkHttpTransport.builder().build();
+
+    @After
+    public void tearDown() {
+        transport.shutdown();
+    }
+
+    @Test
+    public void testBuild_shouldPreferHttp2() {
+        assertThat(transport.okHttpClient().protocols()).containsExactly(Protocol.HTTP_2, Protocol.HTTP_1_1);
+        OkHttpTransport http1 = OkHttpTransport.builder().http2(false).build();
+        assertThat(http1.okHttpClient().protocols()).containsExactly(Protocol.HTTP_1_1);
+    }
+
+    @Test
+    public void testClient_whenCalledRepeatedly_shouldReuseTheConnection() throws Exception {
+        mockRule.stubFor(get(urlEqualTo("/test")).willReturn(aResponse().withStatus(200).withBody("body")));
+        for(int i = 0; i < 5; i++) {
+            Response response = transport.client().execute(
+                    Request.create("GET", "http://localhost:" + MOCK_PORT + "/test",
+                            new HashMap<String, Collection<String>>(), null, null),
+                    new Request.Options());
+            response.close();
+        }
+        assertThat(transport.okHttpClient().connectionPool().connectionCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testOkHttpClient_whenDerived_shouldShareConnectionsAndDispatcher() {
+        OkHttpClient derived = transport.okHttpClient().newBuilder().followRedirects(false).build();
+        assertThat(derived.connectionPool()).isSameAs(transport.okHttpClient().connectionPool());
+        assertThat(derived.dispatcher()).isSameAs(transport.okHttpClient().dispatcher());
+        assertThat(transport.client()).isSameAs(transport.client());
+    }
+}
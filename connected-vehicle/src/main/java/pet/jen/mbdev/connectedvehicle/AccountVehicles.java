@@ -0,0 +1,53 @@
+package pet.jen.mbdev.connectedvehicle;
+
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of the `vehicles()` call of a single account within a {@link FleetFanOut}: either the vehicles which were
+ * not reported by another account before or the exception the call failed with.
+ *
+ * @param <K> type of the account keys
+ * @author Jens Petersohn <me@jen.pet>
+ */
+@Getter
+public final class AccountVehicles<K> {
+
+    private final K account;
+
+    /**
+     * Vehicles of the account which were not returned for another account before, empty if the call failed.
+     */
+    private final List<Vehicle> vehicles;
+
+    /**
+     * Amount of vehicles of the account which were already returned for another account.
+     */
+    private final int duplicates;
+
+    /**
+     * Exception or error the call failed with, null if it succeeded.
+     */
+    private final Throwable error;
+
+    private AccountVehicles(K account, List<Vehicle> vehicles, int duplicates, Throwable error) {
+        this.account = account;
+        this.vehicles = vehicles;
+        this.duplicates = duplicates;
+        this.error = error;
+    }
+
+    static <K> AccountVehicles<K> success(K account, List<Vehicle> vehicles, int duplicates) {
+        return new AccountVehicles<>(account, Collections.unmodifiableList(vehicles), duplicates, null);
+    }
+
+    static <K> AccountVehicles<K> failure(K account, Throwable error) {
+        return new AccountVehicles<>(account, Collections.<Vehicle>emptyList(), 0, error);
+    }
+
+    public boolean isSuccessful() {
+        return error == null;
+    }
+}
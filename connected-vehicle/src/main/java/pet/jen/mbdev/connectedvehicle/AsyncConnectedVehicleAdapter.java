@@ -0,0 +1,78 @@
+package pet.jen.mbdev.connectedvehicle;
+
+import pet.jen.mbdev.api.ApiOptions;
+import pet.jen.mbdev.api.AsyncCalls;
+import pet.jen.mbdev.api.AsyncOptions;
+import pet.jen.mbdev.api.MBDevApiFactory;
+import pet.jen.mbdev.api.TokenProvider;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asynchronous counterpart of the {@link ConnectedVehicleAdapter}. All calls return right away, the requests are
+ * performed on the executor of the {@link AsyncOptions}. Cancelling a returned future cancels its request.
+ *
+ * Shares the feign client of a host with all other connected vehicle adapters, synchronous or not.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+public class AsyncConnectedVehicleAdapter {
+
+    private static final String BASE_PATH = "/experimental/connectedvehicle/v1";
+
+    private final AsyncConnectedVehicleApi api;
+
+    public AsyncConnectedVehicleAdapter(TokenProvider tokenProvider, AsyncOptions asyncOptions) {
+        this.api = MBDevApiFactory.createAsync(AsyncConnectedVehicleApi.class, ConnectedVehicleApi.class, BASE_PATH,
+                tokenProvider, asyncOptions);
+    }
+
+    public AsyncConnectedVehicleAdapter(TokenProvider tokenProvider, String hostname, AsyncOptions asyncOptions) {
+        this(tokenProvider, hostname, ApiOptions.defaults(), asyncOptions);
+    }
+
+    /**
+     * @param options shared with all other adapters of the application, e.g. to use the transport of the auth module
+     */
+    public AsyncConnectedVehicleAdapter(TokenProvider tokenProvider, String hostname, ApiOptions options,
+                                        AsyncOptions asyncOptions) {
+        this.api = MBDevApiFactory.createAsync(AsyncConnectedVehicleApi.class, ConnectedVehicleApi.class, hostname,
+                BASE_PATH, tokenProvider, options, asyncOptions);
+    }
+
+    private AsyncConnectedVehicleAdapter(AsyncConnectedVehicleApi api) {
+        this.api = api;
+    }
+
+    /**
+     * @return adapter of the same user whose concurrent identical `vehicles()` and `vehicle(id)` calls share a single
+     *         request; the returned vehicles are shared by these callers and must not be modified
+     */
+    public AsyncConnectedVehicleAdapter coalescing() {
+        return new AsyncConnectedVehicleAdapter(MBDevApiFactory.coalescing(this.api));
+    }
+
+    public CompletableFuture<List<Vehicle>> vehicles() {
+        return this.api.vehicles();
+    }
+
+    /**
+     * @param timeout of this call, overrides the one of the options if it is shorter
+     */
+    public CompletableFuture<List<Vehicle>> vehicles(long timeout, TimeUnit unit) {
+        return AsyncCalls.withTimeout(this.api.vehicles(), timeout, unit);
+    }
+
+    public CompletableFuture<Vehicle> vehicle(String id) {
+        return this.api.vehicle(id);
+    }
+
+    /**
+     * @param timeout of this call, overrides the one of the options if it is shorter
+     */
+    public CompletableFuture<Vehicle> vehicle(String id, long timeout, TimeUnit unit) {
+        return AsyncCalls.withTimeout(this.api.vehicle(id), timeout, unit);
+    }
+}
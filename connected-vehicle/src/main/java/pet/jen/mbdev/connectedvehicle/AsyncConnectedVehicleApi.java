@@ -0,0 +1,15 @@
+package pet.jen.mbdev.connectedvehicle;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asynchronous counterpart of the {@link ConnectedVehicleApi}, every method mirrors the one of the same name.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+public interface AsyncConnectedVehicleApi {
+    CompletableFuture<List<Vehicle>> vehicles();
+
+    CompletableFuture<Vehicle> vehicle(String id);
+}
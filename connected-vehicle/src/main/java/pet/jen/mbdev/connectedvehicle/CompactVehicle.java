@@ -0,0 +1,172 @@
+package pet.jen.mbdev.connectedvehicle;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+/**
+ * Compact, immutable representation of a {@link Vehicle} for large fleets. Numeric values are kept as primitives and
+ * the low-cardinality values fuel type, color name and sales designation as codes of a shared
+ * {@link VehicleDictionary}; only the values which are unique per vehicle remain strings.
+ *
+ * The conversion is lossless: values which are no plain non-negative integers within the range of their primitive,
+ * e.g. `"0381"` or `"n/a"`, are kept as strings aside and returned unchanged by `toVehicle()`. The primitive getters
+ * return `ABSENT` for missing values as well as for such irregular ones.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+@EqualsAndHashCode
+public final class CompactVehicle {
+
+    public static final int ABSENT = -1;
+
+    // marks a numeric value which is kept in `irregular`
+    private static final int IRREGULAR = -2;
+
+    // indexes of the numeric fields within `irregular`
+    private static final int MODELYEAR = 0;
+    private static final int POWERHP = 1;
+    private static final int POWERKW = 2;
+    private static final int NUMBEROFDOORS = 3;
+    private static final int NUMBEROFSEATS = 4;
+
+    @Getter
+    private final String id;
+
+    @Getter
+    private final String licenseplate;
+
+    @Getter
+    private final String finorvin;
+
+    private final VehicleDictionary dictionary;
+
+    private final short salesdesignation;
+
+    private final short colorname;
+
+    private final short fueltype;
+
+    private final short modelyear;
+
+    private final short powerhp;
+
+    private final short powerkw;
+
+    private final byte numberofdoors;
+
+    private final byte numberofseats;
+
+    // numeric values which can't be represented by their primitive, null if there are none
+    private final String[] irregular;
+
+    private CompactVehicle(Vehicle vehicle, VehicleDictionary dictionary) {
+        this.id = vehicle.getId();
+        this.licenseplate = vehicle.getLicenseplate();
+        this.finorvin = vehicle.getFinorvin();
+        this.dictionary = dictionary;
+        this.salesdesignation = (short) dictionary.encode(vehicle.getSalesdesignation());
+        this.colorname = (short) dictionary.encode(vehicle.getColorname());
+        this.fueltype = (short) dictionary.encode(vehicle.getFueltype());
+        String[] numbers = {vehicle.getModelyear(), vehicle.getPowerhp(), vehicle.getPowerkw(),
+                vehicle.getNumberofdoors(), vehicle.getNumberofseats()};
+        this.modelyear = (short) parse(numbers[MODELYEAR], Short.MAX_VALUE);
+        this.powerhp = (short) parse(numbers[POWERHP], Short.MAX_VALUE);
+        this.powerkw = (short) parse(numbers[POWERKW], Short.MAX_VALUE);
+        this.numberofdoors = (byte) parse(numbers[NUMBEROFDOORS], Byte.MAX_VALUE);
+        this.numberofseats = (byte) parse(numbers[NUMBEROFSEATS], Byte.MAX_VALUE);
+        this.irregular = modelyear == IRREGULAR || powerhp == IRREGULAR || powerkw == IRREGULAR
+                || numberofdoors == IRREGULAR || numberofseats == IRREGULAR ? numbers : null;
+    }
+
+    /**
+     * @param dictionary shared by all compact vehicles of the fleet
+     * @throws IllegalStateException if the dictionary can't hold the values of the vehicle
+     */
+    public static CompactVehicle of(Vehicle vehicle, VehicleDictionary dictionary) {
+        return new CompactVehicle(vehicle, dictionary);
+    }
+
+    public String getSalesdesignation() {
+        return dictionary.decode(Short.toUnsignedInt(salesdesignation));
+    }
+
+    public String getColorname() {
+        return dictionary.decode(Short.toUnsignedInt(colorname));
+    }
+
+    public String getFueltype() {
+        return dictionary.decode(Short.toUnsignedInt(fueltype));
+    }
+
+    public int getModelyear() {
+        return value(modelyear);
+    }
+
+    public int getPowerhp() {
+        return value(powerhp);
+    }
+
+    public int getPowerkw() {
+        return value(powerkw);
+    }
+
+    public int getNumberofdoors() {
+        return value(numberofdoors);
+    }
+
+    public int getNumberofseats() {
+        return value(numberofseats);
+    }
+
+    /**
+     * @return a new vehicle with exactly the values this one was created from
+     */
+    public Vehicle toVehicle() {
+        Vehicle vehicle = new Vehicle();
+        vehicle.setId(id);
+        vehicle.setLicenseplate(licenseplate);
+        vehicle.setFinorvin(finorvin);
+        vehicle.setSalesdesignation(getSalesdesignation());
+        vehicle.setColorname(getColorname());
+        vehicle.setFueltype(getFueltype());
+        vehicle.setModelyear(text(modelyear, MODELYEAR));
+        vehicle.setPowerhp(text(powerhp, POWERHP));
+        vehicle.setPowerkw(text(powerkw, POWERKW));
+        vehicle.setNumberofdoors(text(numberofdoors, NUMBEROFDOORS));
+        vehicle.setNumberofseats(text(numberofseats, NUMBEROFSEATS));
+        return vehicle;
+    }
+
+    private String text(int value, int index) {
+        if(value == IRREGULAR) {
+            return irregular[index];
+        }
+        return value == ABSENT ? null : Integer.toString(value);
+    }
+
+    private static int value(int value) {
+        return value < 0 ? ABSENT : value;
+    }
+
+    /**
+     * @return the value if it is a plain non-negative integer up to `max`, which converts back to the same text
+     */
+    private static int parse(String text, int max) {
+        if(text == null) {
+            return ABSENT;
+        }
+        int length = text.length();
+        if(length == 0 || length > 5 || (length > 1 && text.charAt(0) == '0')) {
+            return IRREGULAR;
+        }
+        int value = 0;
+        for(int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if(c < '0' || c > '9') {
+                return IRREGULAR;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value <= max ? value : IRREGULAR;
+    }
+}
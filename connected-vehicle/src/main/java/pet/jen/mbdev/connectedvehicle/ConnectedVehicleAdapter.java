@@ -1,14 +1,21 @@
 package pet.jen.mbdev.connectedvehicle;
 
+import pet.jen.mbdev.api.ApiOptions;
 import pet.jen.mbdev.api.MBDevApiFactory;
 import pet.jen.mbdev.api.TokenProvider;
+import pet.jen.mbdev.api.streaming.CloseableIterator;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Wraps and abstracts the connected vehicle API via a Feign client.
  * The key aspect is creating an API via the {@link MBDevApiFactory} which creates it accordingly.
  *
+ * All adapters of a host share the same feign client, an adapter itself only holds the token provider of its user.
+ *
  * @author Jens Petersohn <me@jen.pet>
  */
 public class ConnectedVehicleAdapter {
@@ -18,17 +25,89 @@ public class ConnectedVehicleAdapter {
     private final ConnectedVehicleApi api;
 
     public ConnectedVehicleAdapter(TokenProvider tokenProvider) {
-        this.api = MBDevApiFactory.create(ConnectedVehicleApi.class, BASE_PATH, tokenProvider);
+        this.api = MBDevApiFactory.createForTenant(ConnectedVehicleApi.class, BASE_PATH, tokenProvider);
     }
 
     public ConnectedVehicleAdapter(TokenProvider tokenProvider, String hostname) {
-        this.api = MBDevApiFactory.create(ConnectedVehicleApi.class, hostname, BASE_PATH, tokenProvider);
+        this.api = MBDevApiFactory.createForTenant(ConnectedVehicleApi.class, hostname, BASE_PATH, tokenProvider);
+    }
+
+    /**
+     * @param options shared with all other adapters of the application, e.g. to use the transport of the auth module
+     */
+    public ConnectedVehicleAdapter(TokenProvider tokenProvider, String hostname, ApiOptions options) {
+        this.api = MBDevApiFactory.createForTenant(ConnectedVehicleApi.class, hostname, BASE_PATH, tokenProvider, options);
+    }
+
+    private ConnectedVehicleAdapter(ConnectedVehicleApi api) {
+        this.api = api;
+    }
+
+    /**
+     * @return adapter of the same user whose concurrent identical `vehicles()` and `vehicle(id)` calls share a single
+     *         request; the returned vehicles are shared by these callers and must not be modified
+     */
+    public ConnectedVehicleAdapter coalescing() {
+        return new ConnectedVehicleAdapter(MBDevApiFactory.coalescing(this.api));
     }
 
     public List<Vehicle> vehicles() {
         return this.api.vehicles();
     }
 
+    /**
+     * Reads the vehicles one after another while they are received instead of waiting for the whole list. The
+     * iterator has to be closed if it is not read completely.
+     */
+    public CloseableIterator<Vehicle> vehicleIterator() {
+        return this.api.vehicleIterator();
+    }
+
+    /**
+     * Stream variant of `vehicleIterator()`, has to be closed if it is not consumed completely.
+     */
+    public Stream<Vehicle> vehicleStream() {
+        return vehicleIterator().stream();
+    }
+
+    /**
+     * Passes the vehicles to the consumer one after another while they are received.
+     */
+    public void forEachVehicle(Consumer<? super Vehicle> consumer) {
+        try (CloseableIterator<Vehicle> vehicles = vehicleIterator()) {
+            vehicles.forEachRemaining(consumer);
+        }
+    }
+
+    /**
+     * Reads the vehicles without decoding them: every vehicle keeps the raw JSON of the projected fields and decodes
+     * them on the first access, all other fields are skipped and return `null`.
+     *
+     * @param projection fields the caller needs, `VehicleProjection.all()` to just defer decoding
+     */
+    public List<Vehicle> vehicles(VehicleProjection projection) {
+        List<Vehicle> vehicles = new ArrayList<>();
+        forEachVehicle(projection, vehicles::add);
+        return vehicles;
+    }
+
+    /**
+     * Iterator variant of `vehicles(projection)` which reads the vehicles while they are received, has to be closed
+     * if it is not read completely.
+     */
+    public CloseableIterator<Vehicle> vehicleIterator(VehicleProjection projection) {
+        return VehicleReader.open(this.api.rawVehicles(), projection);
+    }
+
+    /**
+     * Passes the projected vehicles to the consumer one after another while they are received.
+     */
+    public void forEachVehicle(VehicleProjection projection, Consumer<? super Vehicle> consumer) {
+        try (CloseableIterator<Vehicle> vehicles = vehicleIterator(projection)) {
+            vehicles.forEachRemaining(consumer);
+        }
+    }
+
     public Vehicle vehicle(String id) {
         return this.api.vehicle(id);
     }
@@ -3,20 +3,34 @@ package pet.jen.mbdev.connectedvehicle;
 import feign.Headers;
 import feign.Param;
 import feign.RequestLine;
+import pet.jen.mbdev.api.Coalesce;
+import pet.jen.mbdev.api.streaming.CloseableIterator;
 
+import java.io.InputStream;
 import java.util.List;
 
 /**
  * Represents the REST API for the connected vehicle
  * (https://developer.mercedes-benz.com/apis/connected_vehicle_experimental_api)
  *
+ * Concurrent identical calls of a tenant share one request if the client was created by
+ * `MBDevApiFactory.coalescing()`, the returned vehicles must not be modified in that case.
+ *
  * @author Jens Petersohn <me@jen.pet>
  */
 @Headers("Accept: application/json")
 public interface ConnectedVehicleApi {
+    @Coalesce
     @RequestLine("GET /vehicles")
     List<Vehicle> vehicles();
 
+    @RequestLine("GET /vehicles")
+    CloseableIterator<Vehicle> vehicleIterator();
+
+    @RequestLine("GET /vehicles")
+    InputStream rawVehicles();
+
+    @Coalesce
     @RequestLine("GET /vehicles/{id}")
     Vehicle vehicle(@Param("id") String id);
 }
@@ -0,0 +1,188 @@
+package pet.jen.mbdev.connectedvehicle;
+
+import lombok.Builder;
+import pet.jen.mbdev.api.AsyncOptions;
+import pet.jen.mbdev.api.TokenProvider;
+import pet.jen.mbdev.api.exception.MBDevApiException;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Retrieves the vehicles of many accounts, e.g. all users of an application, with at most `parallelism` concurrent
+ * `vehicles()` calls.
+ *
+ * The results are streamed in the order the calls complete, hence a slow account only delays itself. A failed call,
+ * including one failing with an {@link Error}, is reported by the result of its account and doesn't affect the others. Vehicles shared by several accounts are
+ * only returned with the account which reported them first, identified by their `finorvin`.
+ *
+ * Closing the stream, e.g. by a short-circuiting operation within a try-with-resources block, stops the retrieval of
+ * the accounts which were not started yet.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+public class FleetFanOut {
+
+    private static final int DEFAULT_PARALLELISM = 16;
+
+    private final int parallelism;
+
+    private final Executor executor;
+
+    private final Function<TokenProvider, ConnectedVehicleAdapter> adapters;
+
+    /**
+     * @param parallelism maximum amount of concurrent calls; defaults to 16
+     * @param executor performs the calls; defaults to the one of {@link AsyncOptions#defaults()}
+     * @param adapters creates the adapter of a token provider; defaults to adapters of the production environment
+     */
+    @Builder
+    private FleetFanOut(int parallelism, Executor executor, Function<TokenProvider, ConnectedVehicleAdapter> adapters) {
+        this.parallelism = parallelism > 0 ? parallelism : DEFAULT_PARALLELISM;
+        this.executor = executor != null ? executor : AsyncOptions.defaults().getExecutor();
+        this.adapters = adapters != null ? adapters : ConnectedVehicleAdapter::new;
+    }
+
+    /**
+     * @param tokenProviders of the accounts by their keys
+     * @param <K> type of the account keys
+     * @return stream of the results per account in the order of their completion
+     */
+    public <K> Stream<AccountVehicles<K>> vehicles(Map<K, ? extends TokenProvider> tokenProviders) {
+        Map<K, ConnectedVehicleAdapter> accounts = new LinkedHashMap<>();
+        for(Map.Entry<K, ? extends TokenProvider> account : tokenProviders.entrySet()) {
+            accounts.put(account.getKey(), adapters.apply(account.getValue()));
+        }
+        return vehiclesOf(accounts);
+    }
+
+    /**
+     * @param adapters of the accounts by their keys
+     * @param <K> type of the account keys
+     * @return stream of the results per account in the order of their completion
+     */
+    public <K> Stream<AccountVehicles<K>> vehiclesOf(Map<K, ConnectedVehicleAdapter> adapters) {
+        final Run<K> run = new Run<>(new ArrayList<>(adapters.entrySet()));
+        run.start();
+        // not sized, closing the stream ends it before all accounts were retrieved
+        Spliterator<AccountVehicles<K>> results = Spliterators.spliteratorUnknownSize(run, Spliterator.NONNULL);
+        return StreamSupport.stream(results, false).onClose(run::cancel);
+    }
+
+    /**
+     * A single fan-out whose workers take the accounts one after another and queue their results.
+     */
+    private class Run<K> implements Iterator<AccountVehicles<K>> {
+
+        private final Iterator<Map.Entry<K, ConnectedVehicleAdapter>> accounts;
+
+        private final int total;
+
+        private final BlockingQueue<AccountVehicles<K>> results = new LinkedBlockingQueue<>();
+
+        private final Set<String> seen = ConcurrentHashMap.newKeySet();
+
+        // accounts which were handed to a worker, guarded by this
+        private int started;
+
+        private int returned;
+
+        private volatile boolean cancelled;
+
+        Run(List<Map.Entry<K, ConnectedVehicleAdapter>> accounts) {
+            this.accounts = accounts.iterator();
+            this.total = accounts.size();
+        }
+
+        void start() {
+            for(int i = 0; i < Math.min(parallelism, total); i++) {
+                try {
+                    executor.execute(this::work);
+                } catch (RejectedExecutionException e) {
+                    // at least one worker is required, the others only add parallelism
+                    if(i == 0) {
+                        throw e;
+                    }
+                    return;
+                }
+            }
+        }
+
+        void cancel() {
+            cancelled = true;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return returned < expected();
+        }
+
+        @Override
+        public AccountVehicles<K> next() {
+            if(!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            try {
+                AccountVehicles<K> result = results.take();
+                returned++;
+                return result;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new MBDevApiException("Interrupted while waiting for the vehicles of an account.", e);
+            }
+        }
+
+        /**
+         * @return amount of results which will be queued, less than the total once cancelled
+         */
+        private synchronized int expected() {
+            return cancelled ? started : total;
+        }
+
+        private synchronized Map.Entry<K, ConnectedVehicleAdapter> take() {
+            if(cancelled || !accounts.hasNext()) {
+                return null;
+            }
+            started++;
+            return accounts.next();
+        }
+
+        private void work() {
+            Map.Entry<K, ConnectedVehicleAdapter> account;
+            while((account = take()) != null) {
+                results.add(fetch(account.getKey(), account.getValue()));
+            }
+        }
+
+        private AccountVehicles<K> fetch(K account, ConnectedVehicleAdapter adapter) {
+            try {
+                List<Vehicle> vehicles = adapter.vehicles();
+                List<Vehicle> unique = new ArrayList<>(vehicles.size());
+                for(Vehicle vehicle : vehicles) {
+                    if(vehicle.getFinorvin() == null || seen.add(vehicle.getFinorvin())) {
+                        unique.add(vehicle);
+                    }
+                }
+                return AccountVehicles.success(account, unique, vehicles.size() - unique.size());
+            } catch (Throwable e) {
+                // every taken account has to queue a result, otherwise the stream would wait for it forever
+                return AccountVehicles.failure(account, e);
+            }
+        }
+    }
+}
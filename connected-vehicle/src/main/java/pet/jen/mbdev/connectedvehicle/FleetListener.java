@@ -0,0 +1,27 @@
+package pet.jen.mbdev.connectedvehicle;
+
+import java.util.List;
+
+/**
+ * Receives the changes of the accounts observed by a {@link FleetPoller}. Listeners are called by the thread which
+ * polled the account, one account at a time. Changes are delivered at least once: if any listener throws, all
+ * listeners receive them again with the next poll.
+ *
+ * @param <K> type of the account keys
+ * @author Jens Petersohn <me@jen.pet>
+ */
+public interface FleetListener<K> {
+
+    /**
+     * Called after a poll which found at least one change.
+     *
+     * @param changes all changes of the poll, ordered by `finorvin`
+     */
+    void changed(K account, List<VehicleChange<K>> changes);
+
+    /**
+     * Called if the `vehicles()` call of a poll failed; the known state of the account is kept.
+     */
+    default void failed(K account, RuntimeException error) {
+    }
+}
@@ -0,0 +1,358 @@
+package pet.jen.mbdev.connectedvehicle;
+
+import lombok.Builder;
+import pet.jen.mbdev.api.AsyncOptions;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Polls the vehicles of many accounts and reports only what changed since the previous poll of an account to the
+ * registered {@link FleetListener}s.
+ *
+ * The poller doesn't keep the vehicles but a 64-bit fingerprint of the content of every vehicle per account, sorted by
+ * `finorvin`. A response is compared to them with a single merge and results in added, changed and removed
+ * {@link VehicleChange}s. The first poll of an account reports all of its vehicles as added. Vehicles without a
+ * `finorvin` are ignored; vehicles shared by several accounts are reported for each of them.
+ *
+ * The fingerprints of a poll only replace the previous ones once all listeners received its changes. If a listener
+ * throws, the remaining listeners are still called, the exception is rethrown by the poll and all listeners receive
+ * the changes again with the next poll. Listeners must therefore tolerate changes which are reported repeatedly.
+ *
+ * Every account is polled with its own interval between `minInterval` and `maxInterval`, starting with the former.
+ * A poll which found changes halves the interval, a poll without changes or a failed one doubles it. Accounts whose
+ * vehicles change frequently are therefore polled often, while unchanged accounts settle at `maxInterval`. Polls of an
+ * account never overlap; the next one is scheduled once the previous one completed.
+ *
+ * @param <K> type of the account keys
+ * @author Jens Petersohn <me@jen.pet>
+ */
+public class FleetPoller<K> implements Closeable {
+
+    private static final long DEFAULT_MIN_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+    private static final long DEFAULT_MAX_INTERVAL = TimeUnit.MINUTES.toMillis(30);
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    // outside of the char range so that they can't collide with the characters of a value
+    private static final int FIELD_SEPARATOR = 0x10000;
+    private static final int NULL_VALUE = 0x10001;
+
+    private final long minInterval;
+
+    private final long maxInterval;
+
+    private final Executor executor;
+
+    // only triggers the polls, they are performed by the executor
+    private final ScheduledExecutorService scheduler;
+
+    private final List<FleetListener<K>> listeners = new CopyOnWriteArrayList<>();
+
+    private final ConcurrentMap<K, AccountPoll> accounts = new ConcurrentHashMap<>();
+
+    private volatile boolean closed;
+
+    /**
+     * @param minInterval milliseconds between two polls of an account whose vehicles change constantly; defaults to
+     *                    one minute
+     * @param maxInterval milliseconds between two polls of an account whose vehicles don't change; defaults to
+     *                    30 minutes
+     * @param executor performs the polls; defaults to the one of {@link AsyncOptions#defaults()}
+     */
+    @Builder
+    private FleetPoller(long minInterval, long maxInterval, Executor executor) {
+        this.minInterval = minInterval > 0 ? minInterval : DEFAULT_MIN_INTERVAL;
+        this.maxInterval = Math.max(this.minInterval, maxInterval > 0 ? maxInterval : DEFAULT_MAX_INTERVAL);
+        this.executor = executor != null ? executor : AsyncOptions.defaults().getExecutor();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "mbdev-fleet-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void addListener(FleetListener<K> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(FleetListener<K> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Starts polling the account, the first poll is performed right away.
+     *
+     * @throws IllegalArgumentException if the account is already polled
+     */
+    public void add(K account, ConnectedVehicleAdapter adapter) {
+        if(closed) {
+            throw new IllegalStateException("Fleet poller is closed.");
+        }
+        AccountPoll poll = new AccountPoll(account, adapter);
+        if(accounts.putIfAbsent(account, poll) != null) {
+            throw new IllegalArgumentException("Account " + account + " is already polled.");
+        }
+        poll.schedule(0);
+    }
+
+    /**
+     * Stops polling the account and forgets its vehicles without reporting them as removed.
+     */
+    public void remove(K account) {
+        AccountPoll poll = accounts.remove(account);
+        if(poll != null) {
+            poll.cancel();
+        }
+    }
+
+    /**
+     * @return the polled accounts
+     */
+    public Set<K> accounts() {
+        return Collections.unmodifiableSet(accounts.keySet());
+    }
+
+    /**
+     * @return current milliseconds between two polls of the account or -1 if it is not polled
+     */
+    public long interval(K account) {
+        AccountPoll poll = accounts.get(account);
+        return poll != null ? poll.interval : -1;
+    }
+
+    /**
+     * Stops polling all accounts. Polls which are in progress are completed.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        scheduler.shutdownNow();
+        for(AccountPoll poll : accounts.values()) {
+            poll.cancel();
+        }
+        accounts.clear();
+    }
+
+    /**
+     * Polls the account right away without changing its schedule.
+     *
+     * @return the changes which were reported to the listeners
+     */
+    List<VehicleChange<K>> poll(K account) {
+        AccountPoll poll = accounts.get(account);
+        if(poll == null) {
+            throw new IllegalArgumentException("Account " + account + " is not polled.");
+        }
+        return poll.poll();
+    }
+
+    /**
+     * FNV-1a hash of all fields of the vehicle.
+     */
+    static long fingerprint(Vehicle vehicle) {
+        long hash = FNV_OFFSET_BASIS;
+        for(VehicleField field : VehicleField.values()) {
+            String value = field.get(vehicle);
+            if(value == null) {
+                hash = (hash ^ NULL_VALUE) * FNV_PRIME;
+            } else {
+                for(int i = 0; i < value.length(); i++) {
+                    hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+                }
+            }
+            hash = (hash ^ FIELD_SEPARATOR) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * State and schedule of a single account.
+     */
+    private class AccountPoll {
+
+        private final K account;
+
+        private final ConnectedVehicleAdapter adapter;
+
+        // serializes the scheduled and explicit polls of the account, held while a poll waits for the API and listeners
+        private final ReentrantLock lock = new ReentrantLock();
+
+        // sorted finorvins of the previous poll and the fingerprints of their vehicles, null before the first
+        // successful poll; guarded by the lock
+        private String[] finorvins;
+        private long[] fingerprints;
+
+        // state of the current poll which replaces the previous one once its changes are delivered; guarded by the lock
+        private String[] polledFinorvins;
+        private long[] polledFingerprints;
+
+        private volatile long interval = minInterval;
+
+        private volatile ScheduledFuture<?> next;
+
+        private volatile boolean cancelled;
+
+        AccountPoll(K account, ConnectedVehicleAdapter adapter) {
+            this.account = account;
+            this.adapter = adapter;
+        }
+
+        void schedule(long delay) {
+            if(closed || cancelled) {
+                return;
+            }
+            try {
+                next = scheduler.schedule(this::execute, delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // the poller was closed in the meantime
+            }
+        }
+
+        void cancel() {
+            cancelled = true;
+            ScheduledFuture<?> scheduled = next;
+            if(scheduled != null) {
+                scheduled.cancel(false);
+            }
+        }
+
+        private void execute() {
+            try {
+                executor.execute(this::run);
+            } catch (RejectedExecutionException e) {
+                // the executor is saturated, the account is skipped until its next turn
+                schedule(interval);
+            }
+        }
+
+        private void run() {
+            try {
+                poll();
+            } finally {
+                schedule(interval);
+            }
+        }
+
+        List<VehicleChange<K>> poll() {
+            lock.lock();
+            try {
+                List<Vehicle> vehicles;
+                try {
+                    vehicles = adapter.vehicles();
+                } catch (RuntimeException e) {
+                    interval = Math.min(maxInterval, interval * 2);
+                    notify(listener -> listener.failed(account, e));
+                    return Collections.emptyList();
+                }
+                boolean initial = finorvins == null;
+                List<VehicleChange<K>> changes = Collections.unmodifiableList(compare(vehicles));
+                if(!changes.isEmpty()) {
+                    // keeps the previous state if a listener fails so that the changes are reported again
+                    notify(listener -> listener.changed(account, changes));
+                }
+                finorvins = polledFinorvins;
+                fingerprints = polledFingerprints;
+                if(!initial) {
+                    interval = changes.isEmpty() ? Math.min(maxInterval, interval * 2)
+                            : Math.max(minInterval, interval / 2);
+                }
+                return changes;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Calls every listener even if some of them fail.
+         *
+         * @throws RuntimeException the first exception of a listener, the ones of other listeners are suppressed
+         */
+        private void notify(Consumer<FleetListener<K>> notification) {
+            RuntimeException failure = null;
+            for(FleetListener<K> listener : listeners) {
+                try {
+                    notification.accept(listener);
+                } catch (RuntimeException e) {
+                    if(failure == null) {
+                        failure = e;
+                    } else {
+                        failure.addSuppressed(e);
+                    }
+                }
+            }
+            if(failure != null) {
+                throw failure;
+            }
+        }
+
+        /**
+         * Merges the vehicles with the state of the previous poll into the state of the current one.
+         *
+         * @return changes ordered by finorvin
+         */
+        private List<VehicleChange<K>> compare(List<Vehicle> vehicles) {
+            List<Vehicle> sorted = new ArrayList<>(vehicles.size());
+            for(Vehicle vehicle : vehicles) {
+                if(vehicle != null && vehicle.getFinorvin() != null) {
+                    sorted.add(vehicle);
+                }
+            }
+            sorted.sort(Comparator.comparing(Vehicle::getFinorvin));
+
+            String[] previousFinorvins = finorvins != null ? finorvins : new String[0];
+            long[] previousFingerprints = fingerprints != null ? fingerprints : new long[0];
+            String[] currentFinorvins = new String[sorted.size()];
+            long[] currentFingerprints = new long[sorted.size()];
+            List<VehicleChange<K>> changes = new ArrayList<>();
+            int previous = 0;
+            int current = 0;
+            for(Vehicle vehicle : sorted) {
+                String finorvin = vehicle.getFinorvin();
+                // the API is not supposed to list a vehicle twice, the first one wins
+                if(current > 0 && currentFinorvins[current - 1].equals(finorvin)) {
+                    continue;
+                }
+                // previous vehicles which sort before the current one are gone
+                while(previous < previousFinorvins.length && previousFinorvins[previous].compareTo(finorvin) < 0) {
+                    changes.add(VehicleChange.removed(account, previousFinorvins[previous++]));
+                }
+                long fingerprint = fingerprint(vehicle);
+                if(previous < previousFinorvins.length && previousFinorvins[previous].equals(finorvin)) {
+                    if(previousFingerprints[previous] != fingerprint) {
+                        changes.add(VehicleChange.changed(account, vehicle));
+                    }
+                    previous++;
+                } else {
+                    changes.add(VehicleChange.added(account, vehicle));
+                }
+                currentFinorvins[current] = finorvin;
+                currentFingerprints[current] = fingerprint;
+                current++;
+            }
+            for(; previous < previousFinorvins.length; previous++) {
+                changes.add(VehicleChange.removed(account, previousFinorvins[previous]));
+            }
+            polledFinorvins = Arrays.copyOf(currentFinorvins, current);
+            polledFingerprints = Arrays.copyOf(currentFingerprints, current);
+            return changes;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package pet.jen.mbdev.connectedvehicle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Combined filter over the vehicles of a {@link FleetRegistry}. All conditions have to match; a condition on a field
+ * matches if the field has any of the given values. Conditions on bitmap indexed fields and on the owning account
+ * are answered by intersecting the indexes, conditions on other fields are checked on the remaining vehicles.
+ *
+ * Queries are not thread-safe, but any amount of them may run concurrently against the same registry.
+ *
+ * @param <K> type of the account keys
+ * @author Jens Petersohn <me@jen.pet>
+ */
+public class FleetQuery<K> {
+
+    private final FleetRegistry<K> registry;
+
+    private final Map<VehicleField, Set<String>> conditions = new EnumMap<>(VehicleField.class);
+
+    private K account;
+
+    FleetQuery(FleetRegistry<K> registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Restricts the query to vehicles whose field has any of the values, a null value matches vehicles without the
+     * field. Several conditions on the same field must all match.
+     */
+    public FleetQuery<K> where(VehicleField field, String... values) {
+        Set<String> accepted = new HashSet<>(Arrays.asList(values));
+        Set<String> existing = conditions.get(field);
+        if(existing != null) {
+            accepted.retainAll(existing);
+        }
+        conditions.put(field, accepted);
+        return this;
+    }
+
+    /**
+     * Restricts the query to vehicles owned by the account.
+     */
+    public FleetQuery<K> ownedBy(K account) {
+        this.account = account;
+        return this;
+    }
+
+    public List<Vehicle> list() {
+        List<Vehicle> vehicles = new ArrayList<>();
+        forEach(vehicles::add);
+        return vehicles;
+    }
+
+    public int count() {
+        final int[] count = new int[1];
+        forEach(vehicle -> count[0]++);
+        return count[0];
+    }
+
+    public void forEach(Consumer<? super Vehicle> consumer) {
+        // conditions are checked for every candidate, plain arrays avoid iterators and hashing per row
+        VehicleField[] fields = conditions.keySet().toArray(new VehicleField[0]);
+        int[] slots = new int[fields.length];
+        String[][] values = new String[fields.length][];
+        for(int i = 0; i < fields.length; i++) {
+            slots[i] = registry.slot(fields[i]);
+            values[i] = conditions.get(fields[i]).toArray(new String[0]);
+        }
+        BitSet candidates = candidates();
+        if(candidates == null) {
+            int limit = registry.rowLimit();
+            for(int row = 0; row < limit; row++) {
+                accept(row, fields, slots, values, consumer);
+            }
+            return;
+        }
+        for(int row = candidates.nextSetBit(0); row >= 0; row = candidates.nextSetBit(row + 1)) {
+            accept(row, fields, slots, values, consumer);
+        }
+    }
+
+    /**
+     * @return intersection of the indexed conditions or null if there are none
+     */
+    private BitSet candidates() {
+        BitSet candidates = null;
+        if(account != null) {
+            candidates = new BitSet();
+            for(int row : registry.rowsOf(account)) {
+                candidates.set(row);
+            }
+        }
+        for(Map.Entry<VehicleField, Set<String>> condition : conditions.entrySet()) {
+            if(!registry.isBitmapIndexed(condition.getKey())) {
+                continue;
+            }
+            BitSet matches = new BitSet();
+            for(String value : condition.getValue()) {
+                matches.or(registry.bitmap(condition.getKey(), value));
+            }
+            if(candidates == null) {
+                candidates = matches;
+            } else {
+                candidates.and(matches);
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Passes the vehicle of the row to the consumer if it matches all conditions; the indexes might be outdated.
+     */
+    private void accept(int row, VehicleField[] fields, int[] slots, String[][] values,
+                        Consumer<? super Vehicle> consumer) {
+        FleetRegistry.Entry<K> entry = registry.entry(row);
+        if(entry == null || (account != null && !entry.owners.contains(account))) {
+            return;
+        }
+        for(int i = 0; i < fields.length; i++) {
+            String value = slots[i] >= 0 ? entry.values[slots[i]] : fields[i].get(entry.vehicle);
+            if(!matches(value, values[i])) {
+                return;
+            }
+        }
+        consumer.accept(entry.vehicle);
+    }
+
+    private static boolean matches(String value, String[] accepted) {
+        for(String candidate : accepted) {
+            if(Objects.equals(candidate, value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
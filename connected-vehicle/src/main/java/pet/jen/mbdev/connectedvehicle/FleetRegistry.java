@@ -0,0 +1,419 @@
+package pet.jen.mbdev.connectedvehicle;
+
+import lombok.Builder;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Indexed in-memory registry of the vehicles of many accounts which is fed with the results of their `vehicles()`
+ * polls. Vehicles are identified by their `finorvin` and resolved by hash indexes on `finorvin` and `licenseplate`.
+ * Low-cardinality fields, `fueltype` and `modelyear` by default, are indexed by one bitmap of rows per value; the
+ * owning accounts are indexed per account. Combined filters are answered by {@link FleetQuery}s.
+ *
+ * Reads never lock. The indexes are concurrent maps whose entries are immutable and replaced on modification
+ * (copy-on-write per entry), while updates are serialized by a lock. A read running concurrently with an update may
+ * therefore see the update applied to some indexes only; query results are verified against the vehicles so that
+ * they never contain a vehicle which doesn't match.
+ *
+ * The registry returns the instances it was fed with, they must therefore not be modified.
+ *
+ * @param <K> type of the account keys
+ * @author Jens Petersohn <me@jen.pet>
+ */
+public class FleetRegistry<K> {
+
+    private static final Set<VehicleField> DEFAULT_BITMAP_FIELDS = Collections.unmodifiableSet(
+            EnumSet.of(VehicleField.FUELTYPE, VehicleField.MODELYEAR));
+
+    private final Set<VehicleField> bitmapFields;
+
+    // position of the values of every bitmap field within the entries, -1 for other fields
+    private final int[] slots = new int[VehicleField.values().length];
+
+    // one shared instance per value of the bitmap fields, guarded by the update lock
+    private final Map<String, String> canonicalValues = new HashMap<>();
+
+    private final ReentrantLock updateLock = new ReentrantLock();
+
+    // entries by their row, replaced by a larger copy when full
+    private volatile AtomicReferenceArray<Entry<K>> rows = new AtomicReferenceArray<>(64);
+
+    // rows which were freed by removed vehicles, guarded by the update lock
+    private final Deque<Integer> freeRows = new ArrayDeque<>();
+
+    // next row which was never used, guarded by the update lock
+    private int nextRow;
+
+    private final ConcurrentMap<String, Integer> byFinorvin = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Integer> byLicenseplate = new ConcurrentHashMap<>();
+
+    // stands for a missing value in the bitmaps so that queries for null match like on fields without a bitmap
+    private static final Object MISSING = new Object();
+
+    // immutable bitmaps of the rows per value or MISSING and bitmap field
+    private final Map<VehicleField, ConcurrentMap<Object, BitSet>> bitmaps = new EnumMap<>(VehicleField.class);
+
+    // immutable, sorted rows per account
+    private final ConcurrentMap<K, int[]> byAccount = new ConcurrentHashMap<>();
+
+    /**
+     * @param bitmapFields low-cardinality fields which are indexed by bitmaps, their values are retained for the
+     *                     lifetime of the registry; defaults to `fueltype` and `modelyear`
+     */
+    @Builder
+    private FleetRegistry(Set<VehicleField> bitmapFields) {
+        this.bitmapFields = bitmapFields != null ? EnumSet.copyOf(bitmapFields) : DEFAULT_BITMAP_FIELDS;
+        Arrays.fill(slots, -1);
+        int slot = 0;
+        for(VehicleField field : this.bitmapFields) {
+            bitmaps.put(field, new ConcurrentHashMap<>());
+            slots[field.ordinal()] = slot++;
+        }
+    }
+
+    /**
+     * Replaces the vehicles of the account by the result of its latest `vehicles()` call. Vehicles which are no
+     * longer owned by any account are removed from the registry.
+     *
+     * @param vehicles all vehicles of the account, vehicles without a `finorvin` are ignored
+     */
+    public void update(K account, Collection<? extends Vehicle> vehicles) {
+        updateLock.lock();
+        try {
+            new Update(account).apply(vehicles);
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    /**
+     * Removes the account and all vehicles which are not owned by another account.
+     */
+    public void remove(K account) {
+        update(account, Collections.<Vehicle>emptyList());
+    }
+
+    /**
+     * @return the vehicle or null if it is unknown or the finorvin is null
+     */
+    public Vehicle byFinorvin(String finorvin) {
+        if(finorvin == null) {
+            return null;
+        }
+        Entry<K> entry = entry(byFinorvin.get(finorvin));
+        return entry != null && entry.vehicle.getFinorvin().equals(finorvin) ? entry.vehicle : null;
+    }
+
+    /**
+     * @return the vehicle or null if it is unknown or the plate is null; the latest update wins if several vehicles
+     *         share the plate
+     */
+    public Vehicle byLicenseplate(String licenseplate) {
+        if(licenseplate == null) {
+            return null;
+        }
+        Entry<K> entry = entry(byLicenseplate.get(licenseplate));
+        return entry != null && licenseplate.equals(entry.vehicle.getLicenseplate()) ? entry.vehicle : null;
+    }
+
+    /**
+     * @return the accounts which own the vehicle, empty if it is unknown
+     */
+    public Set<K> owners(String finorvin) {
+        if(finorvin == null) {
+            return Collections.emptySet();
+        }
+        Entry<K> entry = entry(byFinorvin.get(finorvin));
+        return entry != null && entry.vehicle.getFinorvin().equals(finorvin)
+                ? entry.owners : Collections.<K>emptySet();
+    }
+
+    /**
+     * @return the vehicles of the account, empty if it is unknown
+     */
+    public List<Vehicle> vehiclesOf(K account) {
+        return query().ownedBy(account).list();
+    }
+
+    /**
+     * @return amount of distinct vehicles
+     */
+    public int size() {
+        return byFinorvin.size();
+    }
+
+    /**
+     * @return new query over all vehicles of the registry
+     */
+    public FleetQuery<K> query() {
+        return new FleetQuery<>(this);
+    }
+
+    boolean isBitmapIndexed(VehicleField field) {
+        return slots[field.ordinal()] >= 0;
+    }
+
+    /**
+     * @return position of the field's value within {@link Entry#values} or -1 if it is not bitmap indexed
+     */
+    int slot(VehicleField field) {
+        return slots[field.ordinal()];
+    }
+
+    /**
+     * @return rows whose field has the value or is missing if the value is null, must not be modified
+     */
+    BitSet bitmap(VehicleField field, String value) {
+        BitSet bitmap = bitmaps.get(field).get(key(value));
+        return bitmap != null ? bitmap : new BitSet();
+    }
+
+    private static Object key(String value) {
+        return value != null ? value : MISSING;
+    }
+
+    /**
+     * @return rows of the account in ascending order, must not be modified
+     */
+    int[] rowsOf(K account) {
+        int[] accountRows = byAccount.get(account);
+        return accountRows != null ? accountRows : new int[0];
+    }
+
+    /**
+     * @return the entry of the row or null if the row is unused
+     */
+    Entry<K> entry(Integer row) {
+        return row != null ? entry(row.intValue()) : null;
+    }
+
+    /**
+     * @return the entry of the row or null if the row is unused
+     */
+    Entry<K> entry(int row) {
+        AtomicReferenceArray<Entry<K>> current = rows;
+        return row < current.length() ? current.get(row) : null;
+    }
+
+    /**
+     * @return amount of rows which were used so far, i.e. an exclusive upper bound of all rows
+     */
+    int rowLimit() {
+        return rows.length();
+    }
+
+    /**
+     * Immutable state of a row. The values of the bitmap fields are kept next to it as shared instances so that
+     * queries can verify them without reading the vehicle.
+     */
+    static final class Entry<K> {
+        final Vehicle vehicle;
+        final Set<K> owners;
+        final String[] values;
+
+        Entry(Vehicle vehicle, Set<K> owners, String[] values) {
+            this.vehicle = vehicle;
+            this.owners = owners;
+            this.values = values;
+        }
+    }
+
+    /**
+     * Applies the vehicles of a single account. Bitmaps are modified on copies which are published once at the end.
+     */
+    private class Update {
+
+        private final K account;
+
+        // modified copies of the bitmaps which are published at the end
+        private final Map<VehicleField, Map<Object, BitSet>> modified = new EnumMap<>(VehicleField.class);
+
+        Update(K account) {
+            this.account = account;
+        }
+
+        void apply(Collection<? extends Vehicle> vehicles) {
+            int[] previous = rowsOf(account);
+            BitSet current = new BitSet();
+            for(Vehicle vehicle : vehicles) {
+                if(vehicle == null || vehicle.getFinorvin() == null) {
+                    continue;
+                }
+                current.set(put(vehicle));
+            }
+            List<Integer> released = new ArrayList<>();
+            for(int row : previous) {
+                if(!current.get(row)) {
+                    released.add(row);
+                }
+            }
+            publishBitmaps();
+            if(current.isEmpty()) {
+                byAccount.remove(account);
+            } else {
+                byAccount.put(account, current.stream().toArray());
+            }
+            for(int row : released) {
+                release(row);
+            }
+            publishBitmaps();
+        }
+
+        /**
+         * Inserts or replaces the vehicle and adds the account to its owners.
+         *
+         * @return row of the vehicle
+         */
+        private int put(Vehicle vehicle) {
+            Integer existing = byFinorvin.get(vehicle.getFinorvin());
+            if(existing == null) {
+                int row = allocateRow();
+                rows.set(row, new Entry<>(vehicle, Collections.singleton(account), values(vehicle)));
+                index(row, null, vehicle);
+                byFinorvin.put(vehicle.getFinorvin(), row);
+                return row;
+            }
+            int row = existing;
+            Entry<K> entry = rows.get(row);
+            Set<K> owners = entry.owners;
+            if(!owners.contains(account)) {
+                Set<K> extended = new HashSet<>(owners);
+                extended.add(account);
+                owners = Collections.unmodifiableSet(extended);
+            }
+            if(!entry.vehicle.equals(vehicle)) {
+                rows.set(row, new Entry<>(vehicle, owners, values(vehicle)));
+                index(row, entry.vehicle, vehicle);
+            } else if(owners != entry.owners) {
+                rows.set(row, new Entry<>(entry.vehicle, owners, entry.values));
+            }
+            return row;
+        }
+
+        /**
+         * Removes the account from the owners of the row and removes the vehicle once it has no owners left.
+         */
+        private void release(int row) {
+            Entry<K> entry = rows.get(row);
+            if(entry.owners.size() > 1) {
+                Set<K> reduced = new HashSet<>(entry.owners);
+                reduced.remove(account);
+                rows.set(row, new Entry<>(entry.vehicle, Collections.unmodifiableSet(reduced), entry.values));
+                return;
+            }
+            byFinorvin.remove(entry.vehicle.getFinorvin(), row);
+            index(row, entry.vehicle, null);
+            rows.set(row, null);
+            freeRows.push(row);
+        }
+
+        /**
+         * Moves the row from the index entries of the previous vehicle to the ones of the current vehicle.
+         */
+        private void index(int row, Vehicle previous, Vehicle current) {
+            String previousPlate = previous != null ? previous.getLicenseplate() : null;
+            String currentPlate = current != null ? current.getLicenseplate() : null;
+            if(previousPlate != null && !previousPlate.equals(currentPlate)) {
+                byLicenseplate.remove(previousPlate, row);
+            }
+            if(currentPlate != null) {
+                byLicenseplate.put(currentPlate, row);
+            }
+            for(VehicleField field : bitmapFields) {
+                String previousValue = previous != null ? field.get(previous) : null;
+                String currentValue = current != null ? field.get(current) : null;
+                if(previous != null && current != null && Objects.equals(previousValue, currentValue)) {
+                    continue;
+                }
+                if(previous != null) {
+                    modifiable(field, previousValue).clear(row);
+                }
+                if(current != null) {
+                    modifiable(field, currentValue).set(row);
+                }
+            }
+        }
+
+        private String[] values(Vehicle vehicle) {
+            String[] values = new String[bitmapFields.size()];
+            for(VehicleField field : bitmapFields) {
+                String value = field.get(vehicle);
+                if(value != null) {
+                    String canonical = canonicalValues.get(value);
+                    if(canonical == null) {
+                        canonical = value;
+                        canonicalValues.put(value, value);
+                    }
+                    values[slots[field.ordinal()]] = canonical;
+                }
+            }
+            return values;
+        }
+
+        private BitSet modifiable(VehicleField field, String value) {
+            Map<Object, BitSet> fieldBitmaps = modified.get(field);
+            if(fieldBitmaps == null) {
+                fieldBitmaps = new HashMap<>();
+                modified.put(field, fieldBitmaps);
+            }
+            Object key = key(value);
+            BitSet bitmap = fieldBitmaps.get(key);
+            if(bitmap == null) {
+                BitSet published = bitmaps.get(field).get(key);
+                bitmap = published != null ? (BitSet) published.clone() : new BitSet();
+                fieldBitmaps.put(key, bitmap);
+            }
+            return bitmap;
+        }
+
+        private void publishBitmaps() {
+            for(Map.Entry<VehicleField, Map<Object, BitSet>> field : modified.entrySet()) {
+                ConcurrentMap<Object, BitSet> published = bitmaps.get(field.getKey());
+                for(Map.Entry<Object, BitSet> bitmap : field.getValue().entrySet()) {
+                    if(bitmap.getValue().isEmpty()) {
+                        published.remove(bitmap.getKey());
+                    } else {
+                        published.put(bitmap.getKey(), bitmap.getValue());
+                    }
+                }
+            }
+            modified.clear();
+        }
+
+        private int allocateRow() {
+            Integer free = freeRows.poll();
+            if(free != null) {
+                return free;
+            }
+            int row = nextRow++;
+            AtomicReferenceArray<Entry<K>> current = rows;
+            if(row == current.length()) {
+                AtomicReferenceArray<Entry<K>> grown = new AtomicReferenceArray<>(current.length() * 2);
+                for(int i = 0; i < current.length(); i++) {
+                    grown.set(i, current.get(i));
+                }
+                rows = grown;
+            }
+            return row;
+        }
+    }
+}
@@ -0,0 +1,360 @@
+package pet.jen.mbdev.connectedvehicle;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.function.IntConsumer;
+
+/**
+ * Columnar snapshot store of a fleet's vehicles which lives outside of the heap in memory mapped files of a directory.
+ * Every {@link VehicleField} is a column file holding one int per row, the code of the value within a persistent
+ * string dictionary shared by all columns. Rows are identified by the `finorvin` of their vehicle.
+ *
+ * Filters and full scans run over the columns and report the matching rows without allocating anything; vehicles
+ * are only created when requested via `vehicle(row)`. As everything lives in the mapped files, opening a store only
+ * maps them and the store is usable right away, independent of its size.
+ *
+ * Upserts, e.g. of the results of `ConnectedVehicleAdapter.vehicles()`, append new vehicles as rows and overwrite the
+ * columns of known ones in place; rows are never removed. Reads may run concurrently with upserts and see vehicles
+ * which are upserted at the moment partially updated. The indexes are marked dirty while they are modified and are
+ * rebuilt when the store is opened in that state.
+ *
+ * Written data is visible to the operating system right away and therefore survives a crash of the JVM, `flush()`
+ * forces it to the storage device.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+public class FleetStore implements Closeable {
+
+    public static final int ABSENT = -1;
+
+    private static final VehicleField[] FIELDS = VehicleField.values();
+
+    private static final int KEYS_MAGIC = 0x4D42464B;
+
+    // magic, capacity, rows, dirty flag
+    private static final int KEYS_HEADER = 16;
+
+    // slots of the key index are pairs of the finorvin code and the row
+    private static final int SLOT_SIZE = 8;
+
+    private static final int MIN_ROWS = 1024;
+
+    private final Path directory;
+
+    private final MappedStringDictionary dictionary;
+
+    private final FileChannel[] columnChannels = new FileChannel[FIELDS.length];
+
+    // replaced as a whole when the columns grow
+    private volatile MappedByteBuffer[] columns;
+
+    private volatile MappedByteBuffer keys;
+
+    private int keyCapacity;
+
+    private volatile int rows;
+
+    private FleetStore(Path directory, MappedStringDictionary dictionary) {
+        this.directory = directory;
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Opens the store of the directory, which is created if it does not exist.
+     *
+     * @throws IOException in case the files can't be opened or mapped
+     */
+    public static FleetStore open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        MappedStringDictionary dictionary = MappedStringDictionary.open(directory.resolve("strings.dat"),
+                directory.resolve("strings.idx"));
+        FleetStore store = new FleetStore(directory, dictionary);
+        try {
+            store.openKeys();
+            store.openColumns();
+            if(store.keys.getInt(12) != 0) {
+                store.rebuildKeys(store.keyCapacity);
+            }
+        } catch (IOException | RuntimeException e) {
+            store.close();
+            throw e;
+        }
+        return store;
+    }
+
+    /**
+     * @return amount of vehicles in the store
+     */
+    public int size() {
+        return rows;
+    }
+
+    /**
+     * Inserts vehicles with an unknown `finorvin` and replaces all values of the known ones.
+     *
+     * @throws IllegalArgumentException if a vehicle has no `finorvin`
+     * @throws IOException in case the store can't be written
+     */
+    public synchronized void upsert(Collection<? extends Vehicle> vehicles) throws IOException {
+        for(Vehicle vehicle : vehicles) {
+            upsert(vehicle);
+        }
+    }
+
+    /**
+     * @see #upsert(Collection)
+     */
+    public synchronized void upsert(Vehicle vehicle) throws IOException {
+        if(vehicle.getFinorvin() == null) {
+            throw new IllegalArgumentException("Vehicles without a finorvin can't be stored.");
+        }
+        int key = dictionary.encode(vehicle.getFinorvin());
+        int row = row(key);
+        boolean inserted = row == ABSENT;
+        if(inserted) {
+            row = rows;
+            ensureCapacity(row + 1);
+        }
+        MappedByteBuffer[] current = columns;
+        for(VehicleField field : FIELDS) {
+            current[field.ordinal()].putInt(4 * row, dictionary.encode(field.get(vehicle)));
+        }
+        if(inserted) {
+            insertKey(key, row);
+        }
+    }
+
+    /**
+     * @return row of the vehicle or `ABSENT` if the store does not contain it
+     */
+    public int row(String finorvin) {
+        int key = dictionary.code(finorvin);
+        return key > 0 ? row(key) : ABSENT;
+    }
+
+    /**
+     * @return value of the field of the vehicle in the row
+     */
+    public String value(int row, VehicleField field) {
+        checkRow(row);
+        return dictionary.decode(columns[field.ordinal()].getInt(4 * row));
+    }
+
+    /**
+     * @return a new vehicle with the values of the row
+     */
+    public Vehicle vehicle(int row) {
+        checkRow(row);
+        MappedByteBuffer[] current = columns;
+        Vehicle vehicle = new Vehicle();
+        for(VehicleField field : FIELDS) {
+            field.set(vehicle, dictionary.decode(current[field.ordinal()].getInt(4 * row)));
+        }
+        return vehicle;
+    }
+
+    /**
+     * @return a new vehicle with the values of the stored one or null if the store does not contain it
+     */
+    public Vehicle vehicle(String finorvin) {
+        int row = row(finorvin);
+        return row != ABSENT ? vehicle(row) : null;
+    }
+
+    /**
+     * Passes all rows to the consumer.
+     */
+    public void scan(IntConsumer consumer) {
+        int count = rows;
+        for(int row = 0; row < count; row++) {
+            consumer.accept(row);
+        }
+    }
+
+    /**
+     * Passes the rows whose field equals the value to the consumer, `null` matches missing values.
+     */
+    public void scan(VehicleField field, String value, IntConsumer consumer) {
+        int code = dictionary.code(value);
+        if(code == MappedStringDictionary.ABSENT) {
+            return;
+        }
+        int count = rows;
+        MappedByteBuffer column = columns[field.ordinal()];
+        for(int row = 0; row < count; row++) {
+            if(column.getInt(4 * row) == code) {
+                consumer.accept(row);
+            }
+        }
+    }
+
+    /**
+     * @return amount of rows whose field equals the value
+     */
+    public int count(VehicleField field, String value) {
+        int code = dictionary.code(value);
+        if(code == MappedStringDictionary.ABSENT) {
+            return 0;
+        }
+        int count = rows;
+        int matches = 0;
+        MappedByteBuffer column = columns[field.ordinal()];
+        for(int row = 0; row < count; row++) {
+            if(column.getInt(4 * row) == code) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Forces all written data to the storage device.
+     */
+    public synchronized void flush() {
+        dictionary.flush();
+        for(MappedByteBuffer column : columns) {
+            column.force();
+        }
+        keys.force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if(columns != null && keys != null) {
+            flush();
+        }
+        for(FileChannel channel : columnChannels) {
+            if(channel != null) {
+                channel.close();
+            }
+        }
+        dictionary.close();
+    }
+
+    private void openKeys() throws IOException {
+        Path path = directory.resolve("keys.idx");
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            if(channel.size() == 0) {
+                keys = channel.map(FileChannel.MapMode.READ_WRITE, 0, KEYS_HEADER + (long) SLOT_SIZE * 2 * MIN_ROWS);
+                keys.putInt(4, 2 * MIN_ROWS);
+                keys.putInt(0, KEYS_MAGIC);
+            } else {
+                keys = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+                if(keys.getInt(0) != KEYS_MAGIC) {
+                    throw new IOException(path + " is not a fleet store index.");
+                }
+            }
+        }
+        keyCapacity = keys.getInt(4);
+        rows = keys.getInt(8);
+    }
+
+    private void openColumns() throws IOException {
+        MappedByteBuffer[] mapped = new MappedByteBuffer[FIELDS.length];
+        for(VehicleField field : FIELDS) {
+            FileChannel channel = FileChannel.open(directory.resolve(field.jsonName() + ".col"),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            columnChannels[field.ordinal()] = channel;
+            long size = Math.max(channel.size(), 4L * Math.max(MIN_ROWS, rows));
+            mapped[field.ordinal()] = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        columns = mapped;
+    }
+
+    private void ensureCapacity(int required) throws IOException {
+        if(4L * required <= columns[0].capacity()) {
+            return;
+        }
+        long size = Math.max(4L * required, 2L * columns[0].capacity());
+        if(size > Integer.MAX_VALUE) {
+            throw new IOException("Fleet store " + directory + " exceeds the maximum size of a mapped file.");
+        }
+        MappedByteBuffer[] grown = new MappedByteBuffer[FIELDS.length];
+        for(int i = 0; i < FIELDS.length; i++) {
+            grown[i] = columnChannels[i].map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        columns = grown;
+    }
+
+    private int row(int key) {
+        MappedByteBuffer current = keys;
+        int capacity = current.getInt(4);
+        int slot = mix(key) & (capacity - 1);
+        int slotKey;
+        while((slotKey = current.getInt(KEYS_HEADER + SLOT_SIZE * slot)) != 0) {
+            if(slotKey == key) {
+                return current.getInt(KEYS_HEADER + SLOT_SIZE * slot + 4);
+            }
+            slot = (slot + 1) & (capacity - 1);
+        }
+        return ABSENT;
+    }
+
+    private void insertKey(int key, int row) throws IOException {
+        MappedByteBuffer current = keys;
+        current.putInt(12, 1);
+        putSlot(current, keyCapacity, key, row);
+        // the row becomes visible to readers with the incremented count
+        current.putInt(8, row + 1);
+        rows = row + 1;
+        current.putInt(12, 0);
+        if(rows * 2 > keyCapacity) {
+            rebuildKeys(keyCapacity * 2);
+        }
+    }
+
+    /**
+     * Writes a new key index of the given capacity from the finorvin column and replaces the current one.
+     */
+    private void rebuildKeys(int capacity) throws IOException {
+        Path path = directory.resolve("keys.idx");
+        Path rebuildPath = Paths.get(path.toString() + ".rebuild");
+        MappedByteBuffer rebuilt;
+        try (FileChannel channel = FileChannel.open(rebuildPath, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            rebuilt = channel.map(FileChannel.MapMode.READ_WRITE, 0, KEYS_HEADER + (long) SLOT_SIZE * capacity);
+        }
+        MappedByteBuffer finorvins = columns[VehicleField.FINORVIN.ordinal()];
+        for(int row = 0; row < rows; row++) {
+            putSlot(rebuilt, capacity, finorvins.getInt(4 * row), row);
+        }
+        rebuilt.putInt(4, capacity);
+        rebuilt.putInt(8, rows);
+        rebuilt.putInt(12, 0);
+        rebuilt.putInt(0, KEYS_MAGIC);
+        rebuilt.force();
+        Files.move(rebuildPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        keys = rebuilt;
+        keyCapacity = capacity;
+    }
+
+    private static void putSlot(MappedByteBuffer target, int capacity, int key, int row) {
+        int slot = mix(key) & (capacity - 1);
+        while(target.getInt(KEYS_HEADER + SLOT_SIZE * slot) != 0) {
+            slot = (slot + 1) & (capacity - 1);
+        }
+        // the row is written first so that readers never see a key without its row
+        target.putInt(KEYS_HEADER + SLOT_SIZE * slot + 4, row);
+        target.putInt(KEYS_HEADER + SLOT_SIZE * slot, key);
+    }
+
+    private void checkRow(int row) {
+        if(row < 0 || row >= rows) {
+            throw new IndexOutOfBoundsException("Row " + row + " is not part of the fleet store.");
+        }
+    }
+
+    private static int mix(int key) {
+        int hash = key * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,264 @@
+package pet.jen.mbdev.connectedvehicle;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * {@link Vehicle} which keeps the raw JSON object it was read from and decodes its fields on the first access of any
+ * of them. Vehicles which are never read don't allocate a single string; once decoded the raw bytes are released.
+ *
+ * The raw object only contains the fields of the projection it was read with, see {@link VehicleReader}. Decoding is
+ * safe to be triggered by several threads, modifying the vehicle is not.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+class LazyVehicle extends Vehicle {
+
+    private static final VehicleField[] FIELD_VALUES = VehicleField.values();
+
+    private static final int FIELDS = FIELD_VALUES.length;
+
+    // values indexed by the ordinal of their field, written before `raw` is released
+    private String[] values;
+
+    private volatile byte[] raw;
+
+    LazyVehicle(byte[] raw) {
+        this.raw = raw;
+    }
+
+    @Override
+    public String getId() {
+        return get(VehicleField.ID);
+    }
+
+    @Override
+    public void setId(String id) {
+        set(VehicleField.ID, id);
+    }
+
+    @Override
+    public String getLicenseplate() {
+        return get(VehicleField.LICENSEPLATE);
+    }
+
+    @Override
+    public void setLicenseplate(String licenseplate) {
+        set(VehicleField.LICENSEPLATE, licenseplate);
+    }
+
+    @Override
+    public String getSalesdesignation() {
+        return get(VehicleField.SALESDESIGNATION);
+    }
+
+    @Override
+    public void setSalesdesignation(String salesdesignation) {
+        set(VehicleField.SALESDESIGNATION, salesdesignation);
+    }
+
+    @Override
+    public String getFinorvin() {
+        return get(VehicleField.FINORVIN);
+    }
+
+    @Override
+    public void setFinorvin(String finorvin) {
+        set(VehicleField.FINORVIN, finorvin);
+    }
+
+    @Override
+    public String getModelyear() {
+        return get(VehicleField.MODELYEAR);
+    }
+
+    @Override
+    public void setModelyear(String modelyear) {
+        set(VehicleField.MODELYEAR, modelyear);
+    }
+
+    @Override
+    public String getColorname() {
+        return get(VehicleField.COLORNAME);
+    }
+
+    @Override
+    public void setColorname(String colorname) {
+        set(VehicleField.COLORNAME, colorname);
+    }
+
+    @Override
+    public String getFueltype() {
+        return get(VehicleField.FUELTYPE);
+    }
+
+    @Override
+    public void setFueltype(String fueltype) {
+        set(VehicleField.FUELTYPE, fueltype);
+    }
+
+    @Override
+    public String getPowerhp() {
+        return get(VehicleField.POWERHP);
+    }
+
+    @Override
+    public void setPowerhp(String powerhp) {
+        set(VehicleField.POWERHP, powerhp);
+    }
+
+    @Override
+    public String getPowerkw() {
+        return get(VehicleField.POWERKW);
+    }
+
+    @Override
+    public void setPowerkw(String powerkw) {
+        set(VehicleField.POWERKW, powerkw);
+    }
+
+    @Override
+    public String getNumberofdoors() {
+        return get(VehicleField.NUMBEROFDOORS);
+    }
+
+    @Override
+    public void setNumberofdoors(String numberofdoors) {
+        set(VehicleField.NUMBEROFDOORS, numberofdoors);
+    }
+
+    @Override
+    public String getNumberofseats() {
+        return get(VehicleField.NUMBEROFSEATS);
+    }
+
+    @Override
+    public void setNumberofseats(String numberofseats) {
+        set(VehicleField.NUMBEROFSEATS, numberofseats);
+    }
+
+    /**
+     * @return whether the fields were not decoded yet
+     */
+    boolean isRaw() {
+        return raw != null;
+    }
+
+    private String get(VehicleField field) {
+        if(raw != null) {
+            decode();
+        }
+        return values[field.ordinal()];
+    }
+
+    private void set(VehicleField field, String value) {
+        if(raw != null) {
+            decode();
+        }
+        values[field.ordinal()] = value;
+    }
+
+    /**
+     * Decodes the raw object. It was written by the {@link VehicleReader} and therefore only consists of string
+     * values, which allows to scan it directly instead of creating a JSON parser per vehicle.
+     */
+    private synchronized void decode() {
+        byte[] bytes = raw;
+        if(bytes == null) {
+            return;
+        }
+        String[] decoded = new String[FIELDS];
+        // {"name":"value","name":"value"}
+        int position = 1;
+        while(position < bytes.length && bytes[position] == '"') {
+            int nameEnd = indexOf(bytes, (byte) '"', position + 1);
+            VehicleField field = field(bytes, position + 1, nameEnd);
+            int valueStart = nameEnd + 3;
+            int valueEnd = valueStart;
+            boolean escaped = false;
+            while(bytes[valueEnd] != '"') {
+                if(bytes[valueEnd] == '\\') {
+                    escaped = true;
+                    valueEnd++;
+                }
+                valueEnd++;
+            }
+            if(field != null) {
+                decoded[field.ordinal()] = escaped
+                        ? unescape(bytes, valueStart, valueEnd)
+                        : new String(bytes, valueStart, valueEnd - valueStart, StandardCharsets.UTF_8);
+            }
+            // skips the closing quote and the following comma respectively brace
+            position = valueEnd + 2;
+        }
+        this.values = decoded;
+        this.raw = null;
+    }
+
+    private static int indexOf(byte[] bytes, byte value, int from) {
+        int index = from;
+        while(bytes[index] != value) {
+            index++;
+        }
+        return index;
+    }
+
+    private static VehicleField field(byte[] bytes, int start, int end) {
+        for(VehicleField field : FIELD_VALUES) {
+            byte[] name = field.jsonNameBytes();
+            if(name.length == end - start && regionMatches(bytes, start, name)) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    private static boolean regionMatches(byte[] bytes, int start, byte[] name) {
+        for(int i = 0; i < name.length; i++) {
+            if(bytes[start + i] != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decodes a string value which contains JSON escape sequences.
+     */
+    private static String unescape(byte[] bytes, int start, int end) {
+        String value = new String(bytes, start, end - start, StandardCharsets.UTF_8);
+        StringBuilder unescaped = new StringBuilder(value.length());
+        for(int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if(c != '\\') {
+                unescaped.append(c);
+                continue;
+            }
+            c = value.charAt(++i);
+            switch(c) {
+                case 'b':
+                    unescaped.append('\b');
+                    break;
+                case 'f':
+                    unescaped.append('\f');
+                    break;
+                case 'n':
+                    unescaped.append('\n');
+                    break;
+                case 'r':
+                    unescaped.append('\r');
+                    break;
+                case 't':
+                    unescaped.append('\t');
+                    break;
+                case 'u':
+                    unescaped.append((char) Integer.parseInt(value.substring(i + 1, i + 5), 16));
+                    i += 4;
+                    break;
+                default:
+                    // quotes, backslashes and slashes
+                    unescaped.append(c);
+            }
+        }
+        return unescaped.toString();
+    }
+}
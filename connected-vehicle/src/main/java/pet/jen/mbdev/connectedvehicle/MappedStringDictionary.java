@@ -0,0 +1,270 @@
+package pet.jen.mbdev.connectedvehicle;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Persistent string dictionary of the {@link FleetStore} which is backed by two memory mapped files. The data file is
+ * an append-only log of UTF-8 strings, each prefixed by its length: `[int length][bytes]`. The code of a string is
+ * the offset of its record, code 0 represents null. The index file is an open addressing hash table of the codes
+ * which finds the code of a string without holding any strings on the heap.
+ *
+ * A record is appended before the end of the log is advanced in the header, hence a torn record is ignored. The index
+ * is marked dirty while it is modified and rebuilt from the log when opened in that state. Growing the index writes a
+ * new file which replaces the old one, so that concurrent readers of the old mapping are not affected. Only `encode()`
+ * locks, `code()` and `decode()` read the current mappings without locking.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+class MappedStringDictionary implements Closeable {
+
+    static final int NULL_CODE = 0;
+    static final int ABSENT = -1;
+
+    private static final int DATA_MAGIC = 0x4D424453;
+    private static final int INDEX_MAGIC = 0x4D424449;
+
+    // magic, end of the log, amount of strings
+    private static final int DATA_HEADER = 12;
+
+    // magic, capacity, amount of strings, dirty flag
+    private static final int INDEX_HEADER = 16;
+
+    private static final int MIN_DATA_SIZE = 1 << 16;
+    private static final int MIN_CAPACITY = 1024;
+
+    private final Path dataPath;
+
+    private final Path indexPath;
+
+    private FileChannel dataChannel;
+
+    private volatile MappedByteBuffer data;
+
+    private volatile MappedByteBuffer index;
+
+    // capacity of the index, only used by the writer, readers take it from the header of their snapshot
+    private int capacity;
+
+    private MappedStringDictionary(Path dataPath, Path indexPath) {
+        this.dataPath = dataPath;
+        this.indexPath = indexPath;
+    }
+
+    static MappedStringDictionary open(Path dataPath, Path indexPath) throws IOException {
+        MappedStringDictionary dictionary = new MappedStringDictionary(dataPath, indexPath);
+        dictionary.openData();
+        dictionary.openIndex();
+        return dictionary;
+    }
+
+    /**
+     * @return code of the value, which is appended if the value is new
+     */
+    synchronized int encode(String value) throws IOException {
+        if(value == null) {
+            return NULL_CODE;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int slot = hash(bytes) & (capacity - 1);
+        int code;
+        while((code = index.getInt(slotOffset(slot))) != 0) {
+            if(matches(code, bytes)) {
+                return code;
+            }
+            slot = (slot + 1) & (capacity - 1);
+        }
+        code = append(bytes);
+        index.putInt(12, 1);
+        index.putInt(slotOffset(slot), code);
+        index.putInt(8, index.getInt(8) + 1);
+        index.putInt(12, 0);
+        if(index.getInt(8) * 2 > capacity) {
+            rebuildIndex(capacity * 2);
+        }
+        return code;
+    }
+
+    /**
+     * @return code of the value or `ABSENT` if the dictionary does not contain it
+     */
+    int code(String value) {
+        if(value == null) {
+            return NULL_CODE;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        MappedByteBuffer current = index;
+        int slots = current.getInt(4);
+        int slot = hash(bytes) & (slots - 1);
+        int code;
+        while((code = current.getInt(slotOffset(slot))) != 0) {
+            if(matches(code, bytes)) {
+                return code;
+            }
+            slot = (slot + 1) & (slots - 1);
+        }
+        return ABSENT;
+    }
+
+    /**
+     * @return the value of the code, `null` for the null code
+     */
+    String decode(int code) {
+        if(code == NULL_CODE) {
+            return null;
+        }
+        ByteBuffer record = data.duplicate();
+        int length = record.getInt(code);
+        byte[] bytes = new byte[length];
+        record.position(code + 4);
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return amount of distinct strings
+     */
+    synchronized int size() {
+        return data.getInt(8);
+    }
+
+    void flush() {
+        data.force();
+        synchronized(this) {
+            index.force();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+        dataChannel.close();
+    }
+
+    private void openData() throws IOException {
+        dataChannel = FileChannel.open(dataPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        data = dataChannel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(dataChannel.size(), MIN_DATA_SIZE));
+        int magic = data.getInt(0);
+        if(magic == 0) {
+            data.putInt(4, DATA_HEADER);
+            data.putInt(8, 0);
+            data.putInt(0, DATA_MAGIC);
+        } else if(magic != DATA_MAGIC) {
+            throw new IOException(dataPath + " is not a string dictionary.");
+        }
+    }
+
+    private void openIndex() throws IOException {
+        try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            if(channel.size() >= INDEX_HEADER) {
+                index = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+                capacity = index.getInt(4);
+                boolean valid = index.getInt(0) == INDEX_MAGIC && index.getInt(12) == 0
+                        && index.getInt(8) == data.getInt(8)
+                        && channel.size() == INDEX_HEADER + 4L * capacity;
+                if(valid) {
+                    return;
+                }
+            }
+        }
+        int required = Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(1, data.getInt(8) * 4)));
+        rebuildIndex(required);
+    }
+
+    /**
+     * Writes a new index of the given capacity for all strings of the log and replaces the current one.
+     */
+    private void rebuildIndex(int newCapacity) throws IOException {
+        Path rebuildPath = Paths.get(indexPath.toString() + ".rebuild");
+        MappedByteBuffer rebuilt;
+        try (FileChannel channel = FileChannel.open(rebuildPath, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            rebuilt = channel.map(FileChannel.MapMode.READ_WRITE, 0, INDEX_HEADER + 4L * newCapacity);
+        }
+        int end = data.getInt(4);
+        int strings = 0;
+        for(int code = DATA_HEADER; code < end; code += 4 + data.getInt(code)) {
+            int slot = hash(data, code + 4, data.getInt(code)) & (newCapacity - 1);
+            while(rebuilt.getInt(INDEX_HEADER + 4 * slot) != 0) {
+                slot = (slot + 1) & (newCapacity - 1);
+            }
+            rebuilt.putInt(INDEX_HEADER + 4 * slot, code);
+            strings++;
+        }
+        rebuilt.putInt(4, newCapacity);
+        rebuilt.putInt(8, strings);
+        rebuilt.putInt(12, 0);
+        rebuilt.putInt(0, INDEX_MAGIC);
+        rebuilt.force();
+        Files.move(rebuildPath, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        index = rebuilt;
+        capacity = newCapacity;
+    }
+
+    private int append(byte[] bytes) throws IOException {
+        int code = data.getInt(4);
+        long end = (long) code + 4 + bytes.length;
+        if(end > Integer.MAX_VALUE) {
+            throw new IOException("String dictionary " + dataPath + " exceeds the maximum size of a mapped file.");
+        }
+        if(end > data.capacity()) {
+            data = dataChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    Math.min(Integer.MAX_VALUE, Math.max(end, 2L * data.capacity())));
+        }
+        MappedByteBuffer target = data;
+        target.putInt(code, bytes.length);
+        for(int i = 0; i < bytes.length; i++) {
+            target.put(code + 4 + i, bytes[i]);
+        }
+        // the record is only part of the log once the header points behind it
+        target.putInt(8, target.getInt(8) + 1);
+        target.putInt(4, (int) end);
+        return code;
+    }
+
+    private boolean matches(int code, byte[] bytes) {
+        MappedByteBuffer source = data;
+        if(source.getInt(code) != bytes.length) {
+            return false;
+        }
+        for(int i = 0; i < bytes.length; i++) {
+            if(source.get(code + 4 + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int slotOffset(int slot) {
+        return INDEX_HEADER + 4 * slot;
+    }
+
+    // FNV-1a, the variants for arrays and buffers have to match
+
+    private static int hash(byte[] bytes) {
+        int hash = 0x811C9DC5;
+        for(byte b : bytes) {
+            hash = (hash ^ (b & 0xFF)) * 0x01000193;
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int hash(ByteBuffer buffer, int offset, int length) {
+        int hash = 0x811C9DC5;
+        for(int i = 0; i < length; i++) {
+            hash = (hash ^ (buffer.get(offset + i) & 0xFF)) * 0x01000193;
+        }
+        return hash ^ (hash >>> 16);
+    }
+}
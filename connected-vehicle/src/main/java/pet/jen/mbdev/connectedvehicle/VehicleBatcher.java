@@ -0,0 +1,206 @@
+package pet.jen.mbdev.connectedvehicle;
+
+import lombok.Builder;
+import pet.jen.mbdev.api.AsyncCalls;
+import pet.jen.mbdev.api.AsyncOptions;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Batches the vehicle lookups of a single user. Lookups which arrive within `window` milliseconds of the first one are
+ * gathered and answered together: a batch of at least `threshold` distinct ids is answered by a single `vehicles()`
+ * call, smaller batches by one `vehicle(id)` call per id. Ids which are missing from the list, e.g. since the list
+ * is outdated, are looked up by individual calls as well.
+ *
+ * If the list call fails all lookups of the batch fail with its exception, the individual calls would most likely
+ * fail the same way. A failing individual call only fails the lookups of its id.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+public class VehicleBatcher {
+
+    private static final long DEFAULT_WINDOW = 10;
+    private static final int DEFAULT_THRESHOLD = 2;
+
+    private final ConnectedVehicleAdapter adapter;
+
+    private final long window;
+
+    private final int threshold;
+
+    private final Executor executor;
+
+    // batch which gathers the lookups until its window closes, guarded by this
+    private Batch pending;
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder listCalls = new LongAdder();
+    private final LongAdder singleCalls = new LongAdder();
+
+    /**
+     * @param adapter of the user whose vehicles are looked up
+     * @param window milliseconds to gather lookups after the first one; defaults to 10
+     * @param threshold minimum amount of distinct ids answered by a single list call; defaults to 2
+     * @param executor performs the calls; defaults to the one of {@link AsyncOptions#defaults()}
+     */
+    @Builder
+    private VehicleBatcher(ConnectedVehicleAdapter adapter, long window, int threshold, Executor executor) {
+        if(adapter == null) {
+            throw new IllegalArgumentException("A vehicle batcher requires an adapter.");
+        }
+        this.adapter = adapter;
+        this.window = window > 0 ? window : DEFAULT_WINDOW;
+        this.threshold = threshold > 0 ? threshold : DEFAULT_THRESHOLD;
+        this.executor = executor != null ? executor : AsyncOptions.defaults().getExecutor();
+    }
+
+    /**
+     * @param id of the vehicle
+     * @return future of the vehicle, completed with the batch the lookup joined
+     */
+    public CompletableFuture<Vehicle> vehicle(String id) {
+        return vehicles(Collections.singleton(id)).thenApply(vehicles -> vehicles.get(id));
+    }
+
+    /**
+     * @param ids of the vehicles
+     * @return future of the vehicles by their ids, completed with the batch the lookup joined
+     */
+    public CompletableFuture<Map<String, Vehicle>> vehicles(Collection<String> ids) {
+        lookups.add(ids.size());
+        List<CompletableFuture<Vehicle>> futures = new ArrayList<>(ids.size());
+        Batch flush = null;
+        synchronized(this) {
+            if(pending == null) {
+                pending = flush = new Batch();
+            }
+            for(String id : ids) {
+                futures.add(pending.add(id));
+            }
+        }
+        if(flush != null) {
+            schedule(flush);
+        }
+        final List<String> requested = new ArrayList<>(ids);
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).thenApply(done -> {
+            Map<String, Vehicle> vehicles = new LinkedHashMap<>();
+            for(int i = 0; i < requested.size(); i++) {
+                vehicles.put(requested.get(i), futures.get(i).join());
+            }
+            return vehicles;
+        });
+    }
+
+    /**
+     * @return amount of ids which were looked up
+     */
+    public long lookups() {
+        return lookups.sum();
+    }
+
+    /**
+     * @return amount of `vehicles()` calls performed for batches
+     */
+    public long listCalls() {
+        return listCalls.sum();
+    }
+
+    /**
+     * @return amount of `vehicle(id)` calls performed for small batches and ids missing from a list
+     */
+    public long singleCalls() {
+        return singleCalls.sum();
+    }
+
+    private void schedule(final Batch batch) {
+        AsyncCalls.schedule(() -> {
+            synchronized(this) {
+                if(pending == batch) {
+                    pending = null;
+                }
+            }
+            batch.perform();
+        }, executor, window, TimeUnit.MILLISECONDS).exceptionally(error -> {
+            synchronized(this) {
+                if(pending == batch) {
+                    pending = null;
+                }
+            }
+            batch.fail(error);
+            return null;
+        });
+    }
+
+    /**
+     * Distinct ids of the lookups which were gathered within a window, each with the future of its vehicle.
+     */
+    private class Batch {
+
+        // only modified until the batch is dequeued, guarded by the batcher
+        private final Map<String, CompletableFuture<Vehicle>> futures = new LinkedHashMap<>();
+
+        CompletableFuture<Vehicle> add(String id) {
+            CompletableFuture<Vehicle> future = futures.get(id);
+            if(future == null) {
+                future = new CompletableFuture<>();
+                futures.put(id, future);
+            }
+            return future;
+        }
+
+        void perform() {
+            Set<String> missing = new LinkedHashSet<>(futures.keySet());
+            if(futures.size() >= threshold) {
+                try {
+                    listCalls.increment();
+                    for(Vehicle vehicle : adapter.vehicles()) {
+                        CompletableFuture<Vehicle> future = futures.get(vehicle.getId());
+                        if(future != null) {
+                            future.complete(vehicle);
+                            missing.remove(vehicle.getId());
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    fail(e);
+                    return;
+                }
+            }
+            for(String id : missing) {
+                lookup(id, futures.get(id));
+            }
+        }
+
+        void fail(Throwable error) {
+            for(CompletableFuture<Vehicle> future : futures.values()) {
+                future.completeExceptionally(error);
+            }
+        }
+
+        private void lookup(final String id, final CompletableFuture<Vehicle> future) {
+            try {
+                executor.execute(() -> {
+                    try {
+                        singleCalls.increment();
+                        future.complete(adapter.vehicle(id));
+                    } catch (RuntimeException e) {
+                        future.completeExceptionally(e);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+}
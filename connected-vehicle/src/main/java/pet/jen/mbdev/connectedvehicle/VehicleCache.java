@@ -0,0 +1,350 @@
+package pet.jen.mbdev.connectedvehicle;
+
+import lombok.Builder;
+import pet.jen.mbdev.api.AsyncOptions;
+import pet.jen.mbdev.api.exception.MBDevApiException;
+import pet.jen.mbdev.api.exception.UnauthorizedException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Caches the vehicles of a single user in front of a {@link ConnectedVehicleAdapter}, independent of the HTTP caching
+ * headers of the API.
+ *
+ * Every entry expires `ttl` milliseconds after it was loaded. Entries which are read after `refreshAhead` of their ttl
+ * has passed are reloaded in the background, hence frequently read vehicles never expire. Responses of `vehicles()`
+ * fill the entries of all listed vehicles so that following `vehicle(id)` calls don't need a request. At most
+ * `maxSize` vehicles are kept, the least recently used ones are evicted first.
+ *
+ * Concurrent reads of a missing or expired entry share a single load, as do reads which arrive during a background
+ * refresh of the same entry.
+ *
+ * If loading an expired entry fails with a {@link MBDevApiException}, e.g. a {@link
+ * pet.jen.mbdev.api.exception.QuotaExceededException}, the expired vehicle is returned as long as it did not expire more
+ * than `maxStale` milliseconds ago. Rejected authorizations are always thrown, the user might have lost access to the
+ * vehicle.
+ *
+ * Returned vehicles are shared by all callers and must not be modified.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+public class VehicleCache {
+
+    private static final long DEFAULT_TTL = TimeUnit.MINUTES.toMillis(1);
+    private static final int DEFAULT_MAX_SIZE = 1000;
+    private static final double DEFAULT_REFRESH_AHEAD = 0.8;
+    private static final long DEFAULT_MAX_STALE = TimeUnit.MINUTES.toMillis(10);
+
+    private final ConnectedVehicleAdapter adapter;
+
+    private final long ttl;
+
+    private final long refreshAfter;
+
+    private final long maxStale;
+
+    private final Executor executor;
+
+    // milliseconds of the current time, entries are valid relative to the completion of their load
+    private final LongSupplier clock;
+
+    // guards the vehicles, access order for the least recently used eviction
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, CacheEntry<Vehicle>> vehicles;
+
+    // loads in progress by the id of their vehicle or LIST, reads of the same key wait for them instead of loading
+    private static final Object LIST = new Object();
+    private final ConcurrentMap<Object, CompletableFuture<?>> loads = new ConcurrentHashMap<>();
+
+    private volatile CacheEntry<List<Vehicle>> list;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder staleHits = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+
+    /**
+     * @param adapter of the user whose vehicles are cached
+     * @param ttl milliseconds an entry is valid after it was loaded; defaults to one minute
+     * @param maxSize maximum amount of cached vehicles; defaults to 1000
+     * @param refreshAhead fraction of the ttl after which a read triggers a background refresh; defaults to 0.8,
+     *                     1 disables refreshes
+     * @param maxStale milliseconds an expired entry may be returned if the API fails; defaults to ten minutes
+     * @param executor performs the background refreshes; defaults to the one of {@link AsyncOptions#defaults()}
+     */
+    @Builder
+    private VehicleCache(ConnectedVehicleAdapter adapter, long ttl, int maxSize, double refreshAhead, long maxStale,
+                         Executor executor) {
+        this(adapter, ttl, maxSize, refreshAhead, maxStale, executor, System::currentTimeMillis);
+    }
+
+    VehicleCache(ConnectedVehicleAdapter adapter, long ttl, int maxSize, double refreshAhead, long maxStale,
+                 Executor executor, LongSupplier clock) {
+        if(adapter == null) {
+            throw new IllegalArgumentException("A vehicle cache requires an adapter.");
+        }
+        this.adapter = adapter;
+        this.ttl = ttl > 0 ? ttl : DEFAULT_TTL;
+        this.refreshAfter = (long) (this.ttl * (refreshAhead > 0 && refreshAhead <= 1 ? refreshAhead : DEFAULT_REFRESH_AHEAD));
+        this.maxStale = maxStale > 0 ? maxStale : DEFAULT_MAX_STALE;
+        this.executor = executor != null ? executor : AsyncOptions.defaults().getExecutor();
+        this.clock = clock;
+        final int limit = maxSize > 0 ? maxSize : DEFAULT_MAX_SIZE;
+        this.vehicles = new LinkedHashMap<String, CacheEntry<Vehicle>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry<Vehicle>> eldest) {
+                return size() > limit;
+            }
+        };
+    }
+
+    /**
+     * @return all vehicles of the user
+     */
+    public List<Vehicle> vehicles() {
+        long now = clock.getAsLong();
+        CacheEntry<List<Vehicle>> entry = list;
+        if(entry != null && entry.isValid(now)) {
+            hits.increment();
+            if(entry.needsRefresh(now)) {
+                refreshAhead(entry, LIST, this::loadVehicles);
+            }
+            return entry.value;
+        }
+        misses.increment();
+        try {
+            return load(LIST, this::loadVehicles);
+        } catch (MBDevApiException e) {
+            return stale(entry, now, e);
+        }
+    }
+
+    /**
+     * @return the vehicle with the given id
+     */
+    public Vehicle vehicle(final String id) {
+        long now = clock.getAsLong();
+        CacheEntry<Vehicle> entry;
+        lock.lock();
+        try {
+            entry = vehicles.get(id);
+        } finally {
+            lock.unlock();
+        }
+        if(entry != null && entry.isValid(now)) {
+            hits.increment();
+            if(entry.needsRefresh(now)) {
+                refreshAhead(entry, id, () -> loadVehicle(id));
+            }
+            return entry.value;
+        }
+        misses.increment();
+        try {
+            return load(id, () -> loadVehicle(id));
+        } catch (MBDevApiException e) {
+            return stale(entry, now, e);
+        }
+    }
+
+    /**
+     * Removes the vehicle so that it is loaded again with the next read.
+     */
+    public void invalidate(String id) {
+        lock.lock();
+        try {
+            vehicles.remove(id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes all vehicles and the cached list.
+     */
+    public void invalidateAll() {
+        lock.lock();
+        try {
+            vehicles.clear();
+        } finally {
+            lock.unlock();
+        }
+        list = null;
+    }
+
+    /**
+     * @return amount of reads which were answered by a valid entry
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return amount of reads which had to wait for the API
+     */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return amount of reads which were answered by an expired entry since the API failed
+     */
+    public long staleHits() {
+        return staleHits.sum();
+    }
+
+    /**
+     * @return amount of background refreshes which were started
+     */
+    public long refreshes() {
+        return refreshes.sum();
+    }
+
+    /**
+     * @return amount of cached vehicles
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return vehicles.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Performs the load of the key unless one is in progress already, in which case its result is awaited instead.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T load(Object key, Supplier<T> loader) {
+        CompletableFuture<T> load = new CompletableFuture<>();
+        CompletableFuture<T> running = (CompletableFuture<T>) loads.putIfAbsent(key, load);
+        if(running != null) {
+            return join(running);
+        }
+        try {
+            T loaded = loader.get();
+            load.complete(loaded);
+            return loaded;
+        } catch (Throwable e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loads.remove(key, load);
+        }
+    }
+
+    private static <T> T join(CompletableFuture<T> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            // rethrow the failure of the load as is, e.g. to serve a stale entry on an MBDevApiException
+            if(e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if(e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private List<Vehicle> loadVehicles() {
+        List<Vehicle> loaded = Collections.unmodifiableList(new ArrayList<>(adapter.vehicles()));
+        long loadedAt = clock.getAsLong();
+        lock.lock();
+        try {
+            for(Vehicle vehicle : loaded) {
+                if(vehicle.getId() != null) {
+                    vehicles.put(vehicle.getId(), new CacheEntry<>(vehicle, loadedAt));
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        list = new CacheEntry<>(loaded, loadedAt);
+        return loaded;
+    }
+
+    private Vehicle loadVehicle(String id) {
+        Vehicle loaded = adapter.vehicle(id);
+        long loadedAt = clock.getAsLong();
+        lock.lock();
+        try {
+            vehicles.put(id, new CacheEntry<>(loaded, loadedAt));
+        } finally {
+            lock.unlock();
+        }
+        return loaded;
+    }
+
+    private <T> T stale(CacheEntry<T> entry, long now, MBDevApiException e) {
+        if(entry == null || e instanceof UnauthorizedException || now - entry.expiresAt > maxStale) {
+            throw e;
+        }
+        staleHits.increment();
+        return entry.value;
+    }
+
+    /**
+     * Reloads the entry in the background unless a refresh is in progress already. Failures are ignored, the entry
+     * is loaded again once it expired.
+     */
+    private <T> void refreshAhead(final CacheEntry<T> entry, final Object key, final Supplier<T> loader) {
+        if(!entry.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        refreshes.increment();
+        try {
+            executor.execute(() -> {
+                try {
+                    load(key, loader);
+                } catch (RuntimeException e) {
+                    // the current entry is still valid and another refresh is attempted with the next read
+                    entry.refreshing.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            entry.refreshing.set(false);
+        }
+    }
+
+    /**
+     * Cached value together with the times it has to be refreshed and expires.
+     */
+    private class CacheEntry<T> {
+        private final T value;
+        private final long refreshAt;
+        private final long expiresAt;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        CacheEntry(T value, long loadedAt) {
+            this.value = value;
+            this.refreshAt = loadedAt + refreshAfter;
+            this.expiresAt = loadedAt + ttl;
+        }
+
+        boolean isValid(long now) {
+            return now < expiresAt;
+        }
+
+        boolean needsRefresh(long now) {
+            return now >= refreshAt && refreshAt < expiresAt && !refreshing.get();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package pet.jen.mbdev.connectedvehicle;
+
+import lombok.Getter;
+
+/**
+ * Difference of a single vehicle between two consecutive polls of an account by a {@link FleetPoller}.
+ *
+ * @param <K> type of the account keys
+ * @author Jens Petersohn <me@jen.pet>
+ */
+@Getter
+public final class VehicleChange<K> {
+
+    public enum Type {
+        ADDED, CHANGED, REMOVED
+    }
+
+    private final Type type;
+
+    private final K account;
+
+    private final String finorvin;
+
+    /**
+     * Vehicle as reported by the latest poll, null if it was removed.
+     */
+    private final Vehicle vehicle;
+
+    private VehicleChange(Type type, K account, String finorvin, Vehicle vehicle) {
+        this.type = type;
+        this.account = account;
+        this.finorvin = finorvin;
+        this.vehicle = vehicle;
+    }
+
+    static <K> VehicleChange<K> added(K account, Vehicle vehicle) {
+        return new VehicleChange<>(Type.ADDED, account, vehicle.getFinorvin(), vehicle);
+    }
+
+    static <K> VehicleChange<K> changed(K account, Vehicle vehicle) {
+        return new VehicleChange<>(Type.CHANGED, account, vehicle.getFinorvin(), vehicle);
+    }
+
+    static <K> VehicleChange<K> removed(K account, String finorvin) {
+        return new VehicleChange<>(Type.REMOVED, account, finorvin, null);
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + finorvin + " of " + account;
+    }
+}
@@ -0,0 +1,74 @@
+package pet.jen.mbdev.connectedvehicle;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Maps the low-cardinality values of vehicles, e.g. fuel types, color names and sales designations, to dense codes so
+ * that {@link CompactVehicle}s store two bytes per value instead of a string each. Every value is held once by the
+ * dictionary, decoding a code therefore always returns the same string instance.
+ *
+ * Dictionaries only grow and are meant to be shared by all compact vehicles of a fleet; a code is only meaningful
+ * within the dictionary which assigned it. Encoding is thread-safe, decoding is lock-free.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+public class VehicleDictionary {
+
+    // code 0 represents null, codes have to fit into an unsigned short
+    static final int NULL_CODE = 0;
+    static final int MAX_SIZE = 0xFFFF;
+
+    private final ConcurrentMap<String, Integer> codes = new ConcurrentHashMap<>();
+
+    // values indexed by their code, replaced by a larger copy before a new code is published
+    private volatile String[] values = new String[16];
+
+    private int size;
+
+    /**
+     * @return code of the value, which is assigned if the value is new
+     * @throws IllegalStateException if the dictionary can't hold any more values
+     */
+    int encode(String value) {
+        if(value == null) {
+            return NULL_CODE;
+        }
+        Integer code = codes.get(value);
+        return code != null ? code : assign(value);
+    }
+
+    private synchronized int assign(String value) {
+        Integer code = codes.get(value);
+        if(code != null) {
+            return code;
+        }
+        if(size == MAX_SIZE) {
+            throw new IllegalStateException("Vehicle dictionary is limited to " + MAX_SIZE + " values.");
+        }
+        int newCode = ++size;
+        String[] current = values;
+        if(newCode == current.length) {
+            current = Arrays.copyOf(current, Math.min(current.length * 2, MAX_SIZE + 1));
+        }
+        current[newCode] = value;
+        values = current;
+        codes.put(value, newCode);
+        return newCode;
+    }
+
+    /**
+     * @return the value of the code, `null` for the null code
+     */
+    String decode(int code) {
+        return values[code];
+    }
+
+    /**
+     * @return amount of distinct values
+     */
+    public int size() {
+        return codes.size();
+    }
+}
@@ -0,0 +1,129 @@
+package pet.jen.mbdev.connectedvehicle;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Fields of a {@link Vehicle} as named in the JSON representation of the API, used to declare a
+ * {@link VehicleProjection}.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+public enum VehicleField {
+    ID("id"),
+    LICENSEPLATE("licenseplate"),
+    SALESDESIGNATION("salesdesignation"),
+    FINORVIN("finorvin"),
+    MODELYEAR("modelyear"),
+    COLORNAME("colorname"),
+    FUELTYPE("fueltype"),
+    POWERHP("powerhp"),
+    POWERKW("powerkw"),
+    NUMBEROFDOORS("numberofdoors"),
+    NUMBEROFSEATS("numberofseats");
+
+    private static final Map<String, VehicleField> BY_NAME = new HashMap<>();
+
+    static {
+        for(VehicleField field : values()) {
+            BY_NAME.put(field.jsonName, field);
+        }
+    }
+
+    private final String jsonName;
+
+    private final byte[] jsonNameBytes;
+
+    VehicleField(String jsonName) {
+        this.jsonName = jsonName;
+        this.jsonNameBytes = jsonName.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    public String jsonName() {
+        return jsonName;
+    }
+
+    byte[] jsonNameBytes() {
+        return jsonNameBytes;
+    }
+
+    /**
+     * @return the value of this field of the vehicle
+     */
+    String get(Vehicle vehicle) {
+        switch(this) {
+            case ID:
+                return vehicle.getId();
+            case LICENSEPLATE:
+                return vehicle.getLicenseplate();
+            case SALESDESIGNATION:
+                return vehicle.getSalesdesignation();
+            case FINORVIN:
+                return vehicle.getFinorvin();
+            case MODELYEAR:
+                return vehicle.getModelyear();
+            case COLORNAME:
+                return vehicle.getColorname();
+            case FUELTYPE:
+                return vehicle.getFueltype();
+            case POWERHP:
+                return vehicle.getPowerhp();
+            case POWERKW:
+                return vehicle.getPowerkw();
+            case NUMBEROFDOORS:
+                return vehicle.getNumberofdoors();
+            case NUMBEROFSEATS:
+                return vehicle.getNumberofseats();
+            default:
+                throw new IllegalStateException("Unknown vehicle field " + this + ".");
+        }
+    }
+
+    void set(Vehicle vehicle, String value) {
+        switch(this) {
+            case ID:
+                vehicle.setId(value);
+                break;
+            case LICENSEPLATE:
+                vehicle.setLicenseplate(value);
+                break;
+            case SALESDESIGNATION:
+                vehicle.setSalesdesignation(value);
+                break;
+            case FINORVIN:
+                vehicle.setFinorvin(value);
+                break;
+            case MODELYEAR:
+                vehicle.setModelyear(value);
+                break;
+            case COLORNAME:
+                vehicle.setColorname(value);
+                break;
+            case FUELTYPE:
+                vehicle.setFueltype(value);
+                break;
+            case POWERHP:
+                vehicle.setPowerhp(value);
+                break;
+            case POWERKW:
+                vehicle.setPowerkw(value);
+                break;
+            case NUMBEROFDOORS:
+                vehicle.setNumberofdoors(value);
+                break;
+            case NUMBEROFSEATS:
+                vehicle.setNumberofseats(value);
+                break;
+            default:
+                throw new IllegalStateException("Unknown vehicle field " + this + ".");
+        }
+    }
+
+    /**
+     * @return field with the given JSON name or `null` if the name is unknown
+     */
+    static VehicleField forName(String jsonName) {
+        return BY_NAME.get(jsonName);
+    }
+}
@@ -0,0 +1,54 @@
+package pet.jen.mbdev.connectedvehicle;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Declares which fields of the vehicles a caller needs. Vehicles read with a projection only keep and decode the
+ * declared fields, all others are skipped while reading the response and return `null`.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+public final class VehicleProjection {
+
+    private static final VehicleProjection ALL = new VehicleProjection(EnumSet.allOf(VehicleField.class));
+
+    private final Set<VehicleField> fields;
+
+    private VehicleProjection(Set<VehicleField> fields) {
+        this.fields = fields;
+    }
+
+    public static VehicleProjection of(VehicleField field, VehicleField... fields) {
+        return new VehicleProjection(EnumSet.of(field, fields));
+    }
+
+    public static VehicleProjection of(Collection<VehicleField> fields) {
+        if(fields.isEmpty()) {
+            throw new IllegalArgumentException("A projection requires at least one field.");
+        }
+        return new VehicleProjection(EnumSet.copyOf(fields));
+    }
+
+    /**
+     * @return projection which keeps all fields, i.e. only defers their decoding
+     */
+    public static VehicleProjection all() {
+        return ALL;
+    }
+
+    public boolean contains(VehicleField field) {
+        return fields.contains(field);
+    }
+
+    public Set<VehicleField> fields() {
+        return Collections.unmodifiableSet(fields);
+    }
+
+    @Override
+    public String toString() {
+        return "VehicleProjection" + fields;
+    }
+}
@@ -0,0 +1,157 @@
+package pet.jen.mbdev.connectedvehicle;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import pet.jen.mbdev.api.exception.MBDevApiException;
+import pet.jen.mbdev.api.streaming.CloseableIterator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads a JSON array of vehicles one at a time into {@link LazyVehicle}s without decoding their fields. The scalar
+ * fields of the projection are copied as strings into a compact raw object per vehicle, all others are skipped by the
+ * parser without ever being decoded into strings. The raw objects are written through a single generator and buffer
+ * which are reused for all vehicles, so that the only allocations per vehicle are its raw bytes and the vehicle itself.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+class VehicleReader implements CloseableIterator<Vehicle> {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final JsonParser parser;
+
+    private final VehicleProjection projection;
+
+    private final ByteArrayBuilder buffer = new ByteArrayBuilder(512);
+
+    private final JsonGenerator generator;
+
+    // vehicle which is returned next, read ahead to answer `hasNext()`
+    private Vehicle next;
+
+    private boolean closed;
+
+    private VehicleReader(JsonParser parser, VehicleProjection projection) throws IOException {
+        this.parser = parser;
+        this.projection = projection;
+        this.generator = JSON.createGenerator(buffer);
+        this.generator.setRootValueSeparator(null);
+    }
+
+    /**
+     * @param in body of the response which is closed together with the reader
+     * @param projection fields which are kept
+     */
+    static VehicleReader open(InputStream in, VehicleProjection projection) {
+        JsonParser parser = null;
+        try {
+            parser = JSON.createParser(in);
+            VehicleReader reader = new VehicleReader(parser, projection);
+            JsonToken token = parser.nextToken();
+            if(token == null) {
+                reader.close();
+            } else if(token != JsonToken.START_ARRAY) {
+                reader.close();
+                throw new MBDevApiException("Expected a list of vehicles but response starts with " + token + ".",
+                        null);
+            } else {
+                reader.advance();
+            }
+            return reader;
+        } catch (IOException e) {
+            closeQuietly(parser != null ? parser : in);
+            throw new MBDevApiException("Could not read the vehicles of the response.", e);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    @Override
+    public Vehicle next() {
+        if(next == null) {
+            throw new NoSuchElementException();
+        }
+        Vehicle current = next;
+        advance();
+        return current;
+    }
+
+    @Override
+    public void close() {
+        if(closed) {
+            return;
+        }
+        closed = true;
+        next = null;
+        closeQuietly(parser);
+        closeQuietly(generator);
+    }
+
+    private void advance() {
+        next = null;
+        if(closed) {
+            return;
+        }
+        try {
+            JsonToken token = parser.nextToken();
+            while(token == JsonToken.VALUE_NULL) {
+                token = parser.nextToken();
+            }
+            if(token == null || token == JsonToken.END_ARRAY) {
+                close();
+                return;
+            }
+            if(token != JsonToken.START_OBJECT) {
+                throw new MBDevApiException("Expected a vehicle but found " + token + ".", null);
+            }
+            next = new LazyVehicle(copyObject());
+        } catch (IOException | RuntimeException e) {
+            close();
+            if(e instanceof MBDevApiException) {
+                throw (MBDevApiException) e;
+            }
+            throw new MBDevApiException("Could not read the next vehicle of the response.", (Exception) e);
+        }
+    }
+
+    /**
+     * Copies the projected fields with scalar values of the object the parser is positioned at, nested values can't
+     * be represented by a vehicle anyway.
+     */
+    private byte[] copyObject() throws IOException {
+        generator.writeStartObject();
+        while(parser.nextToken() == JsonToken.FIELD_NAME) {
+            VehicleField field = VehicleField.forName(parser.getCurrentName());
+            JsonToken token = parser.nextToken();
+            if(field != null && token.isScalarValue() && token != JsonToken.VALUE_NULL && projection.contains(field)) {
+                generator.writeFieldName(field.jsonName());
+                // the characters are copied from the parser's buffer without creating a string
+                generator.writeString(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+            } else {
+                parser.skipChildren();
+            }
+        }
+        generator.writeEndObject();
+        generator.flush();
+        byte[] raw = buffer.toByteArray();
+        buffer.reset();
+        return raw;
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            // the connection is discarded in any case
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package pet.jen.mbdev.connectedvehicle;
+
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+import com.github.tomakehurst.wiremock.junit.WireMockClassRule;
+import com.github.tomakehurst.wiremock.stubbing.Scenario;
+import org.apache.http.HttpStatus;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import pet.jen.mbdev.api.AsyncOptions;
+import pet.jen.mbdev.api.TokenProvider;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.assertj.core.api.Java6Assertions.fail;
+
+public class AsyncConnectedVehicleAdapterIntegrationTest {
+
+    private static final String BASE_PATH = "/experimental/connectedvehicle/v1";
+
+    @ClassRule
+    public static WireMockClassRule wireMockClassRule = new WireMockClassRule(
+            WireMockConfiguration.options().port(8889));
+
+    @Rule
+    public WireMockClassRule apiMock = wireMockClassRule;
+
+    private ExecutorService executor;
+
+    private CountingTokenProvider tokenProvider;
+
+    private AsyncConnectedVehicleAdapter adapter;
+
+    @Before
+    public void setup() {
+        executor = Executors.newFixedThreadPool(2);
+        tokenProvider = new CountingTokenProvider();
+        adapter = new AsyncConnectedVehicleAdapter(tokenProvider, "http://localhost:8889",
+                AsyncOptions.builder().executor(executor).build());
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testVehicles_shouldCallApiAndCompleteWithListOfVehicles() throws Exception {
+        apiMock.stubFor(
+                get(urlEqualTo(BASE_PATH + "/vehicles"))
+                        .willReturn(
+                                aResponse().withStatus(HttpStatus.SC_OK).withBodyFile("bodies/vehicle-list.json")));
+
+        List<Vehicle> vehicles = adapter.vehicles().get(5, TimeUnit.SECONDS);
+        assertThat(vehicles).hasSize(2);
+        assertThat(vehicles.get(0).getFinorvin()).isEqualTo("WDD***********002");
+    }
+
+    @Test
+    public void testVehicle_whenTokenIsRejected_shouldRefreshAndRetry() throws Exception {
+        apiMock.stubFor(
+                get(urlEqualTo(BASE_PATH + "/vehicles/WDDKowalle"))
+                        .inScenario("rejected").whenScenarioStateIs(Scenario.STARTED)
+                        .willReturn(aResponse().withStatus(HttpStatus.SC_UNAUTHORIZED))
+                        .willSetStateTo("refreshed"));
+        apiMock.stubFor(
+                get(urlEqualTo(BASE_PATH + "/vehicles/WDDKowalle"))
+                        .inScenario("rejected").whenScenarioStateIs("refreshed")
+                        .withHeader("Authorization", equalTo("Bearer access-token-1"))
+                        .willReturn(aResponse().withStatus(HttpStatus.SC_OK).withBodyFile("bodies/vehicle.json")));
+
+        Vehicle vehicle = adapter.vehicle("WDDKowalle").get(5, TimeUnit.SECONDS);
+        assertThat(vehicle.getFinorvin()).isEqualTo("WDDKowalle");
+        assertThat(tokenProvider.refreshes.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testVehicle_whenResponseIsSlowerThanTimeout_shouldFailWithTimeoutException() throws Exception {
+        apiMock.stubFor(
+                get(urlEqualTo(BASE_PATH + "/vehicles/WDDKowalle"))
+                        .willReturn(aResponse().withStatus(HttpStatus.SC_OK).withFixedDelay(2000)
+                                .withBodyFile("bodies/vehicle.json")));
+
+        try {
+            adapter.vehicle("WDDKowalle", 100, TimeUnit.MILLISECONDS).get(5, TimeUnit.SECONDS);
+            fail("Call should have timed out.");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause()).isInstanceOf(TimeoutException.class);
+        }
+    }
+
+    private static class CountingTokenProvider implements TokenProvider {
+
+        private final AtomicInteger refreshes = new AtomicInteger();
+
+        @Override
+        public String getAccessToken() {
+            return "access-token-" + refreshes.get();
+        }
+
+        @Override
+        public String refreshTokens() {
+            return "access-token-" + refreshes.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package pet.jen.mbdev.connectedvehicle;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class CompactVehicleTest {
+
+    private final VehicleDictionary dictionary = new VehicleDictionary();
+
+    @Test
+    public void testOf_shouldParseNumbersAndEncodeValues() {
+        CompactVehicle compact = CompactVehicle.of(newVehicle("1", "381", "280"), dictionary);
+        assertThat(compact.getId()).isEqualTo("1");
+        assertThat(compact.getFinorvin()).isEqualTo("WDD001");
+        assertThat(compact.getPowerhp()).isEqualTo(381);
+        assertThat(compact.getPowerkw()).isEqualTo(280);
+        assertThat(compact.getModelyear()).isEqualTo(2017);
+        assertThat(compact.getNumberofdoors()).isEqualTo(5);
+        assertThat(compact.getNumberofseats()).isEqualTo(5);
+        assertThat(compact.getFueltype()).isEqualTo("Benzin");
+        assertThat(compact.getColorname()).isEqualTo("mountaingrau metallic");
+    }
+
+    @Test
+    public void testToVehicle_shouldConvertLosslessly() {
+        Vehicle vehicle = newVehicle("1", "381", "280");
+        assertThat(CompactVehicle.of(vehicle, dictionary).toVehicle()).isEqualTo(vehicle);
+        Vehicle empty = new Vehicle();
+        assertThat(CompactVehicle.of(empty, dictionary).toVehicle()).isEqualTo(empty);
+    }
+
+    @Test
+    public void testToVehicle_withIrregularNumbers_shouldKeepTheirText() {
+        for(String irregular : new String[]{"0381", "n/a", "", "99999", "-1", "38.1", "40000"}) {
+            Vehicle vehicle = newVehicle("1", irregular, "280");
+            vehicle.setNumberofdoors("128");
+            CompactVehicle compact = CompactVehicle.of(vehicle, dictionary);
+            assertThat(compact.getPowerhp()).isEqualTo(CompactVehicle.ABSENT);
+            assertThat(compact.getNumberofdoors()).isEqualTo(CompactVehicle.ABSENT);
+            assertThat(compact.getPowerkw()).isEqualTo(280);
+            assertThat(compact.toVehicle()).isEqualTo(vehicle);
+        }
+    }
+
+    @Test
+    public void testOf_shouldShareValuesOfAllVehicles() {
+        Vehicle first = newVehicle("1", "381", "280");
+        Vehicle second = newVehicle("2", "381", "280");
+        second.setFueltype(new String("Benzin"));
+        CompactVehicle firstCompact = CompactVehicle.of(first, dictionary);
+        CompactVehicle secondCompact = CompactVehicle.of(second, dictionary);
+        assertThat(secondCompact.getFueltype()).isSameAs(firstCompact.getFueltype());
+        assertThat(secondCompact.toVehicle().getColorname()).isSameAs(firstCompact.toVehicle().getColorname());
+        assertThat(dictionary.size()).isEqualTo(3);
+    }
+
+    @Test
+    public void testEquals_shouldCompareValues() {
+        assertThat(CompactVehicle.of(newVehicle("1", "381", "280"), dictionary))
+                .isEqualTo(CompactVehicle.of(newVehicle("1", "381", "280"), dictionary));
+        assertThat(CompactVehicle.of(newVehicle("1", "381", "280"), dictionary))
+                .isNotEqualTo(CompactVehicle.of(newVehicle("1", "0381", "280"), dictionary));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testEncode_whenDictionaryIsFull_shouldThrowException() {
+        for(int i = 0; i <= VehicleDictionary.MAX_SIZE; i++) {
+            dictionary.encode("value" + i);
+        }
+    }
+
+    @Test
+    public void testDecode_shouldReturnEncodedValues() {
+        for(int i = 0; i < VehicleDictionary.MAX_SIZE; i++) {
+            assertThat(dictionary.encode("value" + i)).isEqualTo(i + 1);
+        }
+        assertThat(dictionary.decode(VehicleDictionary.MAX_SIZE)).isEqualTo("value" + (VehicleDictionary.MAX_SIZE - 1));
+        assertThat(dictionary.decode(VehicleDictionary.NULL_CODE)).isNull();
+        assertThat(dictionary.encode(null)).isEqualTo(VehicleDictionary.NULL_CODE);
+    }
+
+    private static Vehicle newVehicle(String id, String powerhp, String powerkw) {
+        Vehicle vehicle = new Vehicle();
+        vehicle.setId(id);
+        vehicle.setLicenseplate("S-GG-116");
+        vehicle.setSalesdesignation("Mercedes-AMG CLA 45 4MATIC Shooting Brake");
+        vehicle.setFinorvin("WDD00" + id);
+        vehicle.setModelyear("2017");
+        vehicle.setColorname("mountaingrau metallic");
+        vehicle.setFueltype("Benzin");
+        vehicle.setPowerhp(powerhp);
+        vehicle.setPowerkw(powerkw);
+        vehicle.setNumberofdoors("5");
+        vehicle.setNumberofseats("5");
+        return vehicle;
+    }
+}
@@ -9,6 +9,11 @@ import org.junit.Rule;
 import org.junit.Test;
 import pet.jen.mbdev.api.TokenProvider;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
 import static org.assertj.core.api.Java6Assertions.assertThat;
 
@@ -64,6 +69,38 @@ public class ConnectedVehicleAdapterIntegrationTest {
         assertThat(vehicle.getNumberofseats()).isEqualTo("5");
     }
 
+    @Test
+    public void testVehicleStream_shouldReadVehiclesIncrementally() {
+        apiMock.stubFor(
+                get(urlEqualTo(BASE_PATH + "/vehicles"))
+                        .willReturn(
+                                aResponse().withStatus(HttpStatus.SC_OK).withBodyFile("bodies/vehicle-list.json"))
+        );
+
+        try (Stream<Vehicle> vehicles = provider.vehicleStream()) {
+            assertThat(vehicles.map(Vehicle::getFinorvin).collect(Collectors.toList()))
+                    .containsExactly("WDD***********002", "WDD***********003");
+        }
+        List<Vehicle> consumed = new ArrayList<>();
+        provider.forEachVehicle(consumed::add);
+        assertThat(consumed).hasSize(2);
+    }
+
+    @Test
+    public void testVehicles_withProjection_shouldOnlyDecodeProjectedFields() {
+        apiMock.stubFor(
+                get(urlEqualTo(BASE_PATH + "/vehicles"))
+                        .willReturn(
+                                aResponse().withStatus(HttpStatus.SC_OK).withBodyFile("bodies/vehicle-list.json"))
+        );
+
+        List<Vehicle> vehicles = provider.vehicles(VehicleProjection.of(VehicleField.ID, VehicleField.FINORVIN));
+        assertThat(vehicles).hasSize(2);
+        assertThat(vehicles.get(1).getId()).isEqualTo("17-9BO-_vTsH1LoEdu-_vZwpb_Oz4FO0Frkfskuw3uuKCFSSbeQ7Og3sOr3L815f");
+        assertThat(vehicles.get(1).getFinorvin()).isEqualTo("WDD***********003");
+        assertThat(vehicles.get(1).getLicenseplate()).isNull();
+    }
+
     private class DummyTokenProvider implements TokenProvider {
 
         @Override
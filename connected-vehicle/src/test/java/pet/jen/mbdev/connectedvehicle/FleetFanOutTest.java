@@ -0,0 +1,172 @@
+package pet.jen.mbdev.connectedvehicle;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import pet.jen.mbdev.api.TokenProvider;
+import pet.jen.mbdev.api.exception.MBDevApiException;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static pet.jen.mbdev.connectedvehicle.StubAdapter.newVehicle;
+
+public class FleetFanOutTest {
+
+    private ExecutorService executor;
+
+    @Before
+    public void setup() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testVehiclesOf_shouldStreamResultsInOrderOfCompletion() throws Exception {
+        CountDownLatch fastDone = new CountDownLatch(1);
+        Map<String, ConnectedVehicleAdapter> adapters = new LinkedHashMap<>();
+        adapters.put("slow", new StubAdapter(() -> {
+            await(fastDone);
+            return Collections.singletonList(newVehicle("1"));
+        }));
+        adapters.put("fast", new StubAdapter(() -> Collections.singletonList(newVehicle("2"))));
+        FleetFanOut fanOut = FleetFanOut.builder().parallelism(2).executor(executor).build();
+        Iterator<AccountVehicles<String>> results = fanOut.vehiclesOf(adapters).iterator();
+        assertThat(results.next().getAccount()).isEqualTo("fast");
+        fastDone.countDown();
+        assertThat(results.next().getAccount()).isEqualTo("slow");
+        assertThat(results.hasNext()).isFalse();
+    }
+
+    @Test
+    public void testVehiclesOf_whenAccountFails_shouldReportPartialFailure() {
+        MBDevApiException failure = new MBDevApiException("failed", null);
+        Map<String, ConnectedVehicleAdapter> adapters = new LinkedHashMap<>();
+        adapters.put("broken", new StubAdapter(() -> {
+            throw failure;
+        }));
+        adapters.put("working", new StubAdapter(() -> Collections.singletonList(newVehicle("1"))));
+        Map<String, AccountVehicles<String>> results = FleetFanOut.builder().executor(executor).build()
+                .vehiclesOf(adapters)
+                .collect(Collectors.toMap(AccountVehicles::getAccount, result -> result));
+        assertThat(results.get("broken").isSuccessful()).isFalse();
+        assertThat(results.get("broken").getError()).isSameAs(failure);
+        assertThat(results.get("working").isSuccessful()).isTrue();
+        assertThat(results.get("working").getVehicles()).hasSize(1);
+    }
+
+    @Test(timeout = 5000)
+    public void testVehiclesOf_whenAccountFailsWithError_shouldReportItAndContinue() {
+        Error failure = new Error("failed");
+        Map<String, ConnectedVehicleAdapter> adapters = new LinkedHashMap<>();
+        adapters.put("broken", new StubAdapter(() -> {
+            throw failure;
+        }));
+        adapters.put("working", new StubAdapter(() -> Collections.singletonList(newVehicle("1"))));
+        // a single worker has to survive the error to retrieve the second account
+        Map<String, AccountVehicles<String>> results = FleetFanOut.builder().parallelism(1).executor(executor).build()
+                .vehiclesOf(adapters)
+                .collect(Collectors.toMap(AccountVehicles::getAccount, result -> result));
+        assertThat(results.get("broken").getError()).isSameAs(failure);
+        assertThat(results.get("working").isSuccessful()).isTrue();
+    }
+
+    @Test
+    public void testVehiclesOf_whenAccountsShareVehicles_shouldReturnThemOnce() {
+        Map<String, ConnectedVehicleAdapter> adapters = new LinkedHashMap<>();
+        adapters.put("a", new StubAdapter(() -> Arrays.asList(newVehicle("1"), newVehicle("2"))));
+        adapters.put("b", new StubAdapter(() -> Arrays.asList(newVehicle("2"), newVehicle("3"))));
+        List<AccountVehicles<String>> results = FleetFanOut.builder().parallelism(1).executor(executor).build()
+                .vehiclesOf(adapters)
+                .collect(Collectors.toList());
+        List<String> fins = results.stream()
+                .flatMap(result -> result.getVehicles().stream())
+                .map(Vehicle::getFinorvin)
+                .collect(Collectors.toList());
+        assertThat(fins).containsExactlyInAnyOrder("fin-1", "fin-2", "fin-3");
+        assertThat(results.get(1).getDuplicates()).isEqualTo(1);
+    }
+
+    @Test
+    public void testVehiclesOf_shouldNotExceedParallelism() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        Map<Integer, ConnectedVehicleAdapter> adapters = new LinkedHashMap<>();
+        for(int i = 0; i < 8; i++) {
+            adapters.put(i, new StubAdapter(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                sleep(20);
+                running.decrementAndGet();
+                return Collections.emptyList();
+            }));
+        }
+        long count = FleetFanOut.builder().parallelism(2).executor(executor).build().vehiclesOf(adapters).count();
+        assertThat(count).isEqualTo(8);
+        assertThat(maxRunning.get()).isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    public void testVehiclesOf_whenStreamIsClosed_shouldNotStartRemainingAccounts() {
+        AtomicInteger calls = new AtomicInteger();
+        Map<Integer, ConnectedVehicleAdapter> adapters = new LinkedHashMap<>();
+        for(int i = 0; i < 10; i++) {
+            adapters.put(i, new StubAdapter(() -> {
+                calls.incrementAndGet();
+                sleep(20);
+                return Collections.emptyList();
+            }));
+        }
+        try (Stream<AccountVehicles<Integer>> results =
+                     FleetFanOut.builder().parallelism(1).executor(executor).build().vehiclesOf(adapters)) {
+            results.findFirst();
+        }
+        sleep(100);
+        assertThat(calls.get()).isLessThan(10);
+    }
+
+    @Test
+    public void testVehicles_shouldCreateAdaptersOfTokenProviders() {
+        Map<String, TokenProvider> tokenProviders = new LinkedHashMap<>();
+        tokenProviders.put("a", new StubAdapter.StubTokenProvider());
+        List<AccountVehicles<String>> results = FleetFanOut.builder()
+                .executor(executor)
+                .adapters(tokenProvider -> new StubAdapter(() -> Collections.singletonList(newVehicle("1"))))
+                .build()
+                .vehicles(tokenProviders)
+                .collect(Collectors.toList());
+        assertThat(results).hasSize(1);
+        assertThat(results.get(0).getVehicles().get(0).getFinorvin()).isEqualTo("fin-1");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package pet.jen.mbdev.connectedvehicle;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import pet.jen.mbdev.api.exception.QuotaExceededException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.assertj.core.api.Java6Assertions.fail;
+import static pet.jen.mbdev.connectedvehicle.StubAdapter.newVehicle;
+
+public class FleetPollerTest {
+
+    private static final long MIN_INTERVAL = 1000;
+    private static final long MAX_INTERVAL = 8000;
+
+    private final List<VehicleChange<String>> reported = new ArrayList<>();
+
+    private final List<RuntimeException> failures = new ArrayList<>();
+
+    private final FleetListener<String> recorder = new FleetListener<String>() {
+        @Override
+        public void changed(String account, List<VehicleChange<String>> changes) {
+            reported.addAll(changes);
+        }
+
+        @Override
+        public void failed(String account, RuntimeException error) {
+            failures.add(error);
+        }
+    };
+
+    private StubAdapter adapter;
+
+    private FleetPoller<String> poller;
+
+    @Before
+    public void setup() {
+        adapter = new StubAdapter();
+        // scheduled polls are dropped, the tests poll explicitly
+        poller = FleetPoller.<String>builder()
+                .minInterval(MIN_INTERVAL)
+                .maxInterval(MAX_INTERVAL)
+                .executor(task -> { })
+                .build();
+        poller.addListener(recorder);
+        poller.add("alice", adapter);
+    }
+
+    @After
+    public void tearDown() {
+        poller.close();
+    }
+
+    @Test
+    public void testPoll_whenInitial_shouldReportAllVehiclesAsAdded() {
+        adapter.returns(newVehicle("2", "Diesel"), newVehicle("1", "Benzin"));
+        List<VehicleChange<String>> changes = poller.poll("alice");
+        assertThat(changes).extracting("type").containsOnly(VehicleChange.Type.ADDED);
+        assertThat(changes).extracting("finorvin").containsExactly("fin-1", "fin-2");
+        assertThat(reported).isEqualTo(changes);
+        assertThat(poller.interval("alice")).isEqualTo(MIN_INTERVAL);
+    }
+
+    @Test
+    public void testPoll_whenNothingChanged_shouldReportNothing() {
+        adapter.returns(newVehicle("1", "Benzin"), newVehicle("2", "Diesel"));
+        poller.poll("alice");
+        reported.clear();
+        // equal content within new instances and a different order
+        adapter.returns(newVehicle("2", "Diesel"), newVehicle("1", "Benzin"));
+        assertThat(poller.poll("alice")).isEmpty();
+        assertThat(reported).isEmpty();
+    }
+
+    @Test
+    public void testPoll_whenVehiclesDiffer_shouldReportAddedChangedAndRemoved() {
+        adapter.returns(newVehicle("1", "Benzin"), newVehicle("2", "Diesel"), newVehicle("4", "Diesel"));
+        poller.poll("alice");
+        Vehicle changed = newVehicle("2", "Hybrid");
+        Vehicle added = newVehicle("3", "Elektro");
+        adapter.returns(added, newVehicle("4", "Diesel"), changed);
+
+        List<VehicleChange<String>> changes = poller.poll("alice");
+        assertThat(changes).extracting("type").containsExactly(VehicleChange.Type.REMOVED,
+                VehicleChange.Type.CHANGED, VehicleChange.Type.ADDED);
+        assertThat(changes).extracting("finorvin").containsExactly("fin-1", "fin-2", "fin-3");
+        assertThat(changes).extracting("vehicle").containsExactly(null, changed, added);
+        assertThat(changes).extracting("account").containsOnly("alice");
+    }
+
+    @Test
+    public void testPoll_shouldAdaptIntervalToChanges() {
+        adapter.returns(newVehicle("1", "Benzin"));
+        poller.poll("alice");
+        for(long expected : new long[]{2000, 4000, 8000, 8000}) {
+            poller.poll("alice");
+            assertThat(poller.interval("alice")).isEqualTo(expected);
+        }
+        adapter.returns(newVehicle("1", "Diesel"));
+        poller.poll("alice");
+        assertThat(poller.interval("alice")).isEqualTo(4000);
+        adapter.returns(newVehicle("1", "Benzin"));
+        poller.poll("alice");
+        adapter.returns(newVehicle("1", "Diesel"));
+        poller.poll("alice");
+        adapter.returns(newVehicle("1", "Benzin"));
+        poller.poll("alice");
+        assertThat(poller.interval("alice")).isEqualTo(MIN_INTERVAL);
+    }
+
+    @Test
+    public void testPoll_whenApiFails_shouldKeepStateAndBackOff() {
+        adapter.returns(newVehicle("1", "Benzin"));
+        poller.poll("alice");
+        adapter.failure = new QuotaExceededException("quota", null);
+        assertThat(poller.poll("alice")).isEmpty();
+        assertThat(failures).containsExactly(adapter.failure);
+        assertThat(poller.interval("alice")).isEqualTo(2000);
+
+        adapter.failure = null;
+        reported.clear();
+        assertThat(poller.poll("alice")).isEmpty();
+        assertThat(reported).isEmpty();
+    }
+
+    @Test
+    public void testPoll_whenListenerFails_shouldNotifyOthersAndReportChangesAgain() {
+        adapter.returns(newVehicle("1", "Benzin"));
+        poller.poll("alice");
+        reported.clear();
+        IllegalStateException failure = new IllegalStateException("downstream unavailable");
+        FleetListener<String> failing = (account, changes) -> {
+            throw failure;
+        };
+        poller.removeListener(recorder);
+        poller.addListener(failing);
+        poller.addListener(recorder);
+        adapter.returns(newVehicle("1", "Diesel"));
+        try {
+            poller.poll("alice");
+            fail("Expected the failure of the listener.");
+        } catch (IllegalStateException e) {
+            assertThat(e).isSameAs(failure);
+        }
+        assertThat(reported).extracting("finorvin").containsExactly("fin-1");
+
+        // the changes are reported again since they were not delivered to every listener
+        poller.removeListener(failing);
+        reported.clear();
+        assertThat(poller.poll("alice")).extracting("type").containsExactly(VehicleChange.Type.CHANGED);
+        assertThat(reported).extracting("finorvin").containsExactly("fin-1");
+        assertThat(poller.poll("alice")).isEmpty();
+    }
+
+    @Test
+    public void testFingerprint_shouldDistinguishNullFromEmptyAndFieldBoundaries() {
+        Vehicle empty = newVehicle("1", "");
+        Vehicle absent = newVehicle("1", null);
+        Vehicle shifted = newVehicle("1", "Die");
+        shifted.setPowerhp("sel");
+        assertThat(FleetPoller.fingerprint(empty)).isNotEqualTo(FleetPoller.fingerprint(absent));
+        assertThat(FleetPoller.fingerprint(newVehicle("1", "Diesel")))
+                .isEqualTo(FleetPoller.fingerprint(newVehicle("1", "Diesel")))
+                .isNotEqualTo(FleetPoller.fingerprint(shifted));
+    }
+
+    @Test
+    public void testAdd_shouldPollInBackground() throws InterruptedException {
+        CountDownLatch polled = new CountDownLatch(1);
+        try (FleetPoller<String> background = FleetPoller.<String>builder().executor(Runnable::run).build()) {
+            background.addListener((account, changes) -> polled.countDown());
+            StubAdapter backgroundAdapter = new StubAdapter();
+            backgroundAdapter.returns(newVehicle("1", "Benzin"));
+            background.add("bob", backgroundAdapter);
+            assertThat(polled.await(5, TimeUnit.SECONDS)).isTrue();
+            background.remove("bob");
+            assertThat(background.accounts()).isEmpty();
+            assertThat(background.interval("bob")).isEqualTo(-1);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package pet.jen.mbdev.connectedvehicle;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class FleetRegistryTest {
+
+    private final FleetRegistry<String> registry = FleetRegistry.<String>builder().build();
+
+    @Test
+    public void testUpdate_shouldIndexVehiclesByUniqueKeys() {
+        registry.update("alice", Arrays.asList(newVehicle(1, "Benzin", "2017"), newVehicle(2, "Diesel", "2018")));
+        assertThat(registry.size()).isEqualTo(2);
+        assertThat(registry.byFinorvin("WDD002").getId()).isEqualTo("2");
+        assertThat(registry.byLicenseplate("S-GG-1").getId()).isEqualTo("1");
+        assertThat(registry.byFinorvin("WDD003")).isNull();
+        assertThat(registry.byLicenseplate("S-GG-3")).isNull();
+        assertThat(registry.owners("WDD001")).containsExactly("alice");
+    }
+
+    @Test
+    public void testUpdate_withSharedVehicles_shouldTrackAllOwners() {
+        registry.update("alice", Arrays.asList(newVehicle(1, "Benzin", "2017"), newVehicle(2, "Diesel", "2018")));
+        registry.update("bob", Collections.singletonList(newVehicle(2, "Diesel", "2018")));
+        assertThat(registry.size()).isEqualTo(2);
+        assertThat(registry.owners("WDD002")).containsOnly("alice", "bob");
+        assertThat(registry.vehiclesOf("bob")).extracting("id").containsExactly("2");
+
+        registry.update("alice", Collections.singletonList(newVehicle(1, "Benzin", "2017")));
+        assertThat(registry.owners("WDD002")).containsExactly("bob");
+        registry.remove("bob");
+        assertThat(registry.byFinorvin("WDD002")).isNull();
+        assertThat(registry.owners("WDD002")).isEmpty();
+        assertThat(registry.size()).isEqualTo(1);
+        assertThat(registry.query().where(VehicleField.FUELTYPE, "Diesel").count()).isEqualTo(0);
+    }
+
+    @Test
+    public void testUpdate_withChangedVehicle_shouldMoveIndexEntries() {
+        registry.update("alice", Collections.singletonList(newVehicle(1, "Benzin", "2017")));
+        Vehicle changed = newVehicle(1, "Hybrid", "2017");
+        changed.setLicenseplate("S-XX-1");
+        registry.update("alice", Collections.singletonList(changed));
+        assertThat(registry.byLicenseplate("S-GG-1")).isNull();
+        assertThat(registry.byLicenseplate("S-XX-1")).isSameAs(changed);
+        assertThat(registry.query().where(VehicleField.FUELTYPE, "Benzin").count()).isEqualTo(0);
+        assertThat(registry.query().where(VehicleField.FUELTYPE, "Hybrid").list()).containsExactly(changed);
+    }
+
+    @Test
+    public void testLookup_withNullKey_shouldReturnNothing() {
+        Vehicle withoutPlate = newVehicle(1, "Benzin", "2017");
+        withoutPlate.setLicenseplate(null);
+        registry.update("alice", Collections.singletonList(withoutPlate));
+        assertThat(registry.byFinorvin(null)).isNull();
+        assertThat(registry.byLicenseplate(null)).isNull();
+        assertThat(registry.owners(null)).isEmpty();
+    }
+
+    @Test
+    public void testQuery_withNullValue_shouldMatchMissingFieldsOnBitmapAndOtherFields() {
+        Vehicle withoutValues = newVehicle(1, null, "2017");
+        Vehicle withValues = newVehicle(2, "Diesel", "2017");
+        withValues.setColorname("Black");
+        registry.update("alice", Arrays.asList(withoutValues, withValues));
+        assertThat(registry.query().where(VehicleField.FUELTYPE, (String) null).list()).containsExactly(withoutValues);
+        assertThat(registry.query().where(VehicleField.COLORNAME, (String) null).list()).containsExactly(withoutValues);
+        assertThat(registry.query().where(VehicleField.FUELTYPE, null, "Diesel").count()).isEqualTo(2);
+        assertThat(registry.query().where(VehicleField.COLORNAME, null, "Black").count()).isEqualTo(2);
+
+        Vehicle completed = newVehicle(1, "Benzin", "2017");
+        registry.update("alice", Arrays.asList(completed, withValues));
+        assertThat(registry.query().where(VehicleField.FUELTYPE, (String) null).count()).isEqualTo(0);
+        assertThat(registry.query().where(VehicleField.FUELTYPE, "Benzin").list()).containsExactly(completed);
+
+        registry.update("alice", Collections.singletonList(withoutValues));
+        assertThat(registry.query().where(VehicleField.FUELTYPE, (String) null).list()).containsExactly(withoutValues);
+        assertThat(registry.query().where(VehicleField.FUELTYPE, "Benzin").count()).isEqualTo(0);
+        registry.remove("alice");
+        assertThat(registry.query().where(VehicleField.FUELTYPE, (String) null).count()).isEqualTo(0);
+    }
+
+    @Test
+    public void testQuery_withCombinedConditions_shouldReturnMatchingVehicles() {
+        List<Vehicle> alice = new ArrayList<>();
+        List<Vehicle> bob = new ArrayList<>();
+        for(int i = 0; i < 100; i++) {
+            Vehicle vehicle = newVehicle(i, i % 2 == 0 ? "Diesel" : "Benzin", String.valueOf(2010 + i % 5));
+            vehicle.setColorname(i % 3 == 0 ? "polarweiß" : "jupiterrot");
+            (i < 60 ? alice : bob).add(vehicle);
+        }
+        registry.update("alice", alice);
+        registry.update("bob", bob);
+
+        // diesel: even, 2011 or 2013: i % 5 in (1, 3), alice: i < 60, colorname is not bitmap indexed: i % 3 == 0
+        List<Vehicle> matches = registry.query()
+                .where(VehicleField.FUELTYPE, "Diesel")
+                .where(VehicleField.MODELYEAR, "2011", "2013")
+                .where(VehicleField.COLORNAME, "polarweiß")
+                .ownedBy("alice")
+                .list();
+        assertThat(matches).extracting("id").containsExactly("6", "18", "36", "48");
+        assertThat(registry.query().where(VehicleField.COLORNAME, "jupiterrot").count()).isEqualTo(66);
+        assertThat(registry.query().count()).isEqualTo(100);
+        assertThat(registry.query().where(VehicleField.FUELTYPE, "Diesel").where(VehicleField.FUELTYPE, "Benzin")
+                .count()).isEqualTo(0);
+    }
+
+    @Test
+    public void testQuery_whileUpdating_shouldOnlyReturnMatchingVehicles() throws Exception {
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<Vehicle> mismatch = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            while(running.get()) {
+                registry.query().where(VehicleField.FUELTYPE, "Diesel").forEach(vehicle -> {
+                    if(!"Diesel".equals(vehicle.getFueltype())) {
+                        mismatch.set(vehicle);
+                    }
+                });
+            }
+        });
+        reader.start();
+        for(int round = 0; round < 200; round++) {
+            List<Vehicle> vehicles = new ArrayList<>();
+            for(int i = 0; i < 50; i++) {
+                vehicles.add(newVehicle(i, (i + round) % 2 == 0 ? "Diesel" : "Benzin", "2017"));
+            }
+            registry.update(round % 2 == 0 ? "alice" : "bob", vehicles);
+            registry.remove(round % 2 == 0 ? "bob" : "alice");
+        }
+        running.set(false);
+        reader.join();
+        assertThat(mismatch.get()).isNull();
+        assertThat(registry.size()).isEqualTo(50);
+    }
+
+    private static Vehicle newVehicle(int number, String fueltype, String modelyear) {
+        Vehicle vehicle = new Vehicle();
+        vehicle.setId(String.valueOf(number));
+        vehicle.setFinorvin(String.format("WDD%03d", number));
+        vehicle.setLicenseplate("S-GG-" + number);
+        vehicle.setFueltype(fueltype);
+        vehicle.setModelyear(modelyear);
+        return vehicle;
+    }
+}
@@ -0,0 +1,157 @@
+package pet.jen.mbdev.connectedvehicle;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class FleetStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+
+    private FleetStore store;
+
+    @Before
+    public void setup() throws IOException {
+        directory = folder.getRoot().toPath().resolve("fleet");
+        store = FleetStore.open(directory);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        store.close();
+    }
+
+    @Test
+    public void testUpsert_withNewVehicles_shouldAppendRows() throws IOException {
+        store.upsert(Arrays.asList(newVehicle(1, "Benzin"), newVehicle(2, "Diesel")));
+        assertThat(store.size()).isEqualTo(2);
+        assertThat(store.row("WDD002")).isEqualTo(1);
+        assertThat(store.value(1, VehicleField.FUELTYPE)).isEqualTo("Diesel");
+        assertThat(store.vehicle("WDD001")).isEqualTo(newVehicle(1, "Benzin"));
+        assertThat(store.row("WDD003")).isEqualTo(FleetStore.ABSENT);
+        assertThat(store.vehicle("WDD003")).isNull();
+    }
+
+    @Test
+    public void testUpsert_withKnownVehicle_shouldReplaceValuesInPlace() throws IOException {
+        store.upsert(newVehicle(1, "Benzin"));
+        Vehicle updated = newVehicle(1, "Hybrid");
+        updated.setColorname(null);
+        store.upsert(updated);
+        assertThat(store.size()).isEqualTo(1);
+        assertThat(store.vehicle(0)).isEqualTo(updated);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUpsert_withoutFinorvin_shouldThrowException() throws IOException {
+        store.upsert(new Vehicle());
+    }
+
+    @Test
+    public void testScan_shouldReportMatchingRows() throws IOException {
+        for(int i = 0; i < 10; i++) {
+            store.upsert(newVehicle(i, i % 3 == 0 ? "Diesel" : "Benzin"));
+        }
+        List<Integer> rows = new ArrayList<>();
+        store.scan(VehicleField.FUELTYPE, "Diesel", rows::add);
+        assertThat(rows).containsExactly(0, 3, 6, 9);
+        assertThat(store.count(VehicleField.FUELTYPE, "Benzin")).isEqualTo(6);
+        assertThat(store.count(VehicleField.FUELTYPE, "Elektro")).isEqualTo(0);
+        assertThat(store.count(VehicleField.SALESDESIGNATION, null)).isEqualTo(10);
+        List<Integer> all = new ArrayList<>();
+        store.scan(all::add);
+        assertThat(all).hasSize(10);
+    }
+
+    @Test
+    public void testUpsert_withManyVehicles_shouldGrowColumnsAndIndexes() throws IOException {
+        List<Vehicle> vehicles = new ArrayList<>();
+        for(int i = 0; i < 5000; i++) {
+            vehicles.add(newVehicle(i, "Benzin"));
+        }
+        store.upsert(vehicles);
+        assertThat(store.size()).isEqualTo(5000);
+        for(int i = 0; i < 5000; i += 499) {
+            assertThat(store.vehicle(store.row(String.format("WDD%03d", i)))).isEqualTo(vehicles.get(i));
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testRow_whileIndexesGrow_shouldFindStoredVehicles() throws Exception {
+        store.upsert(newVehicle(0, "Benzin"));
+        Thread writer = new Thread(() -> {
+            try {
+                for(int i = 1; i < 5000; i++) {
+                    store.upsert(newVehicle(i, "Benzin"));
+                }
+            } catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        writer.start();
+        while(writer.isAlive()) {
+            assertThat(store.row("WDD000")).isEqualTo(0);
+        }
+        writer.join();
+        assertThat(store.size()).isEqualTo(5000);
+    }
+
+    @Test
+    public void testOpen_shouldRestoreStoredVehicles() throws IOException {
+        for(int i = 0; i < 3000; i++) {
+            store.upsert(newVehicle(i, "Benzin"));
+        }
+        store.close();
+        store = FleetStore.open(directory);
+        assertThat(store.size()).isEqualTo(3000);
+        assertThat(store.vehicle("WDD2999")).isEqualTo(newVehicle(2999, "Benzin"));
+        store.upsert(newVehicle(3000, "Diesel"));
+        assertThat(store.row("WDD3000")).isEqualTo(3000);
+    }
+
+    @Test
+    public void testOpen_withDirtyIndexes_shouldRebuildThem() throws IOException {
+        store.upsert(Arrays.asList(newVehicle(1, "Benzin"), newVehicle(2, "Diesel")));
+        store.close();
+        // simulates a crash while both indexes were modified
+        for(String file : new String[]{"keys.idx", "strings.idx"}) {
+            try (RandomAccessFile index = new RandomAccessFile(directory.resolve(file).toFile(), "rw")) {
+                index.seek(12);
+                index.writeInt(1);
+                index.seek(16);
+                index.write(new byte[(int) index.length() - 16]);
+            }
+        }
+        store = FleetStore.open(directory);
+        assertThat(store.row("WDD002")).isEqualTo(1);
+        assertThat(store.count(VehicleField.FUELTYPE, "Diesel")).isEqualTo(1);
+        store.upsert(newVehicle(2, "Benzin"));
+        assertThat(store.size()).isEqualTo(2);
+    }
+
+    private static Vehicle newVehicle(int number, String fueltype) {
+        Vehicle vehicle = new Vehicle();
+        vehicle.setId(String.valueOf(number));
+        vehicle.setFinorvin(String.format("WDD%03d", number));
+        vehicle.setLicenseplate("S-GG-" + number);
+        vehicle.setFueltype(fueltype);
+        vehicle.setColorname("polarweiß");
+        vehicle.setPowerhp("381");
+        return vehicle;
+    }
+}
@@ -0,0 +1,88 @@
+package pet.jen.mbdev.connectedvehicle;
+
+import pet.jen.mbdev.api.TokenProvider;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Adapter which answers from memory instead of calling the API, counts its calls and fails on demand. Unless set
+ * otherwise `vehicles()` returns the vehicles `a` and `b`, `vehicle(id)` returns a new vehicle of the id.
+ */
+class StubAdapter extends ConnectedVehicleAdapter {
+
+    final AtomicInteger vehiclesCalls = new AtomicInteger();
+
+    final AtomicInteger vehicleCalls = new AtomicInteger();
+
+    volatile Supplier<List<Vehicle>> vehicles = () -> Arrays.asList(newVehicle("a"), newVehicle("b"));
+
+    volatile RuntimeException failure;
+
+    StubAdapter() {
+        super(new StubTokenProvider(), "http://localhost");
+    }
+
+    StubAdapter(Supplier<List<Vehicle>> vehicles) {
+        this();
+        this.vehicles = vehicles;
+    }
+
+    /**
+     * Lets `vehicles()` return the given vehicles from now on.
+     */
+    void returns(Vehicle... vehicles) {
+        List<Vehicle> list = Arrays.asList(vehicles);
+        this.vehicles = () -> list;
+    }
+
+    @Override
+    public List<Vehicle> vehicles() {
+        vehiclesCalls.incrementAndGet();
+        if(failure != null) {
+            throw failure;
+        }
+        return vehicles.get();
+    }
+
+    @Override
+    public Vehicle vehicle(String id) {
+        vehicleCalls.incrementAndGet();
+        if(failure != null) {
+            throw failure;
+        }
+        return newVehicle(id);
+    }
+
+    /**
+     * @return vehicle of the id whose finorvin is `fin-<id>`
+     */
+    static Vehicle newVehicle(String id) {
+        return newVehicle(id, null);
+    }
+
+    static Vehicle newVehicle(String id, String fueltype) {
+        Vehicle vehicle = new Vehicle();
+        vehicle.setId(id);
+        vehicle.setFinorvin("fin-" + id);
+        vehicle.setFueltype(fueltype);
+        return vehicle;
+    }
+
+    /**
+     * Hands out the same access token forever.
+     */
+    static class StubTokenProvider implements TokenProvider {
+        @Override
+        public String getAccessToken() {
+            return "access-token";
+        }
+
+        @Override
+        public String refreshTokens() {
+            return "access-token";
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package pet.jen.mbdev.connectedvehicle;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import pet.jen.mbdev.api.exception.QuotaExceededException;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.assertj.core.api.Java6Assertions.fail;
+import static pet.jen.mbdev.connectedvehicle.StubAdapter.newVehicle;
+
+public class VehicleBatcherTest {
+
+    private StubAdapter adapter;
+
+    private ExecutorService executor;
+
+    private VehicleBatcher batcher;
+
+    @Before
+    public void setup() {
+        adapter = new StubAdapter();
+        executor = Executors.newFixedThreadPool(2);
+        batcher = VehicleBatcher.builder().adapter(adapter).window(50).executor(executor).build();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testVehicle_whenLookupsArriveWithinWindow_shouldUseSingleListCall() throws Exception {
+        CompletableFuture<Vehicle> a = batcher.vehicle("a");
+        CompletableFuture<Vehicle> b = batcher.vehicle("b");
+        CompletableFuture<Vehicle> again = batcher.vehicle("a");
+        assertThat(a.get(5, TimeUnit.SECONDS).getFinorvin()).isEqualTo("fin-a");
+        assertThat(b.get(5, TimeUnit.SECONDS).getFinorvin()).isEqualTo("fin-b");
+        assertThat(again.get(5, TimeUnit.SECONDS)).isSameAs(a.get());
+        assertThat(adapter.vehiclesCalls.get()).isEqualTo(1);
+        assertThat(adapter.vehicleCalls.get()).isEqualTo(0);
+        assertThat(batcher.lookups()).isEqualTo(3);
+    }
+
+    @Test
+    public void testVehicles_whenIdIsMissingFromList_shouldFallBackToSingleCall() throws Exception {
+        Map<String, Vehicle> vehicles = batcher.vehicles(Arrays.asList("a", "c")).get(5, TimeUnit.SECONDS);
+        assertThat(vehicles.keySet()).containsExactly("a", "c");
+        assertThat(vehicles.get("c").getFinorvin()).isEqualTo("fin-c");
+        assertThat(batcher.listCalls()).isEqualTo(1);
+        assertThat(batcher.singleCalls()).isEqualTo(1);
+    }
+
+    @Test
+    public void testVehicle_whenBatchIsBelowThreshold_shouldUseSingleCall() throws Exception {
+        assertThat(batcher.vehicle("a").get(5, TimeUnit.SECONDS).getFinorvin()).isEqualTo("fin-a");
+        assertThat(adapter.vehiclesCalls.get()).isEqualTo(0);
+        assertThat(adapter.vehicleCalls.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testVehicles_whenListCallFails_shouldFailAllLookups() throws Exception {
+        adapter.failure = new QuotaExceededException("quota", null);
+        CompletableFuture<Vehicle> a = batcher.vehicle("a");
+        CompletableFuture<Vehicle> b = batcher.vehicle("b");
+        for(CompletableFuture<Vehicle> future : Arrays.asList(a, b)) {
+            try {
+                future.get(5, TimeUnit.SECONDS);
+                fail("Lookups of a failed batch should fail.");
+            } catch (ExecutionException e) {
+                assertThat(e.getCause()).isSameAs(adapter.failure);
+            }
+        }
+        assertThat(adapter.vehicleCalls.get()).isEqualTo(0);
+    }
+
+    @Test
+    public void testVehicle_whenWindowClosed_shouldStartNewBatch() throws Exception {
+        batcher.vehicles(Arrays.asList("a", "b")).get(5, TimeUnit.SECONDS);
+        batcher.vehicles(Arrays.asList("a", "b")).get(5, TimeUnit.SECONDS);
+        assertThat(adapter.vehiclesCalls.get()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,188 @@
+package pet.jen.mbdev.connectedvehicle;
+
+import org.junit.Before;
+import org.junit.Test;
+import pet.jen.mbdev.api.exception.MBDevApiException;
+import pet.jen.mbdev.api.exception.QuotaExceededException;
+import pet.jen.mbdev.api.exception.UnauthorizedException;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.assertj.core.api.Java6Assertions.fail;
+
+public class VehicleCacheTest {
+
+    private static final long TTL = 1000;
+
+    private final AtomicLong time = new AtomicLong();
+
+    private StubAdapter adapter;
+
+    private VehicleCache cache;
+
+    @Before
+    public void setup() {
+        adapter = new StubAdapter();
+        cache = cache(adapter, 0);
+    }
+
+    @Test
+    public void testVehicle_whenEntryIsValid_shouldNotCallApi() {
+        Vehicle vehicle = cache.vehicle("a");
+        time.set(400);
+        assertThat(cache.vehicle("a")).isSameAs(vehicle);
+        assertThat(adapter.vehicleCalls.get()).isEqualTo(1);
+        assertThat(cache.hits()).isEqualTo(1);
+        assertThat(cache.misses()).isEqualTo(1);
+    }
+
+    @Test
+    public void testVehicle_whenEntryExpired_shouldReload() {
+        cache.vehicle("a");
+        time.set(TTL);
+        cache.vehicle("a");
+        assertThat(adapter.vehicleCalls.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testVehicle_whenEntryIsHot_shouldRefreshAhead() {
+        cache.vehicle("a");
+        // read after half of the ttl reloads the entry in the background
+        time.set(600);
+        cache.vehicle("a");
+        assertThat(adapter.vehicleCalls.get()).isEqualTo(2);
+        assertThat(cache.refreshes()).isEqualTo(1);
+        // refreshed entry is valid beyond the original expiry
+        time.set(1050);
+        cache.vehicle("a");
+        assertThat(adapter.vehicleCalls.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testVehicle_whenRefreshCompletesLater_shouldBeValidFromCompletion() {
+        StubAdapter slow = new StubAdapter() {
+            @Override
+            public Vehicle vehicle(String id) {
+                // every load takes 300 milliseconds
+                time.addAndGet(300);
+                return super.vehicle(id);
+            }
+        };
+        VehicleCache cache = cache(slow, 0);
+        // loaded at 300
+        cache.vehicle("a");
+        time.set(900);
+        cache.vehicle("a");
+        assertThat(slow.vehicleCalls.get()).isEqualTo(2);
+        // the refresh completed at 1200, not at the read which triggered it, hence the entry is still valid
+        time.set(2150);
+        cache.vehicle("a");
+        assertThat(cache.misses()).isEqualTo(1);
+    }
+
+    @Test
+    public void testVehicle_whenMissedConcurrently_shouldShareLoad() throws Exception {
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        StubAdapter blocking = new StubAdapter() {
+            @Override
+            public Vehicle vehicle(String id) {
+                loading.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return super.vehicle(id);
+            }
+        };
+        final VehicleCache cache = cache(blocking, 0);
+        final AtomicReference<Vehicle> first = new AtomicReference<>();
+        final AtomicReference<Vehicle> second = new AtomicReference<>();
+        Thread firstReader = new Thread(() -> first.set(cache.vehicle("a")));
+        Thread secondReader = new Thread(() -> second.set(cache.vehicle("a")));
+        firstReader.start();
+        loading.await();
+        secondReader.start();
+        // the second read waits for the load of the first one
+        while(secondReader.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+        firstReader.join();
+        secondReader.join();
+        assertThat(blocking.vehicleCalls.get()).isEqualTo(1);
+        assertThat(second.get()).isSameAs(first.get());
+        assertThat(cache.misses()).isEqualTo(2);
+    }
+
+    @Test
+    public void testVehicles_shouldFillEntriesOfListedVehicles() {
+        assertThat(cache.vehicles()).hasSize(2);
+        time.set(10);
+        assertThat(cache.vehicle("a").getFinorvin()).isEqualTo("fin-a");
+        assertThat(cache.vehicle("b").getFinorvin()).isEqualTo("fin-b");
+        time.set(20);
+        cache.vehicles();
+        assertThat(adapter.vehiclesCalls.get()).isEqualTo(1);
+        assertThat(adapter.vehicleCalls.get()).isEqualTo(0);
+    }
+
+    @Test
+    public void testVehicle_whenApiFailsWithinMaxStale_shouldServeStaleEntry() {
+        Vehicle vehicle = cache.vehicle("a");
+        adapter.failure = new QuotaExceededException("quota", null);
+        time.set(TTL + 4000);
+        assertThat(cache.vehicle("a")).isSameAs(vehicle);
+        assertThat(cache.staleHits()).isEqualTo(1);
+        try {
+            time.set(TTL + 5001);
+            cache.vehicle("a");
+            fail("Entries beyond the maximum staleness should not be served.");
+        } catch (QuotaExceededException e) {
+            assertThat(e).isSameAs(adapter.failure);
+        }
+    }
+
+    @Test
+    public void testVehicles_whenApiFails_shouldServeStaleList() {
+        List<Vehicle> vehicles = cache.vehicles();
+        adapter.failure = new MBDevApiException("unavailable", null);
+        time.set(TTL + 1);
+        assertThat(cache.vehicles()).isSameAs(vehicles);
+    }
+
+    @Test(expected = UnauthorizedException.class)
+    public void testVehicle_whenAuthorizationIsRejected_shouldNotServeStaleEntry() {
+        cache.vehicle("a");
+        adapter.failure = new UnauthorizedException("revoked", null);
+        time.set(TTL + 1);
+        cache.vehicle("a");
+    }
+
+    @Test
+    public void testVehicle_whenMaxSizeIsExceeded_shouldEvictLeastRecentlyUsed() {
+        VehicleCache bounded = cache(adapter, 2);
+        bounded.vehicle("a");
+        bounded.vehicle("b");
+        time.set(10);
+        bounded.vehicle("a");
+        time.set(20);
+        bounded.vehicle("c");
+        assertThat(bounded.size()).isEqualTo(2);
+        time.set(30);
+        bounded.vehicle("a");
+        assertThat(adapter.vehicleCalls.get()).isEqualTo(3);
+        time.set(40);
+        bounded.vehicle("b");
+        assertThat(adapter.vehicleCalls.get()).isEqualTo(4);
+    }
+
+    private VehicleCache cache(StubAdapter adapter, int maxSize) {
+        return new VehicleCache(adapter, TTL, maxSize, 0.5, 5000, Runnable::run, time::get);
+    }
+}
@@ -0,0 +1,107 @@
+package pet.jen.mbdev.connectedvehicle;
+
+import org.junit.Test;
+import pet.jen.mbdev.api.exception.MBDevApiException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.assertj.core.api.Java6Assertions.fail;
+
+public class VehicleReaderTest {
+
+    private static final String VEHICLES = "[{\"id\":\"1\",\"licenseplate\":\"S-GG-116\",\"finorvin\":\"WDD001\","
+            + "\"colorname\":\"designo diamantweiß \\\"bright\\\"\",\"powerhp\":381,\"unknown\":{\"nested\":[1,2]}},"
+            + "null,{\"id\":\"2\",\"licenseplate\":null,\"finorvin\":\"WDD002\",\"fueltype\":\"Ben\\u0001zin\\n\"}]";
+
+    @Test
+    public void testRead_withAllFields_shouldEqualEagerlyDecodedVehicles() throws Exception {
+        List<Vehicle> vehicles = read(VEHICLES, VehicleProjection.all());
+        assertThat(vehicles).hasSize(2);
+        Vehicle expected = new Vehicle();
+        expected.setId("1");
+        expected.setLicenseplate("S-GG-116");
+        expected.setFinorvin("WDD001");
+        expected.setColorname("designo diamantweiß \"bright\"");
+        expected.setPowerhp("381");
+        assertThat(vehicles.get(0)).isEqualTo(expected);
+        assertThat(expected).isEqualTo(vehicles.get(0));
+        assertThat(vehicles.get(0).hashCode()).isEqualTo(expected.hashCode());
+        assertThat(vehicles.get(1).getLicenseplate()).isNull();
+        assertThat(vehicles.get(1).getFueltype()).isEqualTo("Ben\u0001zin\n");
+    }
+
+    @Test
+    public void testRead_withProjection_shouldSkipOtherFields() throws Exception {
+        List<Vehicle> vehicles = read(VEHICLES, VehicleProjection.of(VehicleField.ID, VehicleField.FINORVIN));
+        assertThat(vehicles.get(0).getId()).isEqualTo("1");
+        assertThat(vehicles.get(0).getFinorvin()).isEqualTo("WDD001");
+        assertThat(vehicles.get(0).getLicenseplate()).isNull();
+        assertThat(vehicles.get(0).getColorname()).isNull();
+    }
+
+    @Test
+    public void testGet_shouldDecodeFieldsOnFirstAccess() throws Exception {
+        LazyVehicle vehicle = (LazyVehicle) read(VEHICLES, VehicleProjection.all()).get(0);
+        assertThat(vehicle.isRaw()).isTrue();
+        assertThat(vehicle.getFinorvin()).isEqualTo("WDD001");
+        assertThat(vehicle.isRaw()).isFalse();
+    }
+
+    @Test
+    public void testSet_shouldOverwriteDecodedField() throws Exception {
+        Vehicle vehicle = read(VEHICLES, VehicleProjection.all()).get(0);
+        vehicle.setLicenseplate("S-XX-116");
+        assertThat(vehicle.getLicenseplate()).isEqualTo("S-XX-116");
+        assertThat(vehicle.getId()).isEqualTo("1");
+    }
+
+    @Test
+    public void testRead_withEmptyBody_shouldReturnNoVehicles() throws Exception {
+        assertThat(read("", VehicleProjection.all())).isEmpty();
+        assertThat(read("[]", VehicleProjection.all())).isEmpty();
+    }
+
+    @Test(expected = MBDevApiException.class)
+    public void testRead_whenBodyIsNoArray_shouldThrowApiException() throws Exception {
+        read("{\"id\":\"1\"}", VehicleProjection.all());
+    }
+
+    @Test
+    public void testRead_whenBodyIsTruncated_shouldThrowApiExceptionAndClose() throws Exception {
+        TrackingStream body = new TrackingStream("[{\"id\":\"1\"},{\"id\":");
+        VehicleReader reader = VehicleReader.open(body, VehicleProjection.all());
+        try {
+            reader.next();
+            fail("Truncated vehicles should not be read.");
+        } catch (MBDevApiException e) {
+            assertThat(body.closed).isTrue();
+        }
+    }
+
+    private static List<Vehicle> read(String json, VehicleProjection projection) {
+        List<Vehicle> vehicles = new ArrayList<>();
+        try (VehicleReader reader = VehicleReader.open(new TrackingStream(json), projection)) {
+            reader.forEachRemaining(vehicles::add);
+        }
+        return vehicles;
+    }
+
+    private static class TrackingStream extends ByteArrayInputStream {
+        private volatile boolean closed;
+
+        TrackingStream(String content) {
+            super(content.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            super.close();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package pet.jen.mbdev.benchmarks;
+
+import pet.jen.mbdev.api.VirtualThreads;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Minimal local HTTP/1.1 stand-in for the API which answers every request with the same JSON body and keeps
+ * connections alive. Responses are written with a single write and `TCP_NODELAY` so that the latency of reused
+ * connections is not distorted by delayed acknowledgements. Request bodies are not supported.
+ *
+ * Every connection is served by a thread of its own, a virtual one if the JVM supports them so that many concurrent
+ * connections are cheap on the server side.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+public class StandInServer implements Closeable {
+
+    private final ServerSocket serverSocket;
+
+    private final byte[] response;
+
+    private final Set<Socket> connections = Collections.newSetFromMap(new ConcurrentHashMap<Socket, Boolean>());
+
+    private final ThreadFactory handlers = VirtualThreads.isSupported()
+            ? VirtualThreads.threadFactory("stand-in-connection")
+            : new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "stand-in-connection");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            };
+
+    private volatile int accepted;
+
+    public StandInServer(String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        byte[] head = ("HTTP/1.1 200 OK\r\n"
+                + "Content-Type: application/json\r\n"
+                + "Content-Length: " + bytes.length + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+        this.response = new byte[head.length + bytes.length];
+        System.arraycopy(head, 0, response, 0, head.length);
+        System.arraycopy(bytes, 0, response, head.length, bytes.length);
+        this.serverSocket = new ServerSocket(0, 4096, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                accept();
+            }
+        }, "stand-in-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public String url() {
+        return "http://localhost:" + serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return amount of connections which were accepted so far
+     */
+    public int accepted() {
+        return accepted;
+    }
+
+    private void accept() {
+        while(!serverSocket.isClosed()) {
+            try {
+                final Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                connections.add(socket);
+                accepted++;
+                handlers.newThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        serve(socket);
+                    }
+                }).start();
+            } catch (IOException e) {
+                // closed
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket connection = socket;
+             InputStream in = connection.getInputStream();
+             OutputStream out = connection.getOutputStream()) {
+            ByteArrayOutputStream request = new ByteArrayOutputStream();
+            int matched = 0;
+            int b;
+            while((b = in.read()) != -1) {
+                request.write(b);
+                // a request ends with an empty line
+                matched = (b == '\r' || b == '\n') ? matched + 1 : 0;
+                if(matched == 4) {
+                    out.write(response);
+                    out.flush();
+                    request.reset();
+                    matched = 0;
+                }
+            }
+        } catch (SocketException e) {
+            // connection was closed by the client or the server
+        } catch (IOException e) {
+            // nothing left to do
+        } finally {
+            connections.remove(socket);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        for(Socket socket : connections) {
+            socket.close();
+        }
+    }
+}
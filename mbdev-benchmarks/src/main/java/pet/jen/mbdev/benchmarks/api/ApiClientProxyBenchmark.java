@@ -0,0 +1,196 @@
+package pet.jen.mbdev.benchmarks.api;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pet.jen.mbdev.api.ApiClientProxy;
+import pet.jen.mbdev.api.TokenProvider;
+import pet.jen.mbdev.api.exception.MBDevApiException;
+import pet.jen.mbdev.api.exception.UnauthorizedException;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the per-call overhead of the {@link ApiClientProxy} with the former reflective name based lookup. The
+ * target is a plain implementation so that only the dispatch is measured. Besides successful calls it covers calls
+ * which fail with an API error and the creation of proxies. Run it with `-prof gc` to compare the allocations per call
+ * as well.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class ApiClientProxyBenchmark {
+
+    private SampleApi direct;
+
+    private SampleApi reflective;
+
+    private SampleApi dispatched;
+
+    private String id;
+
+    private TokenProvider tokenProvider;
+
+    @Setup
+    public void setup() {
+        tokenProvider = new TokenProvider() {
+            @Override
+            public String getAccessToken() {
+                return "access-token";
+            }
+
+            @Override
+            public String refreshTokens() {
+                return "access-token";
+            }
+        };
+        direct = new SampleClient();
+        reflective = wrap(new ReflectiveApiClientProxy(direct, tokenProvider));
+        dispatched = wrap(new ApiClientProxy(direct, tokenProvider));
+        id = "WDD1234567890";
+    }
+
+    @Benchmark
+    public String direct() {
+        return direct.vehicle(id);
+    }
+
+    @Benchmark
+    public String reflective() {
+        return reflective.vehicle(id);
+    }
+
+    @Benchmark
+    public String dispatched() {
+        return dispatched.vehicle(id);
+    }
+
+    @Benchmark
+    public int reflectivePrimitive() {
+        return reflective.count(7);
+    }
+
+    @Benchmark
+    public int dispatchedPrimitive() {
+        return dispatched.count(7);
+    }
+
+    @Benchmark
+    public Object reflectiveFailure() {
+        try {
+            return reflective.fail();
+        } catch (MBDevApiException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Object dispatchedFailure() {
+        try {
+            return dispatched.fail();
+        } catch (MBDevApiException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Object reflectiveCreate() {
+        return new ReflectiveApiClientProxy(direct, tokenProvider);
+    }
+
+    @Benchmark
+    public Object dispatchedCreate() {
+        return new ApiClientProxy(direct, tokenProvider);
+    }
+
+    private static SampleApi wrap(InvocationHandler handler) {
+        return (SampleApi) Proxy.newProxyInstance(
+                ApiClientProxyBenchmark.class.getClassLoader(),
+                new Class[] {SampleApi.class},
+                handler);
+    }
+
+    public interface SampleApi {
+        String vehicle(String id);
+
+        int count(int limit);
+
+        String fail();
+    }
+
+    public static class SampleClient implements SampleApi {
+
+        // preallocated so that only the costs of the proxies are measured
+        private static final MBDevApiException ERROR = new MBDevApiException("not found", null);
+
+        @Override
+        public String vehicle(String id) {
+            return id;
+        }
+
+        @Override
+        public int count(int limit) {
+            return limit;
+        }
+
+        @Override
+        public String fail() {
+            throw ERROR;
+        }
+    }
+
+    /**
+     * The name based reflective lookup which was used by the {@link ApiClientProxy} before.
+     */
+    static class ReflectiveApiClientProxy implements InvocationHandler {
+
+        private final Object target;
+        private final TokenProvider tokenProvider;
+        private final Map<String, Method> targetMethods = new HashMap<>();
+
+        ReflectiveApiClientProxy(Object target, TokenProvider tokenProvider) {
+            this.target = target;
+            this.tokenProvider = tokenProvider;
+            for(Method method: target.getClass().getDeclaredMethods()) {
+                targetMethods.put(method.getName(), method);
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            return invoke(method, args, 0);
+        }
+
+        private Object invoke(Method method, Object[] args, int refreshes) throws Throwable {
+            try {
+                return targetMethods.get(method.getName()).invoke(target, args);
+            } catch (InvocationTargetException e) {
+                if (e.getCause() instanceof UnauthorizedException && refreshes < 1) {
+                    tokenProvider.refreshTokens();
+                    return invoke(method, args, ++refreshes);
+                } else if (e.getCause() instanceof MBDevApiException) {
+                    throw e.getCause();
+                }
+                throw e.getCause();
+            }
+        }
+    }
+}
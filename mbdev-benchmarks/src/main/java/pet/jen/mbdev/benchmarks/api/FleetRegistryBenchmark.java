@@ -0,0 +1,136 @@
+package pet.jen.mbdev.benchmarks.api;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pet.jen.mbdev.connectedvehicle.FleetRegistry;
+import pet.jen.mbdev.connectedvehicle.Vehicle;
+import pet.jen.mbdev.connectedvehicle.VehicleField;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares lookups and combined filters on a fleet held as a list of vehicles with the indexes of a
+ * {@link FleetRegistry}. The fleet is fed to the registry in chunks, one per account, just like the results of the
+ * `vehicles()` polls of many users.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class FleetRegistryBenchmark {
+
+    private static final String[] FUELS = {"Benzin", "Diesel", "Hybrid", "Elektro"};
+
+    private static final int VEHICLES_PER_ACCOUNT = 100;
+
+    @Param({"300000"})
+    private int vehicles;
+
+    private List<Vehicle> heapFleet;
+
+    private FleetRegistry<Integer> registry;
+
+    private String finorvin;
+
+    private String licenseplate;
+
+    private Integer account;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        heapFleet = new ArrayList<>(vehicles);
+        registry = FleetRegistry.<Integer>builder().build();
+        List<Vehicle> chunk = new ArrayList<>(VEHICLES_PER_ACCOUNT);
+        for(int i = 0; i < vehicles; i++) {
+            Vehicle vehicle = new Vehicle();
+            vehicle.setId(String.valueOf(i));
+            vehicle.setFinorvin(String.format("WDD%014d", i));
+            vehicle.setLicenseplate("S-GG-" + i);
+            vehicle.setFueltype(FUELS[random.nextInt(FUELS.length)]);
+            vehicle.setModelyear(String.valueOf(2010 + random.nextInt(10)));
+            heapFleet.add(vehicle);
+            chunk.add(vehicle);
+            if(chunk.size() == VEHICLES_PER_ACCOUNT) {
+                registry.update(i / VEHICLES_PER_ACCOUNT, chunk);
+                chunk.clear();
+            }
+        }
+        registry.update(vehicles / VEHICLES_PER_ACCOUNT, chunk);
+        // somewhere in the middle so that scanning the list doesn't get away with a few comparisons
+        int middle = vehicles / 2 + 17;
+        finorvin = heapFleet.get(middle).getFinorvin();
+        licenseplate = heapFleet.get(middle).getLicenseplate();
+        account = middle / VEHICLES_PER_ACCOUNT;
+    }
+
+    @Benchmark
+    public Vehicle heapByFinorvin() {
+        for(Vehicle vehicle : heapFleet) {
+            if(finorvin.equals(vehicle.getFinorvin())) {
+                return vehicle;
+            }
+        }
+        return null;
+    }
+
+    @Benchmark
+    public Vehicle registryByFinorvin() {
+        return registry.byFinorvin(finorvin);
+    }
+
+    @Benchmark
+    public Vehicle heapByLicenseplate() {
+        for(Vehicle vehicle : heapFleet) {
+            if(licenseplate.equals(vehicle.getLicenseplate())) {
+                return vehicle;
+            }
+        }
+        return null;
+    }
+
+    @Benchmark
+    public Vehicle registryByLicenseplate() {
+        return registry.byLicenseplate(licenseplate);
+    }
+
+    @Benchmark
+    public long heapFilter() {
+        return heapFleet.stream()
+                .filter(vehicle -> "Diesel".equals(vehicle.getFueltype()))
+                .filter(vehicle -> "2015".equals(vehicle.getModelyear()) || "2016".equals(vehicle.getModelyear()))
+                .count();
+    }
+
+    @Benchmark
+    public int registryFilter() {
+        return registry.query()
+                .where(VehicleField.FUELTYPE, "Diesel")
+                .where(VehicleField.MODELYEAR, "2015", "2016")
+                .count();
+    }
+
+    @Benchmark
+    public int registryAccountFilter() {
+        return registry.query()
+                .where(VehicleField.FUELTYPE, "Diesel")
+                .ownedBy(account)
+                .count();
+    }
+}
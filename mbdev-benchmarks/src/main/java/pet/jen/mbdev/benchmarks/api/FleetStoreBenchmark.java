@@ -0,0 +1,103 @@
+package pet.jen.mbdev.benchmarks.api;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import pet.jen.mbdev.connectedvehicle.FleetStore;
+import pet.jen.mbdev.connectedvehicle.Vehicle;
+import pet.jen.mbdev.connectedvehicle.VehicleField;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Compares filtering a fleet snapshot held as a list of vehicles on the heap with scanning the columns of a
+ * {@link FleetStore}, and measures how long it takes to reopen the store. Add `-prof gc` to see that scanning the
+ * store does not allocate.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class FleetStoreBenchmark {
+
+    private static final String[] FUELS = {"Benzin", "Diesel", "Hybrid", "Elektro"};
+
+    @Param({"300000"})
+    private int vehicles;
+
+    private Path directory;
+
+    private List<Vehicle> heapFleet;
+
+    private FleetStore store;
+
+    @Setup
+    public void setup() throws IOException {
+        Random random = new Random(42);
+        heapFleet = new ArrayList<>(vehicles);
+        for(int i = 0; i < vehicles; i++) {
+            Vehicle vehicle = new Vehicle();
+            vehicle.setId(String.valueOf(i));
+            vehicle.setFinorvin(String.format("WDD%014d", i));
+            vehicle.setLicenseplate("S-GG-" + i % 10000);
+            vehicle.setFueltype(new String(FUELS[random.nextInt(FUELS.length)].toCharArray()));
+            vehicle.setModelyear(String.valueOf(2010 + random.nextInt(10)));
+            heapFleet.add(vehicle);
+        }
+        directory = Files.createTempDirectory("fleet-store");
+        store = FleetStore.open(directory);
+        store.upsert(heapFleet);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        store.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public long heapFilter() {
+        long matches = 0;
+        for(Vehicle vehicle : heapFleet) {
+            if("Diesel".equals(vehicle.getFueltype())) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public int storeFilter() {
+        return store.count(VehicleField.FUELTYPE, "Diesel");
+    }
+
+    @Benchmark
+    public int reopen() throws IOException {
+        try (FleetStore reopened = FleetStore.open(directory)) {
+            return reopened.size();
+        }
+    }
+}
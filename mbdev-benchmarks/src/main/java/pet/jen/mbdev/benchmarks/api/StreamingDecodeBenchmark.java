@@ -0,0 +1,128 @@
+package pet.jen.mbdev.benchmarks.api;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import pet.jen.mbdev.api.ApiOptions;
+import pet.jen.mbdev.api.TokenProvider;
+import pet.jen.mbdev.api.streaming.CloseableIterator;
+import pet.jen.mbdev.api.transport.JdkHttpTransport;
+import pet.jen.mbdev.benchmarks.StandInServer;
+import pet.jen.mbdev.connectedvehicle.ConnectedVehicleAdapter;
+import pet.jen.mbdev.connectedvehicle.Vehicle;
+import pet.jen.mbdev.connectedvehicle.VehicleField;
+import pet.jen.mbdev.connectedvehicle.VehicleProjection;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares decoding a large vehicle list served by a local stand-in server as a whole with reading it incrementally
+ * through the streaming decoder. The `all` benchmarks read every vehicle, the `first` ones measure the latency until
+ * the first vehicle is available. Add `-prof gc` for the allocations; the list additionally keeps all vehicles
+ * reachable until it is returned while the streaming variants only hold the current one.
+ *
+ * `projectedAll` reads the vehicles lazily with a projection on `id`, `finorvin` and `licenseplate` and accesses just
+ * these fields, which is what most jobs need.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class StreamingDecodeBenchmark {
+
+    private static final VehicleProjection PROJECTION = VehicleProjection.of(VehicleField.ID, VehicleField.FINORVIN,
+            VehicleField.LICENSEPLATE);
+
+    @Param({"20000"})
+    private int vehicles;
+
+    private StandInServer server;
+
+    private ConnectedVehicleAdapter adapter;
+
+    @Setup
+    public void setup() throws IOException {
+        server = new StandInServer(vehicles(vehicles));
+        adapter = new ConnectedVehicleAdapter(new TokenProvider() {
+            @Override
+            public String getAccessToken() {
+                return "access-token";
+            }
+
+            @Override
+            public String refreshTokens() {
+                return "access-token";
+            }
+        }, server.url(), ApiOptions.builder().transport(JdkHttpTransport.builder().gzip(false).build()).build());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Benchmark
+    public int listAll() {
+        return adapter.vehicles().size();
+    }
+
+    @Benchmark
+    public long streamAll() {
+        final long[] count = new long[1];
+        adapter.forEachVehicle(vehicle -> count[0]++);
+        return count[0];
+    }
+
+    @Benchmark
+    public long projectedAll() {
+        final long[] length = new long[1];
+        adapter.forEachVehicle(PROJECTION, vehicle -> length[0] += vehicle.getId().length()
+                + vehicle.getFinorvin().length() + vehicle.getLicenseplate().length());
+        return length[0];
+    }
+
+    @Benchmark
+    public Vehicle listFirst() {
+        List<Vehicle> vehicles = adapter.vehicles();
+        return vehicles.get(0);
+    }
+
+    @Benchmark
+    public Vehicle streamFirst() {
+        try (CloseableIterator<Vehicle> vehicles = adapter.vehicleIterator()) {
+            return vehicles.next();
+        }
+    }
+
+    private static String vehicles(int amount) {
+        StringBuilder json = new StringBuilder(amount * 256).append('[');
+        for(int i = 0; i < amount; i++) {
+            if(i > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\":\"").append(i)
+                    .append("\",\"licenseplate\":\"S-GG-").append(i % 10000)
+                    .append("\",\"salesdesignation\":\"Mercedes-AMG C 43 4MATIC Coupé\"")
+                    .append(",\"finorvin\":\"WDD").append(String.format("%014d", i))
+                    .append("\",\"modelyear\":\"").append(2010 + i % 10)
+                    .append("\",\"colorname\":\"designo diamantweiß bright\",\"fueltype\":\"Benzin\"")
+                    .append(",\"powerhp\":\"367\",\"powerkw\":\"270\",\"numberofdoors\":\"2\",\"numberofseats\":\"4\"}");
+        }
+        return json.append(']').toString();
+    }
+}
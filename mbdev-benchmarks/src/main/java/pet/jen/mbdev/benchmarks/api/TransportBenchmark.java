@@ -0,0 +1,107 @@
+package pet.jen.mbdev.benchmarks.api;
+
+import feign.RequestLine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import pet.jen.mbdev.api.ApiOptions;
+import pet.jen.mbdev.api.MBDevApiFactory;
+import pet.jen.mbdev.api.TokenProvider;
+import pet.jen.mbdev.api.transport.JdkHttpTransport;
+import pet.jen.mbdev.api.transport.OkHttpTransport;
+import pet.jen.mbdev.benchmarks.StandInServer;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the round trip of an API call against a local stand-in server for the available transports. The shared
+ * transports reuse their connections while `okHttpPerClient` creates a new transport for every call, which is what
+ * happens if every client builds its own connection pool.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class TransportBenchmark {
+
+    private StandInServer server;
+
+    private String baseUrl;
+
+    private TokenProvider tokenProvider;
+
+    private OkHttpTransport okHttpTransport;
+
+    private StandInApi jdk;
+
+    private StandInApi okHttp;
+
+    @Setup
+    public void setup() throws IOException {
+        server = new StandInServer("{\"id\":\"WDD1234567890\"}");
+        baseUrl = server.url();
+
+        tokenProvider = new TokenProvider() {
+            @Override
+            public String getAccessToken() {
+                return "access-token";
+            }
+
+            @Override
+            public String refreshTokens() {
+                return "access-token";
+            }
+        };
+        okHttpTransport = OkHttpTransport.builder().build();
+        jdk = MBDevApiFactory.create(StandInApi.class, baseUrl, "", tokenProvider,
+                ApiOptions.builder().transport(JdkHttpTransport.builder().gzip(false).build()).build());
+        okHttp = MBDevApiFactory.create(StandInApi.class, baseUrl, "", tokenProvider,
+                ApiOptions.builder().transport(okHttpTransport).build());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        okHttpTransport.shutdown();
+        server.close();
+    }
+
+    @Benchmark
+    public Object jdkShared() {
+        return jdk.vehicles();
+    }
+
+    @Benchmark
+    public Object okHttpShared() {
+        return okHttp.vehicles();
+    }
+
+    @Benchmark
+    public Object okHttpPerClient() {
+        OkHttpTransport transport = OkHttpTransport.builder().build();
+        try {
+            return MBDevApiFactory.create(StandInApi.class, baseUrl, "", tokenProvider,
+                    ApiOptions.builder().transport(transport).build()).vehicles();
+        } finally {
+            transport.shutdown();
+        }
+    }
+
+    public interface StandInApi {
+        @RequestLine("GET /vehicles")
+        Map<String, String> vehicles();
+    }
+}
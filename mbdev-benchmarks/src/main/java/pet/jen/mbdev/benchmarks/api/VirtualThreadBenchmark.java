@@ -0,0 +1,99 @@
+package pet.jen.mbdev.benchmarks.api;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import pet.jen.mbdev.api.AsyncOptions;
+import pet.jen.mbdev.api.TokenProvider;
+import pet.jen.mbdev.api.VirtualThreads;
+import pet.jen.mbdev.benchmarks.StandInServer;
+import pet.jen.mbdev.connectedvehicle.AsyncConnectedVehicleAdapter;
+import pet.jen.mbdev.connectedvehicle.Vehicle;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fetches the vehicles of `fetches` users at once from a local stand-in server, every fetch blocking a thread of its
+ * own: either a platform thread of a cached pool or a virtual thread. Requires Java 21 for the `virtual` mode.
+ *
+ * The JDK keep-alive cache is sized for all connections so that the iterations measure the threads rather than the
+ * connection setup.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Dhttp.maxConnections=10000", "-Xss512k"})
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class VirtualThreadBenchmark {
+
+    private static final String VEHICLES = "[{\"id\":\"1\",\"licenseplate\":\"S-GG-116\",\"finorvin\":\"WDD***********001\"},"
+            + "{\"id\":\"2\",\"licenseplate\":\"S-GG-117\",\"finorvin\":\"WDD***********002\"}]";
+
+    @Param({"platform", "virtual"})
+    private String threads;
+
+    @Param({"10000"})
+    private int fetches;
+
+    private StandInServer server;
+
+    private ExecutorService executor;
+
+    private AsyncConnectedVehicleAdapter adapter;
+
+    @Setup
+    public void setup() throws IOException {
+        if("virtual".equals(threads) && !VirtualThreads.isSupported()) {
+            throw new IllegalStateException("Virtual threads require Java 21 or newer.");
+        }
+        server = new StandInServer(VEHICLES);
+        executor = "virtual".equals(threads)
+                ? VirtualThreads.executor("benchmark-fetch")
+                : Executors.newCachedThreadPool();
+        adapter = new AsyncConnectedVehicleAdapter(new TokenProvider() {
+            @Override
+            public String getAccessToken() {
+                return "access-token";
+            }
+
+            @Override
+            public String refreshTokens() {
+                return "access-token";
+            }
+        }, server.url(), AsyncOptions.builder().executor(executor).build());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        executor.shutdownNow();
+        server.close();
+    }
+
+    @Benchmark
+    public int fetchAll() {
+        @SuppressWarnings("unchecked")
+        CompletableFuture<List<Vehicle>>[] calls = new CompletableFuture[fetches];
+        for(int i = 0; i < fetches; i++) {
+            calls[i] = adapter.vehicles();
+        }
+        CompletableFuture.allOf(calls).join();
+        return calls.length;
+    }
+}
@@ -0,0 +1,102 @@
+package pet.jen.mbdev.benchmarks.auth;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import pet.jen.mbdev.api.TokenProvider;
+import pet.jen.mbdev.api.auth.AuthorizationFlowHandler;
+import pet.jen.mbdev.api.auth.domain.OAuthConfig;
+import pet.jen.mbdev.api.auth.domain.TokenInformation;
+import pet.jen.mbdev.api.auth.persistence.TokenRepository;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the read path of the token provider returned by the {@link AuthorizationFlowHandler}. The tokens are valid
+ * for the whole run so the token api is never called and only the overhead of `getAccessToken()` is measured.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TokenProviderBenchmark {
+
+    private TokenProvider tokenProvider;
+
+    @Setup
+    public void setup() {
+        OAuthConfig config = OAuthConfig.builder()
+                .authorizationBaseUrl("http://localhost")
+                .clientId("client-id")
+                .clientSecret("client-secret")
+                .scopes(Arrays.asList("scope1", "scope2"))
+                .build();
+        tokenProvider = AuthorizationFlowHandler.fromRepository(config, new StaticTokenRepository(createTokens()));
+    }
+
+    @Benchmark
+    public String getAccessToken() {
+        return tokenProvider.getAccessToken();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String getAccessTokenContended() {
+        return tokenProvider.getAccessToken();
+    }
+
+    private static TokenInformation createTokens() {
+        TokenInformation tokenInformation = new TokenInformation();
+        tokenInformation.setAccessToken("access-token");
+        tokenInformation.setRefreshToken("refresh-token");
+        tokenInformation.setTokenType("Bearer");
+        tokenInformation.setScope("scope1 scope2");
+        // valid for a day which outlasts every benchmark run
+        tokenInformation.setExpiresIn(86400);
+        tokenInformation.setTimestamp(new Date().getTime());
+        return tokenInformation;
+    }
+
+    private static class StaticTokenRepository implements TokenRepository {
+
+        private TokenInformation tokenInformation;
+
+        StaticTokenRepository(TokenInformation tokenInformation) {
+            this.tokenInformation = tokenInformation;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return tokenInformation == null;
+        }
+
+        @Override
+        public void save(TokenInformation tokenInformation) {
+            this.tokenInformation = tokenInformation;
+        }
+
+        @Override
+        public TokenInformation get() {
+            return tokenInformation;
+        }
+
+        @Override
+        public void clear() {
+            this.tokenInformation = null;
+        }
+    }
+}
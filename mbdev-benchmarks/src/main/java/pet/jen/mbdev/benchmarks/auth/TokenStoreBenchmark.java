@@ -0,0 +1,103 @@
+package pet.jen.mbdev.benchmarks.auth;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import pet.jen.mbdev.api.auth.domain.TokenInformation;
+import pet.jen.mbdev.api.auth.persistence.MappedFileTokenStore;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the restart time of a {@link MappedFileTokenStore}, i.e. replaying the log of many accounts, and the costs
+ * of saving the tokens of a single account after a refresh.
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TokenStoreBenchmark {
+
+    @Param({"10000", "50000"})
+    private int accounts;
+
+    private Path restorePath;
+
+    private Path appendPath;
+
+    private MappedFileTokenStore appendStore;
+
+    private TokenInformation tokenInformation;
+
+    private int counter;
+
+    @Setup
+    public void setup() throws Throwable {
+        tokenInformation = createTokens();
+        restorePath = Files.createTempFile("mbdev-restore", ".log");
+        Files.delete(restorePath);
+        MappedFileTokenStore store = MappedFileTokenStore.open(restorePath);
+        for(int i = 0; i < accounts; i++) {
+            store.put("account-" + i, tokenInformation);
+        }
+        store.close();
+
+        appendPath = Files.createTempFile("mbdev-append", ".log");
+        Files.delete(appendPath);
+        appendStore = MappedFileTokenStore.open(appendPath);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        appendStore.close();
+        delete(restorePath);
+        delete(appendPath);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int restore() throws Exception {
+        try (MappedFileTokenStore store = MappedFileTokenStore.open(restorePath)) {
+            return store.size();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void save() throws Throwable {
+        appendStore.put("account-" + (counter++ % accounts), tokenInformation);
+    }
+
+    private static void delete(Path path) throws Exception {
+        Files.deleteIfExists(path);
+        Files.deleteIfExists(new File(path.toString() + ".compact").toPath());
+    }
+
+    private static TokenInformation createTokens() {
+        TokenInformation tokenInformation = new TokenInformation();
+        tokenInformation.setAccessToken("5957805d-e0e8-4ddc-b59f-b7c35ae1cdc2");
+        tokenInformation.setRefreshToken("a89b41e5-15a6-48b3-b959-a03098b3b0e0");
+        tokenInformation.setTokenType("Bearer");
+        tokenInformation.setScope("mb:vehicle:status:general mb:user:pool:reader");
+        tokenInformation.setExpiresIn(3600);
+        tokenInformation.setTimestamp(new Date().getTime());
+        return tokenInformation;
+    }
+}
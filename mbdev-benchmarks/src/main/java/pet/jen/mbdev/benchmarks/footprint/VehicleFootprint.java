@@ -0,0 +1,92 @@
+package pet.jen.mbdev.benchmarks.footprint;
+
+import org.openjdk.jol.info.GraphLayout;
+import org.openjdk.jol.vm.VM;
+import pet.jen.mbdev.connectedvehicle.CompactVehicle;
+import pet.jen.mbdev.connectedvehicle.Vehicle;
+import pet.jen.mbdev.connectedvehicle.VehicleDictionary;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the retained heap of a fleet of synthetic vehicles as decoded {@link Vehicle}s and as {@link CompactVehicle}s
+ * using JOL. The vehicles are generated with a fixed seed and every string is a distinct instance, just like the ones
+ * of a decoded response. Not a JMH benchmark, run it with a heap large enough for both fleets:
+ * ```
+ * java -Xmx4g -cp mbdev-benchmarks/target/benchmarks.jar pet.jen.mbdev.benchmarks.footprint.VehicleFootprint 1000000
+ * ```
+ *
+ * @author Jens Petersohn <me@jen.pet>
+ */
+public class VehicleFootprint {
+
+    private static final String[] DESIGNATIONS = {"Mercedes-AMG CLA 45 4MATIC Shooting Brake", "C 200 T-Modell",
+            "E 220 d Limousine", "GLC 300 4MATIC", "A 180 Kompaktlimousine", "S 560 e Limousine", "V 250 d lang",
+            "Mercedes-AMG C 43 4MATIC Coupé", "B 200 d", "GLE 350 d 4MATIC"};
+
+    private static final String[] COLORS = {"mountaingrau metallic", "polarweiß", "obsidianschwarz metallic",
+            "iridiumsilber metallic", "designo diamantweiß bright", "brillantblau metallic", "jupiterrot"};
+
+    private static final String[] FUELS = {"Benzin", "Diesel", "Hybrid", "Elektro"};
+
+    private static final int[] POWERS = {109, 136, 156, 184, 194, 245, 258, 367, 381, 469};
+
+    private static final String[] DOORS = {"2", "3", "4", "5"};
+
+    private static final String[] SEATS = {"2", "4", "5", "7"};
+
+    public static void main(String[] args) {
+        int vehicles = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        System.out.println(VM.current().details());
+
+        List<Vehicle> fleet = fleet(vehicles);
+        long fleetSize = GraphLayout.parseInstance(fleet).totalSize();
+        report("Vehicle", vehicles, fleetSize);
+
+        VehicleDictionary dictionary = new VehicleDictionary();
+        List<CompactVehicle> compactFleet = new ArrayList<>(vehicles);
+        for(Vehicle vehicle : fleet) {
+            compactFleet.add(CompactVehicle.of(vehicle, dictionary));
+        }
+        // the unique strings are shared with the decoded vehicles, which are dropped before measuring
+        fleet = null;
+        long compactSize = GraphLayout.parseInstance(compactFleet, dictionary).totalSize();
+        report("CompactVehicle", vehicles, compactSize);
+        System.out.printf("Reduction: %.1f%%%n", 100.0 * (fleetSize - compactSize) / fleetSize);
+    }
+
+    private static List<Vehicle> fleet(int vehicles) {
+        Random random = new Random(42);
+        List<Vehicle> fleet = new ArrayList<>(vehicles);
+        for(int i = 0; i < vehicles; i++) {
+            int power = POWERS[random.nextInt(POWERS.length)];
+            Vehicle vehicle = new Vehicle();
+            vehicle.setId(String.format("%02d-9BO-_vTsH1LoEdu-_vZwpb_Oz4FO0Frkfskuw3uuKCFSSbeQ7Og3sOr3L%07d",
+                    random.nextInt(100), i));
+            vehicle.setLicenseplate("S-" + (char) ('A' + random.nextInt(26)) + (char) ('A' + random.nextInt(26))
+                    + "-" + (1 + random.nextInt(9999)));
+            vehicle.setFinorvin(String.format("WDD%014d", i));
+            vehicle.setSalesdesignation(copy(DESIGNATIONS[random.nextInt(DESIGNATIONS.length)]));
+            vehicle.setModelyear(String.valueOf(2010 + random.nextInt(10)));
+            vehicle.setColorname(copy(COLORS[random.nextInt(COLORS.length)]));
+            vehicle.setFueltype(copy(FUELS[random.nextInt(FUELS.length)]));
+            vehicle.setPowerhp(String.valueOf(power));
+            vehicle.setPowerkw(String.valueOf(Math.round(power * 0.7355)));
+            vehicle.setNumberofdoors(copy(DOORS[random.nextInt(DOORS.length)]));
+            vehicle.setNumberofseats(copy(SEATS[random.nextInt(SEATS.length)]));
+            fleet.add(vehicle);
+        }
+        return fleet;
+    }
+
+    private static String copy(String value) {
+        return new String(value.toCharArray());
+    }
+
+    private static void report(String type, int vehicles, long bytes) {
+        System.out.printf("%-15s %,d vehicles: %,d bytes total, %,d bytes per vehicle%n", type, vehicles, bytes,
+                bytes / vehicles);
+    }
+}